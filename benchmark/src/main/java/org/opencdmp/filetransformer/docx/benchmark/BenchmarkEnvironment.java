@@ -0,0 +1,153 @@
+package org.opencdmp.filetransformer.docx.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.opencdmp.filetransformer.docx.service.admission.*;
+import org.opencdmp.filetransformer.docx.service.language.LanguageServiceImpl;
+import org.opencdmp.filetransformer.docx.service.pdf.*;
+import org.opencdmp.filetransformer.docx.service.pid.PidServiceImpl;
+import org.opencdmp.filetransformer.docx.service.storage.FileStorageService;
+import org.opencdmp.filetransformer.docx.service.storage.FileStorageServiceImpl;
+import org.opencdmp.filetransformer.docx.service.storage.FileStorageServiceProperties;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerService;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerServiceProperties;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.fragment.FragmentRenderServiceImpl;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.image.ImageService;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.image.ImageServiceImpl;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.metrics.ExportMetricsServiceImpl;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.renderplan.RenderPlanCacheServiceImpl;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.template.TemplateCacheService;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.template.TemplateCacheServiceImpl;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.RichTextCacheServiceImpl;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.WordBuilderImpl;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.ResourceLoader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Wires the export services by hand, the way the Spring context of the web module does, so that the benchmarks
+ * measure the rendering code and not the application start up.
+ * Templates, languages and pid links are read from the web module resources, which can be overridden with
+ * {@code -Ddocx.benchmark.resources=<directory>}. A remote pdf converter is only wired when {@code -Ddocx.benchmark.pdf-url} is set.
+ * Plan descriptions are rendered in parallel fragments with {@code -Ddocx.benchmark.parallel-descriptions=true}.
+ */
+public class BenchmarkEnvironment {
+    private static final String RESOURCES_PROPERTY = "docx.benchmark.resources";
+    private static final String PDF_URL_PROPERTY = "docx.benchmark.pdf-url";
+    private static final String PARALLEL_DESCRIPTIONS_PROPERTY = "docx.benchmark.parallel-descriptions";
+    private static final String DEFAULT_RESOURCES = "../web/src/main/resources";
+
+    private final WordFileTransformerServiceProperties wordFileTransformerServiceProperties;
+    private final MeterRegistry meterRegistry;
+    private final WordBuilderImpl wordBuilder;
+    private final TemplateCacheService templateCacheService;
+    private final FopPdfEngine fopPdfEngine;
+    private final RemotePdfEngine remotePdfEngine;
+    private final WordFileTransformerService wordFileTransformerService;
+
+    public BenchmarkEnvironment() {
+        Path resources = Path.of(System.getProperty(RESOURCES_PROPERTY, DEFAULT_RESOURCES)).toAbsolutePath().normalize();
+        if (!Files.isDirectory(resources)) throw new IllegalStateException("benchmark resources not found at " + resources + ", set -D" + RESOURCES_PROPERTY);
+        ResourceLoader resourceLoader = new DefaultResourceLoader();
+        this.meterRegistry = new SimpleMeterRegistry();
+
+        this.wordFileTransformerServiceProperties = new WordFileTransformerServiceProperties();
+        this.wordFileTransformerServiceProperties.setTransformerId("docx");
+        this.wordFileTransformerServiceProperties.setUseSharedStorage(false);
+        this.wordFileTransformerServiceProperties.setWordPlanTemplate(resources.resolve("documents/plan.docx").toUri().toString());
+        this.wordFileTransformerServiceProperties.setWordDescriptionTemplate(resources.resolve("documents/description.docx").toUri().toString());
+        this.wordFileTransformerServiceProperties.setPidTemplate(resources.resolve("pidLinks.json").toUri().toString());
+        this.wordFileTransformerServiceProperties.setLanguages(resources.resolve("languages.json").toUri().toString());
+        this.wordFileTransformerServiceProperties.setOrganizationReferenceCode("organisations");
+        this.wordFileTransformerServiceProperties.setGrantReferenceCode("grants");
+        this.wordFileTransformerServiceProperties.setResearcherReferenceCode("researchers");
+        this.wordFileTransformerServiceProperties.setLicenceReferenceCode("licenses");
+        this.wordFileTransformerServiceProperties.setDatasetReferenceCode("datasets");
+        this.wordFileTransformerServiceProperties.setPublicationReferenceCode("publications");
+        this.wordFileTransformerServiceProperties.getParallelDescriptions().setEnabled(Boolean.getBoolean(PARALLEL_DESCRIPTIONS_PROPERTY));
+
+        FileStorageService fileStorageService = new FileStorageServiceImpl(this.storageProperties());
+        ImageService imageService = new ImageServiceImpl(this.wordFileTransformerServiceProperties, this.meterRegistry);
+        this.wordBuilder = new WordBuilderImpl(fileStorageService, this.wordFileTransformerServiceProperties,
+                new PidServiceImpl(this.wordFileTransformerServiceProperties, resourceLoader),
+                new LanguageServiceImpl(this.wordFileTransformerServiceProperties, resourceLoader),
+                new RichTextCacheServiceImpl(this.wordFileTransformerServiceProperties, this.meterRegistry),
+                new RenderPlanCacheServiceImpl(this.wordFileTransformerServiceProperties, this.meterRegistry),
+                imageService);
+        this.templateCacheService = new TemplateCacheServiceImpl(this.wordFileTransformerServiceProperties, resourceLoader, this.meterRegistry);
+
+        PdfServiceProperties pdfServiceProperties = new PdfServiceProperties();
+        pdfServiceProperties.getCache().setEnabled(false);
+        pdfServiceProperties.setMaxInMemorySizeInBytes(64 * 1024 * 1024);
+        String pdfUrl = System.getProperty(PDF_URL_PROPERTY);
+        if (pdfUrl != null && !pdfUrl.isBlank()) {
+            pdfServiceProperties.setUrl(pdfUrl);
+            this.remotePdfEngine = new RemotePdfEngine(pdfServiceProperties);
+        } else {
+            this.remotePdfEngine = null;
+        }
+        pdfServiceProperties.setMode(PdfEngineMode.LOCAL);
+        this.fopPdfEngine = new FopPdfEngine(pdfServiceProperties);
+        PdfService pdfService = new PdfServiceImpl(pdfServiceProperties, this.meterRegistry, new PdfCacheServiceImpl(pdfServiceProperties, this.meterRegistry), this.remotePdfEngine, this.fopPdfEngine);
+
+        // exports are measured without waiting for budget
+        AdmissionProperties admissionProperties = new AdmissionProperties();
+        admissionProperties.setEnabled(false);
+        AdmissionService admissionService = new AdmissionServiceImpl(admissionProperties,
+                new ExportCostEstimator(admissionProperties, this.wordFileTransformerServiceProperties, fileStorageService), this.meterRegistry);
+
+        StaticMessageSource messageSource = new StaticMessageSource();
+        messageSource.setUseCodeAsDefaultMessage(true);
+        this.wordFileTransformerService = new WordFileTransformerService(fileStorageService, this.wordFileTransformerServiceProperties,
+                pdfService, this.wordBuilder, fileStorageService, messageSource, this.templateCacheService, imageService,
+                new FragmentRenderServiceImpl(this.wordFileTransformerServiceProperties, this.meterRegistry), admissionService,
+                new ExportMetricsServiceImpl(this.meterRegistry));
+    }
+
+    private FileStorageServiceProperties storageProperties() {
+        try {
+            Path root = Files.createTempDirectory("docx-benchmark");
+            Path temp = Files.createDirectories(root.resolve("temp"));
+            Path transientPath = Files.createDirectories(root.resolve("transient"));
+            return new FileStorageServiceProperties(temp.toString(), transientPath.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public WordFileTransformerServiceProperties getWordFileTransformerServiceProperties() {
+        return wordFileTransformerServiceProperties;
+    }
+
+    public MeterRegistry getMeterRegistry() {
+        return meterRegistry;
+    }
+
+    public WordBuilderImpl getWordBuilder() {
+        return wordBuilder;
+    }
+
+    public TemplateCacheService getTemplateCacheService() {
+        return templateCacheService;
+    }
+
+    public FopPdfEngine getFopPdfEngine() {
+        return fopPdfEngine;
+    }
+
+    /**
+     * @return the remote engine, or null when no converter url was given
+     */
+    public RemotePdfEngine getRemotePdfEngine() {
+        return remotePdfEngine;
+    }
+
+    public WordFileTransformerService getWordFileTransformerService() {
+        return wordFileTransformerService;
+    }
+}
@@ -0,0 +1,61 @@
+package org.opencdmp.filetransformer.docx.benchmark;
+
+import org.opencdmp.commonmodels.models.FileEnvelopeModel;
+import org.opencdmp.commonmodels.models.description.DescriptionModel;
+import org.opencdmp.commonmodels.models.plan.PlanModel;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerService;
+import org.openjdk.jmh.annotations.*;
+
+import javax.management.InvalidApplicationException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end {@code exportPlan}/{@code exportDescription}: template copy, placeholder filling, body rendering and serialization.
+ * The pdf variant uses the local engine so that no converter is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExportBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int descriptions;
+
+    @Param({"20", "100"})
+    private int fields;
+
+    @Param({"1", "5"})
+    private int multiplicityRows;
+
+    @Param({"1024"})
+    private int richTextSize;
+
+    @Param({"docx", "pdf"})
+    private String format;
+
+    private WordFileTransformerService wordFileTransformerService;
+    private PlanModel plan;
+    private DescriptionModel description;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.wordFileTransformerService = new BenchmarkEnvironment().getWordFileTransformerService();
+        SyntheticModelFactory factory = new SyntheticModelFactory(this.descriptions, this.fields, this.multiplicityRows, this.richTextSize);
+        this.plan = factory.createPlan();
+        this.description = this.plan.getDescriptions().getFirst();
+    }
+
+    @Benchmark
+    public FileEnvelopeModel exportPlan() throws IOException, InvalidApplicationException {
+        return this.wordFileTransformerService.exportPlan(this.plan, this.format);
+    }
+
+    @Benchmark
+    public FileEnvelopeModel exportDescription() throws IOException, InvalidApplicationException {
+        return this.wordFileTransformerService.exportDescription(this.description, this.format);
+    }
+}
@@ -0,0 +1,69 @@
+package org.opencdmp.filetransformer.docx.benchmark;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.HtmlToWorldBuilder;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.NumberingRegistry;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.RichTextFragment;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HtmlToWorldBuilder#record} and {@link RichTextFragment#appendTo} of one rich text value, with and without the jsoup parse, and of a plain text value of the same size.
+ * Every document gets its own {@link NumberingRegistry}, as it does when exported. {@code writeFragment} is the cached case, where only the recorded {@link RichTextFragment} is written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlToWorldBuilderBenchmark {
+
+    @Param({"64", "1024", "16384"})
+    private int richTextSize;
+
+    private String html;
+    private String plainText;
+    private Document htmlDocument;
+    private RichTextFragment fragment;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticModelFactory factory = new SyntheticModelFactory(1, 1, 1, this.richTextSize);
+        this.html = factory.richText();
+        this.plainText = Jsoup.parse(this.html).wholeText();
+        this.htmlDocument = Jsoup.parse(this.html.replaceAll("\n", "<br>"));
+        this.fragment = HtmlToWorldBuilder.record(this.html);
+    }
+
+    @Benchmark
+    public XWPFDocument convert() {
+        XWPFDocument document = new XWPFDocument();
+        HtmlToWorldBuilder.record(this.htmlDocument).appendTo(document, 0, new NumberingRegistry());
+        return document;
+    }
+
+    @Benchmark
+    public XWPFDocument parseAndConvert() {
+        XWPFDocument document = new XWPFDocument();
+        HtmlToWorldBuilder.record(this.html).appendTo(document, 0, new NumberingRegistry());
+        return document;
+    }
+
+    @Benchmark
+    public XWPFDocument convertPlainText() {
+        XWPFDocument document = new XWPFDocument();
+        HtmlToWorldBuilder.record(this.plainText).appendTo(document, 0, new NumberingRegistry());
+        return document;
+    }
+
+    @Benchmark
+    public XWPFDocument writeFragment() {
+        XWPFDocument document = new XWPFDocument();
+        this.fragment.appendTo(document, 0, new NumberingRegistry());
+        return document;
+    }
+}
@@ -0,0 +1,47 @@
+package org.opencdmp.filetransformer.docx.benchmark;
+
+import org.opencdmp.filetransformer.docx.service.pdf.PdfEngine;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Docx to pdf conversion of an exported plan by the in-process engine and, when {@code -Ddocx.benchmark.pdf-url} points to a converter, by the remote one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PdfEngineBenchmark {
+
+    @Param({"local", "remote"})
+    private String engine;
+
+    @Param({"1", "10"})
+    private int descriptions;
+
+    private PdfEngine pdfEngine;
+    private ByteArrayResource docx;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkEnvironment environment = new BenchmarkEnvironment();
+        this.pdfEngine = "remote".equals(this.engine) ? environment.getRemotePdfEngine() : environment.getFopPdfEngine();
+        if (this.pdfEngine == null) throw new IllegalStateException("the remote engine needs -Ddocx.benchmark.pdf-url");
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        environment.getWordFileTransformerService().writePlan(new SyntheticModelFactory(this.descriptions, 40, 2, 1024).createPlan(), "docx", outputStream);
+        this.docx = new ByteArrayResource(outputStream.toByteArray());
+    }
+
+    @Benchmark
+    public byte[] convert() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        this.pdfEngine.convert(this.docx, outputStream);
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,70 @@
+package org.opencdmp.filetransformer.docx.benchmark;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.PlaceholderReplacer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Placeholder search and replacement over paragraphs whose codes are split across runs, the way word saves edited templates.
+ * {@link PlaceholderReplacer} replaced the per-code {@code searchText}/{@code replaceTextSegment} pair, so this is their benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlaceholderReplacerBenchmark {
+    private static final String[] CODES = {"PLAN.TITLE", "PLAN.VERSION", "PLAN.STATUS", "PLAN.ID", "PLAN.LANGUAGE", "PLAN.ACCESS-TYPE",
+            "PLAN.BLUEPRINT.NAME", "PLAN.CREATED-AT", "PLAN.UPDATED-AT", "PLAN.FINALIZED-AT", "PLAN.DEPOSIT-IDENTIFIERS", "PLAN.CREATOR.NAME",
+            "PLAN.USERS", "PLAN.USERS-WITH-ROLES", "PLAN.CONTACTS", "PLAN.DESCRIPTION", "DESCRIPTION.ID", "DESCRIPTION.TITLE", "DESCRIPTION.STATUS",
+            "DESCRIPTION.TEMPLATE.NAME", "DESCRIPTION.CREATED-AT", "DESCRIPTION.SECTION", "PLAN-REFERENCE.GRANTS", "PLAN-REFERENCE.FUNDERS"};
+
+    @Param({"10", "100", "1000"})
+    private int paragraphs;
+
+    @Param({"1", "3"})
+    private int runsPerCode;
+
+    private PlaceholderReplacer replacer;
+    private XWPFDocument document;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, PlaceholderReplacer.Replacement> replacements = new HashMap<>();
+        for (String code : CODES) replacements.put(code(code), new PlaceholderReplacer.Replacement("value of " + code.toLowerCase()));
+        this.replacer = new PlaceholderReplacer(replacements);
+    }
+
+    @Setup(Level.Invocation)
+    public void createDocument() {
+        this.document = new XWPFDocument();
+        for (int i = 0; i < this.paragraphs; i++) {
+            XWPFParagraph paragraph = this.document.createParagraph();
+            paragraph.createRun().setText("Paragraph " + i + " of the cover page: ");
+            String code = code(CODES[i % CODES.length]);
+            int chunk = (code.length() + this.runsPerCode - 1) / this.runsPerCode;
+            for (int start = 0; start < code.length(); start += chunk) {
+                paragraph.createRun().setText(code.substring(start, Math.min(code.length(), start + chunk)));
+            }
+            paragraph.createRun().setText(" and some trailing text without any code in it.");
+        }
+    }
+
+    @Benchmark
+    public void replace(Blackhole blackhole) {
+        for (XWPFParagraph paragraph : this.document.getParagraphs()) {
+            blackhole.consume(this.replacer.replace(paragraph));
+        }
+    }
+
+    private static String code(String name) {
+        return "'{OPENCDMP." + name + "}'";
+    }
+}
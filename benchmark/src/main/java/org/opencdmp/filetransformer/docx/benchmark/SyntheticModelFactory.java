@@ -0,0 +1,236 @@
+package org.opencdmp.filetransformer.docx.benchmark;
+
+import org.opencdmp.commonmodels.enums.DescriptionStatus;
+import org.opencdmp.commonmodels.enums.FieldType;
+import org.opencdmp.commonmodels.models.description.*;
+import org.opencdmp.commonmodels.models.descriptionstatus.DescriptionStatusModel;
+import org.opencdmp.commonmodels.models.descriptiotemplate.*;
+import org.opencdmp.commonmodels.models.descriptiotemplate.FieldModel;
+import org.opencdmp.commonmodels.models.descriptiotemplate.fielddata.LabelDataModel;
+import org.opencdmp.commonmodels.models.plan.PlanModel;
+import org.opencdmp.commonmodels.models.planblueprint.PlanBlueprintModel;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Builds deterministic plans and descriptions of a given shape.
+ * Every description uses the same template: one page, sections of {@value #FIELD_SETS_PER_SECTION} field sets
+ * and field sets of {@value #FIELDS_PER_FIELD_SET} fields, alternating plain text and rich text.
+ * Each field set has {@code multiplicityRows} items and every third one is rendered as a table.
+ */
+public class SyntheticModelFactory {
+    static final int FIELDS_PER_FIELD_SET = 5;
+    static final int FIELD_SETS_PER_SECTION = 4;
+    private static final int PLAN_SECTIONS = 2;
+    private static final String[] WORDS = {"data", "management", "plan", "repository", "metadata", "licence", "preservation", "access", "ethics", "storage", "format", "volume"};
+
+    private final int descriptions;
+    private final int fields;
+    private final int multiplicityRows;
+    private final int richTextSize;
+    private final Random random = new Random(42);
+
+    public SyntheticModelFactory(int descriptions, int fields, int multiplicityRows, int richTextSize) {
+        this.descriptions = descriptions;
+        this.fields = fields;
+        this.multiplicityRows = Math.max(1, multiplicityRows);
+        this.richTextSize = richTextSize;
+    }
+
+    public PlanModel createPlan() {
+        PlanModel plan = new PlanModel();
+        plan.setId(this.uuid());
+        plan.setLabel("Synthetic plan " + this.descriptions + "x" + this.fields);
+        plan.setDescription(this.richText());
+        plan.setLanguage("en");
+        plan.setCreatedAt(Instant.EPOCH);
+        plan.setUpdatedAt(Instant.EPOCH);
+
+        List<org.opencdmp.commonmodels.models.planblueprint.SectionModel> sections = new ArrayList<>();
+        for (int i = 0; i < PLAN_SECTIONS; i++) {
+            org.opencdmp.commonmodels.models.planblueprint.SectionModel section = new org.opencdmp.commonmodels.models.planblueprint.SectionModel();
+            section.setId(this.uuid());
+            section.setOrdinal(i + 1);
+            section.setLabel("Section " + (i + 1));
+            section.setFields(new ArrayList<>());
+            sections.add(section);
+        }
+        org.opencdmp.commonmodels.models.planblueprint.DefinitionModel blueprintDefinition = new org.opencdmp.commonmodels.models.planblueprint.DefinitionModel();
+        blueprintDefinition.setSections(sections);
+        PlanBlueprintModel blueprint = new PlanBlueprintModel();
+        blueprint.setId(this.uuid());
+        blueprint.setLabel("Synthetic blueprint");
+        blueprint.setDefinition(blueprintDefinition);
+        plan.setPlanBlueprint(blueprint);
+
+        DescriptionTemplateModel descriptionTemplate = this.createDescriptionTemplate();
+        List<DescriptionModel> descriptionModels = new ArrayList<>();
+        for (int i = 0; i < this.descriptions; i++) {
+            DescriptionModel description = this.createDescription(descriptionTemplate, i);
+            description.setSectionId(sections.get(i % sections.size()).getId());
+            description.setPlan(plan);
+            descriptionModels.add(description);
+        }
+        plan.setDescriptions(descriptionModels);
+        return plan;
+    }
+
+    /**
+     * @return the first description of a new plan, linked back to its plan
+     */
+    public DescriptionModel createDescription() {
+        PlanModel plan = this.createPlan();
+        if (plan.getDescriptions().isEmpty()) {
+            DescriptionModel description = this.createDescription(this.createDescriptionTemplate(), 0);
+            description.setSectionId(plan.getPlanBlueprint().getDefinition().getSections().getFirst().getId());
+            description.setPlan(plan);
+            return description;
+        }
+        return plan.getDescriptions().getFirst();
+    }
+
+    public DescriptionTemplateModel createDescriptionTemplate() {
+        List<FieldSetModel> fieldSets = new ArrayList<>();
+        int fieldSetCount = (this.fields + FIELDS_PER_FIELD_SET - 1) / FIELDS_PER_FIELD_SET;
+        for (int i = 0; i < fieldSetCount; i++) {
+            FieldSetModel fieldSet = new FieldSetModel();
+            fieldSet.setId("fs" + i);
+            fieldSet.setOrdinal(i);
+            fieldSet.setTitle("Field set " + i);
+            if (this.multiplicityRows > 1) {
+                MultiplicityModel multiplicity = new MultiplicityModel();
+                multiplicity.setTableView(i % 3 == 2);
+                fieldSet.setMultiplicity(multiplicity);
+            }
+            List<FieldModel> fieldModels = new ArrayList<>();
+            for (int j = 0; j < FIELDS_PER_FIELD_SET && i * FIELDS_PER_FIELD_SET + j < this.fields; j++) {
+                LabelDataModel data = new LabelDataModel();
+                data.setLabel("Field " + i + "." + j);
+                data.setFieldType(j % 2 == 0 ? FieldType.FREE_TEXT : FieldType.RICH_TEXT_AREA);
+                FieldModel field = new FieldModel();
+                field.setId(fieldId(i, j));
+                field.setOrdinal(j);
+                field.setIncludeInExport(true);
+                field.setData(data);
+                fieldModels.add(field);
+            }
+            fieldSet.setFields(fieldModels);
+            fieldSets.add(fieldSet);
+        }
+
+        List<SectionModel> sections = new ArrayList<>();
+        for (int i = 0; i * FIELD_SETS_PER_SECTION < fieldSets.size(); i++) {
+            SectionModel section = new SectionModel();
+            section.setId("s" + i);
+            section.setOrdinal(i);
+            section.setTitle("Section " + i);
+            section.setSections(new ArrayList<>());
+            section.setFieldSets(new ArrayList<>(fieldSets.subList(i * FIELD_SETS_PER_SECTION, Math.min(fieldSets.size(), (i + 1) * FIELD_SETS_PER_SECTION))));
+            sections.add(section);
+        }
+        PageModel page = new PageModel();
+        page.setId("p0");
+        page.setOrdinal(0);
+        page.setTitle("Page");
+        page.setSections(sections);
+
+        DefinitionModel definition = new DefinitionModel();
+        definition.setPages(List.of(page));
+        DescriptionTemplateModel descriptionTemplate = new DescriptionTemplateModel();
+        descriptionTemplate.setId(this.uuid());
+        descriptionTemplate.setLabel("Synthetic template");
+        descriptionTemplate.setDefinition(definition);
+        return descriptionTemplate;
+    }
+
+    private DescriptionModel createDescription(DescriptionTemplateModel descriptionTemplate, int index) {
+        Map<String, PropertyDefinitionFieldSetModel> fieldSetValues = new HashMap<>();
+        List<VisibilityStateModel> visibilityStates = new ArrayList<>();
+        for (PageModel page : descriptionTemplate.getDefinition().getPages()) {
+            visibilityStates.add(visible(page.getId(), null));
+            for (SectionModel section : page.getSections()) {
+                visibilityStates.add(visible(section.getId(), null));
+                for (FieldSetModel fieldSet : section.getFieldSets()) {
+                    List<PropertyDefinitionFieldSetItemModel> items = new ArrayList<>();
+                    for (int row = 0; row < this.multiplicityRows; row++) {
+                        visibilityStates.add(visible(fieldSet.getId(), row));
+                        Map<String, org.opencdmp.commonmodels.models.description.FieldModel> values = new HashMap<>();
+                        for (FieldModel field : fieldSet.getFields()) {
+                            visibilityStates.add(visible(field.getId(), row));
+                            org.opencdmp.commonmodels.models.description.FieldModel value = new org.opencdmp.commonmodels.models.description.FieldModel();
+                            value.setTextValue(field.getData().getFieldType() == FieldType.RICH_TEXT_AREA ? this.richText() : this.sentence(8));
+                            values.put(field.getId(), value);
+                        }
+                        PropertyDefinitionFieldSetItemModel item = new PropertyDefinitionFieldSetItemModel();
+                        item.setOrdinal(row);
+                        item.setFields(values);
+                        items.add(item);
+                    }
+                    PropertyDefinitionFieldSetModel fieldSetValue = new PropertyDefinitionFieldSetModel();
+                    fieldSetValue.setItems(items);
+                    fieldSetValues.put(fieldSet.getId(), fieldSetValue);
+                }
+            }
+        }
+        PropertyDefinitionModel properties = new PropertyDefinitionModel();
+        properties.setFieldSets(fieldSetValues);
+
+        DescriptionStatusModel status = new DescriptionStatusModel();
+        status.setName("Draft");
+        status.setInternalStatus(DescriptionStatus.Draft);
+
+        DescriptionModel description = new DescriptionModel();
+        description.setId(this.uuid());
+        description.setLabel("Description " + index);
+        description.setDescription(this.richText());
+        description.setCreatedAt(Instant.EPOCH.plusSeconds(index));
+        description.setStatus(status);
+        description.setDescriptionTemplate(descriptionTemplate);
+        description.setProperties(properties);
+        description.setVisibilityStates(visibilityStates);
+        return description;
+    }
+
+    /**
+     * Html of roughly {@code richTextSize} characters with the markup rich text fields usually carry: paragraphs, inline styles and lists.
+     */
+    public String richText() {
+        StringBuilder html = new StringBuilder();
+        int block = 0;
+        while (html.length() < this.richTextSize) {
+            switch (block++ % 4) {
+                case 0 -> html.append("<p>").append(this.sentence(12)).append(" <strong>").append(this.sentence(3)).append("</strong> ").append(this.sentence(6)).append("</p>");
+                case 1 -> html.append("<p><em>").append(this.sentence(5)).append("</em> ").append(this.sentence(10)).append("</p>");
+                case 2 -> html.append("<ul><li>").append(this.sentence(4)).append("</li><li>").append(this.sentence(4)).append("</li></ul>");
+                default -> html.append("<p>").append(this.sentence(6)).append("<br>").append(this.sentence(6)).append("</p>");
+            }
+        }
+        return html.toString();
+    }
+
+    public String sentence(int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sentence.append(' ');
+            sentence.append(WORDS[this.random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+
+    static String fieldId(int fieldSet, int field) {
+        return "f" + fieldSet + "_" + field;
+    }
+
+    private static VisibilityStateModel visible(String id, Integer ordinal) {
+        VisibilityStateModel visibilityState = new VisibilityStateModel();
+        visibilityState.setFieldId(id);
+        visibilityState.setOrdinal(ordinal);
+        visibilityState.setVisible(true);
+        return visibilityState;
+    }
+
+    private UUID uuid() {
+        return new UUID(this.random.nextLong(), this.random.nextLong());
+    }
+}
@@ -0,0 +1,74 @@
+package org.opencdmp.filetransformer.docx.benchmark;
+
+import org.opencdmp.commonmodels.enums.PluginEntityType;
+import org.opencdmp.commonmodels.models.description.DescriptionModel;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.template.TemplateCacheService;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.template.TemplateDocument;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.RenderContext;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.SubstitutionTable;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.WordBuilderImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Placeholder filling of the bundled description template: building the substitution table, {@code fillFirstPage}, {@code fillHeader} and {@code fillFooter}.
+ * Each invocation works on a fresh copy of the template; copying it is done in the invocation set up and is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateFillBenchmark {
+
+    @Param({"256", "4096"})
+    private int richTextSize;
+
+    private WordBuilderImpl wordBuilder;
+    private TemplateCacheService templateCacheService;
+    private DescriptionModel description;
+    private TemplateDocument template;
+    private List<String> referenceTypeCodes;
+    private SubstitutionTable substitutionTable;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkEnvironment environment = new BenchmarkEnvironment();
+        this.wordBuilder = environment.getWordBuilder();
+        this.templateCacheService = environment.getTemplateCacheService();
+        this.description = new SyntheticModelFactory(1, 5, 1, this.richTextSize).createDescription();
+        this.referenceTypeCodes = this.templateCacheService.getDefaultTemplate(PluginEntityType.Description).getPlaceholderIndex().getReferenceTypeCodes();
+        this.substitutionTable = this.wordBuilder.buildSubstitutionTable(this.description.getPlan(), this.description, this.referenceTypeCodes);
+    }
+
+    @Setup(Level.Invocation)
+    public void copyTemplate() {
+        this.template = this.templateCacheService.getDefaultTemplate(PluginEntityType.Description);
+    }
+
+    @Benchmark
+    public SubstitutionTable buildSubstitutionTable() {
+        return this.wordBuilder.buildSubstitutionTable(this.description.getPlan(), this.description, this.referenceTypeCodes);
+    }
+
+    @Benchmark
+    public TemplateDocument fillFirstPage() {
+        this.wordBuilder.fillFirstPage(this.substitutionTable, this.template.getDocument(), this.template.getPlaceholderIndex(), true, new RenderContext());
+        return this.template;
+    }
+
+    @Benchmark
+    public TemplateDocument fillHeader() {
+        this.wordBuilder.fillHeader(this.substitutionTable, this.template.getDocument(), this.template.getPlaceholderIndex());
+        return this.template;
+    }
+
+    @Benchmark
+    public TemplateDocument fillFooter() {
+        this.wordBuilder.fillFooter(this.substitutionTable, this.template.getDocument(), this.template.getPlaceholderIndex());
+        return this.template;
+    }
+}
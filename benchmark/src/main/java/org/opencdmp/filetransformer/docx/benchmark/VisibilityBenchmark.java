@@ -0,0 +1,75 @@
+package org.opencdmp.filetransformer.docx.benchmark;
+
+import org.opencdmp.commonmodels.models.description.VisibilityStateModel;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.visibility.VisibilityService;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.visibility.VisibilityServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indexing and querying the visibility of a description with {@code states} visibility states: fields with
+ * {@code ordinals} multiplicity items each, plus one state without ordinal per field. A quarter of the states are hidden,
+ * and {@code lookup} also asks for ordinals that have no state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VisibilityBenchmark {
+
+    @Param({"10000"})
+    private int states;
+
+    @Param({"1", "10"})
+    private int ordinals;
+
+    private List<VisibilityStateModel> visibilityStates;
+    private String[] fieldIds;
+    private VisibilityService visibilityService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int fields = Math.max(1, this.states / (this.ordinals + 1));
+        this.fieldIds = new String[fields];
+        this.visibilityStates = new ArrayList<>(this.states);
+        for (int field = 0; field < fields; field++) {
+            // ids as they come from the model, not literals, so nothing is shared with the lookups below
+            this.fieldIds[field] = new String(SyntheticModelFactory.fieldId(field / SyntheticModelFactory.FIELDS_PER_FIELD_SET, field % SyntheticModelFactory.FIELDS_PER_FIELD_SET));
+            this.visibilityStates.add(state(SyntheticModelFactory.fieldId(field / SyntheticModelFactory.FIELDS_PER_FIELD_SET, field % SyntheticModelFactory.FIELDS_PER_FIELD_SET), null, true));
+            for (int ordinal = 0; ordinal < this.ordinals; ordinal++) {
+                this.visibilityStates.add(state(SyntheticModelFactory.fieldId(field / SyntheticModelFactory.FIELDS_PER_FIELD_SET, field % SyntheticModelFactory.FIELDS_PER_FIELD_SET), ordinal, (field + ordinal) % 4 != 0));
+            }
+        }
+        this.visibilityService = new VisibilityServiceImpl(this.visibilityStates);
+    }
+
+    @Benchmark
+    public VisibilityService index() {
+        return new VisibilityServiceImpl(this.visibilityStates);
+    }
+
+    @Benchmark
+    public int lookup() {
+        int visible = 0;
+        for (String fieldId : this.fieldIds) {
+            if (this.visibilityService.isVisible(fieldId, null)) visible++;
+            for (int ordinal = 0; ordinal <= this.ordinals; ordinal++) {
+                if (this.visibilityService.isVisible(fieldId, ordinal)) visible++;
+            }
+        }
+        return visible;
+    }
+
+    private static VisibilityStateModel state(String fieldId, Integer ordinal, boolean visible) {
+        VisibilityStateModel visibilityState = new VisibilityStateModel();
+        visibilityState.setFieldId(fieldId);
+        visibilityState.setOrdinal(ordinal);
+        visibilityState.setVisible(visible);
+        return visibilityState;
+    }
+}
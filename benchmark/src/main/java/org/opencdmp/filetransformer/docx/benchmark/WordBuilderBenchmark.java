@@ -0,0 +1,48 @@
+package org.opencdmp.filetransformer.docx.benchmark;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.opencdmp.commonmodels.models.description.DescriptionModel;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.visibility.VisibilityServiceImpl;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.RenderContext;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.WordBuilderImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WordBuilderImpl#build} of one description into an empty document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WordBuilderBenchmark {
+
+    @Param({"20", "100", "400"})
+    private int fields;
+
+    @Param({"1", "5"})
+    private int multiplicityRows;
+
+    @Param({"256", "4096"})
+    private int richTextSize;
+
+    private WordBuilderImpl wordBuilder;
+    private DescriptionModel description;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.wordBuilder = new BenchmarkEnvironment().getWordBuilder();
+        this.description = new SyntheticModelFactory(1, this.fields, this.multiplicityRows, this.richTextSize).createDescription();
+    }
+
+    @Benchmark
+    public XWPFDocument build() throws IOException {
+        XWPFDocument document = new XWPFDocument();
+        this.wordBuilder.build(document, this.description.getDescriptionTemplate(), this.description.getProperties(), new VisibilityServiceImpl(this.description.getVisibilityStates()), new RenderContext());
+        return document;
+    }
+}
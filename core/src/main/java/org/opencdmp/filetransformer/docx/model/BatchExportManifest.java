@@ -0,0 +1,103 @@
+package org.opencdmp.filetransformer.docx.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outcome of every item of a batch export, written as the last entry of the archive.
+ */
+public class BatchExportManifest {
+    private String format;
+    private int exported;
+    private int failed;
+    private List<Item> items = new ArrayList<>();
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public int getExported() {
+        return exported;
+    }
+
+    public void setExported(int exported) {
+        this.exported = exported;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Item> items) {
+        this.items = items;
+    }
+
+    public void add(Item item) {
+        this.items.add(item);
+        if (item.getError() == null) this.exported++;
+        else this.failed++;
+    }
+
+    public static class Item {
+        private ItemType type;
+        private UUID id;
+        private String entry;
+        private String error;
+
+        public ItemType getType() {
+            return type;
+        }
+
+        public void setType(ItemType type) {
+            this.type = type;
+        }
+
+        public UUID getId() {
+            return id;
+        }
+
+        public void setId(UUID id) {
+            this.id = id;
+        }
+
+        /**
+         * @return the name of the archive entry of the item, or null when it failed
+         */
+        public String getEntry() {
+            return entry;
+        }
+
+        public void setEntry(String entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * @return why the item could not be exported, or null when it was
+         */
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+    }
+
+    public enum ItemType {
+        Plan,
+        Description
+    }
+}
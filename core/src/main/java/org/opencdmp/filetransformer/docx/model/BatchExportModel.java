@@ -0,0 +1,36 @@
+package org.opencdmp.filetransformer.docx.model;
+
+import org.opencdmp.commonmodels.models.description.DescriptionModel;
+import org.opencdmp.commonmodels.models.plan.PlanModel;
+
+import java.util.List;
+
+public class BatchExportModel {
+    private List<PlanModel> plans;
+    private List<DescriptionModel> descriptions;
+    private String format;
+
+    public List<PlanModel> getPlans() {
+        return plans;
+    }
+
+    public void setPlans(List<PlanModel> plans) {
+        this.plans = plans;
+    }
+
+    public List<DescriptionModel> getDescriptions() {
+        return descriptions;
+    }
+
+    public void setDescriptions(List<DescriptionModel> descriptions) {
+        this.descriptions = descriptions;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+}
@@ -0,0 +1,5 @@
+package org.opencdmp.filetransformer.docx.model.interfaces;
+
+public interface ApplierWithValueAndContext<A, V, C, R> {
+    R apply(A applier, V value, C context);
+}
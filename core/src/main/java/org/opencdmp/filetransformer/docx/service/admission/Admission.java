@@ -0,0 +1,31 @@
+package org.opencdmp.filetransformer.docx.service.admission;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The budget reserved for one export, released when it is closed. Closing it more than once has no effect.
+ */
+public class Admission implements AutoCloseable {
+    static final Admission UNLIMITED = new Admission(null, () -> {});
+
+    private final ExportCost cost;
+    private final Runnable release;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    Admission(ExportCost cost, Runnable release) {
+        this.cost = cost;
+        this.release = release;
+    }
+
+    /**
+     * @return the estimated cost of the export, or null when admission control is disabled
+     */
+    public ExportCost getCost() {
+        return cost;
+    }
+
+    @Override
+    public void close() {
+        if (this.closed.compareAndSet(false, true)) this.release.run();
+    }
+}
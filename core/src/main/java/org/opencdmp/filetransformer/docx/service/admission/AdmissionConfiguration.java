@@ -0,0 +1,9 @@
+package org.opencdmp.filetransformer.docx.service.admission;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({AdmissionProperties.class})
+public class AdmissionConfiguration {
+}
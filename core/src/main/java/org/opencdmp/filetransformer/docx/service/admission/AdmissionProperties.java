@@ -0,0 +1,130 @@
+package org.opencdmp.filetransformer.docx.service.admission;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "export.admission")
+public class AdmissionProperties {
+    private boolean enabled = true;
+    private long budgetBytes = 512L * 1024 * 1024;
+    private int maxConcurrentExports = 0;
+    private int maxQueuedExports = 32;
+    private int acquireTimeoutSeconds = 60;
+    private Cost cost = new Cost();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the estimated memory that exports rendering at the same time may reserve
+     */
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * @return how many exports may render at the same time, or 0 for one per available processor
+     */
+    public int getMaxConcurrentExports() {
+        return maxConcurrentExports;
+    }
+
+    public void setMaxConcurrentExports(int maxConcurrentExports) {
+        this.maxConcurrentExports = maxConcurrentExports;
+    }
+
+    /**
+     * @return how many exports may wait for budget; further exports are rejected at once
+     */
+    public int getMaxQueuedExports() {
+        return maxQueuedExports;
+    }
+
+    public void setMaxQueuedExports(int maxQueuedExports) {
+        this.maxQueuedExports = maxQueuedExports;
+    }
+
+    public int getAcquireTimeoutSeconds() {
+        return acquireTimeoutSeconds;
+    }
+
+    public void setAcquireTimeoutSeconds(int acquireTimeoutSeconds) {
+        this.acquireTimeoutSeconds = acquireTimeoutSeconds;
+    }
+
+    public Cost getCost() {
+        return cost;
+    }
+
+    public void setCost(Cost cost) {
+        this.cost = cost;
+    }
+
+    /**
+     * Weights turning the size of an export into the memory it is expected to hold while it renders.
+     */
+    public static class Cost {
+        private long baseBytes = 8L * 1024 * 1024;
+        private long descriptionBytes = 64L * 1024;
+        private long fieldBytes = 2L * 1024;
+        private int richTextFactor = 10;
+        private int imageFactor = 3;
+
+        /**
+         * @return the cost of any export: the template, the document package and the output buffers
+         */
+        public long getBaseBytes() {
+            return baseBytes;
+        }
+
+        public void setBaseBytes(long baseBytes) {
+            this.baseBytes = baseBytes;
+        }
+
+        public long getDescriptionBytes() {
+            return descriptionBytes;
+        }
+
+        public void setDescriptionBytes(long descriptionBytes) {
+            this.descriptionBytes = descriptionBytes;
+        }
+
+        public long getFieldBytes() {
+            return fieldBytes;
+        }
+
+        public void setFieldBytes(long fieldBytes) {
+            this.fieldBytes = fieldBytes;
+        }
+
+        /**
+         * @return the bytes held per character of text, which is rendered as html paragraphs and runs
+         */
+        public int getRichTextFactor() {
+            return richTextFactor;
+        }
+
+        public void setRichTextFactor(int richTextFactor) {
+            this.richTextFactor = richTextFactor;
+        }
+
+        /**
+         * @return the bytes held per byte of embedded image: the upload, its re-encoded copy and the picture part
+         */
+        public int getImageFactor() {
+            return imageFactor;
+        }
+
+        public void setImageFactor(int imageFactor) {
+            this.imageFactor = imageFactor;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.opencdmp.filetransformer.docx.service.admission;
+
+import org.opencdmp.commonmodels.models.description.DescriptionModel;
+import org.opencdmp.commonmodels.models.plan.PlanModel;
+
+public interface AdmissionService {
+    /**
+     * Reserves the estimated cost of the plan export, waiting while the budget is in use by other exports.
+     * @throws ExportRejectedException when the export does not fit in the budget, too many exports are waiting, or the wait times out
+     */
+    Admission admit(PlanModel plan);
+
+    /**
+     * @see #admit(PlanModel)
+     */
+    Admission admit(DescriptionModel descriptionModel);
+}
@@ -0,0 +1,159 @@
+package org.opencdmp.filetransformer.docx.service.admission;
+
+import gr.cite.tools.exception.MyApplicationException;
+import gr.cite.tools.logging.LoggerService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.opencdmp.commonmodels.models.description.DescriptionModel;
+import org.opencdmp.commonmodels.models.plan.PlanModel;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits an export when its estimated cost fits in what is left of the memory budget and a render slot is free.
+ * Waiting exports are admitted in arrival order, so a large export is not starved by a stream of small ones,
+ * at the price of small exports waiting behind a large one.
+ */
+@Component
+public class AdmissionServiceImpl implements AdmissionService {
+    private static final LoggerService logger = new LoggerService(LoggerFactory.getLogger(AdmissionServiceImpl.class));
+
+    private static final String METRIC_BUDGET_TOTAL = "docx.admission.budget.total";
+    private static final String METRIC_BUDGET_USED = "docx.admission.budget.used";
+    private static final String METRIC_IN_FLIGHT = "docx.admission.inflight";
+    private static final String METRIC_QUEUED = "docx.admission.queued";
+    private static final String METRIC_COST = "docx.admission.cost";
+    private static final String METRIC_WAIT = "docx.admission.wait";
+    private static final String METRIC_REJECTED = "docx.admission.rejected";
+
+    private final AdmissionProperties properties;
+    private final ExportCostEstimator exportCostEstimator;
+    private final MeterRegistry meterRegistry;
+    private final long budgetBytes;
+    private final int maxConcurrentExports;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = this.lock.newCondition();
+    private final Deque<Object> waiting = new ArrayDeque<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final DistributionSummary cost;
+
+    public AdmissionServiceImpl(AdmissionProperties properties, ExportCostEstimator exportCostEstimator, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.exportCostEstimator = exportCostEstimator;
+        this.meterRegistry = meterRegistry;
+        this.budgetBytes = Math.max(1, properties.getBudgetBytes());
+        this.maxConcurrentExports = properties.getMaxConcurrentExports() > 0 ? properties.getMaxConcurrentExports() : Runtime.getRuntime().availableProcessors();
+
+        Gauge.builder(METRIC_BUDGET_TOTAL, () -> this.budgetBytes).baseUnit("bytes").register(meterRegistry);
+        Gauge.builder(METRIC_BUDGET_USED, this.usedBytes, AtomicLong::get).baseUnit("bytes").register(meterRegistry);
+        Gauge.builder(METRIC_IN_FLIGHT, this.inFlight, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder(METRIC_QUEUED, this.queued, AtomicInteger::get).register(meterRegistry);
+        this.cost = DistributionSummary.builder(METRIC_COST).baseUnit("bytes").register(meterRegistry);
+    }
+
+    @Override
+    public Admission admit(PlanModel plan) {
+        if (!this.properties.isEnabled()) return Admission.UNLIMITED;
+        return this.admit(this.exportCostEstimator.estimate(plan), "plan");
+    }
+
+    @Override
+    public Admission admit(DescriptionModel descriptionModel) {
+        if (!this.properties.isEnabled()) return Admission.UNLIMITED;
+        return this.admit(this.exportCostEstimator.estimate(descriptionModel), "description");
+    }
+
+    private Admission admit(ExportCost exportCost, String type) {
+        long bytes = exportCost.getEstimatedBytes();
+        this.cost.record(bytes);
+        if (bytes > this.budgetBytes) {
+            this.rejected("too_large");
+            logger.warn("rejected " + type + " export of " + exportCost + ", above the budget of " + this.budgetBytes + " bytes");
+            throw new ExportRejectedException("The " + type + " is too large to be exported (" + exportCost + ")", false);
+        }
+
+        this.lock.lock();
+        try {
+            if (this.waiting.isEmpty() && this.fits(bytes)) return this.reserve(exportCost);
+            if (this.waiting.size() >= this.properties.getMaxQueuedExports()) {
+                this.rejected("queue_full");
+                logger.warn("rejected " + type + " export, " + this.waiting.size() + " exports are already waiting");
+                throw new ExportRejectedException("Too many exports are in progress, please try again later", true);
+            }
+            return this.await(exportCost, type);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Called with the lock held. Waits until the export is first in line and fits, or the timeout elapses.
+     */
+    private Admission await(ExportCost exportCost, String type) {
+        Object ticket = new Object();
+        this.waiting.addLast(ticket);
+        this.queued.incrementAndGet();
+        Timer.Sample waitSample = Timer.start(this.meterRegistry);
+        boolean admitted = false;
+        try {
+            long remaining = TimeUnit.SECONDS.toNanos(this.properties.getAcquireTimeoutSeconds());
+            while (this.waiting.peekFirst() != ticket || !this.fits(exportCost.getEstimatedBytes())) {
+                if (remaining <= 0) {
+                    this.rejected("timeout");
+                    logger.warn("no budget for " + type + " export of " + exportCost + " after " + this.properties.getAcquireTimeoutSeconds() + " seconds");
+                    throw new ExportRejectedException("Too many exports are in progress, please try again later", true);
+                }
+                remaining = this.released.awaitNanos(remaining);
+            }
+            admitted = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MyApplicationException("export admission interrupted");
+        } finally {
+            this.waiting.remove(ticket);
+            this.queued.decrementAndGet();
+            waitSample.stop(Timer.builder(METRIC_WAIT).tag("result", admitted ? "admitted" : "rejected").register(this.meterRegistry));
+            // the next in line may fit now, or may have become first in line
+            this.released.signalAll();
+        }
+        return this.reserve(exportCost);
+    }
+
+    private boolean fits(long bytes) {
+        return this.inFlight.get() < this.maxConcurrentExports && this.usedBytes.get() + bytes <= this.budgetBytes;
+    }
+
+    private Admission reserve(ExportCost exportCost) {
+        this.usedBytes.addAndGet(exportCost.getEstimatedBytes());
+        this.inFlight.incrementAndGet();
+        return new Admission(exportCost, () -> this.release(exportCost));
+    }
+
+    private void release(ExportCost exportCost) {
+        this.lock.lock();
+        try {
+            this.usedBytes.addAndGet(-exportCost.getEstimatedBytes());
+            this.inFlight.decrementAndGet();
+            this.released.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void rejected(String reason) {
+        Counter.builder(METRIC_REJECTED).tag("reason", reason).register(this.meterRegistry).increment();
+    }
+}
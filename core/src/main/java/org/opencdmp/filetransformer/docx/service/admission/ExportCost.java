@@ -0,0 +1,49 @@
+package org.opencdmp.filetransformer.docx.service.admission;
+
+/**
+ * The size of a single export, counted from its model before it is rendered, and the memory it is expected to hold while it renders.
+ * Instances are immutable.
+ */
+public class ExportCost {
+    private final int descriptions;
+    private final int fields;
+    private final long richTextCharacters;
+    private final long imageBytes;
+    private final long estimatedBytes;
+
+    public ExportCost(int descriptions, int fields, long richTextCharacters, long imageBytes, long estimatedBytes) {
+        this.descriptions = descriptions;
+        this.fields = fields;
+        this.richTextCharacters = richTextCharacters;
+        this.imageBytes = imageBytes;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    public int getDescriptions() {
+        return descriptions;
+    }
+
+    public int getFields() {
+        return fields;
+    }
+
+    public long getRichTextCharacters() {
+        return richTextCharacters;
+    }
+
+    public long getImageBytes() {
+        return imageBytes;
+    }
+
+    /**
+     * @return the budget the export reserves while it renders
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return descriptions + " descriptions, " + fields + " fields, " + richTextCharacters + " text characters, " + imageBytes + " image bytes, estimated at " + estimatedBytes + " bytes";
+    }
+}
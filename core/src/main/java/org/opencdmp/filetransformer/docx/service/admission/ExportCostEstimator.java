@@ -0,0 +1,144 @@
+package org.opencdmp.filetransformer.docx.service.admission;
+
+import gr.cite.tools.exception.MyNotFoundException;
+import org.opencdmp.commonmodels.models.FileEnvelopeModel;
+import org.opencdmp.commonmodels.models.description.DescriptionModel;
+import org.opencdmp.commonmodels.models.description.FieldModel;
+import org.opencdmp.commonmodels.models.description.PropertyDefinitionFieldSetItemModel;
+import org.opencdmp.commonmodels.models.description.PropertyDefinitionFieldSetModel;
+import org.opencdmp.commonmodels.models.plan.PlanBlueprintValueModel;
+import org.opencdmp.commonmodels.models.plan.PlanModel;
+import org.opencdmp.filetransformer.docx.service.storage.FileStorageService;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerServiceProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Counts the descriptions, filled fields, text and embedded images of an export with one pass over its model, without rendering anything.
+ * Images kept in shared storage are sized from their file, which is not read.
+ * A plan whose descriptions are spooled costs its skeleton (the plan itself) and the descriptions it holds at once, weighed as its largest:
+ * one at a time, or, when descriptions render in parallel, the one being written and one rendering ahead on every pool thread.
+ */
+@Component
+public class ExportCostEstimator {
+    private final AdmissionProperties.Cost properties;
+    private final WordFileTransformerServiceProperties wordFileTransformerServiceProperties;
+    private final FileStorageService fileStorageService;
+
+    public ExportCostEstimator(AdmissionProperties admissionProperties, WordFileTransformerServiceProperties wordFileTransformerServiceProperties, FileStorageService fileStorageService) {
+        this.properties = admissionProperties.getCost();
+        this.wordFileTransformerServiceProperties = wordFileTransformerServiceProperties;
+        this.fileStorageService = fileStorageService;
+    }
+
+    public ExportCost estimate(PlanModel plan) {
+        Tally skeleton = new Tally();
+        skeleton.text(plan.getDescription());
+        if (plan.getProperties() != null && plan.getProperties().getPlanBlueprintValues() != null) {
+            for (PlanBlueprintValueModel planBlueprintValueModel : plan.getProperties().getPlanBlueprintValues()) {
+                skeleton.fields++;
+                skeleton.text(planBlueprintValueModel.getValue());
+                skeleton.imageBytes += this.imageBytes(planBlueprintValueModel.getFile());
+            }
+        }
+        List<DescriptionModel> descriptions = plan.getDescriptions() != null ? plan.getDescriptions() : List.of();
+        Tally tally = new Tally();
+        tally.add(skeleton);
+        Tally largest = new Tally();
+        for (DescriptionModel descriptionModel : descriptions) {
+            Tally description = new Tally();
+            this.count(descriptionModel, description);
+            tally.add(description);
+            if (this.weigh(description) > this.weigh(largest)) largest = description;
+        }
+        if (!this.wordFileTransformerServiceProperties.getStreaming().isEnabledFor(descriptions.size())) return this.toCost(tally);
+        return this.toCost(tally, this.properties.getBaseBytes() + this.weigh(skeleton) + this.weigh(largest) * this.descriptionsHeld());
+    }
+
+    public ExportCost estimate(DescriptionModel descriptionModel) {
+        Tally tally = new Tally();
+        if (descriptionModel.getPlan() != null) tally.text(descriptionModel.getPlan().getDescription());
+        this.count(descriptionModel, tally);
+        return this.toCost(tally);
+    }
+
+    private void count(DescriptionModel descriptionModel, Tally tally) {
+        tally.descriptions++;
+        tally.text(descriptionModel.getDescription());
+        if (descriptionModel.getProperties() == null || descriptionModel.getProperties().getFieldSets() == null) return;
+        for (PropertyDefinitionFieldSetModel fieldSet : descriptionModel.getProperties().getFieldSets().values()) {
+            if (fieldSet == null || fieldSet.getItems() == null) continue;
+            tally.text(fieldSet.getComment());
+            for (PropertyDefinitionFieldSetItemModel item : fieldSet.getItems()) {
+                if (item.getFields() == null) continue;
+                for (FieldModel field : item.getFields().values()) {
+                    if (field == null) continue;
+                    tally.fields++;
+                    tally.text(field.getTextValue());
+                    if (field.getTextListValue() != null) field.getTextListValue().forEach(tally::text);
+                    tally.imageBytes += this.imageBytes(field.getFile());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return how many descriptions a spooled plan holds at once
+     */
+    private int descriptionsHeld() {
+        WordFileTransformerServiceProperties.ParallelDescriptions parallelDescriptions = this.wordFileTransformerServiceProperties.getParallelDescriptions();
+        return parallelDescriptions.isEnabled() ? parallelDescriptions.getPoolSize() + 1 : 1;
+    }
+
+    /**
+     * @return the size of the upload when it is an image, as only images are embedded
+     */
+    private long imageBytes(FileEnvelopeModel file) {
+        if (file == null || file.getMimeType() == null || !file.getMimeType().startsWith("image/")) return 0;
+        if (file.getFile() != null) return file.getFile().length;
+        if (!this.wordFileTransformerServiceProperties.isUseSharedStorage() || file.getFileRef() == null || file.getFileRef().isBlank()) return 0;
+        try {
+            return this.fileStorageService.fileSize(file.getFileRef());
+        } catch (MyNotFoundException e) {
+            // rendering skips it as well
+            return 0;
+        }
+    }
+
+    private ExportCost toCost(Tally tally) {
+        return this.toCost(tally, this.properties.getBaseBytes() + this.weigh(tally));
+    }
+
+    private ExportCost toCost(Tally tally, long estimatedBytes) {
+        return new ExportCost(tally.descriptions, tally.fields, tally.richTextCharacters, tally.imageBytes, estimatedBytes);
+    }
+
+    /**
+     * @return the memory held for the counted content, without the base cost of the export
+     */
+    private long weigh(Tally tally) {
+        return tally.descriptions * this.properties.getDescriptionBytes()
+                + tally.fields * this.properties.getFieldBytes()
+                + tally.richTextCharacters * this.properties.getRichTextFactor()
+                + tally.imageBytes * this.properties.getImageFactor();
+    }
+
+    private static class Tally {
+        private int descriptions;
+        private int fields;
+        private long richTextCharacters;
+        private long imageBytes;
+
+        private void text(String value) {
+            if (value != null) this.richTextCharacters += value.length();
+        }
+
+        private void add(Tally tally) {
+            this.descriptions += tally.descriptions;
+            this.fields += tally.fields;
+            this.richTextCharacters += tally.richTextCharacters;
+            this.imageBytes += tally.imageBytes;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.opencdmp.filetransformer.docx.service.admission;
+
+import gr.cite.tools.exception.MyApplicationException;
+
+/**
+ * Thrown when an export is not admitted. A retryable rejection means the budget was busy; otherwise the export is larger than the whole budget.
+ */
+public class ExportRejectedException extends MyApplicationException {
+    private final boolean retryable;
+
+    public ExportRejectedException(String message, boolean retryable) {
+        super(message);
+        this.retryable = retryable;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
@@ -0,0 +1,9 @@
+package org.opencdmp.filetransformer.docx.service.batch;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({BatchExportProperties.class})
+public class BatchExportConfiguration {
+}
@@ -0,0 +1,40 @@
+package org.opencdmp.filetransformer.docx.service.batch;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "batch.export")
+public class BatchExportProperties {
+    private int maxConcurrentExports = 4;
+    private int maxPendingItems = 8;
+    private int maxItems = 1000;
+
+    /**
+     * @return the size of the pool rendering batch items, shared by all batches
+     */
+    public int getMaxConcurrentExports() {
+        return maxConcurrentExports;
+    }
+
+    public void setMaxConcurrentExports(int maxConcurrentExports) {
+        this.maxConcurrentExports = maxConcurrentExports;
+    }
+
+    /**
+     * @return how many items of a batch are rendered ahead of the one being written to the archive
+     */
+    public int getMaxPendingItems() {
+        return maxPendingItems;
+    }
+
+    public void setMaxPendingItems(int maxPendingItems) {
+        this.maxPendingItems = maxPendingItems;
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    public void setMaxItems(int maxItems) {
+        this.maxItems = maxItems;
+    }
+}
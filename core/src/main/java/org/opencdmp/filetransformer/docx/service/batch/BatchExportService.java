@@ -0,0 +1,30 @@
+package org.opencdmp.filetransformer.docx.service.batch;
+
+import org.opencdmp.commonmodels.models.FileEnvelopeModel;
+import org.opencdmp.filetransformer.docx.model.BatchExportModel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+public interface BatchExportService {
+	/**
+	 * Checks the format and the number of items, so that a batch that cannot be exported is rejected before anything is written.
+	 */
+	void validate(BatchExportModel batch);
+
+	/**
+	 * Renders the plans and descriptions of the batch on the export pool and writes them, in request order, as a zip archive
+	 * that ends with a manifest.json entry. An item that fails is reported in the manifest and does not fail the batch.
+	 * @param locale the locale of the request, as the rendering threads do not have it
+	 */
+	void writeBatch(BatchExportModel batch, Locale locale, OutputStream outputStream) throws IOException;
+
+	/**
+	 * Same as {@link #writeBatch(BatchExportModel, Locale, OutputStream)}, with the archive stored in shared storage.
+	 * @return the file ref and the name of the archive
+	 */
+	FileEnvelopeModel storeBatch(BatchExportModel batch, Locale locale);
+
+	String getFileName();
+}
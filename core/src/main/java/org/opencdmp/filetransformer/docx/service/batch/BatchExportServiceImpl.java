@@ -0,0 +1,268 @@
+package org.opencdmp.filetransformer.docx.service.batch;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gr.cite.tools.exception.MyApplicationException;
+import gr.cite.tools.exception.MyValidationException;
+import gr.cite.tools.logging.LoggerService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.opencdmp.commonmodels.models.FileEnvelopeModel;
+import org.opencdmp.commonmodels.models.description.DescriptionModel;
+import org.opencdmp.commonmodels.models.plan.PlanModel;
+import org.opencdmp.filetransformer.docx.model.BatchExportManifest;
+import org.opencdmp.filetransformer.docx.model.BatchExportModel;
+import org.opencdmp.filetransformer.docx.model.enums.FileFormats;
+import org.opencdmp.filetransformer.docx.service.storage.FileStorageService;
+import org.opencdmp.filetransformer.docx.service.storage.StorageWriter;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerService;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+
+import javax.management.InvalidApplicationException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Every item of a batch is rendered on a fixed pool shared by all batches, into a temp file, and copied to the archive in request order.
+ * At most {@code maxPendingItems} items of a batch are rendered ahead of the one being copied, so a slow client holds a bounded
+ * number of temp files and pool slots. Temp files of items that are not copied, because the client went away, are deleted.
+ */
+@Component
+public class BatchExportServiceImpl implements BatchExportService {
+    private static final LoggerService logger = new LoggerService(LoggerFactory.getLogger(BatchExportServiceImpl.class));
+
+    private static final String METRIC_ITEMS = "docx.batch.items";
+    private static final String MANIFEST_ENTRY = "manifest.json";
+    private static final String FILE_NAME = "export.zip";
+
+    private final BatchExportProperties properties;
+    private final WordFileTransformerService wordFileTransformerService;
+    private final FileStorageService fileStorageService;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper;
+    private final Counter exported;
+    private final Counter failed;
+
+    public BatchExportServiceImpl(BatchExportProperties properties, WordFileTransformerService wordFileTransformerService, FileStorageService fileStorageService, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.wordFileTransformerService = wordFileTransformerService;
+        this.fileStorageService = fileStorageService;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getMaxConcurrentExports()), runnable -> {
+            Thread thread = new Thread(runnable, "docx-batch-export-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.objectMapper = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        this.exported = Counter.builder(METRIC_ITEMS).tag("outcome", "exported").register(meterRegistry);
+        this.failed = Counter.builder(METRIC_ITEMS).tag("outcome", "failed").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    @Override
+    public void validate(BatchExportModel batch) {
+        if (batch == null) throw new MyValidationException("batch required");
+        if (FileFormats.of(batch.getFormat()) == null) throw new MyValidationException("Invalid type " + batch.getFormat());
+        int count = this.size(batch.getPlans()) + this.size(batch.getDescriptions());
+        if (count == 0) throw new MyValidationException("batch has no plans or descriptions");
+        if (count > this.properties.getMaxItems()) throw new MyValidationException("batch has " + count + " items, at most " + this.properties.getMaxItems() + " are allowed");
+    }
+
+    @Override
+    public void writeBatch(BatchExportModel batch, Locale locale, OutputStream outputStream) throws IOException {
+        this.validate(batch);
+        BatchExportManifest manifest = new BatchExportManifest();
+        manifest.setFormat(batch.getFormat());
+        Iterator<BatchItem> items = this.items(batch).iterator();
+        Deque<Future<RenderedItem>> pending = new ArrayDeque<>();
+        Set<String> entryNames = new HashSet<>();
+        BatchJob job = new BatchJob();
+        int window = Math.max(1, this.properties.getMaxPendingItems());
+
+        ZipArchiveOutputStream zip = new ZipArchiveOutputStream(outputStream);
+        try {
+            while (items.hasNext() || !pending.isEmpty()) {
+                while (items.hasNext() && pending.size() < window) {
+                    BatchItem item = items.next();
+                    pending.add(this.executor.submit(() -> this.render(item, locale, job)));
+                }
+                RenderedItem rendered = this.await(pending.poll());
+                BatchExportManifest.Item manifestItem = new BatchExportManifest.Item();
+                manifestItem.setType(rendered.item.type);
+                manifestItem.setId(rendered.item.id);
+                if (rendered.path != null) {
+                    try {
+                        String entryName = this.uniqueEntryName(rendered.filename, entryNames);
+                        zip.putArchiveEntry(new ZipArchiveEntry(entryName));
+                        Files.copy(rendered.path, zip);
+                        zip.closeArchiveEntry();
+                        manifestItem.setEntry(entryName);
+                    } finally {
+                        this.fileStorageService.deleteTempFile(rendered.path);
+                    }
+                    this.exported.increment();
+                } else {
+                    manifestItem.setError(rendered.error);
+                    this.failed.increment();
+                }
+                manifest.add(manifestItem);
+            }
+
+            zip.putArchiveEntry(new ZipArchiveEntry(MANIFEST_ENTRY));
+            zip.write(this.objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(manifest));
+            zip.closeArchiveEntry();
+            zip.finish();
+        } finally {
+            job.abandon();
+            for (Future<RenderedItem> future : pending) {
+                future.cancel(true);
+                if (future.isDone() && !future.isCancelled()) {
+                    RenderedItem rendered = this.await(future);
+                    if (rendered.path != null) this.fileStorageService.deleteTempFile(rendered.path);
+                }
+            }
+        }
+        logger.debug("exported batch of " + manifest.getItems().size() + " items, " + manifest.getFailed() + " failed");
+    }
+
+    @Override
+    public FileEnvelopeModel storeBatch(BatchExportModel batch, Locale locale) {
+        this.validate(batch);
+        FileEnvelopeModel fileEnvelope = new FileEnvelopeModel();
+        fileEnvelope.setFileRef(this.fileStorageService.storeFile(outputStream -> this.writeBatch(batch, locale, outputStream)));
+        fileEnvelope.setFilename(FILE_NAME);
+        return fileEnvelope;
+    }
+
+    @Override
+    public String getFileName() {
+        return FILE_NAME;
+    }
+
+    private RenderedItem render(BatchItem item, Locale locale, BatchJob job) {
+        if (job.isAbandoned()) return new RenderedItem(item, null, null, "batch abandoned");
+        LocaleContextHolder.setLocale(locale);
+        try {
+            String filename = item.filename.get();
+            Path path = this.fileStorageService.createTempFile(item.writer);
+            if (job.isAbandoned()) {
+                this.fileStorageService.deleteTempFile(path);
+                return new RenderedItem(item, null, null, "batch abandoned");
+            }
+            return new RenderedItem(item, filename, path, null);
+        } catch (Exception e) {
+            logger.warn("could not export " + item.type + " " + item.id + ": " + e.getMessage());
+            return new RenderedItem(item, null, null, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        } finally {
+            LocaleContextHolder.resetLocaleContext();
+        }
+    }
+
+    private RenderedItem await(Future<RenderedItem> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("batch export interrupted", e);
+        } catch (ExecutionException e) {
+            throw new MyApplicationException(e.getCause().getMessage());
+        }
+    }
+
+    private List<BatchItem> items(BatchExportModel batch) {
+        String format = batch.getFormat();
+        List<BatchItem> items = new ArrayList<>(this.size(batch.getPlans()) + this.size(batch.getDescriptions()));
+        if (batch.getPlans() != null) {
+            for (PlanModel plan : batch.getPlans()) {
+                items.add(new BatchItem(BatchExportManifest.ItemType.Plan, plan.getId(),
+                        () -> this.wordFileTransformerService.getPlanExportFileName(plan, format),
+                        outputStream -> {
+                            try {
+                                this.wordFileTransformerService.writePlan(plan, format, outputStream);
+                            } catch (InvalidApplicationException e) {
+                                throw new MyApplicationException(e.getMessage());
+                            }
+                        }));
+            }
+        }
+        if (batch.getDescriptions() != null) {
+            for (DescriptionModel description : batch.getDescriptions()) {
+                items.add(new BatchItem(BatchExportManifest.ItemType.Description, description.getId(),
+                        () -> this.wordFileTransformerService.getDescriptionExportFileName(description, format),
+                        outputStream -> this.wordFileTransformerService.writeDescription(description, format, outputStream)));
+            }
+        }
+        return items;
+    }
+
+    private String uniqueEntryName(String filename, Set<String> entryNames) {
+        String name = filename == null || filename.isBlank() ? "export" : filename.replace('/', '_').replace('\\', '_');
+        if (entryNames.add(name)) return name;
+        int extension = name.lastIndexOf('.');
+        String base = extension > 0 ? name.substring(0, extension) : name;
+        String suffix = extension > 0 ? name.substring(extension) : "";
+        for (int i = 2; ; i++) {
+            String candidate = base + " (" + i + ")" + suffix;
+            if (entryNames.add(candidate)) return candidate;
+        }
+    }
+
+    private int size(List<?> list) {
+        return list == null ? 0 : list.size();
+    }
+
+    private static class BatchItem {
+        private final BatchExportManifest.ItemType type;
+        private final UUID id;
+        private final Supplier<String> filename;
+        private final StorageWriter writer;
+
+        BatchItem(BatchExportManifest.ItemType type, UUID id, Supplier<String> filename, StorageWriter writer) {
+            this.type = type;
+            this.id = id;
+            this.filename = filename;
+            this.writer = writer;
+        }
+    }
+
+    private static class RenderedItem {
+        private final BatchItem item;
+        private final String filename;
+        private final Path path;
+        private final String error;
+
+        RenderedItem(BatchItem item, String filename, Path path, String error) {
+            this.item = item;
+            this.filename = filename;
+            this.path = path;
+            this.error = error;
+        }
+    }
+
+    private static class BatchJob {
+        private volatile boolean abandoned;
+
+        void abandon() {
+            this.abandoned = true;
+        }
+
+        boolean isAbandoned() {
+            return this.abandoned;
+        }
+    }
+}
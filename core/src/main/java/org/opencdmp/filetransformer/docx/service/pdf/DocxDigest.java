@@ -0,0 +1,39 @@
+package org.opencdmp.filetransformer.docx.service.pdf;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Digest of the parts of a docx package (part name and uncompressed content, in package order).
+ * The zip entry timestamps that are stamped on every write are left out, so two writes of the same document get the same digest.
+ */
+public class DocxDigest {
+    private static final int BUFFER_SIZE = 8192;
+
+    private DocxDigest() {
+    }
+
+    public static String of(InputStream docx) throws IOException {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (ZipInputStream zipInputStream = new ZipInputStream(docx)) {
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                int read;
+                while ((read = zipInputStream.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+}
@@ -0,0 +1,77 @@
+package org.opencdmp.filetransformer.docx.service.pdf;
+
+import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.xmlgraphics.io.Resource;
+import org.apache.xmlgraphics.io.ResourceResolver;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the {@value #SCHEME} uris that {@link DocxToFoConverter} writes for pictures to the parts of the docx being converted,
+ * so that FOP reads a picture from the package instead of from a base64 copy inside the XSL-FO.
+ * A document is resolvable while it is registered; any other uri goes to the default FOP resolver.
+ */
+class DocxPartResolver implements ResourceResolver {
+    static final String SCHEME = "docx-part";
+
+    private final ResourceResolver defaultResolver = ResourceResolverFactory.createDefaultResourceResolver();
+    private final Map<String, XWPFDocument> documents = new ConcurrentHashMap<>();
+
+    /**
+     * @return the uri its parts resolve against, until the registration is closed
+     */
+    Registration register(XWPFDocument document) {
+        String id = UUID.randomUUID().toString();
+        this.documents.put(id, document);
+        return new Registration(URI.create(SCHEME + "://" + id + "/"), () -> this.documents.remove(id));
+    }
+
+    @Override
+    public Resource getResource(URI uri) throws IOException {
+        if (!SCHEME.equals(uri.getScheme())) return this.defaultResolver.getResource(uri);
+
+        XWPFDocument document = this.documents.get(uri.getAuthority());
+        if (document == null) throw new FileNotFoundException("docx of " + uri + " is no longer converted");
+        try {
+            PackagePart part = document.getPackage().getPart(PackagingURIHelper.createPartName(uri.getPath()));
+            if (part == null) throw new FileNotFoundException("no part " + uri.getPath() + " in docx");
+            return new Resource(part.getInputStream());
+        } catch (InvalidFormatException e) {
+            throw new FileNotFoundException("invalid part name " + uri.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream(URI uri) throws IOException {
+        return this.defaultResolver.getOutputStream(uri);
+    }
+
+    static class Registration implements AutoCloseable {
+        private final URI baseUri;
+        private final Runnable release;
+
+        private Registration(URI baseUri, Runnable release) {
+            this.baseUri = baseUri;
+            this.release = release;
+        }
+
+        URI getBaseUri() {
+            return baseUri;
+        }
+
+        @Override
+        public void close() {
+            this.release.run();
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package org.opencdmp.filetransformer.docx.service.pdf;
+
+import org.apache.poi.xwpf.model.XWPFHeaderFooterPolicy;
+import org.apache.poi.xwpf.usermodel.*;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPageMar;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPageSz;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSectPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTTcPr;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes the XSL-FO of a generated docx for the local pdf engine.
+ * Covers what the exports produce: styled paragraphs and runs, hyperlinks, bullets, inline pictures, simple tables, page breaks,
+ * page size and margins and the default header and footer. Fields, floating shapes and multi-level numbering are not rendered.
+ */
+public class DocxToFoConverter {
+    private static final String FO = "http://www.w3.org/1999/XSL/Format";
+    private static final double TWIPS_PER_POINT = 20.0;
+    private static final double DEFAULT_PAGE_WIDTH = 595.3;
+    private static final double DEFAULT_PAGE_HEIGHT = 841.9;
+    private static final double DEFAULT_MARGIN = 72.0;
+    private static final double DEFAULT_FONT_SIZE = 11.0;
+    private static final Map<String, Double> STYLE_FONT_SIZES = Map.of(
+            "Title", 20.0,
+            "Heading1", 16.0,
+            "Heading2", 14.0,
+            "Heading3", 13.0,
+            "Heading4", 12.0,
+            "Heading5", 11.5,
+            "Heading6", 11.0,
+            "Caption", 9.0
+    );
+
+    private final String fontFamily;
+    private final XMLOutputFactory outputFactory;
+
+    public DocxToFoConverter(String fontFamily) {
+        this.fontFamily = fontFamily;
+        this.outputFactory = XMLOutputFactory.newInstance();
+    }
+
+    /**
+     * @param partBaseUri the uri the part names of the document resolve against, pictures are referenced by the uri of their part
+     */
+    public void convert(XWPFDocument document, URI partBaseUri, OutputStream foOutputStream) throws XMLStreamException {
+        XMLStreamWriter writer = this.outputFactory.createXMLStreamWriter(foOutputStream, StandardCharsets.UTF_8.name());
+        try {
+            writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+            writer.setPrefix("fo", FO);
+            writer.writeStartElement("fo", "root", FO);
+            writer.writeNamespace("fo", FO);
+
+            this.writeLayout(writer, document);
+
+            writer.writeStartElement(FO, "page-sequence");
+            writer.writeAttribute("master-reference", "page");
+            writer.writeAttribute("font-family", this.fontFamily);
+            writer.writeAttribute("font-size", points(DEFAULT_FONT_SIZE));
+
+            XWPFHeaderFooterPolicy policy = document.getHeaderFooterPolicy();
+            XWPFHeader header = policy != null ? policy.getDefaultHeader() : null;
+            XWPFFooter footer = policy != null ? policy.getDefaultFooter() : null;
+            this.writeStaticContent(writer, "xsl-region-before", header != null ? header.getBodyElements() : List.of(), document, partBaseUri);
+            this.writeStaticContent(writer, "xsl-region-after", footer != null ? footer.getBodyElements() : List.of(), document, partBaseUri);
+
+            writer.writeStartElement(FO, "flow");
+            writer.writeAttribute("flow-name", "xsl-region-body");
+            this.writeBodyElements(writer, document.getBodyElements(), document, partBaseUri);
+            this.writeEmptyBlock(writer);
+            writer.writeEndElement();
+
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeLayout(XMLStreamWriter writer, XWPFDocument document) throws XMLStreamException {
+        double pageWidth = DEFAULT_PAGE_WIDTH, pageHeight = DEFAULT_PAGE_HEIGHT;
+        double top = DEFAULT_MARGIN, bottom = DEFAULT_MARGIN, left = DEFAULT_MARGIN, right = DEFAULT_MARGIN;
+        CTSectPr sectPr = document.getDocument().getBody().getSectPr();
+        if (sectPr != null) {
+            CTPageSz pageSize = sectPr.getPgSz();
+            if (pageSize != null) {
+                pageWidth = twipsToPoints(pageSize.getW(), pageWidth);
+                pageHeight = twipsToPoints(pageSize.getH(), pageHeight);
+            }
+            CTPageMar margins = sectPr.getPgMar();
+            if (margins != null) {
+                top = Math.abs(twipsToPoints(margins.getTop(), top));
+                bottom = Math.abs(twipsToPoints(margins.getBottom(), bottom));
+                left = twipsToPoints(margins.getLeft(), left);
+                right = twipsToPoints(margins.getRight(), right);
+            }
+        }
+
+        writer.writeStartElement(FO, "layout-master-set");
+        writer.writeStartElement(FO, "simple-page-master");
+        writer.writeAttribute("master-name", "page");
+        writer.writeAttribute("page-width", points(pageWidth));
+        writer.writeAttribute("page-height", points(pageHeight));
+        // half of the vertical margins is the header and footer area, the other half separates them from the body
+        writer.writeAttribute("margin-top", points(top / 2));
+        writer.writeAttribute("margin-bottom", points(bottom / 2));
+        writer.writeAttribute("margin-left", points(left));
+        writer.writeAttribute("margin-right", points(right));
+
+        writer.writeEmptyElement(FO, "region-body");
+        writer.writeAttribute("margin-top", points(top / 2));
+        writer.writeAttribute("margin-bottom", points(bottom / 2));
+        writer.writeEmptyElement(FO, "region-before");
+        writer.writeAttribute("extent", points(top / 2));
+        writer.writeEmptyElement(FO, "region-after");
+        writer.writeAttribute("extent", points(bottom / 2));
+        writer.writeAttribute("display-align", "after");
+
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    private void writeStaticContent(XMLStreamWriter writer, String flowName, List<IBodyElement> elements, XWPFDocument document, URI partBaseUri) throws XMLStreamException {
+        writer.writeStartElement(FO, "static-content");
+        writer.writeAttribute("flow-name", flowName);
+        writer.writeStartElement(FO, "block");
+        writer.writeAttribute("font-size", points(9));
+        this.writeBodyElements(writer, elements, document, partBaseUri);
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    private void writeBodyElements(XMLStreamWriter writer, List<IBodyElement> elements, XWPFDocument document, URI partBaseUri) throws XMLStreamException {
+        for (IBodyElement element : elements) {
+            switch (element.getElementType()) {
+                case PARAGRAPH -> this.writeParagraph(writer, (XWPFParagraph) element, document, partBaseUri);
+                case TABLE -> this.writeTable(writer, (XWPFTable) element, document, partBaseUri);
+                case CONTENTCONTROL -> {
+                    writer.writeStartElement(FO, "block");
+                    writer.writeCharacters(((XWPFSDT) element).getContent().getText());
+                    writer.writeEndElement();
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    private void writeParagraph(XMLStreamWriter writer, XWPFParagraph paragraph, XWPFDocument document, URI partBaseUri) throws XMLStreamException {
+        writer.writeStartElement(FO, "block");
+        writer.writeAttribute("linefeed-treatment", "preserve");
+        if (paragraph.isPageBreak()) writer.writeAttribute("break-before", "page");
+
+        String style = paragraph.getStyle();
+        if (style != null && STYLE_FONT_SIZES.containsKey(style)) {
+            writer.writeAttribute("font-size", points(STYLE_FONT_SIZES.get(style)));
+            if (!"Caption".equals(style)) {
+                writer.writeAttribute("font-weight", "bold");
+                writer.writeAttribute("space-before", points(8));
+                writer.writeAttribute("keep-with-next.within-page", "always");
+            } else {
+                writer.writeAttribute("font-style", "italic");
+            }
+        }
+        String alignment = switch (paragraph.getAlignment()) {
+            case CENTER -> "center";
+            case RIGHT -> "end";
+            case BOTH, DISTRIBUTE -> "justify";
+            default -> null;
+        };
+        if (alignment != null) writer.writeAttribute("text-align", alignment);
+        if (paragraph.getIndentationLeft() > 0) writer.writeAttribute("start-indent", points(paragraph.getIndentationLeft() / TWIPS_PER_POINT));
+        if (paragraph.getSpacingBefore() > 0) writer.writeAttribute("space-before", points(paragraph.getSpacingBefore() / TWIPS_PER_POINT));
+        writer.writeAttribute("space-after", points(paragraph.getSpacingAfter() >= 0 ? paragraph.getSpacingAfter() / TWIPS_PER_POINT : 4));
+
+        if (paragraph.getNumID() != null && "bullet".equals(paragraph.getNumFmt())) writer.writeCharacters("• ");
+
+        boolean hasContent = false;
+        for (IRunElement runElement : paragraph.getIRuns()) {
+            if (runElement instanceof XWPFHyperlinkRun hyperlinkRun) {
+                XWPFHyperlink hyperlink = hyperlinkRun.getHyperlink(document);
+                if (hyperlink != null && hyperlink.getURL() != null) {
+                    writer.writeStartElement(FO, "basic-link");
+                    writer.writeAttribute("external-destination", uriSpecification(hyperlink.getURL()));
+                    writer.writeAttribute("color", "#0000FF");
+                    writer.writeAttribute("text-decoration", "underline");
+                    hasContent |= this.writeRun(writer, hyperlinkRun, partBaseUri);
+                    writer.writeEndElement();
+                    continue;
+                }
+            }
+            if (runElement instanceof XWPFRun run) {
+                hasContent |= this.writeRun(writer, run, partBaseUri);
+            } else if (runElement instanceof XWPFSDT sdt) {
+                String text = sdt.getContent().getText();
+                if (text != null && !text.isEmpty()) {
+                    writer.writeCharacters(text);
+                    hasContent = true;
+                }
+            }
+        }
+        // an empty paragraph keeps its line, as it does in the docx
+        if (!hasContent) writer.writeCharacters(" ");
+        writer.writeEndElement();
+    }
+
+    private boolean writeRun(XMLStreamWriter writer, XWPFRun run, URI partBaseUri) throws XMLStreamException {
+        boolean hasContent = false;
+        for (XWPFPicture picture : run.getEmbeddedPictures()) {
+            XWPFPictureData pictureData = picture.getPictureData();
+            if (pictureData == null) continue;
+            writer.writeEmptyElement(FO, "external-graphic");
+            // part names start with a slash and are resolved relative to the base, which ends with one
+            String partName = pictureData.getPackagePart().getPartName().getName();
+            writer.writeAttribute("src", uriSpecification(partBaseUri + partName.substring(1)));
+            if (picture.getWidth() > 0) writer.writeAttribute("content-width", points(picture.getWidth()));
+            if (picture.getDepth() > 0) writer.writeAttribute("content-height", points(picture.getDepth()));
+            writer.writeAttribute("scaling", "uniform");
+            hasContent = true;
+        }
+
+        String text = run.text();
+        if (text == null || text.isEmpty()) return hasContent;
+
+        writer.writeStartElement(FO, "inline");
+        if (run.isBold()) writer.writeAttribute("font-weight", "bold");
+        if (run.isItalic()) writer.writeAttribute("font-style", "italic");
+        if (run.isStrikeThrough()) writer.writeAttribute("text-decoration", "line-through");
+        else if (run.getUnderline() != null && run.getUnderline() != UnderlinePatterns.NONE) writer.writeAttribute("text-decoration", "underline");
+        String color = run.getColor();
+        if (color != null && !"auto".equalsIgnoreCase(color)) writer.writeAttribute("color", "#" + color);
+        Double fontSize = run.getFontSizeAsDouble();
+        if (fontSize != null && fontSize > 0) writer.writeAttribute("font-size", points(fontSize));
+        writer.writeCharacters(text.replace('\t', ' '));
+        writer.writeEndElement();
+        return true;
+    }
+
+    private void writeTable(XMLStreamWriter writer, XWPFTable table, XWPFDocument document, URI partBaseUri) throws XMLStreamException {
+        int columns = 0;
+        for (XWPFTableRow row : table.getRows()) {
+            int rowColumns = 0;
+            for (XWPFTableCell cell : row.getTableCells()) rowColumns += gridSpan(cell);
+            columns = Math.max(columns, rowColumns);
+        }
+        if (columns == 0) return;
+
+        writer.writeStartElement(FO, "table");
+        writer.writeAttribute("table-layout", "fixed");
+        writer.writeAttribute("width", "100%");
+        writer.writeAttribute("border-collapse", "collapse");
+        writer.writeAttribute("space-after", points(6));
+        for (int i = 0; i < columns; i++) {
+            writer.writeEmptyElement(FO, "table-column");
+            writer.writeAttribute("column-width", "proportional-column-width(1)");
+        }
+        writer.writeStartElement(FO, "table-body");
+        for (XWPFTableRow row : table.getRows()) {
+            writer.writeStartElement(FO, "table-row");
+            for (XWPFTableCell cell : row.getTableCells()) {
+                writer.writeStartElement(FO, "table-cell");
+                writer.writeAttribute("border", "0.5pt solid #000000");
+                writer.writeAttribute("padding", points(2));
+                int span = gridSpan(cell);
+                if (span > 1) writer.writeAttribute("number-columns-spanned", Integer.toString(span));
+                this.writeBodyElements(writer, cell.getBodyElements(), document, partBaseUri);
+                this.writeEmptyBlock(writer);
+                writer.writeEndElement();
+            }
+            if (row.getTableCells().isEmpty()) {
+                writer.writeStartElement(FO, "table-cell");
+                this.writeEmptyBlock(writer);
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    private void writeEmptyBlock(XMLStreamWriter writer) throws XMLStreamException {
+        writer.writeEmptyElement(FO, "block");
+    }
+
+    private static int gridSpan(XWPFTableCell cell) {
+        CTTcPr tcPr = cell.getCTTc().getTcPr();
+        if (tcPr == null || tcPr.getGridSpan() == null || tcPr.getGridSpan().getVal() == null) return 1;
+        return Math.max(1, tcPr.getGridSpan().getVal().intValue());
+    }
+
+    private static double twipsToPoints(Object twips, double defaultValue) {
+        if (twips instanceof BigInteger value) return value.doubleValue() / TWIPS_PER_POINT;
+        if (twips instanceof Number value) return value.doubleValue() / TWIPS_PER_POINT;
+        return defaultValue;
+    }
+
+    /**
+     * @return the uri as an XSL-FO uri-specification, with the characters that would end the {@code url('...')} percent-encoded
+     */
+    private static String uriSpecification(String uri) {
+        StringBuilder specification = new StringBuilder(uri.length() + 7).append("url('");
+        for (int i = 0; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            switch (c) {
+                case '\'' -> specification.append("%27");
+                case '(' -> specification.append("%28");
+                case ')' -> specification.append("%29");
+                case '\\' -> specification.append("%5C");
+                case ' ' -> specification.append("%20");
+                default -> specification.append(c);
+            }
+        }
+        return specification.append("')").toString();
+    }
+
+    private static String points(double value) {
+        return String.format(Locale.ROOT, "%.2fpt", value);
+    }
+}
@@ -0,0 +1,122 @@
+package org.opencdmp.filetransformer.docx.service.pdf;
+
+import gr.cite.tools.exception.MyApplicationException;
+import gr.cite.tools.logging.LoggerService;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.fop.Version;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopConfParser;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.FopFactoryBuilder;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.xmlgraphics.util.MimeConstants;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.xml.sax.SAXException;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Renders the pdf in process with Apache FOP, from the XSL-FO written by {@link DocxToFoConverter}.
+ * The FopFactory is thread safe and is shared by all conversions. It is created by the first conversion,
+ * so that an instance running with the remote converter only does not load FOP and its fonts.
+ */
+@Component
+public class FopPdfEngine implements PdfEngine {
+	private static final LoggerService logger = new LoggerService(LoggerFactory.getLogger(FopPdfEngine.class));
+
+	private final PdfServiceProperties.Local properties;
+	private final DocxToFoConverter docxToFoConverter;
+	private final DocxPartResolver docxPartResolver;
+	private volatile FopFactory fopFactory;
+	private volatile String fingerprint;
+
+	public FopPdfEngine(PdfServiceProperties pdfServiceProperties) {
+		this.properties = pdfServiceProperties.getLocal();
+		this.docxToFoConverter = new DocxToFoConverter(this.properties.getFontFamily());
+		this.docxPartResolver = new DocxPartResolver();
+	}
+
+	@Override
+	public void convert(Resource docx, OutputStream outputStream) {
+		try (InputStream inputStream = docx.getInputStream(); XWPFDocument document = new XWPFDocument(inputStream);
+		     DocxPartResolver.Registration registration = this.docxPartResolver.register(document)) {
+			ByteArrayOutputStream fo = new ByteArrayOutputStream();
+			this.docxToFoConverter.convert(document, registration.getBaseUri(), fo);
+
+			Fop fop = this.fopFactory().newFop(MimeConstants.MIME_PDF, outputStream);
+			Transformer transformer = TransformerFactory.newInstance().newTransformer();
+			transformer.transform(new StreamSource(new ByteArrayInputStream(fo.toByteArray())), new SAXResult(fop.getDefaultHandler()));
+		} catch (IOException | XMLStreamException | SAXException | TransformerException e) {
+			logger.error(e.getMessage(), e);
+			throw new MyApplicationException("local pdf rendering failed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the FOP version, the font family and a digest of the configuration: the file itself and the size and modification time
+	 * of every file next to it, where the fonts it registers are usually kept
+	 */
+	@Override
+	public String fingerprint() {
+		String fingerprint = this.fingerprint;
+		if (fingerprint == null) {
+			fingerprint = "local:" + Version.getVersion() + ":" + this.properties.getFontFamily() + ":" + this.configDigest(this.properties.getConfigPath());
+			this.fingerprint = fingerprint;
+		}
+		return fingerprint;
+	}
+
+	private String configDigest(String configPath) {
+		if (configPath == null || configPath.isBlank()) return "default";
+		Path config = Paths.get(configPath).toAbsolutePath();
+		MessageDigest digest = DigestUtils.getSha256Digest();
+		try (Stream<Path> paths = Files.walk(config.getParent())) {
+			digest.update(Files.readAllBytes(config));
+			List<Path> files = paths.filter(Files::isRegularFile).sorted().toList();
+			for (Path file : files) {
+				digest.update((config.getParent().relativize(file) + ":" + Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis() + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+			return Hex.encodeHexString(digest.digest());
+		} catch (IOException e) {
+			// nothing converted with a configuration that cannot be read is served from the cache
+			logger.warn("cannot digest fop configuration " + configPath + ": " + e.getMessage());
+			return UUID.randomUUID().toString();
+		}
+	}
+
+	private FopFactory fopFactory() {
+		FopFactory factory = this.fopFactory;
+		if (factory != null) return factory;
+		synchronized (this) {
+			if (this.fopFactory == null) this.fopFactory = this.buildFopFactory(this.properties.getConfigPath());
+			return this.fopFactory;
+		}
+	}
+
+	private FopFactory buildFopFactory(String configPath) {
+		if (configPath == null || configPath.isBlank()) return new FopFactoryBuilder(new File(".").toURI(), this.docxPartResolver).build();
+		try {
+			return new FopConfParser(new File(configPath), this.docxPartResolver).getFopFactoryBuilder().build();
+		} catch (SAXException | IOException e) {
+			logger.error(e.getMessage(), e);
+			throw new MyApplicationException("invalid fop configuration " + configPath);
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package org.opencdmp.filetransformer.docx.service.pdf;
+
+import java.util.List;
+
+public interface PdfCacheService {
+	boolean isEnabled();
+
+	/**
+	 * @return the pdf cached under the first of the keys that has one, or null if none has
+	 */
+	byte[] get(List<String> keys);
+
+	/**
+	 * @param key the digest of the docx qualified by the engine that converted it
+	 */
+	void put(String key, byte[] pdf);
+
+	void evictAll();
+}
@@ -0,0 +1,194 @@
+package org.opencdmp.filetransformer.docx.service.pdf;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import gr.cite.tools.logging.LoggerService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@Component
+public class PdfCacheServiceImpl implements PdfCacheService {
+	private static final LoggerService logger = new LoggerService(LoggerFactory.getLogger(PdfCacheServiceImpl.class));
+
+	private static final String METRIC_REQUESTS = "docx.pdf.cache.requests";
+	private static final String METRIC_MEMORY_CACHE = "docx.pdf.cache.memory";
+	private static final String METRIC_DISK_SIZE = "docx.pdf.cache.disk.size";
+	private static final String PDF_EXTENSION = ".pdf";
+
+	private final PdfServiceProperties.Cache properties;
+	private final MeterRegistry meterRegistry;
+	private final Cache<String, byte[]> memory;
+	private final Path diskPath;
+	private final AtomicLong diskSize = new AtomicLong();
+	private final Object diskLock = new Object();
+
+	public PdfCacheServiceImpl(PdfServiceProperties pdfServiceProperties, MeterRegistry meterRegistry) {
+		this.properties = pdfServiceProperties.getCache();
+		this.meterRegistry = meterRegistry;
+
+		Caffeine<String, byte[]> builder = Caffeine.newBuilder()
+				.maximumWeight(this.properties.getMaximumWeightInBytes())
+				.weigher((String key, byte[] value) -> value.length)
+				.expireAfterAccess(Duration.ofMinutes(this.properties.getExpireAfterAccessMinutes()));
+		if (this.properties.isEnableRecordStats()) builder.recordStats();
+		this.memory = builder.build();
+		CaffeineCacheMetrics.monitor(this.meterRegistry, this.memory, METRIC_MEMORY_CACHE);
+
+		this.diskPath = this.initDisk();
+		Gauge.builder(METRIC_DISK_SIZE, this.diskSize, AtomicLong::get).baseUnit("bytes").register(this.meterRegistry);
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return this.properties.isEnabled();
+	}
+
+	@Override
+	public byte[] get(List<String> keys) {
+		if (!this.isEnabled()) return null;
+
+		for (String key : keys) {
+			byte[] pdf = this.memory.getIfPresent(key);
+			if (pdf != null) {
+				this.requestCounter("memory").increment();
+				return pdf;
+			}
+		}
+		for (String key : keys) {
+			byte[] pdf = this.readDisk(key);
+			if (pdf != null) {
+				this.memory.put(key, pdf);
+				this.requestCounter("disk").increment();
+				return pdf;
+			}
+		}
+		this.requestCounter("miss").increment();
+		return null;
+	}
+
+	@Override
+	public void put(String key, byte[] pdf) {
+		if (!this.isEnabled() || pdf == null || pdf.length == 0) return;
+
+		this.memory.put(key, pdf);
+		this.writeDisk(key, pdf);
+	}
+
+	@Override
+	public void evictAll() {
+		this.memory.invalidateAll();
+		if (this.diskPath == null) return;
+		synchronized (this.diskLock) {
+			for (Path file : this.listDisk()) this.deleteDisk(file);
+		}
+	}
+
+	private Path initDisk() {
+		if (!this.properties.isEnabled() || !this.properties.isDiskEnabled() || this.properties.getDiskPath() == null || this.properties.getDiskPath().isBlank()) return null;
+		try {
+			Path path = Files.createDirectories(Paths.get(this.properties.getDiskPath()));
+			try (Stream<Path> files = Files.list(path)) {
+				this.diskSize.set(files.filter(x -> x.getFileName().toString().endsWith(PDF_EXTENSION)).mapToLong(this::sizeOf).sum());
+			}
+			return path;
+		} catch (IOException e) {
+			logger.error("pdf disk cache disabled, cannot use " + this.properties.getDiskPath() + ": " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	private byte[] readDisk(String key) {
+		if (this.diskPath == null) return null;
+		Path file = this.diskPath.resolve(key + PDF_EXTENSION);
+		try {
+			byte[] pdf = Files.readAllBytes(file);
+			// the modification time is used as the access time of the least recently used eviction
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return pdf;
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			logger.warn("cannot read cached pdf " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private void writeDisk(String key, byte[] pdf) {
+		if (this.diskPath == null || pdf.length > this.properties.getMaximumDiskBytes()) return;
+		Path file = this.diskPath.resolve(key + PDF_EXTENSION);
+		if (Files.exists(file)) return;
+		Path tempFile = null;
+		try {
+			tempFile = Files.createTempFile(this.diskPath, key, ".tmp");
+			Files.write(tempFile, pdf);
+			synchronized (this.diskLock) {
+				Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+				this.diskSize.addAndGet(pdf.length);
+				this.evictDisk();
+			}
+		} catch (IOException e) {
+			logger.warn("cannot write cached pdf " + file + ": " + e.getMessage());
+			if (tempFile != null) this.deleteDisk(tempFile);
+		}
+	}
+
+	private void evictDisk() {
+		if (this.diskSize.get() <= this.properties.getMaximumDiskBytes()) return;
+		List<Path> files = this.listDisk().stream().sorted(Comparator.comparingLong(this::lastModified)).toList();
+		for (Path file : files) {
+			if (this.diskSize.get() <= this.properties.getMaximumDiskBytes()) break;
+			this.deleteDisk(file);
+		}
+	}
+
+	private List<Path> listDisk() {
+		try (Stream<Path> files = Files.list(this.diskPath)) {
+			return files.filter(x -> x.getFileName().toString().endsWith(PDF_EXTENSION)).toList();
+		} catch (IOException e) {
+			logger.warn("cannot list pdf disk cache: " + e.getMessage());
+			return List.of();
+		}
+	}
+
+	private void deleteDisk(Path file) {
+		try {
+			long size = this.sizeOf(file);
+			if (Files.deleteIfExists(file) && file.getFileName().toString().endsWith(PDF_EXTENSION)) this.diskSize.addAndGet(-size);
+		} catch (IOException e) {
+			logger.warn("cannot delete cached pdf " + file + ": " + e.getMessage());
+		}
+	}
+
+	private long sizeOf(Path file) {
+		try {
+			return Files.size(file);
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	private long lastModified(Path file) {
+		try {
+			return Files.getLastModifiedTime(file).toMillis();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	private Counter requestCounter(String result) {
+		return Counter.builder(METRIC_REQUESTS).tag("result", result).register(this.meterRegistry);
+	}
+}
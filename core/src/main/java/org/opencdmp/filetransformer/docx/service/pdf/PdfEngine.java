@@ -0,0 +1,14 @@
+package org.opencdmp.filetransformer.docx.service.pdf;
+
+import org.springframework.core.io.Resource;
+
+import java.io.OutputStream;
+
+public interface PdfEngine {
+	void convert(Resource docx, OutputStream outputStream);
+
+	/**
+	 * @return what the engine converts with, changing whenever the same docx may convert to a different pdf
+	 */
+	String fingerprint();
+}
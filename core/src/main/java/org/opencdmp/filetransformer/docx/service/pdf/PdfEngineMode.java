@@ -0,0 +1,7 @@
+package org.opencdmp.filetransformer.docx.service.pdf;
+
+public enum PdfEngineMode {
+	REMOTE,
+	LOCAL,
+	LOCAL_WITH_REMOTE_FALLBACK
+}
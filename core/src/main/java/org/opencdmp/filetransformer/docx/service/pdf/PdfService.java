@@ -1,5 +1,11 @@
 package org.opencdmp.filetransformer.docx.service.pdf;
 
+import org.springframework.core.io.Resource;
+
+import java.io.OutputStream;
+
 public interface PdfService {
 	byte[] convertToPDF(byte[] file);
+
+	void convertToPDF(Resource file, OutputStream outputStream);
 }
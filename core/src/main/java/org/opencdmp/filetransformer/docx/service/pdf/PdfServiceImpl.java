@@ -1,71 +1,251 @@
 package org.opencdmp.filetransformer.docx.service.pdf;
 
+import gr.cite.tools.exception.MyApplicationException;
 import gr.cite.tools.logging.LoggerService;
-import gr.cite.tools.logging.MapLogEntry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.ByteArrayResource;
-import org.springframework.http.MediaType;
-import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
 
-import java.util.UUID;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 public class PdfServiceImpl implements PdfService {
 	private static final LoggerService logger = new LoggerService(LoggerFactory.getLogger(PdfServiceImpl.class));
 
+	private static final String METRIC_IN_FLIGHT = "docx.pdf.conversions.inflight";
+	private static final String METRIC_QUEUED = "docx.pdf.conversions.queued";
+	private static final String METRIC_WAIT = "docx.pdf.conversions.wait";
+	private static final String METRIC_CONVERSION = "docx.pdf.conversions";
+	private static final int FINGERPRINT_LENGTH = 16;
+
     private final PdfServiceProperties pdfServiceProperties;
+	private final MeterRegistry meterRegistry;
+	private final PdfCacheService pdfCacheService;
+	private final RemotePdfEngine remotePdfEngine;
+	private final FopPdfEngine fopPdfEngine;
+	private final Semaphore conversionPermits;
+	private final AtomicInteger queued = new AtomicInteger();
 
-	public PdfServiceImpl(PdfServiceProperties pdfServiceProperties) {
+	public PdfServiceImpl(PdfServiceProperties pdfServiceProperties, MeterRegistry meterRegistry, PdfCacheService pdfCacheService, RemotePdfEngine remotePdfEngine, FopPdfEngine fopPdfEngine) {
 		this.pdfServiceProperties = pdfServiceProperties;
+		this.meterRegistry = meterRegistry;
+		this.pdfCacheService = pdfCacheService;
+		this.remotePdfEngine = remotePdfEngine;
+		this.fopPdfEngine = fopPdfEngine;
+		this.conversionPermits = new Semaphore(Math.max(1, this.pdfServiceProperties.getMaxConcurrentConversions()), true);
+
+		Gauge.builder(METRIC_IN_FLIGHT, this.conversionPermits, permits -> Math.max(1, this.pdfServiceProperties.getMaxConcurrentConversions()) - permits.availablePermits()).register(this.meterRegistry);
+		Gauge.builder(METRIC_QUEUED, this.queued, AtomicInteger::get).register(this.meterRegistry);
 	}
 
 	@Override
     public byte[] convertToPDF(byte[] file) {
-        WebClient webClient = WebClient.builder().filters(exchangeFilterFunctions -> {
-	        exchangeFilterFunctions.add(logRequest());
-	        exchangeFilterFunctions.add(logResponse());
-        }).baseUrl(pdfServiceProperties.getUrl()) .codecs(codecs -> codecs
-	        .defaultCodecs()
-	        .maxInMemorySize(this.pdfServiceProperties.getMaxInMemorySizeInBytes())
-        ).build();
-		MultipartBodyBuilder builder = new MultipartBodyBuilder();
-		builder.part("files", new ByteArrayResource(file)).filename(UUID.randomUUID() + ".docx");
-
-		return webClient.post().uri("forms/libreoffice/convert")
-                .headers(httpHeaders -> {
-	                httpHeaders.setContentType(MediaType.MULTIPART_FORM_DATA);
-	                httpHeaders.add("Content-disposition", "attachment; filename=" + UUID.randomUUID() + ".pdf");
-	                httpHeaders.add("Content-type", "application/pdf");
-                })
-                .body(BodyInserters.fromMultipartData(builder.build()))
-                .retrieve().bodyToMono(byte[].class).block();
-    }
+		String digest = this.digestOf(new ByteArrayResource(file));
+		byte[] cached = digest != null ? this.pdfCacheService.get(this.cacheKeys(digest)) : null;
+		if (cached != null) return cached;
 
+		ByteArrayOutputStream converted = new ByteArrayOutputStream();
+		String fingerprint = this.render(new ByteArrayResource(file), converted);
+		byte[] pdf = converted.toByteArray();
+		if (digest != null) this.pdfCacheService.put(this.cacheKey(digest, fingerprint), pdf);
+		return pdf;
+    }
 
+	@Override
+	public void convertToPDF(Resource file, OutputStream outputStream) {
+		String digest = this.digestOf(file);
+		if (digest == null) {
+			this.render(file, outputStream);
+			return;
+		}
 
-	private static ExchangeFilterFunction logRequest() {
-		return ExchangeFilterFunction.ofRequestProcessor(clientRequest -> {
-			logger.debug(new MapLogEntry("Request").And("method", clientRequest.method().toString()).And("url", clientRequest.url()));
-			return Mono.just(clientRequest);
-		});
+		byte[] pdf = this.pdfCacheService.get(this.cacheKeys(digest));
+		if (pdf != null) {
+			this.write(pdf, outputStream);
+			return;
+		}
+		// the pdf is streamed as it is rendered and only a copy of a small enough one is kept for the cache
+		CachingOutputStream converted = new CachingOutputStream(outputStream, this.pdfServiceProperties.getCache().getMaximumEntryBytes());
+		String fingerprint = this.render(file, converted);
+		pdf = converted.getCopy();
+		if (pdf != null) this.pdfCacheService.put(this.cacheKey(digest, fingerprint), pdf);
 	}
 
-	private static ExchangeFilterFunction logResponse() {
-		return ExchangeFilterFunction.ofResponseProcessor(response -> {
-			if (response.statusCode().isError()) {
-				return response.mutate().build().bodyToMono(String.class)
-						.flatMap(body -> {
-							logger.error(new MapLogEntry("Response").And("method", response.request().getMethod().toString()).And("url", response.request().getURI()).And("status", response.statusCode()).And("body", body));
-							return Mono.just(response);
-						});
+	/**
+	 * @return the fingerprint of what produced the pdf
+	 */
+	private String render(Resource file, OutputStream outputStream) {
+		this.acquire();
+		try {
+			switch (this.pdfServiceProperties.getMode()) {
+				case REMOTE -> {
+					this.timed("remote", this.remotePdfEngine, file, outputStream);
+					return this.remotePdfEngine.fingerprint();
+				}
+				case LOCAL -> {
+					this.timed("local", this.fopPdfEngine, file, outputStream);
+					return this.fopPdfEngine.fingerprint();
+				}
+				case LOCAL_WITH_REMOTE_FALLBACK -> {
+					// the local result is buffered so that nothing reaches the output if the converter has to take over
+					ByteArrayOutputStream local = new ByteArrayOutputStream();
+					try {
+						this.timed("local", this.fopPdfEngine, file, local);
+					} catch (RuntimeException e) {
+						logger.warn("local pdf rendering failed, falling back to the remote converter: " + e.getMessage());
+						this.timed("remote", this.remotePdfEngine, file, outputStream);
+						return this.fallbackFingerprint();
+					}
+					this.write(local.toByteArray(), outputStream);
+					return this.fopPdfEngine.fingerprint();
+				}
+				default -> throw new MyApplicationException("Invalid pdf engine mode " + this.pdfServiceProperties.getMode());
 			}
-			return Mono.just(response);
+		} finally {
+			this.conversionPermits.release();
+		}
+	}
+
+	/**
+	 * @return the keys a pdf converted in the current mode may be cached under, in the order they are looked up
+	 */
+	private List<String> cacheKeys(String docxDigest) {
+		return switch (this.pdfServiceProperties.getMode()) {
+			case REMOTE -> List.of(this.cacheKey(docxDigest, this.remotePdfEngine.fingerprint()));
+			case LOCAL -> List.of(this.cacheKey(docxDigest, this.fopPdfEngine.fingerprint()));
+			case LOCAL_WITH_REMOTE_FALLBACK -> List.of(this.cacheKey(docxDigest, this.fopPdfEngine.fingerprint()), this.cacheKey(docxDigest, this.fallbackFingerprint()));
+		};
+	}
+
+	/**
+	 * The docx digest qualified by what converted it, so that a pdf is not served after a mode, engine or configuration change.
+	 */
+	private String cacheKey(String docxDigest, String fingerprint) {
+		return docxDigest + "-" + DigestUtils.sha256Hex(this.pdfServiceProperties.getCache().getVersion() + "\n" + fingerprint).substring(0, FINGERPRINT_LENGTH);
+	}
+
+	/**
+	 * @return the fingerprint of a pdf the remote converter produced because the local engine failed, kept apart from
+	 * the ones of the remote mode as the local engine may succeed once its configuration changes
+	 */
+	private String fallbackFingerprint() {
+		return this.fopPdfEngine.fingerprint() + "\n" + this.remotePdfEngine.fingerprint();
+	}
+
+	private void timed(String engine, PdfEngine pdfEngine, Resource file, OutputStream outputStream) {
+		Timer.Sample sample = Timer.start(this.meterRegistry);
+		String result = "success";
+		try {
+			pdfEngine.convert(file, outputStream);
+		} catch (RuntimeException e) {
+			result = "error";
+			throw e;
+		} finally {
+			sample.stop(Timer.builder(METRIC_CONVERSION).tag("engine", engine).tag("result", result).register(this.meterRegistry));
+		}
+	}
+
+	/**
+	 * Waits for one of the configured in-flight slots, so that a burst of exports queues here
+	 * instead of piling up on the converter and holding servlet threads until the converter times out.
+	 */
+	private void acquire() {
+		Timer.Sample waitSample = Timer.start(this.meterRegistry);
+		this.queued.incrementAndGet();
+		boolean acquired;
+		try {
+			acquired = this.conversionPermits.tryAcquire(this.pdfServiceProperties.getAcquireTimeoutSeconds(), TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MyApplicationException("pdf conversion interrupted");
+		} finally {
+			this.queued.decrementAndGet();
+			waitSample.stop(Timer.builder(METRIC_WAIT).register(this.meterRegistry));
+		}
+		if (!acquired) {
+			logger.warn("no pdf conversion slot available after " + this.pdfServiceProperties.getAcquireTimeoutSeconds() + " seconds");
+			throw new MyApplicationException("pdf converter is busy");
+		}
+	}
+
+	private void write(byte[] pdf, OutputStream outputStream) {
+		try {
+			outputStream.write(pdf);
+		} catch (IOException e) {
+			logger.error(e.getMessage(), e);
+			throw new MyApplicationException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes through to the wrapped stream and keeps a copy of what was written, dropped once it grows past the limit.
+	 * The wrapped stream is flushed but not closed, it belongs to the caller.
+	 */
+	private static class CachingOutputStream extends OutputStream {
+		private final OutputStream outputStream;
+		private final long limit;
+		private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+		private CachingOutputStream(OutputStream outputStream, long limit) {
+			this.outputStream = outputStream;
+			this.limit = limit;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			this.outputStream.write(b);
+			this.keep(1);
+			if (this.copy != null) this.copy.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.outputStream.write(b, off, len);
+			this.keep(len);
+			if (this.copy != null) this.copy.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			this.outputStream.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.flush();
+		}
+
+		private void keep(int len) {
+			if (this.copy != null && this.copy.size() + (long) len > this.limit) this.copy = null;
+		}
+
+		/**
+		 * @return what was written, or null if it was larger than the limit
+		 */
+		private byte[] getCopy() {
+			return this.copy != null ? this.copy.toByteArray() : null;
+		}
+	}
 
-		});
+	private String digestOf(Resource file) {
+		if (!this.pdfCacheService.isEnabled()) return null;
+		try (InputStream inputStream = file.getInputStream()) {
+			return DocxDigest.of(inputStream);
+		} catch (IOException e) {
+			logger.warn("cannot compute docx digest, pdf cache skipped: " + e.getMessage());
+			return null;
+		}
 	}
 }
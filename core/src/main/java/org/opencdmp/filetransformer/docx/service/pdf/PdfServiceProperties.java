@@ -7,6 +7,16 @@ import org.springframework.boot.context.properties.bind.ConstructorBinding;
 public class PdfServiceProperties {
     private String url;
     private int maxInMemorySizeInBytes;
+    private int maxConnections = 16;
+    private int pendingAcquireMaxCount = 64;
+    private int connectTimeoutMillis = 5000;
+    private int responseTimeoutSeconds = 120;
+    private int maxIdleTimeSeconds = 30;
+    private int maxConcurrentConversions = 8;
+    private int acquireTimeoutSeconds = 60;
+    private Cache cache = new Cache();
+    private PdfEngineMode mode = PdfEngineMode.REMOTE;
+    private Local local = new Local();
 
     public String getUrl() {
         return url;
@@ -23,4 +33,192 @@ public class PdfServiceProperties {
     public void setMaxInMemorySizeInBytes(int maxInMemorySizeInBytes) {
         this.maxInMemorySizeInBytes = maxInMemorySizeInBytes;
     }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getPendingAcquireMaxCount() {
+        return pendingAcquireMaxCount;
+    }
+
+    public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) {
+        this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public int getResponseTimeoutSeconds() {
+        return responseTimeoutSeconds;
+    }
+
+    public void setResponseTimeoutSeconds(int responseTimeoutSeconds) {
+        this.responseTimeoutSeconds = responseTimeoutSeconds;
+    }
+
+    public int getMaxIdleTimeSeconds() {
+        return maxIdleTimeSeconds;
+    }
+
+    public void setMaxIdleTimeSeconds(int maxIdleTimeSeconds) {
+        this.maxIdleTimeSeconds = maxIdleTimeSeconds;
+    }
+
+    public int getMaxConcurrentConversions() {
+        return maxConcurrentConversions;
+    }
+
+    public void setMaxConcurrentConversions(int maxConcurrentConversions) {
+        this.maxConcurrentConversions = maxConcurrentConversions;
+    }
+
+    public int getAcquireTimeoutSeconds() {
+        return acquireTimeoutSeconds;
+    }
+
+    public void setAcquireTimeoutSeconds(int acquireTimeoutSeconds) {
+        this.acquireTimeoutSeconds = acquireTimeoutSeconds;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public PdfEngineMode getMode() {
+        return mode;
+    }
+
+    public void setMode(PdfEngineMode mode) {
+        this.mode = mode;
+    }
+
+    public Local getLocal() {
+        return local;
+    }
+
+    public void setLocal(Local local) {
+        this.local = local;
+    }
+
+    public static class Local {
+        private String configPath;
+        private String fontFamily = "Helvetica";
+
+        public String getConfigPath() {
+            return configPath;
+        }
+
+        public void setConfigPath(String configPath) {
+            this.configPath = configPath;
+        }
+
+        public String getFontFamily() {
+            return fontFamily;
+        }
+
+        public void setFontFamily(String fontFamily) {
+            this.fontFamily = fontFamily;
+        }
+    }
+
+    public static class Cache {
+        private boolean enabled = true;
+        private long maximumWeightInBytes = 64 * 1024 * 1024;
+        private long expireAfterAccessMinutes = 60;
+        private boolean enableRecordStats = true;
+        private boolean diskEnabled = false;
+        private String diskPath;
+        private long maximumDiskBytes = 512 * 1024 * 1024;
+        private long maximumEntryBytes = 16 * 1024 * 1024;
+        private String version = "1";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumWeightInBytes() {
+            return maximumWeightInBytes;
+        }
+
+        public void setMaximumWeightInBytes(long maximumWeightInBytes) {
+            this.maximumWeightInBytes = maximumWeightInBytes;
+        }
+
+        public long getExpireAfterAccessMinutes() {
+            return expireAfterAccessMinutes;
+        }
+
+        public void setExpireAfterAccessMinutes(long expireAfterAccessMinutes) {
+            this.expireAfterAccessMinutes = expireAfterAccessMinutes;
+        }
+
+        public boolean isEnableRecordStats() {
+            return enableRecordStats;
+        }
+
+        public void setEnableRecordStats(boolean enableRecordStats) {
+            this.enableRecordStats = enableRecordStats;
+        }
+
+        public boolean isDiskEnabled() {
+            return diskEnabled;
+        }
+
+        public void setDiskEnabled(boolean diskEnabled) {
+            this.diskEnabled = diskEnabled;
+        }
+
+        public String getDiskPath() {
+            return diskPath;
+        }
+
+        public void setDiskPath(String diskPath) {
+            this.diskPath = diskPath;
+        }
+
+        public long getMaximumDiskBytes() {
+            return maximumDiskBytes;
+        }
+
+        public void setMaximumDiskBytes(long maximumDiskBytes) {
+            this.maximumDiskBytes = maximumDiskBytes;
+        }
+
+        public long getMaximumEntryBytes() {
+            return maximumEntryBytes;
+        }
+
+        public void setMaximumEntryBytes(long maximumEntryBytes) {
+            this.maximumEntryBytes = maximumEntryBytes;
+        }
+
+        /**
+         * @return part of every cache key, to be changed when the converter or the fonts are upgraded so that the pdfs converted before are not served
+         */
+        public String getVersion() {
+            return version;
+        }
+
+        public void setVersion(String version) {
+            this.version = version;
+        }
+    }
 }
@@ -0,0 +1,109 @@
+package org.opencdmp.filetransformer.docx.service.pdf;
+
+import gr.cite.tools.logging.LoggerService;
+import gr.cite.tools.logging.MapLogEntry;
+import io.netty.channel.ChannelOption;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Converts through the LibreOffice endpoint of the converter at pdf.converter.url, over one long-lived pooled client.
+ */
+@Component
+public class RemotePdfEngine implements PdfEngine {
+	private static final LoggerService logger = new LoggerService(LoggerFactory.getLogger(RemotePdfEngine.class));
+
+	private final PdfServiceProperties pdfServiceProperties;
+	private final WebClient webClient;
+
+	public RemotePdfEngine(PdfServiceProperties pdfServiceProperties) {
+		this.pdfServiceProperties = pdfServiceProperties;
+		this.webClient = this.buildWebClient();
+	}
+
+	@Override
+	public void convert(Resource docx, OutputStream outputStream) {
+		MultipartBodyBuilder builder = new MultipartBodyBuilder();
+		builder.part("files", docx).filename(UUID.randomUUID() + ".docx");
+
+		Flux<DataBuffer> body = this.webClient.post().uri("forms/libreoffice/convert")
+                .headers(httpHeaders -> {
+	                httpHeaders.setContentType(MediaType.MULTIPART_FORM_DATA);
+	                httpHeaders.add("Content-disposition", "attachment; filename=" + UUID.randomUUID() + ".pdf");
+	                httpHeaders.add("Content-type", "application/pdf");
+                })
+                .body(BodyInserters.fromMultipartData(builder.build()))
+                .retrieve()
+				.bodyToFlux(DataBuffer.class);
+		DataBufferUtils.write(body, outputStream).map(DataBufferUtils::release).blockLast();
+    }
+
+	/**
+	 * @return the converter url, as nothing else of the converter is known here
+	 */
+	@Override
+	public String fingerprint() {
+		return "remote:" + this.pdfServiceProperties.getUrl();
+	}
+
+	private WebClient buildWebClient() {
+		ConnectionProvider connectionProvider = ConnectionProvider.builder("pdf-converter")
+				.maxConnections(this.pdfServiceProperties.getMaxConnections())
+				.pendingAcquireMaxCount(this.pdfServiceProperties.getPendingAcquireMaxCount())
+				.maxIdleTime(Duration.ofSeconds(this.pdfServiceProperties.getMaxIdleTimeSeconds()))
+				.metrics(true)
+				.build();
+		HttpClient httpClient = HttpClient.create(connectionProvider)
+				.keepAlive(true)
+				.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, this.pdfServiceProperties.getConnectTimeoutMillis())
+				.responseTimeout(Duration.ofSeconds(this.pdfServiceProperties.getResponseTimeoutSeconds()));
+
+		return WebClient.builder().filters(exchangeFilterFunctions -> {
+	        exchangeFilterFunctions.add(logRequest());
+	        exchangeFilterFunctions.add(logResponse());
+        }).baseUrl(pdfServiceProperties.getUrl())
+				.clientConnector(new ReactorClientHttpConnector(httpClient))
+				.codecs(codecs -> codecs
+	        .defaultCodecs()
+	        .maxInMemorySize(this.pdfServiceProperties.getMaxInMemorySizeInBytes())
+        ).build();
+	}
+
+	private static ExchangeFilterFunction logRequest() {
+		return ExchangeFilterFunction.ofRequestProcessor(clientRequest -> {
+			logger.debug(new MapLogEntry("Request").And("method", clientRequest.method().toString()).And("url", clientRequest.url()));
+			return Mono.just(clientRequest);
+		});
+	}
+
+	private static ExchangeFilterFunction logResponse() {
+		return ExchangeFilterFunction.ofResponseProcessor(response -> {
+			if (response.statusCode().isError()) {
+				return response.mutate().build().bodyToMono(String.class)
+						.flatMap(body -> {
+							logger.error(new MapLogEntry("Response").And("method", response.request().getMethod().toString()).And("url", response.request().getURI()).And("status", response.statusCode()).And("body", body));
+							return Mono.just(response);
+						});
+			}
+			return Mono.just(response);
+
+		});
+	}
+}
@@ -1,7 +1,34 @@
 package org.opencdmp.filetransformer.docx.service.storage;
 
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
 public interface FileStorageService {
 	String storeFile(byte[] data);
 
+	/**
+	 * Streams the file into a temp file of the transient path that is renamed to the returned file ref once it is complete,
+	 * so that a partially written file is never visible under a file ref.
+	 */
+	String storeFile(StorageWriter writer);
+
+	/**
+	 * @throws gr.cite.tools.exception.MyNotFoundException when there is no file for the file ref
+	 */
 	byte[] readFile(String fileRef);
+
+	/**
+	 * Maps the file read only instead of copying it to the heap. The mapping is released when the returned buffer is garbage collected.
+	 * @throws gr.cite.tools.exception.MyNotFoundException when there is no file for the file ref
+	 */
+	ByteBuffer mapFile(String fileRef);
+
+	/**
+	 * @throws gr.cite.tools.exception.MyNotFoundException when there is no file for the file ref
+	 */
+	long fileSize(String fileRef);
+
+	Path createTempFile(StorageWriter writer);
+
+	void deleteTempFile(Path path);
 }
@@ -1,5 +1,7 @@
 package org.opencdmp.filetransformer.docx.service.storage;
 
+import gr.cite.tools.exception.MyApplicationException;
+import gr.cite.tools.exception.MyNotFoundException;
 import gr.cite.tools.logging.LoggerService;
 import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerService;
 import org.slf4j.Logger;
@@ -7,11 +9,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.FileInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.Locale;
 import java.util.UUID;
@@ -40,13 +47,100 @@ public class FileStorageServiceImpl implements FileStorageService {
         return null;
     }
 
+    @Override
+    public String storeFile(StorageWriter writer) {
+        String fileName = UUID.randomUUID().toString().replace("-", "").toLowerCase(Locale.ROOT);
+        Path directory = Paths.get(properties.getTransientPath());
+        Path tempPath = null;
+        try {
+            tempPath = Files.createTempFile(directory, "." + fileName, ".tmp");
+            this.write(tempPath, writer);
+            Files.move(tempPath, directory.resolve(fileName), StandardCopyOption.ATOMIC_MOVE);
+            return fileName;
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            this.deleteTempFile(tempPath);
+            throw new MyApplicationException("could not store file " + fileName);
+        } catch (RuntimeException e) {
+            this.deleteTempFile(tempPath);
+            throw e;
+        }
+    }
+
+    @Override
+    public Path createTempFile(StorageWriter writer) {
+        Path tempPath = null;
+        try {
+            tempPath = Files.createTempFile(Paths.get(properties.getTemp()), null, ".tmp");
+            this.write(tempPath, writer);
+            return tempPath;
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            this.deleteTempFile(tempPath);
+            throw new MyApplicationException("could not create temp file");
+        } catch (RuntimeException e) {
+            this.deleteTempFile(tempPath);
+            throw e;
+        }
+    }
+
+    @Override
+    public void deleteTempFile(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("could not delete temp file " + path + ": " + e.getMessage());
+        }
+    }
+
+    private void write(Path path, StorageWriter writer) throws IOException {
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            writer.write(outputStream);
+        }
+    }
+
     @Override
     public byte[] readFile(String fileRef) {
-        try (FileInputStream inputStream = new FileInputStream(properties.getTransientPath() + "/" + fileRef)) {
-            return inputStream.readAllBytes();
+        try {
+            return Files.readAllBytes(this.transientFile(fileRef));
+        } catch (NoSuchFileException e) {
+            throw new MyNotFoundException("file " + fileRef + " not found");
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            throw new MyApplicationException("could not read file " + fileRef);
+        }
+    }
+
+    @Override
+    public ByteBuffer mapFile(String fileRef) {
+        try (FileChannel channel = FileChannel.open(this.transientFile(fileRef), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            throw new MyNotFoundException("file " + fileRef + " not found");
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            throw new MyApplicationException("could not read file " + fileRef);
+        }
+    }
+
+    @Override
+    public long fileSize(String fileRef) {
+        try {
+            return Files.size(this.transientFile(fileRef));
+        } catch (NoSuchFileException e) {
+            throw new MyNotFoundException("file " + fileRef + " not found");
         } catch (IOException e) {
             logger.error(e.getMessage(), e);
+            throw new MyApplicationException("could not read file " + fileRef);
         }
-        return new byte[0];
+    }
+
+    private Path transientFile(String fileRef) {
+        if (fileRef == null || fileRef.isBlank()) throw new MyNotFoundException("file ref required");
+        Path directory = Paths.get(properties.getTransientPath()).toAbsolutePath().normalize();
+        Path path = directory.resolve(fileRef).normalize();
+        if (!path.getParent().equals(directory)) throw new MyNotFoundException("file " + fileRef + " not found");
+        return path;
     }
 }
@@ -0,0 +1,9 @@
+package org.opencdmp.filetransformer.docx.service.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+@FunctionalInterface
+public interface StorageWriter {
+	void write(OutputStream outputStream) throws IOException;
+}
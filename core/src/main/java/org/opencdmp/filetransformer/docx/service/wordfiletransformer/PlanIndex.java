@@ -0,0 +1,81 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer;
+
+import org.opencdmp.commonmodels.models.description.DescriptionModel;
+import org.opencdmp.commonmodels.models.plan.PlanBlueprintValueModel;
+import org.opencdmp.commonmodels.models.plan.PlanModel;
+import org.opencdmp.commonmodels.models.planreference.PlanReferenceModel;
+import org.opencdmp.commonmodels.models.reference.ReferenceModel;
+
+import java.util.*;
+
+/**
+ * Lookups of a single plan export (references by type code and blueprint field, blueprint values by field, descriptions by
+ * blueprint section), built with one pass over the plan so that rendering a section or a field does not scan the whole plan.
+ * Lists keep the order of the plan model. The index is not updated if the plan is modified after it was built.
+ */
+public class PlanIndex {
+    private final Map<String, List<ReferenceModel>> referencesByTypeCode;
+    private final Map<String, Map<UUID, List<ReferenceModel>>> referencesByTypeCodeAndField;
+    private final Map<UUID, PlanBlueprintValueModel> blueprintValuesByFieldId;
+    private final Map<UUID, List<DescriptionModel>> descriptionsBySectionId;
+
+    private PlanIndex(Map<String, List<ReferenceModel>> referencesByTypeCode, Map<String, Map<UUID, List<ReferenceModel>>> referencesByTypeCodeAndField,
+                      Map<UUID, PlanBlueprintValueModel> blueprintValuesByFieldId, Map<UUID, List<DescriptionModel>> descriptionsBySectionId) {
+        this.referencesByTypeCode = referencesByTypeCode;
+        this.referencesByTypeCodeAndField = referencesByTypeCodeAndField;
+        this.blueprintValuesByFieldId = blueprintValuesByFieldId;
+        this.descriptionsBySectionId = descriptionsBySectionId;
+    }
+
+    public static PlanIndex of(PlanModel plan) {
+        Map<String, List<ReferenceModel>> referencesByTypeCode = new HashMap<>();
+        Map<String, Map<UUID, List<ReferenceModel>>> referencesByTypeCodeAndField = new HashMap<>();
+        if (plan.getReferences() != null) {
+            for (PlanReferenceModel planReferenceModel : plan.getReferences()) {
+                if (planReferenceModel.getReference() != null && planReferenceModel.getReference().getType() != null && planReferenceModel.getReference().getType().getCode() != null) {
+                    String code = planReferenceModel.getReference().getType().getCode();
+                    referencesByTypeCode.computeIfAbsent(code, x -> new ArrayList<>()).add(planReferenceModel.getReference());
+                    if (planReferenceModel.getData() != null && planReferenceModel.getData().getBlueprintFieldId() != null) {
+                        referencesByTypeCodeAndField.computeIfAbsent(code, x -> new HashMap<>()).computeIfAbsent(planReferenceModel.getData().getBlueprintFieldId(), x -> new ArrayList<>()).add(planReferenceModel.getReference());
+                    }
+                }
+            }
+        }
+
+        Map<UUID, PlanBlueprintValueModel> blueprintValuesByFieldId = new HashMap<>();
+        if (plan.getProperties() != null && plan.getProperties().getPlanBlueprintValues() != null) {
+            for (PlanBlueprintValueModel planBlueprintValueModel : plan.getProperties().getPlanBlueprintValues()) {
+                if (planBlueprintValueModel.getFieldId() != null) blueprintValuesByFieldId.putIfAbsent(planBlueprintValueModel.getFieldId(), planBlueprintValueModel);
+            }
+        }
+
+        Map<UUID, List<DescriptionModel>> descriptionsBySectionId = new HashMap<>();
+        if (plan.getDescriptions() != null) {
+            for (DescriptionModel descriptionModel : plan.getDescriptions()) {
+                if (descriptionModel.getSectionId() != null) descriptionsBySectionId.computeIfAbsent(descriptionModel.getSectionId(), x -> new ArrayList<>()).add(descriptionModel);
+            }
+        }
+
+        return new PlanIndex(referencesByTypeCode, referencesByTypeCodeAndField, blueprintValuesByFieldId, descriptionsBySectionId);
+    }
+
+    /**
+     * @param blueprintFieldId the blueprint field the references were added to, or null for the references of every field
+     */
+    public List<ReferenceModel> getReferences(String typeCode, UUID blueprintFieldId) {
+        List<ReferenceModel> references = blueprintFieldId == null ? this.referencesByTypeCode.get(typeCode) : this.referencesByTypeCodeAndField.getOrDefault(typeCode, Map.of()).get(blueprintFieldId);
+        return references == null ? List.of() : Collections.unmodifiableList(references);
+    }
+
+    /**
+     * @return the first value of the blueprint field, or null when the plan has none
+     */
+    public PlanBlueprintValueModel getBlueprintValue(UUID fieldId) {
+        return fieldId == null ? null : this.blueprintValuesByFieldId.get(fieldId);
+    }
+
+    public List<DescriptionModel> getDescriptions(UUID sectionId) {
+        List<DescriptionModel> descriptions = this.descriptionsBySectionId.get(sectionId);
+        return descriptions == null ? List.of() : Collections.unmodifiableList(descriptions);
+    }
+}
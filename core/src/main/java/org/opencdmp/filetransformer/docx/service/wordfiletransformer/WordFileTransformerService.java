@@ -2,7 +2,7 @@ package org.opencdmp.filetransformer.docx.service.wordfiletransformer;
 
 import gr.cite.tools.exception.MyApplicationException;
 import gr.cite.tools.logging.LoggerService;
-import org.apache.poi.util.Units;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.poi.xwpf.usermodel.ParagraphAlignment;
 import org.opencdmp.commonmodels.enums.*;
 import org.opencdmp.commonmodels.models.ConfigurationField;
@@ -13,18 +13,32 @@ import org.opencdmp.commonmodels.models.FileEnvelopeModel;
 import org.opencdmp.commonmodels.models.description.DescriptionModel;
 import org.opencdmp.commonmodels.models.descriptiotemplate.DescriptionTemplateModel;
 import org.opencdmp.commonmodels.models.planblueprint.*;
-import org.opencdmp.commonmodels.models.planreference.PlanReferenceModel;
 import org.opencdmp.commonmodels.models.plugin.PluginFieldModel;
 import org.opencdmp.commonmodels.models.plugin.PluginModel;
+import org.opencdmp.commonmodels.models.planreference.PlanReferenceModel;
 import org.opencdmp.commonmodels.models.reference.ReferenceModel;
 import org.opencdmp.filetransformerbase.interfaces.FileTransformerClient;
 import org.opencdmp.filetransformerbase.interfaces.FileTransformerConfiguration;
 import org.opencdmp.filetransformer.docx.model.enums.FileFormats;
 import org.opencdmp.filetransformerbase.models.misc.*;
+import org.opencdmp.filetransformer.docx.service.admission.Admission;
+import org.opencdmp.filetransformer.docx.service.admission.AdmissionService;
 import org.opencdmp.filetransformer.docx.service.pdf.PdfService;
 import org.opencdmp.filetransformer.docx.model.enums.ParagraphStyle;
 import org.opencdmp.filetransformer.docx.service.storage.FileStorageService;
+import org.opencdmp.filetransformer.docx.service.storage.StorageWriter;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.fragment.DocumentSpool;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.fragment.FragmentRenderService;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.image.EmbeddedImage;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.image.ImageService;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.metrics.ExportMetricsService;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.metrics.ExportPhase;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.metrics.ExportTimings;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.template.TemplateCacheService;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.template.TemplateDocument;
 import org.opencdmp.filetransformer.docx.service.wordfiletransformer.visibility.VisibilityServiceImpl;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.RenderContext;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.SubstitutionTable;
 import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.WordBuilder;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
@@ -33,17 +47,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.stereotype.Component;
-import org.springframework.web.context.annotation.RequestScope;
 
-import javax.imageio.ImageIO;
-import javax.imageio.ImageReader;
-import javax.imageio.stream.ImageInputStream;
 import javax.management.InvalidApplicationException;
 import java.io.*;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.time.Instant;
 import java.time.ZoneId;
@@ -55,7 +66,6 @@ import static org.apache.poi.xwpf.usermodel.Document.*;
 import static org.apache.poi.xwpf.usermodel.Document.PICTURE_TYPE_WMF;
 
 @Component
-@RequestScope
 public class WordFileTransformerService implements FileTransformerClient {
     private static final LoggerService logger = new LoggerService(LoggerFactory.getLogger(WordFileTransformerService.class));
 
@@ -74,76 +84,148 @@ public class WordFileTransformerService implements FileTransformerClient {
             "image/bmp", PICTURE_TYPE_BMP,
             "image/wmf", PICTURE_TYPE_WMF
     );
-    private Integer imageCount;
     private final FileStorageService fileStorageService;
     private final WordFileTransformerServiceProperties wordFileTransformerServiceProperties;
     private final PdfService pdfService;
     private final WordBuilder wordBuilder;
     private final FileStorageService storageService;
     private final MessageSource messageSource;
-    private final ResourceLoader resourceLoader;
+    private final TemplateCacheService templateCacheService;
+    private final ImageService imageService;
+    private final FragmentRenderService fragmentRenderService;
+    private final AdmissionService admissionService;
+    private final ExportMetricsService exportMetricsService;
     @Autowired
     public WordFileTransformerService(
             FileStorageService fileStorageService, WordFileTransformerServiceProperties wordFileTransformerServiceProperties,
-            PdfService pdfService, WordBuilder wordBuilder, FileStorageService storageService, MessageSource messageSource, ResourceLoader resourceLoader) {
+            PdfService pdfService, WordBuilder wordBuilder, FileStorageService storageService, MessageSource messageSource, TemplateCacheService templateCacheService,
+            ImageService imageService, FragmentRenderService fragmentRenderService, AdmissionService admissionService,
+            ExportMetricsService exportMetricsService) {
         this.fileStorageService = fileStorageService;
         this.wordFileTransformerServiceProperties = wordFileTransformerServiceProperties;
 	    this.pdfService = pdfService;
 	    this.wordBuilder = wordBuilder;
 	    this.storageService = storageService;
 	    this.messageSource = messageSource;
-        this.resourceLoader = resourceLoader;
-        this.imageCount = 0;
+        this.templateCacheService = templateCacheService;
+        this.imageService = imageService;
+        this.fragmentRenderService = fragmentRenderService;
+        this.admissionService = admissionService;
+        this.exportMetricsService = exportMetricsService;
     }
 
     @Override
     public FileEnvelopeModel exportPlan(PlanModel plan, String variant) throws IOException, InvalidApplicationException {
         FileFormats fileFormat = FileFormats.of(variant);
-        byte[] bytes = this.buildPlanWordDocument(plan);
-        String filename = switch (fileFormat) {
-	        case DOCX -> this.getPlanFileName(plan, ".docx");
-	        case PDF -> {
-		        bytes = this.pdfService.convertToPDF(bytes);
-		        yield this.getPlanFileName(plan, ".pdf");
-	        }
-	        default -> throw new MyApplicationException("Invalid type " + fileFormat);
-        };
-        
-        FileEnvelopeModel wordFile = new FileEnvelopeModel();
-        if (this.getConfiguration().isUseSharedStorage()) {
-            String fileRef = this.storageService.storeFile(bytes);
-            wordFile.setFileRef(fileRef);
-        } else {
-            wordFile.setFile(bytes);
+        String filename = this.getPlanExportFileName(plan, variant);
+        ExportTimings timings = this.exportMetricsService.start(PluginEntityType.Plan, fileFormat);
+        try (Admission admission = this.admissionService.admit(plan); DocumentSpool spool = this.openSpool(plan); XWPFDocument document = this.buildPlanWordDocument(plan, spool, timings)) {
+            return this.buildFileEnvelope(document, spool, fileFormat, filename, timings);
         }
-        wordFile.setFilename(filename);
-        return wordFile;
     }
 
     @Override
     public FileEnvelopeModel exportDescription(DescriptionModel descriptionModel, String variant) throws InvalidApplicationException, IOException {
         FileFormats fileFormat = FileFormats.of(variant);
-        byte[] bytes = this.buildDescriptionWordDocument(descriptionModel);
-        String filename = switch (fileFormat) {
+        String filename = this.getDescriptionExportFileName(descriptionModel, variant);
+        ExportTimings timings = this.exportMetricsService.start(PluginEntityType.Description, fileFormat);
+        try (Admission admission = this.admissionService.admit(descriptionModel); XWPFDocument document = this.buildDescriptionWordDocument(descriptionModel, timings)) {
+            return this.buildFileEnvelope(document, null, fileFormat, filename, timings);
+        }
+    }
+
+    public void writePlan(PlanModel plan, String variant, OutputStream outputStream) throws IOException, InvalidApplicationException {
+        FileFormats fileFormat = FileFormats.of(variant);
+        ExportTimings timings = this.exportMetricsService.start(PluginEntityType.Plan, fileFormat);
+        try (Admission admission = this.admissionService.admit(plan); DocumentSpool spool = this.openSpool(plan); XWPFDocument document = this.buildPlanWordDocument(plan, spool, timings)) {
+            this.exportMetricsService.record(timings, this.writeDocument(document, spool, fileFormat, outputStream, timings));
+        }
+    }
+
+    public void writeDescription(DescriptionModel descriptionModel, String variant, OutputStream outputStream) throws IOException {
+        FileFormats fileFormat = FileFormats.of(variant);
+        ExportTimings timings = this.exportMetricsService.start(PluginEntityType.Description, fileFormat);
+        try (Admission admission = this.admissionService.admit(descriptionModel); XWPFDocument document = this.buildDescriptionWordDocument(descriptionModel, timings)) {
+            this.exportMetricsService.record(timings, this.writeDocument(document, null, fileFormat, outputStream, timings));
+        }
+    }
+
+    public String getPlanExportFileName(PlanModel plan, String variant) {
+        FileFormats fileFormat = FileFormats.of(variant);
+        return switch (fileFormat) {
+            case DOCX -> this.getPlanFileName(plan, ".docx");
+            case PDF -> this.getPlanFileName(plan, ".pdf");
+            default -> throw new MyApplicationException("Invalid type " + fileFormat);
+        };
+    }
+
+    public String getDescriptionExportFileName(DescriptionModel descriptionModel, String variant) {
+        FileFormats fileFormat = FileFormats.of(variant);
+        return switch (fileFormat) {
             case DOCX -> this.getDescriptionFileName(descriptionModel, ".docx");
-            case PDF -> {
-                bytes = this.pdfService.convertToPDF(bytes);
-                yield this.getDescriptionFileName(descriptionModel, ".pdf");
-            }
+            case PDF -> this.getDescriptionFileName(descriptionModel, ".pdf");
             default -> throw new MyApplicationException("Invalid type " + fileFormat);
         };
+    }
 
+    /**
+     * @return a spool for the descriptions of the plan when it is large enough to be streamed, or null
+     */
+    private DocumentSpool openSpool(PlanModel plan) {
+        if (plan.getDescriptions() == null || !this.wordFileTransformerServiceProperties.getStreaming().isEnabledFor(plan.getDescriptions().size())) return null;
+        return new DocumentSpool(this.fileStorageService);
+    }
+
+    private FileEnvelopeModel buildFileEnvelope(XWPFDocument document, DocumentSpool spool, FileFormats fileFormat, String filename, ExportTimings timings) throws IOException {
         FileEnvelopeModel wordFile = new FileEnvelopeModel();
+        long outputBytes;
         if (this.getConfiguration().isUseSharedStorage()) {
-            String fileRef = this.storageService.storeFile(bytes);
+            // the document is written while it is stored, that part of the time is already counted as write and pdf
+            long nested = timings.getNanos(ExportPhase.WRITE) + timings.getNanos(ExportPhase.PDF);
+            long start = System.nanoTime();
+            String fileRef = this.storageService.storeFile(outputStream -> this.writeDocument(document, spool, fileFormat, outputStream, timings));
+            timings.add(ExportPhase.STORAGE, System.nanoTime() - start - (timings.getNanos(ExportPhase.WRITE) + timings.getNanos(ExportPhase.PDF) - nested));
+            outputBytes = this.storageService.fileSize(fileRef);
             wordFile.setFileRef(fileRef);
         } else {
-            wordFile.setFile(bytes);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            outputBytes = this.writeDocument(document, spool, fileFormat, out, timings);
+            wordFile.setFile(out.toByteArray());
         }
         wordFile.setFilename(filename);
+        this.exportMetricsService.record(timings, outputBytes);
         return wordFile;
     }
 
+    /**
+     * @return the number of bytes written to the output
+     */
+    private long writeDocument(XWPFDocument document, DocumentSpool spool, FileFormats fileFormat, OutputStream outputStream, ExportTimings timings) throws IOException {
+        StorageWriter writer = spool != null ? out -> spool.write(document, out) : document::write;
+        CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+        long start = System.nanoTime();
+        switch (fileFormat) {
+            case DOCX -> {
+                writer.write(countingOutputStream);
+                timings.record(ExportPhase.WRITE, start);
+            }
+            case PDF -> {
+                // the converter gets the docx from a temp file, the pdf it returns is streamed to the output
+                Path docxPath = this.fileStorageService.createTempFile(writer);
+                timings.record(ExportPhase.WRITE, start);
+                try {
+                    start = System.nanoTime();
+                    this.pdfService.convertToPDF(new FileSystemResource(docxPath), countingOutputStream);
+                    timings.record(ExportPhase.PDF, start);
+                } finally {
+                    this.fileStorageService.deleteTempFile(docxPath);
+                }
+            }
+            default -> throw new MyApplicationException("Invalid type " + fileFormat);
+        }
+        return countingOutputStream.getByteCount();
+    }
+
 
     @Override
     public PlanModel importPlan(PlanImportModel planImportModel) {
@@ -178,20 +260,10 @@ public class WordFileTransformerService implements FileTransformerClient {
         throw new MyApplicationException("preprocessing not supported");
     }
 
-    private List<ReferenceModel> getReferenceModelOfTypeCode(PlanModel plan, String code, UUID blueprintId){
-        List<ReferenceModel> response = new ArrayList<>();
-        if (plan.getReferences() == null) return response;
-        for (PlanReferenceModel planReferenceModel : plan.getReferences()){
-            if (planReferenceModel.getReference() != null && planReferenceModel.getReference().getType() != null && planReferenceModel.getReference().getType().getCode() != null  && planReferenceModel.getReference().getType().getCode().equals(code)){
-                if (blueprintId == null || (planReferenceModel.getData() != null && blueprintId.equals(planReferenceModel.getData().getBlueprintFieldId()))) response.add(planReferenceModel.getReference());
-                
-            }
-        }
-        return response;
-    }
-    
-
-    private byte[] buildPlanWordDocument(PlanModel planEntity) throws IOException, InvalidApplicationException {
+    /**
+     * @param spool where the descriptions are written instead of the document, or null to keep them in the document
+     */
+    private XWPFDocument buildPlanWordDocument(PlanModel planEntity, DocumentSpool spool, ExportTimings timings) throws IOException, InvalidApplicationException {
         if (planEntity == null) throw new MyApplicationException("planEntity required");
         PlanBlueprintModel planBlueprintModel = planEntity.getPlanBlueprint();
         if (planBlueprintModel == null) throw new MyApplicationException("PlanBlueprint required");
@@ -199,23 +271,26 @@ public class WordFileTransformerService implements FileTransformerClient {
         if (planBlueprintModel.getDefinition().getSections() == null) throw new MyApplicationException("PlanBlueprint Section required");
 
 
-        XWPFDocument document = null;
+        long start = System.nanoTime();
+        TemplateDocument template = null;
         if (planBlueprintModel.getDefinition().getPlugins() != null && !planBlueprintModel.getDefinition().getPlugins().isEmpty()) {
-            document = this.getCustomDocument(planBlueprintModel.getDefinition().getPlugins(), PluginEntityType.Plan);
+            template = this.getCustomDocument(planBlueprintModel.getDefinition().getPlugins(), PluginEntityType.Plan);
         }
-        if (document == null) {
-            try {
-                Resource resource = resourceLoader.getResource(this.wordFileTransformerServiceProperties.getWordPlanTemplate());
-                try(InputStream inputStream = resource.getInputStream()) {
-                    document = new XWPFDocument(inputStream);
-                }
-            } catch (Exception e) {
-                logger.error(e.getMessage(), e);
-                throw new RuntimeException(e);
-            }
+        if (template == null) {
+            template = this.templateCacheService.getDefaultTemplate(PluginEntityType.Plan);
+        } else {
+            timings.setTemplateSource(ExportTimings.TEMPLATE_CUSTOM);
         }
+        XWPFDocument document = template.getDocument();
+        timings.record(ExportPhase.TEMPLATE, start);
+        RenderContext context = new RenderContext(timings);
+        PlanIndex planIndex = PlanIndex.of(planEntity);
+
+        start = System.nanoTime();
+        SubstitutionTable substitutionTable = this.wordBuilder.buildSubstitutionTable(planEntity, null, template.getPlaceholderIndex().getReferenceTypeCodes());
 
-        this.wordBuilder.fillFirstPage(planEntity, null, document, false);
+        this.wordBuilder.fillFirstPage(substitutionTable, document, template.getPlaceholderIndex(), false, context);
+        timings.record(ExportPhase.FIRST_PAGE, start);
 
         int powered_pos = this.wordBuilder.findPosOfPoweredBy(document);
         XWPFParagraph powered_par = null;
@@ -225,9 +300,11 @@ public class WordFileTransformerService implements FileTransformerClient {
             argos_img_par = document.getParagraphArray(powered_pos + 1);
         }
 
+        start = System.nanoTime();
         for (SectionModel sectionModel : planBlueprintModel.getDefinition().getSections()) {
-            buildPlanSection(planEntity, sectionModel, document);
+            buildPlanSection(planEntity, planIndex, sectionModel, document, context, spool);
         }
+        timings.record(ExportPhase.SECTIONS, start);
 
         if (powered_pos != -1) {
             document.getLastParagraph().setPageBreak(false);
@@ -241,62 +318,64 @@ public class WordFileTransformerService implements FileTransformerClient {
             document.removeBodyElement(powered_pos + 1);
         }
 
-        this.wordBuilder.fillFooter(planEntity, null, document);
-        this.wordBuilder.fillHeader(planEntity, null, document);
+        start = System.nanoTime();
+        this.wordBuilder.fillFooter(substitutionTable, document, template.getPlaceholderIndex());
+        this.wordBuilder.fillHeader(substitutionTable, document, template.getPlaceholderIndex());
+        timings.record(ExportPhase.HEADER_FOOTER, start);
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        document.write(out);
-        byte[] bytes = out.toByteArray();
-        out.close();
-
-        return bytes;
+        return document;
     }
 
-    private void buildPlanSection(PlanModel planEntity, SectionModel sectionModel, XWPFDocument document) throws InvalidApplicationException {
-        this.wordBuilder.addParagraphContent(sectionModel.getOrdinal() + ". " + sectionModel.getLabel(), document, ParagraphStyle.HEADER1, BigInteger.ZERO, 0);
+    private void buildPlanSection(PlanModel planEntity, PlanIndex planIndex, SectionModel sectionModel, XWPFDocument document, RenderContext context, DocumentSpool spool) throws InvalidApplicationException {
+        this.wordBuilder.addParagraphContent(sectionModel.getOrdinal() + ". " + sectionModel.getLabel(), document, ParagraphStyle.HEADER1, BigInteger.ZERO, 0, context);
 
         if (sectionModel.getFields() != null) {
-            sectionModel.getFields().sort(Comparator.comparingInt(FieldModel::getOrdinal));
-            for (FieldModel fieldModel : sectionModel.getFields()) {
-                buildPlanSectionField(planEntity, document, fieldModel);
+            for (FieldModel fieldModel : sectionModel.getFields().stream().sorted(Comparator.comparingInt(FieldModel::getOrdinal)).toList()) {
+                buildPlanSectionField(planEntity, planIndex, document, fieldModel, context);
             }
         }
         
         final boolean isFinalized = planEntity.getStatus() != null && planEntity.getStatus().getInternalStatus() != null && planEntity.getStatus().getInternalStatus().equals(PlanStatus.Finalized);
         final boolean isPublic = planEntity.getPublicAfter() != null && planEntity.getPublicAfter().isAfter(Instant.now());
         
-        List<DescriptionModel> descriptions = planEntity.getDescriptions() == null ? new ArrayList<>() : planEntity.getDescriptions().stream()
+        List<DescriptionModel> descriptions = planIndex.getDescriptions(sectionModel.getId()).stream()
                 .filter(item -> item.getStatus() != null && (item.getStatus().getInternalStatus() == null || (item.getStatus().getInternalStatus() != null && item.getStatus().getInternalStatus() != DescriptionStatus.Canceled )))
                 .filter(item -> !isPublic && !isFinalized || (item.getStatus().getInternalStatus() != null && item.getStatus().getInternalStatus() == DescriptionStatus.Finalized))
-                .filter(item -> item.getSectionId().equals(sectionModel.getId()))
                 .sorted(Comparator.comparing(DescriptionModel::getCreatedAt)).toList();
         
         if (!descriptions.isEmpty()) {
-            buildSectionDescriptions(document, descriptions);
+            buildSectionDescriptions(document, descriptions, context, spool);
         }
     }
 
-    private void buildSectionDescriptions(XWPFDocument document, List<DescriptionModel> descriptions) {
+    private void buildSectionDescriptions(XWPFDocument document, List<DescriptionModel> descriptions, RenderContext context, DocumentSpool spool) {
         if (document == null) throw new MyApplicationException("Document required");
         if (descriptions == null) throw new MyApplicationException("Descriptions required");
 
         List<DescriptionTemplateModel> descriptionTemplateModels = descriptions.stream().map(DescriptionModel::getDescriptionTemplate).toList();
         if (descriptionTemplateModels.isEmpty()) return;
 
-        wordBuilder.addParagraphContent("Descriptions", document, ParagraphStyle.HEADER2, BigInteger.ZERO, 0);
+        wordBuilder.addParagraphContent("Descriptions", document, ParagraphStyle.HEADER2, BigInteger.ZERO, 0, context);
+        context.getTimings().addDescriptions(descriptions.size());
 //        for (DescriptionTemplateModel descriptionTemplateModelEntity : descriptionTemplateModels) {
 //            XWPFParagraph templateParagraph = document.createParagraph();
 //            XWPFRun runTemplateLabel = templateParagraph.createRun();
 //            runTemplateLabel.setText("• " + descriptionTemplateModelEntity.getLabel());
 //            runTemplateLabel.setColor("116a78");
 //        }
-        
-        for (DescriptionModel descriptionModel : descriptions){
-            buildSectionDescription(document, descriptionModel);
+
+        if (spool != null) {
+            this.fragmentRenderService.spool(document, context, descriptions, this::buildSectionDescription, spool);
+        } else if (this.fragmentRenderService.isEnabledFor(descriptions.size())) {
+            this.fragmentRenderService.render(document, context, descriptions, this::buildSectionDescription);
+        } else {
+            for (DescriptionModel descriptionModel : descriptions){
+                buildSectionDescription(document, descriptionModel, context);
+            }
         }
     }
 
-    private void buildSectionDescription(XWPFDocument document, DescriptionModel descriptionModel) {
+    private void buildSectionDescription(XWPFDocument document, DescriptionModel descriptionModel, RenderContext context) {
         if (document == null) throw new MyApplicationException("Document required");
         if (descriptionModel == null) throw new MyApplicationException("DescriptionModel required");
         
@@ -311,7 +390,7 @@ public class WordFileTransformerService implements FileTransformerClient {
         datasetDescriptionRun.setFontSize(15);
 
         XWPFParagraph descriptionParagraph = document.createParagraph();
-        wordBuilder.addParagraphContent(descriptionModel.getDescription(), document, ParagraphStyle.HTML, BigInteger.ZERO, 0);
+        wordBuilder.addParagraphContent(descriptionModel.getDescription(), document, ParagraphStyle.HTML, BigInteger.ZERO, 0, context);
 
 
         XWPFParagraph datasetTemplateParagraph = document.createParagraph();
@@ -334,7 +413,7 @@ public class WordFileTransformerService implements FileTransformerClient {
         document.createParagraph();
 
         try {
-            this.wordBuilder.build(document, descriptionModel.getDescriptionTemplate(), descriptionModel.getProperties(), new VisibilityServiceImpl(descriptionModel.getVisibilityStates()));
+            this.wordBuilder.build(document, descriptionModel.getDescriptionTemplate(), descriptionModel.getProperties(), new VisibilityServiceImpl(descriptionModel.getVisibilityStates()), context);
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
         }
@@ -344,25 +423,25 @@ public class WordFileTransformerService implements FileTransformerClient {
     }
 
 
-    private void buildPlanSectionField(PlanModel planEntity, XWPFDocument document, FieldModel fieldModel) throws InvalidApplicationException {
+    private void buildPlanSectionField(PlanModel planEntity, PlanIndex planIndex, XWPFDocument document, FieldModel fieldModel, RenderContext context) throws InvalidApplicationException {
         if (fieldModel == null) throw new MyApplicationException("Field required");
         if (fieldModel.getCategory() == null) throw new MyApplicationException("Field is required" + fieldModel.getId() + " " + fieldModel.getLabel());
         switch (fieldModel.getCategory()){
             case System -> {
-                buildPlanSectionSystemField(planEntity, document, (SystemFieldModel) fieldModel);
+                buildPlanSectionSystemField(planEntity, document, (SystemFieldModel) fieldModel, context);
             }
-            case Extra -> buildPlanSectionExtraField(planEntity, document, (ExtraFieldModel) fieldModel);
+            case Extra -> buildPlanSectionExtraField(planIndex, document, (ExtraFieldModel) fieldModel, context);
             case ReferenceType -> {
-                buildPlanSectionReferenceTypeField(planEntity, document, (ReferenceTypeFieldModel) fieldModel);
+                buildPlanSectionReferenceTypeField(planEntity, planIndex, document, (ReferenceTypeFieldModel) fieldModel);
             }
             case Upload -> {
-                buildPlanSectionUploadField(planEntity, document, (UploadFieldModel) fieldModel);
+                buildPlanSectionUploadField(planIndex, document, (UploadFieldModel) fieldModel, context);
             }
             default -> throw new MyApplicationException("Invalid type " + fieldModel.getCategory());
         }
     }
 
-    private void buildPlanSectionReferenceTypeField(PlanModel planEntity, XWPFDocument document, ReferenceTypeFieldModel referenceField) {
+    private void buildPlanSectionReferenceTypeField(PlanModel planEntity, PlanIndex planIndex, XWPFDocument document, ReferenceTypeFieldModel referenceField) {
         if (referenceField == null) throw new MyApplicationException("ReferenceField required");
         if (planEntity == null) throw new MyApplicationException("planEntity required");
         if (document == null) throw new MyApplicationException("Document required");
@@ -374,7 +453,7 @@ public class WordFileTransformerService implements FileTransformerClient {
         runSyStemFieldTitle.setText(this.getReferenceFieldLabel(referenceField) + ": ");
         runSyStemFieldTitle.setColor("000000");
 
-        List<ReferenceModel> referenceModels = this.getReferenceModelOfTypeCode(planEntity, referenceField.getReferenceType().getCode(), referenceField.getId());
+        List<ReferenceModel> referenceModels = planIndex.getReferences(referenceField.getReferenceType().getCode(), referenceField.getId());
         for (ReferenceModel reference : referenceModels) {
             XWPFRun runResearcher = systemFieldParagraph.createRun();
             if (this.wordFileTransformerServiceProperties.getResearcherReferenceCode().equalsIgnoreCase(referenceField.getReferenceType().getCode()) ||
@@ -386,7 +465,7 @@ public class WordFileTransformerService implements FileTransformerClient {
         }
     }
 
-    private void buildPlanSectionUploadField(PlanModel planEntity, XWPFDocument document, UploadFieldModel uploadFieldModel) {
+    private void buildPlanSectionUploadField(PlanIndex planIndex, XWPFDocument document, UploadFieldModel uploadFieldModel, RenderContext context) {
         if (uploadFieldModel == null) throw new MyApplicationException("UploadFieldModel required");
 
         XWPFParagraph uploadFieldParagraph = document.createParagraph();
@@ -395,7 +474,7 @@ public class WordFileTransformerService implements FileTransformerClient {
         runUploadFieldLabel.setText(uploadFieldModel.getLabel() + ": ");
         runUploadFieldLabel.setColor("000000");
 
-        PlanBlueprintValueModel planBlueprintValueModel = planEntity.getProperties() != null && planEntity.getProperties().getPlanBlueprintValues() != null ? planEntity.getProperties().getPlanBlueprintValues().stream().filter(x -> uploadFieldModel.getId().equals(x.getFieldId())).findFirst().orElse(null) : null;
+        PlanBlueprintValueModel planBlueprintValueModel = planIndex.getBlueprintValue(uploadFieldModel.getId());
         if (planBlueprintValueModel != null && planBlueprintValueModel.getValue() != null && !planBlueprintValueModel.getValue().isBlank()) {
             XWPFParagraph paragraph = document.createParagraph();
             paragraph.setPageBreak(true);
@@ -409,58 +488,25 @@ public class WordFileTransformerService implements FileTransformerClient {
                 String fileName = itemTyped.getFilename();
                 String fileType = itemTyped.getMimeType();
                 if (IMAGE_TYPE_MAP.containsKey(fileType)) {
-                    int format;
-                    format = IMAGE_TYPE_MAP.getOrDefault(fileType, 0);
-                    byte[] file;
+                    long start = System.nanoTime();
+                    ByteBuffer file;
                     if (this.wordFileTransformerServiceProperties.isUseSharedStorage() && itemTyped.getFileRef() != null && !itemTyped.getFileRef().isBlank()) {
-                        file = this.fileStorageService.readFile(itemTyped.getFileRef());
+                        file = this.fileStorageService.mapFile(itemTyped.getFileRef());
                     } else {
-                        file = itemTyped.getFile();
+                        file = itemTyped.getFile() != null ? ByteBuffer.wrap(itemTyped.getFile()) : null;
                     }
-                    InputStream image = new ByteArrayInputStream(file);
-                    ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(file));
-                    Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
-                    if (readers.hasNext()) {
-                        ImageReader reader = readers.next();
-                        reader.setInput(iis);
-
-                        int initialImageWidth = reader.getWidth(0);
-                        int initialImageHeight = reader.getHeight(0);
-
-                        float ratio = initialImageHeight / (float) initialImageWidth;
-
-                        int marginLeftInDXA = this.toIntFormBigInteger(document.getDocument().getBody().getSectPr().getPgMar().getLeft());
-                        int marginRightInDXA = this.toIntFormBigInteger(document.getDocument().getBody().getSectPr().getPgMar().getRight());
-                        int pageWidthInDXA = this.toIntFormBigInteger(document.getDocument().getBody().getSectPr().getPgSz().getW());
-                        int pageWidth = Math.round((pageWidthInDXA - marginLeftInDXA - marginRightInDXA) / (float) 20); // /20 converts dxa to points
-
-                        int imageWidth = Math.round(initialImageWidth * (float) 0.75);    // *0.75 converts pixels to points
-                        int width = Math.min(imageWidth, pageWidth);
-
-                        int marginTopInDXA =  this.toIntFormBigInteger(document.getDocument().getBody().getSectPr().getPgMar().getTop());
-                        int marginBottomInDXA = this.toIntFormBigInteger(document.getDocument().getBody().getSectPr().getPgMar().getBottom());
-                        int pageHeightInDXA = this.toIntFormBigInteger(document.getDocument().getBody().getSectPr().getPgSz().getH());
-                        int pageHeight = Math.round((pageHeightInDXA - marginTopInDXA - marginBottomInDXA) / (float) 20);    // /20 converts dxa to points
-
-                        int imageHeight = Math.round(initialImageHeight * ((float) 0.75));  // *0.75 converts pixels to points
-
-                        int height = Math.round(width * ratio);
-                        if (height > pageHeight) {
-                            // height calculated with ratio is too large. Image may have Portrait (vertical) orientation. Recalculate image dimensions.
-                            height = Math.min(imageHeight, pageHeight);
-                            width = Math.round(height / ratio);
-                        }
-
-                        run.addPicture(image, format, fileName, Units.toEMU(width), Units.toEMU(height));
+                    EmbeddedImage image = this.imageService.embed(run, file, fileType, fileName, document, context.getImageRegistry());
+                    if (image != null) {
+                        context.getTimings().imageEmbedded();
                         paragraph.setPageBreak(false);
-                        imageCount++;
                         XWPFParagraph captionParagraph = document.createParagraph();
                         captionParagraph.setAlignment(ParagraphAlignment.CENTER);
                         captionParagraph.setSpacingBefore(0);
                         captionParagraph.setStyle("Caption");
                         XWPFRun captionRun = captionParagraph.createRun();
-                        captionRun.setText("Image " + imageCount);
+                        captionRun.setText("Image " + context.nextImageNumber());
                     }
+                    context.getTimings().record(ExportPhase.IMAGES, start);
                 } else {
                     if(planBlueprintValueModel.getFile() != null && planBlueprintValueModel.getFile().getFilename() != null && !planBlueprintValueModel.getFile().getFilename().isBlank()) {
                         XWPFRun runUploadFieldInput = uploadFieldParagraph.createRun();
@@ -474,16 +520,6 @@ public class WordFileTransformerService implements FileTransformerClient {
         }
     }
 
-    private int toIntFormBigInteger(Object object){
-        try {
-            if (object instanceof BigInteger) return ((BigInteger) object).intValue();
-            return (int) object;
-        } catch (Exception e){
-            logger.error(e.getMessage(), e);
-            return 0;
-        }
-    }
-
     private String getReferenceFieldLabel(ReferenceTypeFieldModel referenceTypeField) {
         if (referenceTypeField == null) return "";
         if (referenceTypeField.getLabel() != null && !referenceTypeField.getLabel().isBlank()) return referenceTypeField.getLabel();
@@ -491,7 +527,7 @@ public class WordFileTransformerService implements FileTransformerClient {
         return referenceTypeField.getReferenceType().getName();
     }
 
-    private void buildPlanSectionSystemField(PlanModel planEntity, XWPFDocument document, SystemFieldModel systemField) {
+    private void buildPlanSectionSystemField(PlanModel planEntity, XWPFDocument document, SystemFieldModel systemField, RenderContext context) {
         if (systemField == null) throw new MyApplicationException("SystemField required");
         if (planEntity == null) throw new MyApplicationException("planEntity required");
         if (document == null) throw new MyApplicationException("Document required");
@@ -511,7 +547,7 @@ public class WordFileTransformerService implements FileTransformerClient {
                 runTitle.setColor("116a78");
                 break;
             case Description:
-                wordBuilder.addParagraphContent(planEntity.getDescription(), document, ParagraphStyle.HTML, BigInteger.ZERO, 0);
+                wordBuilder.addParagraphContent(planEntity.getDescription(), document, ParagraphStyle.HTML, BigInteger.ZERO, 0, context);
                 break;
             case AccessRights:
                 if (planEntity.getAccessType() != null) {
@@ -561,7 +597,7 @@ public class WordFileTransformerService implements FileTransformerClient {
 	    };
     }
 
-    private void buildPlanSectionExtraField(PlanModel planEntity, XWPFDocument document, ExtraFieldModel extraFieldModel) {
+    private void buildPlanSectionExtraField(PlanIndex planIndex, XWPFDocument document, ExtraFieldModel extraFieldModel, RenderContext context) {
         if (extraFieldModel == null) throw new MyApplicationException("ExtraFieldModel required");
         XWPFParagraph extraFieldParagraph = document.createParagraph();
         extraFieldParagraph.setSpacingBetween(1.0);
@@ -570,11 +606,11 @@ public class WordFileTransformerService implements FileTransformerClient {
         runExtraFieldLabel.setColor("000000");
 
         XWPFRun runExtraFieldInput = extraFieldParagraph.createRun();
-        PlanBlueprintValueModel planBlueprintValueModel = planEntity.getProperties() != null && planEntity.getProperties().getPlanBlueprintValues() != null ? planEntity.getProperties().getPlanBlueprintValues().stream().filter(x -> extraFieldModel.getId().equals(x.getFieldId())).findFirst().orElse(null) : null;
+        PlanBlueprintValueModel planBlueprintValueModel = planIndex.getBlueprintValue(extraFieldModel.getId());
         if (planBlueprintValueModel != null) {
             switch (extraFieldModel.getDataType()) {
                 case RichTex:
-                    if(planBlueprintValueModel.getValue() != null && !planBlueprintValueModel.getValue().isBlank()) wordBuilder.addParagraphContent(planBlueprintValueModel.getValue(), document, ParagraphStyle.HTML, BigInteger.ZERO, 0);
+                    if(planBlueprintValueModel.getValue() != null && !planBlueprintValueModel.getValue().isBlank()) wordBuilder.addParagraphContent(planBlueprintValueModel.getValue(), document, ParagraphStyle.HTML, BigInteger.ZERO, 0, context);
                     break;
                 case Number:
                     if(planBlueprintValueModel.getNumberValue() != null) {
@@ -603,13 +639,18 @@ public class WordFileTransformerService implements FileTransformerClient {
     private String getPlanFileName(PlanModel planModel, String extension){
         if (planModel == null) throw new MyApplicationException("PlanEntity required");
 
-        List<ReferenceModel> grants = this.getReferenceModelOfTypeCode(planModel, this.wordFileTransformerServiceProperties.getGrantReferenceCode(), null);
         String fileName = null;
         if (planModel.getLabel() != null){
             return planModel.getLabel() + extension;
         }
-        if (!grants.isEmpty() && grants.getFirst().getLabel() != null) {
-            fileName = "PLAN_" + grants.getFirst().getLabel();
+        // only the first grant is needed, the plan is not indexed for it
+        String grantReferenceCode = this.wordFileTransformerServiceProperties.getGrantReferenceCode();
+        ReferenceModel grant = planModel.getReferences() == null ? null : planModel.getReferences().stream()
+                .map(PlanReferenceModel::getReference)
+                .filter(x -> x != null && x.getType() != null && x.getType().getCode() != null && x.getType().getCode().equals(grantReferenceCode))
+                .findFirst().orElse(null);
+        if (grant != null && grant.getLabel() != null) {
+            fileName = "PLAN_" + grant.getLabel();
             fileName += "_" + planModel.getVersion();
 
         }
@@ -617,30 +658,34 @@ public class WordFileTransformerService implements FileTransformerClient {
         return fileName + extension;
     }
 
-    private byte[] buildDescriptionWordDocument(DescriptionModel descriptionModel) throws IOException {
+    private XWPFDocument buildDescriptionWordDocument(DescriptionModel descriptionModel, ExportTimings timings) throws IOException {
         if (descriptionModel == null) throw new MyApplicationException("DescriptionEntity required");
         PlanModel planEntity = descriptionModel.getPlan();
         if (planEntity == null)  throw new MyApplicationException("plan is invalid");
 
-        XWPFDocument document = null;
+        long start = System.nanoTime();
+        TemplateDocument template = null;
         if (descriptionModel.getDescriptionTemplate() != null && descriptionModel.getDescriptionTemplate().getDefinition().getPlugins() != null && !descriptionModel.getDescriptionTemplate().getDefinition().getPlugins().isEmpty()) {
-            document = this.getCustomDocument(descriptionModel.getDescriptionTemplate().getDefinition().getPlugins(), PluginEntityType.Description);
+            template = this.getCustomDocument(descriptionModel.getDescriptionTemplate().getDefinition().getPlugins(), PluginEntityType.Description);
         }
-        if (document == null) {
-            try {
-                Resource resource = resourceLoader.getResource(this.wordFileTransformerServiceProperties.getWordDescriptionTemplate());
-                try(InputStream inputStream = resource.getInputStream()) {
-                    document = new XWPFDocument(inputStream);
-                }
-            } catch (Exception e) {
-                logger.error(e.getMessage(), e);
-                throw new RuntimeException(e);
-            }
+        if (template == null) {
+            template = this.templateCacheService.getDefaultTemplate(PluginEntityType.Description);
+        } else {
+            timings.setTemplateSource(ExportTimings.TEMPLATE_CUSTOM);
         }
+        XWPFDocument document = template.getDocument();
+        timings.record(ExportPhase.TEMPLATE, start);
+        RenderContext context = new RenderContext(timings);
 
-        this.wordBuilder.fillFirstPage(planEntity, descriptionModel, document, true);
-        this.wordBuilder.fillFooter(planEntity, descriptionModel, document);
-        this.wordBuilder.fillHeader(planEntity, descriptionModel, document);
+        start = System.nanoTime();
+        SubstitutionTable substitutionTable = this.wordBuilder.buildSubstitutionTable(planEntity, descriptionModel, template.getPlaceholderIndex().getReferenceTypeCodes());
+        this.wordBuilder.fillFirstPage(substitutionTable, document, template.getPlaceholderIndex(), true, context);
+        timings.record(ExportPhase.FIRST_PAGE, start);
+
+        start = System.nanoTime();
+        this.wordBuilder.fillFooter(substitutionTable, document, template.getPlaceholderIndex());
+        this.wordBuilder.fillHeader(substitutionTable, document, template.getPlaceholderIndex());
+        timings.record(ExportPhase.HEADER_FOOTER, start);
 
         int powered_pos = this.wordBuilder.findPosOfPoweredBy(document);
         XWPFParagraph powered_par = null;
@@ -650,7 +695,10 @@ public class WordFileTransformerService implements FileTransformerClient {
             argos_img_par = document.getParagraphArray(powered_pos + 1);
         }
 
-        this.wordBuilder.build(document, descriptionModel.getDescriptionTemplate(), descriptionModel.getProperties(), new VisibilityServiceImpl(descriptionModel.getVisibilityStates()));
+        start = System.nanoTime();
+        this.wordBuilder.build(document, descriptionModel.getDescriptionTemplate(), descriptionModel.getProperties(), new VisibilityServiceImpl(descriptionModel.getVisibilityStates()), context);
+        timings.record(ExportPhase.SECTIONS, start);
+        timings.addDescriptions(1);
         
         if(powered_pos != -1) {
             document.getLastParagraph().setPageBreak(false);
@@ -664,12 +712,7 @@ public class WordFileTransformerService implements FileTransformerClient {
             document.removeBodyElement(powered_pos + 1);
         }
         
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        document.write(out);
-        byte[] bytes = out.toByteArray();
-        out.close();
-
-        return bytes;
+        return document;
     }
 
     private String getDescriptionFileName(DescriptionModel descriptionModel, String extension){
@@ -679,7 +722,7 @@ public class WordFileTransformerService implements FileTransformerClient {
         return fileName + extension;
     }
 
-    private XWPFDocument getCustomDocument(List<PluginModel> plugins, PluginEntityType entityType) {
+    private TemplateDocument getCustomDocument(List<PluginModel> plugins, PluginEntityType entityType) {
         try {
             if (plugins != null && !plugins.isEmpty()) {
                 PluginModel plugin = plugins.stream().filter(x -> x.getCode().equals(this.wordFileTransformerServiceProperties.getTransformerId()) && x.getType().equals(PluginType.FileTransformer)).findFirst().orElse(null);
@@ -689,7 +732,7 @@ public class WordFileTransformerService implements FileTransformerClient {
                         if (!filteredConfigurationFields.isEmpty()) {
                             PluginFieldModel field = plugin.getFields().stream().filter(y -> y.getFile() != null && filteredConfigurationFields.stream().map(ConfigurationField::getCode).toList().contains(y.getCode())).findFirst().orElse(null);
                             if (field != null && field.getFile() != null && field.getFile().getFile() != null) {
-                                return new XWPFDocument(new ByteArrayInputStream(field.getFile().getFile()));
+                                return this.templateCacheService.getCustomTemplate(field.getFile().getFile());
                             }
                         }
                     }
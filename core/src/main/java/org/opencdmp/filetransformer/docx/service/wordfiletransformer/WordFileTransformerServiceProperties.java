@@ -21,6 +21,12 @@ public class WordFileTransformerServiceProperties {
 	private String languages;
 	private List<ConfigurationField> configurationFields;
 	private List<ConfigurationField> userConfigurationFields;
+	private CustomTemplateCache customTemplateCache = new CustomTemplateCache();
+	private RichTextCache richTextCache = new RichTextCache();
+	private RenderPlanCache renderPlanCache = new RenderPlanCache();
+	private Images images = new Images();
+	private ParallelDescriptions parallelDescriptions = new ParallelDescriptions();
+	private Streaming streaming = new Streaming();
 
 	public String getTransformerId() {
 		return transformerId;
@@ -133,4 +139,264 @@ public class WordFileTransformerServiceProperties {
 	public void setUserConfigurationFields(List<ConfigurationField> userConfigurationFields) {
 		this.userConfigurationFields = userConfigurationFields;
 	}
+
+	public CustomTemplateCache getCustomTemplateCache() {
+		return customTemplateCache;
+	}
+
+	public void setCustomTemplateCache(CustomTemplateCache customTemplateCache) {
+		this.customTemplateCache = customTemplateCache;
+	}
+
+	public RichTextCache getRichTextCache() {
+		return richTextCache;
+	}
+
+	public void setRichTextCache(RichTextCache richTextCache) {
+		this.richTextCache = richTextCache;
+	}
+
+	public RenderPlanCache getRenderPlanCache() {
+		return renderPlanCache;
+	}
+
+	public void setRenderPlanCache(RenderPlanCache renderPlanCache) {
+		this.renderPlanCache = renderPlanCache;
+	}
+
+	public Images getImages() {
+		return images;
+	}
+
+	public void setImages(Images images) {
+		this.images = images;
+	}
+
+	public ParallelDescriptions getParallelDescriptions() {
+		return parallelDescriptions;
+	}
+
+	public void setParallelDescriptions(ParallelDescriptions parallelDescriptions) {
+		this.parallelDescriptions = parallelDescriptions;
+	}
+
+	public Streaming getStreaming() {
+		return streaming;
+	}
+
+	public void setStreaming(Streaming streaming) {
+		this.streaming = streaming;
+	}
+
+	public static class CustomTemplateCache {
+		private long maximumWeightInBytes = 64 * 1024 * 1024;
+		private long expireAfterAccessMinutes = 60;
+		private boolean enableRecordStats = true;
+
+		public long getMaximumWeightInBytes() {
+			return maximumWeightInBytes;
+		}
+
+		public void setMaximumWeightInBytes(long maximumWeightInBytes) {
+			this.maximumWeightInBytes = maximumWeightInBytes;
+		}
+
+		public long getExpireAfterAccessMinutes() {
+			return expireAfterAccessMinutes;
+		}
+
+		public void setExpireAfterAccessMinutes(long expireAfterAccessMinutes) {
+			this.expireAfterAccessMinutes = expireAfterAccessMinutes;
+		}
+
+		public boolean isEnableRecordStats() {
+			return enableRecordStats;
+		}
+
+		public void setEnableRecordStats(boolean enableRecordStats) {
+			this.enableRecordStats = enableRecordStats;
+		}
+	}
+
+	public static class RichTextCache {
+		private boolean enabled = true;
+		private long maximumWeightInBytes = 32 * 1024 * 1024;
+		private long expireAfterAccessMinutes = 60;
+		private boolean enableRecordStats = true;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public long getMaximumWeightInBytes() {
+			return maximumWeightInBytes;
+		}
+
+		public void setMaximumWeightInBytes(long maximumWeightInBytes) {
+			this.maximumWeightInBytes = maximumWeightInBytes;
+		}
+
+		public long getExpireAfterAccessMinutes() {
+			return expireAfterAccessMinutes;
+		}
+
+		public void setExpireAfterAccessMinutes(long expireAfterAccessMinutes) {
+			this.expireAfterAccessMinutes = expireAfterAccessMinutes;
+		}
+
+		public boolean isEnableRecordStats() {
+			return enableRecordStats;
+		}
+
+		public void setEnableRecordStats(boolean enableRecordStats) {
+			this.enableRecordStats = enableRecordStats;
+		}
+	}
+
+	public static class RenderPlanCache {
+		private boolean enabled = true;
+		private long maximumSize = 1000;
+		private long expireAfterAccessMinutes = 60;
+		private boolean enableRecordStats = true;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public long getMaximumSize() {
+			return maximumSize;
+		}
+
+		public void setMaximumSize(long maximumSize) {
+			this.maximumSize = maximumSize;
+		}
+
+		public long getExpireAfterAccessMinutes() {
+			return expireAfterAccessMinutes;
+		}
+
+		public void setExpireAfterAccessMinutes(long expireAfterAccessMinutes) {
+			this.expireAfterAccessMinutes = expireAfterAccessMinutes;
+		}
+
+		public boolean isEnableRecordStats() {
+			return enableRecordStats;
+		}
+
+		public void setEnableRecordStats(boolean enableRecordStats) {
+			this.enableRecordStats = enableRecordStats;
+		}
+	}
+
+	public static class Images {
+		private boolean downscaleEnabled = true;
+		private int maxDpi = 150;
+		private float jpegQuality = 0.85f;
+
+		public boolean isDownscaleEnabled() {
+			return downscaleEnabled;
+		}
+
+		public void setDownscaleEnabled(boolean downscaleEnabled) {
+			this.downscaleEnabled = downscaleEnabled;
+		}
+
+		public int getMaxDpi() {
+			return maxDpi;
+		}
+
+		public void setMaxDpi(int maxDpi) {
+			this.maxDpi = maxDpi;
+		}
+
+		public float getJpegQuality() {
+			return jpegQuality;
+		}
+
+		public void setJpegQuality(float jpegQuality) {
+			this.jpegQuality = jpegQuality;
+		}
+	}
+
+	public static class ParallelDescriptions {
+		private boolean enabled = false;
+		private int threads = 0;
+		private int minDescriptions = 4;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		/**
+		 * @return the size of the pool rendering descriptions, shared by all exports, or 0 for the number of processors
+		 */
+		public int getThreads() {
+			return threads;
+		}
+
+		public void setThreads(int threads) {
+			this.threads = threads;
+		}
+
+		/**
+		 * @return the configured size of the pool, or the number of processors when it is not set
+		 */
+		public int getPoolSize() {
+			return this.threads > 0 ? this.threads : Runtime.getRuntime().availableProcessors();
+		}
+
+		/**
+		 * @return the number of descriptions of a plan section below which they are rendered in the plan document directly
+		 */
+		public int getMinDescriptions() {
+			return minDescriptions;
+		}
+
+		public void setMinDescriptions(int minDescriptions) {
+			this.minDescriptions = minDescriptions;
+		}
+	}
+
+	public static class Streaming {
+		private boolean enabled = false;
+		private int minDescriptions = 200;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		/**
+		 * @return the number of descriptions of a plan from which its descriptions are spooled to temp files instead of kept in the document
+		 */
+		public int getMinDescriptions() {
+			return minDescriptions;
+		}
+
+		public void setMinDescriptions(int minDescriptions) {
+			this.minDescriptions = minDescriptions;
+		}
+
+		/**
+		 * @return whether the descriptions of a plan with that many descriptions are spooled
+		 */
+		public boolean isEnabledFor(int descriptions) {
+			return this.enabled && descriptions >= this.minDescriptions;
+		}
+	}
 }
@@ -0,0 +1,197 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.fragment;
+
+import gr.cite.tools.exception.MyApplicationException;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.opencdmp.filetransformer.docx.service.storage.FileStorageService;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTBookmark;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.*;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Body content of a document kept in temp files instead of the document, for plans too large to hold whole in memory.
+ * Each spooled fragment leaves a placeholder paragraph with a {@code _opencdmp_spool_<n>} bookmark in the document; when the document
+ * is written, its word/document.xml is streamed with StAX and every placeholder is replaced with the xml of its spool file.
+ * The other parts of the package (styles, numbering, headers, footers, pictures) are the ones of the document, copied as they are.
+ * A spool belongs to one document, is not thread safe and deletes its temp files when closed.
+ */
+public class DocumentSpool implements Closeable {
+    private static final String BOOKMARK_PREFIX = "_opencdmp_spool_";
+    private static final String DOCUMENT_ENTRY = "word/document.xml";
+    private static final String WORDPROCESSINGML_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final QName PARAGRAPH = new QName(WORDPROCESSINGML_NS, "p");
+    private static final QName BOOKMARK_START = new QName(WORDPROCESSINGML_NS, "bookmarkStart");
+    private static final QName NAME = new QName(WORDPROCESSINGML_NS, "name");
+    private static final String SPOOL_ROOT = "spool";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+
+    private final FileStorageService fileStorageService;
+    private final List<Path> files;
+
+    public DocumentSpool(FileStorageService fileStorageService) {
+        this.fileStorageService = fileStorageService;
+        this.files = new ArrayList<>();
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Writes the body elements to a spool file and appends their placeholder to the document. A last paragraph is appended to the
+     * document itself, after the placeholder, so that the last paragraph of the document stays a real one for the code that adjusts it.
+     * @param body paragraphs and tables already remapped to the document
+     */
+    void append(XWPFDocument document, List<XmlObject> body) {
+        CTP last = !body.isEmpty() && body.getLast() instanceof CTP ctp ? ctp : null;
+        List<XmlObject> spooled = last != null ? body.subList(0, body.size() - 1) : body;
+        if (!spooled.isEmpty()) {
+            XmlOptions options = new XmlOptions().setSaveOuter().setSaveNoXmlDecl();
+            Path file = this.fileStorageService.createTempFile(outputStream -> {
+                outputStream.write(("<" + SPOOL_ROOT + ">").getBytes(StandardCharsets.UTF_8));
+                for (XmlObject xml : spooled) xml.save(CloseShieldOutputStream.wrap(outputStream), options);
+                outputStream.write(("</" + SPOOL_ROOT + ">").getBytes(StandardCharsets.UTF_8));
+            });
+            int index = this.files.size();
+            this.files.add(file);
+
+            XWPFParagraph placeholder = document.createParagraph();
+            CTBookmark bookmark = placeholder.getCTP().addNewBookmarkStart();
+            bookmark.setId(BigInteger.valueOf(index));
+            bookmark.setName(BOOKMARK_PREFIX + index);
+        }
+        if (last != null) document.createParagraph().getCTP().set(last);
+    }
+
+    public int size() {
+        return this.files.size();
+    }
+
+    /**
+     * Writes the document with the spooled content in place of the placeholders. The output stream is not closed.
+     */
+    public void write(XWPFDocument document, OutputStream outputStream) throws IOException {
+        Path docx = this.fileStorageService.createTempFile(document::write);
+        try (ZipFile zipFile = ZipFile.builder().setPath(docx).get()) {
+            ZipArchiveOutputStream output = new ZipArchiveOutputStream(CloseShieldOutputStream.wrap(outputStream));
+            for (ZipArchiveEntry entry : Collections.list(zipFile.getEntriesInPhysicalOrder())) {
+                if (DOCUMENT_ENTRY.equals(entry.getName())) {
+                    output.putArchiveEntry(new ZipArchiveEntry(DOCUMENT_ENTRY));
+                    try (InputStream input = zipFile.getInputStream(entry)) {
+                        this.writeBody(input, CloseShieldOutputStream.wrap(output));
+                    }
+                    output.closeArchiveEntry();
+                } else {
+                    output.addRawArchiveEntry(entry, zipFile.getRawInputStream(entry));
+                }
+            }
+            output.finish();
+        } finally {
+            this.fileStorageService.deleteTempFile(docx);
+        }
+    }
+
+    private void writeBody(InputStream input, OutputStream output) throws IOException {
+        try {
+            XMLEventReader reader = XML_INPUT_FACTORY.createXMLEventReader(input);
+            XMLEventWriter writer = XML_OUTPUT_FACTORY.createXMLEventWriter(output, StandardCharsets.UTF_8.name());
+            // paragraphs are buffered until their end, as the placeholder bookmark is inside them
+            List<XMLEvent> paragraph = null;
+            int depth = 0;
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (paragraph == null && event.isStartElement() && PARAGRAPH.equals(event.asStartElement().getName())) {
+                    paragraph = new ArrayList<>();
+                    depth = 0;
+                }
+                if (paragraph == null) {
+                    writer.add(event);
+                    continue;
+                }
+                paragraph.add(event);
+                if (event.isStartElement()) {
+                    depth++;
+                } else if (event.isEndElement() && --depth == 0) {
+                    int index = this.placeholderIndex(paragraph);
+                    if (index >= 0) this.writeSpool(this.files.get(index), writer);
+                    else for (XMLEvent paragraphEvent : paragraph) writer.add(paragraphEvent);
+                    paragraph = null;
+                }
+            }
+            writer.flush();
+            writer.close();
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("could not write spooled document body", e);
+        }
+    }
+
+    private int placeholderIndex(List<XMLEvent> paragraph) {
+        for (XMLEvent event : paragraph) {
+            if (!event.isStartElement() || !BOOKMARK_START.equals(event.asStartElement().getName())) continue;
+            Attribute name = event.asStartElement().getAttributeByName(NAME);
+            if (name == null || !name.getValue().startsWith(BOOKMARK_PREFIX)) continue;
+            try {
+                int index = Integer.parseInt(name.getValue().substring(BOOKMARK_PREFIX.length()));
+                if (index >= 0 && index < this.files.size()) return index;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private void writeSpool(Path file, XMLEventWriter writer) throws IOException, XMLStreamException {
+        try (InputStream input = Files.newInputStream(file)) {
+            XMLEventReader reader = XML_INPUT_FACTORY.createXMLEventReader(input);
+            int depth = 0;
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartDocument() || event.isEndDocument()) continue;
+                if (event.isStartElement()) {
+                    StartElement startElement = event.asStartElement();
+                    if (depth++ == 0 && SPOOL_ROOT.equals(startElement.getName().getLocalPart())) continue;
+                } else if (event.isEndElement()) {
+                    if (--depth == 0) continue;
+                } else if (depth <= 1 && event.isCharacters() && event.asCharacters().isWhiteSpace()) {
+                    continue;
+                }
+                writer.add(event);
+            }
+            reader.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Path file : this.files) this.fileStorageService.deleteTempFile(file);
+        this.files.clear();
+    }
+}
@@ -0,0 +1,25 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.fragment;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.RenderContext;
+
+import java.util.List;
+
+public interface FragmentRenderService {
+	/**
+	 * @return whether that many items are rendered in parallel, as configured by {@code parallelDescriptions}
+	 */
+	boolean isEnabledFor(int count);
+
+	/**
+	 * Writes every item to its own fragment document on the fragment pool and appends the fragments to the document in item order,
+	 * as if the items had been written to the document one after another.
+	 */
+	<T> void render(XWPFDocument document, RenderContext context, List<T> items, FragmentWriter<T> writer);
+
+	/**
+	 * Same as {@link #render(XWPFDocument, RenderContext, List, FragmentWriter)}, but the fragments are written to the spool instead of the document.
+	 * Items are rendered on the calling thread when parallel rendering is not enabled.
+	 */
+	<T> void spool(XWPFDocument document, RenderContext context, List<T> items, FragmentWriter<T> writer, DocumentSpool spool);
+}
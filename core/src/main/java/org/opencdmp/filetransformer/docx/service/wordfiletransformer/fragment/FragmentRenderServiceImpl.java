@@ -0,0 +1,151 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.fragment;
+
+import gr.cite.tools.exception.MyApplicationException;
+import gr.cite.tools.logging.LoggerService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerServiceProperties;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.metrics.ExportTimings;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.RenderContext;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSectPr;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Fragments are blank documents with the page setup of the target document, so that images are sized as they would be in it,
+ * rendered with their own {@link RenderContext}. They are spliced, or spooled, in item order as soon as each is ready, while later ones are still rendering.
+ */
+@Component
+public class FragmentRenderServiceImpl implements FragmentRenderService {
+    private static final LoggerService logger = new LoggerService(LoggerFactory.getLogger(FragmentRenderServiceImpl.class));
+
+    private static final String METRIC_RENDER = "docx.fragments.render";
+    private static final String METRIC_SPLICE = "docx.fragments.splice";
+
+    private final WordFileTransformerServiceProperties.ParallelDescriptions properties;
+    private final ExecutorService executor;
+    private final int threads;
+    private final Timer renderTimer;
+    private final Timer spliceTimer;
+
+    public FragmentRenderServiceImpl(WordFileTransformerServiceProperties wordFileTransformerServiceProperties, MeterRegistry meterRegistry) {
+        this.properties = wordFileTransformerServiceProperties.getParallelDescriptions();
+        if (this.properties.isEnabled()) {
+            this.threads = this.properties.getPoolSize();
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(this.threads, runnable -> {
+                Thread thread = new Thread(runnable, "docx-fragment-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.threads = 1;
+            this.executor = null;
+        }
+        this.renderTimer = Timer.builder(METRIC_RENDER).register(meterRegistry);
+        this.spliceTimer = Timer.builder(METRIC_SPLICE).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (this.executor != null) this.executor.shutdownNow();
+    }
+
+    @Override
+    public boolean isEnabledFor(int count) {
+        return this.executor != null && count >= Math.max(1, this.properties.getMinDescriptions());
+    }
+
+    @Override
+    public <T> void render(XWPFDocument document, RenderContext context, List<T> items, FragmentWriter<T> writer) {
+        if (this.executor == null) throw new MyApplicationException("parallel rendering is not enabled");
+        FragmentSplicer splicer = new FragmentSplicer(document, context);
+        this.process(document, context, items, writer, fragment -> this.spliceTimer.record(() -> splicer.splice(fragment)));
+    }
+
+    @Override
+    public <T> void spool(XWPFDocument document, RenderContext context, List<T> items, FragmentWriter<T> writer, DocumentSpool spool) {
+        FragmentSplicer splicer = new FragmentSplicer(document, context);
+        this.process(document, context, items, writer, fragment -> this.spliceTimer.record(() -> spool.append(document, splicer.prepare(fragment))));
+    }
+
+    /**
+     * Hands the fragments to the sink in item order. At most as many fragments as there are pool threads are rendered ahead of
+     * the one the sink is waiting for, so that the fragments in memory are bounded by the pool and not by the number of items.
+     */
+    private <T> void process(XWPFDocument document, RenderContext context, List<T> items, FragmentWriter<T> writer, Consumer<XWPFDocument> sink) {
+        CTSectPr sectPr = document.getDocument().getBody().getSectPr();
+        Locale locale = LocaleContextHolder.getLocale();
+        ExportTimings timings = context.getTimings();
+        if (this.executor == null) {
+            for (T item : items) this.consume(this.renderFragment(item, writer, sectPr != null ? (CTSectPr) sectPr.copy() : null, locale, timings), sink);
+            return;
+        }
+
+        Iterator<T> iterator = items.iterator();
+        Deque<Future<XWPFDocument>> pending = new ArrayDeque<>();
+        try {
+            while (iterator.hasNext() || !pending.isEmpty()) {
+                while (iterator.hasNext() && pending.size() < this.threads) {
+                    T item = iterator.next();
+                    // copied here, as the target document is modified by the sink while fragments render
+                    CTSectPr fragmentSectPr = sectPr != null ? (CTSectPr) sectPr.copy() : null;
+                    pending.add(this.executor.submit(() -> this.renderFragment(item, writer, fragmentSectPr, locale, timings)));
+                }
+                this.consume(this.await(pending.poll()), sink);
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private void consume(XWPFDocument fragment, Consumer<XWPFDocument> sink) {
+        try (fragment) {
+            sink.accept(fragment);
+        } catch (IOException e) {
+            logger.warn("could not close fragment: " + e.getMessage());
+        }
+    }
+
+    private <T> XWPFDocument renderFragment(T item, FragmentWriter<T> writer, CTSectPr sectPr, Locale locale, ExportTimings timings) {
+        LocaleContextHolder.setLocale(locale);
+        Timer.Sample sample = Timer.start();
+        try {
+            XWPFDocument fragment = new XWPFDocument();
+            if (sectPr != null) fragment.getDocument().getBody().setSectPr(sectPr);
+            writer.write(fragment, item, new RenderContext(timings));
+            return fragment;
+        } finally {
+            sample.stop(this.renderTimer);
+            LocaleContextHolder.resetLocaleContext();
+        }
+    }
+
+    private XWPFDocument await(Future<XWPFDocument> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MyApplicationException("fragment rendering interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new MyApplicationException(e.getCause().getMessage());
+        }
+    }
+}
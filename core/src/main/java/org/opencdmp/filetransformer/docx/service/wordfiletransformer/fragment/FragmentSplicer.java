@@ -0,0 +1,129 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.fragment;
+
+import gr.cite.tools.exception.MyApplicationException;
+import gr.cite.tools.logging.LoggerService;
+import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.TargetMode;
+import org.apache.poi.xwpf.usermodel.*;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.RenderContext;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTTbl;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.namespace.QName;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Appends the body of fragment documents to a document. Relationship ids (pictures, hyperlinks) and list numbering ids of the
+ * fragment are remapped to ones of the document and image captions are renumbered in document order. Styles are referenced by id
+ * and fragments have no styles part of their own, so paragraphs keep the styles of the document they are spliced into.
+ * The wrappers of the appended paragraphs and tables are created before their content is copied, so they expose the xml but not the runs and rows.
+ * A splicer is bound to one document and, like its {@link RenderContext}, is not thread safe.
+ */
+class FragmentSplicer {
+    private static final LoggerService logger = new LoggerService(LoggerFactory.getLogger(FragmentSplicer.class));
+
+    private static final String WORDPROCESSINGML_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final String RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final QName NUM_ID = new QName(WORDPROCESSINGML_NS, "numId");
+    private static final QName VAL = new QName(WORDPROCESSINGML_NS, "val");
+    private static final String CAPTION_STYLE = "Caption";
+    private static final Pattern IMAGE_CAPTION = Pattern.compile("Image \\d+");
+
+    private final XWPFDocument document;
+    private final RenderContext context;
+
+    FragmentSplicer(XWPFDocument document, RenderContext context) {
+        this.document = document;
+        this.context = context;
+    }
+
+    void splice(XWPFDocument fragment) {
+        for (XmlObject xml : this.prepare(fragment)) {
+            if (xml instanceof CTP ctp) this.document.createParagraph().getCTP().set(ctp);
+            else if (xml instanceof CTTbl ctTbl) this.document.createTable().getCTTbl().set(ctTbl);
+        }
+    }
+
+    /**
+     * Imports the pictures, hyperlinks and lists of the fragment to the document and remaps the fragment body to them, in place.
+     * @return the xml of the paragraphs and tables of the fragment body, in order
+     */
+    List<XmlObject> prepare(XWPFDocument fragment) {
+        Map<BigInteger, BigInteger> numIds = this.context.getNumberingRegistry().importNumbering(this.document, fragment.getNumbering());
+        Map<String, String> relationIds = new HashMap<>();
+        List<XmlObject> body = new ArrayList<>(fragment.getBodyElements().size());
+        for (IBodyElement element : fragment.getBodyElements()) {
+            if (element instanceof XWPFParagraph paragraph) {
+                this.remap(paragraph.getCTP(), fragment, numIds, relationIds);
+                this.renumberCaption(paragraph);
+                body.add(paragraph.getCTP());
+            } else if (element instanceof XWPFTable table) {
+                this.remap(table.getCTTbl(), fragment, numIds, relationIds);
+                body.add(table.getCTTbl());
+            } else {
+                logger.warn("fragment element of type " + element.getElementType() + " not spliced");
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Rewrites, in place, the attributes in the relationships namespace (r:id, r:embed, r:link) and the list numbering ids under the given element.
+     */
+    private void remap(XmlObject xml, XWPFDocument fragment, Map<BigInteger, BigInteger> numIds, Map<String, String> relationIds) {
+        try (XmlCursor cursor = xml.newCursor()) {
+            int depth = 0;
+            do {
+                XmlCursor.TokenType token = cursor.currentTokenType();
+                if (token.isStart()) {
+                    depth++;
+                    if (NUM_ID.equals(cursor.getName())) {
+                        String value = cursor.getAttributeText(VAL);
+                        BigInteger numId = value != null ? numIds.get(new BigInteger(value)) : null;
+                        if (numId != null) cursor.setAttributeText(VAL, numId.toString());
+                    }
+                } else if (token.isEnd()) {
+                    depth--;
+                } else if (token.isAttr() && RELATIONSHIPS_NS.equals(cursor.getName().getNamespaceURI())) {
+                    String relationId = relationIds.computeIfAbsent(cursor.getTextValue(), id -> this.importRelation(fragment, id));
+                    if (relationId != null) cursor.setTextValue(relationId);
+                }
+            } while (depth > 0 && !cursor.toNextToken().isNone());
+        }
+    }
+
+    private String importRelation(XWPFDocument fragment, String id) {
+        try {
+            POIXMLDocumentPart part = fragment.getRelationById(id);
+            if (part instanceof XWPFPictureData pictureData) {
+                // a picture with the same content as one already in the document is not stored again
+                return this.document.addPictureData(pictureData.getData(), pictureData.getPictureType());
+            }
+            PackageRelationship relationship = fragment.getPackagePart().getRelationship(id);
+            if (relationship != null && relationship.getTargetMode() == TargetMode.EXTERNAL) {
+                return this.document.getPackagePart().addExternalRelationship(relationship.getTargetURI().toString(), relationship.getRelationshipType()).getId();
+            }
+        } catch (InvalidFormatException e) {
+            throw new MyApplicationException(e.getMessage());
+        }
+        logger.warn("fragment relationship " + id + " not spliced");
+        return null;
+    }
+
+    private void renumberCaption(XWPFParagraph paragraph) {
+        if (!CAPTION_STYLE.equals(paragraph.getStyle()) || paragraph.getRuns().size() != 1) return;
+        XWPFRun run = paragraph.getRuns().getFirst();
+        String text = run.getText(0);
+        if (text != null && IMAGE_CAPTION.matcher(text).matches()) run.setText("Image " + this.context.nextImageNumber(), 0);
+    }
+}
@@ -0,0 +1,9 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.fragment;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.RenderContext;
+
+@FunctionalInterface
+public interface FragmentWriter<T> {
+	void write(XWPFDocument document, T item, RenderContext context);
+}
@@ -0,0 +1,45 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.image;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Image input stream reading a byte buffer in place, so that a mapped file is probed and decoded without being copied to the heap
+ * or cached by the stream. The position of the given buffer is not changed.
+ */
+class ByteBufferImageInputStream extends ImageInputStreamImpl {
+    private final ByteBuffer buffer;
+
+    ByteBufferImageInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+
+    @Override
+    public int read() throws IOException {
+        this.checkClosed();
+        this.bitOffset = 0;
+        if (this.streamPos >= this.buffer.limit()) return -1;
+        return this.buffer.get((int) this.streamPos++) & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        this.checkClosed();
+        Objects.checkFromIndexSize(off, len, b.length);
+        this.bitOffset = 0;
+        if (len == 0) return 0;
+        int remaining = this.buffer.limit() - (int) Math.min(this.streamPos, this.buffer.limit());
+        if (remaining == 0) return -1;
+        int count = Math.min(len, remaining);
+        this.buffer.get((int) this.streamPos, b, off, count);
+        this.streamPos += count;
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return this.buffer.limit();
+    }
+}
@@ -0,0 +1,35 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.image;
+
+/**
+ * An image already added to a document: the relation id of its picture part, the POI picture type of that part and its size on the page in EMU.
+ * It holds no content, the picture part does.
+ */
+public class EmbeddedImage {
+    private final String relationId;
+    private final int pictureType;
+    private final long width;
+    private final long height;
+
+    public EmbeddedImage(String relationId, int pictureType, long width, long height) {
+        this.relationId = relationId;
+        this.pictureType = pictureType;
+        this.width = width;
+        this.height = height;
+    }
+
+    public String getRelationId() {
+        return relationId;
+    }
+
+    public int getPictureType() {
+        return pictureType;
+    }
+
+    public long getWidth() {
+        return width;
+    }
+
+    public long getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,53 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.image;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Images already embedded in a single document, keyed by the SHA-256 digest and mime type of the upload.
+ * An upload repeated in several descriptions is probed, downscaled and added to the package once; every later occurrence
+ * only references the picture part of the first one. The registry keeps the relation id and size of that part, not its content.
+ * Uploads that could not be read are remembered as well.
+ * A registry is not thread safe and must not be shared between documents.
+ */
+public class ImageRegistry {
+    private final Map<String, Optional<EmbeddedImage>> images;
+
+    public ImageRegistry() {
+        this.images = new HashMap<>();
+    }
+
+    /**
+     * @param embed adds the content to the document the first time it is seen
+     * @param reuse adds the image embedded for identical content earlier in the document again
+     * @return the image embedded for identical content earlier in the document, or the one returned by embed, which may be null
+     */
+    EmbeddedImage computeIfAbsent(ByteBuffer content, String mimeType, Supplier<EmbeddedImage> embed, Consumer<EmbeddedImage> reuse) {
+        String key = mimeType + ":" + digest(content);
+        Optional<EmbeddedImage> image = this.images.get(key);
+        if (image != null) {
+            image.ifPresent(reuse);
+            return image.orElse(null);
+        }
+        image = Optional.ofNullable(embed.get());
+        this.images.put(key, image);
+        return image.orElse(null);
+    }
+
+    private static String digest(ByteBuffer content) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update(content.duplicate());
+            return HexFormat.of().formatHex(messageDigest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
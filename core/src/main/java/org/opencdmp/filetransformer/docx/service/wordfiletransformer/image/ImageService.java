@@ -0,0 +1,22 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.image;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+
+import java.nio.ByteBuffer;
+
+public interface ImageService {
+	/**
+	 * Sizes an uploaded image to the text area of the document and, when it is much larger than that, re-encodes it at a lower resolution.
+	 * The content is read from its position to its limit and is not modified; it can be a mapped file.
+	 * @return the image to embed, or null when the content is not a readable image of the given type
+	 */
+	PreparedImage prepare(ByteBuffer content, String mimeType, XWPFDocument document);
+
+	/**
+	 * Prepares an uploaded image as {@link #prepare(ByteBuffer, String, XWPFDocument)} does and adds it to the run, with the file name as its description.
+	 * Content already embedded in the document is not read again: the run references the picture part registered for it.
+	 * @return the embedded image, or null when the content is not a readable image of the given type and nothing was added
+	 */
+	EmbeddedImage embed(XWPFRun run, ByteBuffer content, String mimeType, String fileName, XWPFDocument document, ImageRegistry registry);
+}
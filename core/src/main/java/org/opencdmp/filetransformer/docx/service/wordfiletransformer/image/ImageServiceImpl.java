@@ -0,0 +1,284 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.image;
+
+import gr.cite.tools.exception.MyApplicationException;
+import gr.cite.tools.logging.LoggerService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.util.Units;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFPicture;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.xmlbeans.XmlException;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerServiceProperties;
+import org.openxmlformats.schemas.drawingml.x2006.wordprocessingDrawing.CTInline;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPageMar;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPageSz;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.poi.xwpf.usermodel.Document.*;
+
+/**
+ * Reads only the header of an uploaded image to size it, with the reader registered for its mime type, and re-encodes
+ * jpeg, png and bmp images whose resolution at their size on the page is above {@code images.maxDpi}.
+ * The re-encoded image is decoded with source subsampling, so the full resolution bitmap is never held in memory,
+ * and is only used when it is smaller than the upload.
+ * An upload repeated in a document is added once; its other occurrences are drawings that reference the same picture part.
+ */
+@Component
+public class ImageServiceImpl implements ImageService {
+    private static final LoggerService logger = new LoggerService(LoggerFactory.getLogger(ImageServiceImpl.class));
+
+    private static final String METRIC_DOWNSCALED = "docx.image.downscaled";
+    private static final String METRIC_SAVED_BYTES = "docx.image.downscaled.saved";
+    private static final String METRIC_REUSED = "docx.image.reused";
+    private static final Map<String, Integer> PICTURE_TYPES = Map.of(
+            "image/jpeg", PICTURE_TYPE_JPEG,
+            "image/png", PICTURE_TYPE_PNG,
+            "image/gif", PICTURE_TYPE_GIF,
+            "image/tiff", PICTURE_TYPE_TIFF,
+            "image/bmp", PICTURE_TYPE_BMP,
+            "image/wmf", PICTURE_TYPE_WMF
+    );
+    private static final Set<String> DOWNSCALABLE_TYPES = Set.of("image/jpeg", "image/png", "image/bmp");
+    private static final float POINTS_PER_PIXEL = 0.75f;
+    private static final float POINTS_PER_INCH = 72f;
+    private static final float DXA_PER_POINT = 20f;
+    /**
+     * The drawing {@link XWPFRun#addPicture} writes, referencing an existing picture part: width and height in EMU, drawing id, relation id and description.
+     */
+    private static final String INLINE_PICTURE = "<wp:inline distT=\"0\" distR=\"0\" distB=\"0\" distL=\"0\""
+            + " xmlns:wp=\"http://schemas.openxmlformats.org/drawingml/2006/wordprocessingDrawing\""
+            + " xmlns:a=\"http://schemas.openxmlformats.org/drawingml/2006/main\""
+            + " xmlns:pic=\"http://schemas.openxmlformats.org/drawingml/2006/picture\""
+            + " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+            + "<wp:extent cx=\"%1$d\" cy=\"%2$d\"/>"
+            + "<wp:docPr id=\"%3$d\" name=\"Drawing %3$d\" descr=\"%5$s\"/>"
+            + "<a:graphic><a:graphicData uri=\"http://schemas.openxmlformats.org/drawingml/2006/picture\"><pic:pic>"
+            + "<pic:nvPicPr><pic:cNvPr id=\"0\" name=\"Picture %3$d\" descr=\"%5$s\"/><pic:cNvPicPr><a:picLocks noChangeAspect=\"true\"/></pic:cNvPicPr></pic:nvPicPr>"
+            + "<pic:blipFill><a:blip r:embed=\"%4$s\"/><a:stretch><a:fillRect/></a:stretch></pic:blipFill>"
+            + "<pic:spPr><a:xfrm><a:off x=\"0\" y=\"0\"/><a:ext cx=\"%1$d\" cy=\"%2$d\"/></a:xfrm><a:prstGeom prst=\"rect\"><a:avLst/></a:prstGeom></pic:spPr>"
+            + "</pic:pic></a:graphicData></a:graphic></wp:inline>";
+
+    private final WordFileTransformerServiceProperties.Images properties;
+    private final Counter downscaled;
+    private final DistributionSummary savedBytes;
+    private final Counter reused;
+
+    public ImageServiceImpl(WordFileTransformerServiceProperties wordFileTransformerServiceProperties, MeterRegistry meterRegistry) {
+        this.properties = wordFileTransformerServiceProperties.getImages();
+        this.downscaled = Counter.builder(METRIC_DOWNSCALED).register(meterRegistry);
+        this.savedBytes = DistributionSummary.builder(METRIC_SAVED_BYTES).baseUnit("bytes").register(meterRegistry);
+        this.reused = Counter.builder(METRIC_REUSED).register(meterRegistry);
+    }
+
+    @Override
+    public EmbeddedImage embed(XWPFRun run, ByteBuffer content, String mimeType, String fileName, XWPFDocument document, ImageRegistry registry) {
+        if (registry == null || content == null || !content.hasRemaining() || !PICTURE_TYPES.containsKey(mimeType)) return this.add(run, this.prepare(content, mimeType, document), fileName);
+        return registry.computeIfAbsent(content, mimeType, () -> this.add(run, this.prepare(content, mimeType, document), fileName), image -> {
+            this.addReference(run, image, fileName, document);
+            this.reused.increment();
+        });
+    }
+
+    @Override
+    public PreparedImage prepare(ByteBuffer content, String mimeType, XWPFDocument document) {
+        Integer pictureType = PICTURE_TYPES.get(mimeType);
+        if (content == null || !content.hasRemaining() || pictureType == null) return null;
+
+        try (ImageInputStream input = new ByteBufferImageInputStream(content)) {
+            ImageReader reader = this.open(mimeType, input);
+            if (reader == null) return null;
+            try {
+                int pixelWidth = reader.getWidth(0);
+                int pixelHeight = reader.getHeight(0);
+                if (pixelWidth <= 0 || pixelHeight <= 0) return null;
+
+                int[] size = this.fit(pixelWidth, pixelHeight, document);
+                int targetPixelWidth = Math.max(1, Math.round(size[0] / POINTS_PER_INCH * this.properties.getMaxDpi()));
+                if (this.properties.isDownscaleEnabled() && DOWNSCALABLE_TYPES.contains(mimeType) && pixelWidth > targetPixelWidth) {
+                    PreparedImage image = this.downscale(reader, mimeType, content.remaining(), pixelWidth, pixelHeight, targetPixelWidth, size);
+                    if (image != null) return image;
+                }
+                return new PreparedImage(this.toByteArray(content), pictureType, size[0], size[1]);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("could not read image of type " + mimeType + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Adds the content of the image as a new picture part of the document, unless POI already holds identical content.
+     */
+    private EmbeddedImage add(XWPFRun run, PreparedImage image, String fileName) {
+        if (image == null) return null;
+        int width = Units.toEMU(image.getWidth());
+        int height = Units.toEMU(image.getHeight());
+        try {
+            XWPFPicture picture = run.addPicture(new ByteArrayInputStream(image.getContent()), image.getPictureType(), fileName, width, height);
+            return new EmbeddedImage(picture.getCTPicture().getBlipFill().getBlip().getEmbed(), image.getPictureType(), width, height);
+        } catch (InvalidFormatException | IOException e) {
+            throw new MyApplicationException(e.getMessage());
+        }
+    }
+
+    /**
+     * Adds a drawing of an image embedded earlier in the document, without reading or copying its content.
+     */
+    private void addReference(XWPFRun run, EmbeddedImage image, String fileName, XWPFDocument document) {
+        long id = document.getDrawingIdManager().reserveNew();
+        try {
+            CTInline inline = CTInline.Factory.parse(String.format(INLINE_PICTURE, image.getWidth(), image.getHeight(), id, image.getRelationId(), this.escapeAttribute(fileName)));
+            run.getCTR().addNewDrawing().addNewInline().set(inline);
+        } catch (XmlException e) {
+            throw new MyApplicationException(e.getMessage());
+        }
+    }
+
+    private String escapeAttribute(String value) {
+        if (value == null) return "";
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    /**
+     * @return a reader set on the input that could read the image size, trying the readers of the mime type first and then the readers
+     * that recognise the content (an upload whose mime type does not match its bytes), or null when no reader can read it
+     */
+    private ImageReader open(String mimeType, ImageInputStream input) throws IOException {
+        ImageReader reader = this.open(ImageIO.getImageReadersByMIMEType(mimeType), input);
+        if (reader != null) return reader;
+        input.seek(0);
+        reader = this.open(ImageIO.getImageReaders(input), input);
+        if (reader == null) logger.warn("no image reader can read the image of type " + mimeType);
+        return reader;
+    }
+
+    private ImageReader open(Iterator<ImageReader> readers, ImageInputStream input) {
+        while (readers.hasNext()) {
+            ImageReader reader = readers.next();
+            try {
+                input.seek(0);
+                reader.setInput(input, false, true);
+                reader.getWidth(0);
+                reader.getHeight(0);
+                return reader;
+            } catch (IOException | RuntimeException e) {
+                logger.debug("image reader " + reader.getClass().getSimpleName() + " cannot read the image: " + e.getMessage());
+                reader.dispose();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the width and height in points: the image at 96 dpi, shrunk to fit the text area of the page keeping its ratio
+     */
+    private int[] fit(int pixelWidth, int pixelHeight, XWPFDocument document) {
+        CTPageMar pageMargins = document.getDocument().getBody().getSectPr().getPgMar();
+        CTPageSz pageSize = document.getDocument().getBody().getSectPr().getPgSz();
+        int pageWidth = Math.round((this.toInt(pageSize.getW()) - this.toInt(pageMargins.getLeft()) - this.toInt(pageMargins.getRight())) / DXA_PER_POINT);
+        int pageHeight = Math.round((this.toInt(pageSize.getH()) - this.toInt(pageMargins.getTop()) - this.toInt(pageMargins.getBottom())) / DXA_PER_POINT);
+
+        float ratio = pixelHeight / (float) pixelWidth;
+        int width = Math.min(Math.round(pixelWidth * POINTS_PER_PIXEL), pageWidth);
+        int height = Math.round(width * ratio);
+        if (height > pageHeight) {
+            // height calculated with ratio is too large. Image may have Portrait (vertical) orientation. Recalculate image dimensions.
+            height = Math.min(Math.round(pixelHeight * POINTS_PER_PIXEL), pageHeight);
+            width = Math.round(height / ratio);
+        }
+        return new int[]{width, height};
+    }
+
+    private PreparedImage downscale(ImageReader reader, String mimeType, int originalLength, int pixelWidth, int pixelHeight, int targetPixelWidth, int[] size) {
+        try {
+            int targetPixelHeight = Math.max(1, Math.round(pixelHeight * (targetPixelWidth / (float) pixelWidth)));
+            ImageReadParam param = reader.getDefaultReadParam();
+            int subsampling = pixelWidth / targetPixelWidth;
+            if (subsampling > 1) param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            BufferedImage source = reader.read(0, param);
+
+            boolean jpeg = "image/jpeg".equals(mimeType);
+            BufferedImage target = new BufferedImage(targetPixelWidth, targetPixelHeight, jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = target.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(source, 0, 0, targetPixelWidth, targetPixelHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            source.flush();
+
+            byte[] encoded = jpeg ? this.encodeJpeg(target) : this.encodePng(target);
+            if (encoded == null || encoded.length >= originalLength) return null;
+
+            this.downscaled.increment();
+            this.savedBytes.record(originalLength - encoded.length);
+            logger.debug("downscaled " + mimeType + " image from " + pixelWidth + "x" + pixelHeight + " to " + targetPixelWidth + "x" + targetPixelHeight);
+            return new PreparedImage(encoded, jpeg ? PICTURE_TYPE_JPEG : PICTURE_TYPE_PNG, size[0], size[1]);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("could not downscale " + mimeType + " image, embedding it as uploaded: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType("image/jpeg");
+        if (!writers.hasNext()) return null;
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(outputStream)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(this.properties.getJpegQuality());
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, "png", outputStream)) return null;
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * POI copies the picture into a byte array anyway, so the content is copied once here, unless it already is a whole array.
+     */
+    private byte[] toByteArray(ByteBuffer content) {
+        if (content.hasArray() && content.arrayOffset() == 0 && content.position() == 0 && content.remaining() == content.array().length) return content.array();
+        byte[] bytes = new byte[content.remaining()];
+        content.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private int toInt(Object object) {
+        if (object instanceof BigInteger) return ((BigInteger) object).intValue();
+        if (object instanceof Number) return ((Number) object).intValue();
+        return 0;
+    }
+}
@@ -0,0 +1,34 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.image;
+
+/**
+ * An image ready to be added to a run: its content, the POI picture type of that content and its size on the page in points.
+ */
+public class PreparedImage {
+    private final byte[] content;
+    private final int pictureType;
+    private final int width;
+    private final int height;
+
+    public PreparedImage(byte[] content, int pictureType, int width, int height) {
+        this.content = content;
+        this.pictureType = pictureType;
+        this.width = width;
+        this.height = height;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public int getPictureType() {
+        return pictureType;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,14 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.metrics;
+
+import org.opencdmp.commonmodels.enums.PluginEntityType;
+import org.opencdmp.filetransformer.docx.model.enums.FileFormats;
+
+public interface ExportMetricsService {
+    ExportTimings start(PluginEntityType entityType, FileFormats format);
+
+    /**
+     * Publishes the phases of a completed export. Failed exports are not recorded, as their phases are not comparable.
+     * @param outputBytes the size of the exported file
+     */
+    void record(ExportTimings timings, long outputBytes);
+}
@@ -0,0 +1,49 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.opencdmp.commonmodels.enums.PluginEntityType;
+import org.opencdmp.filetransformer.docx.model.enums.FileFormats;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes a timer per {@link ExportPhase} and summaries of the output size, descriptions and embedded images of every export,
+ * tagged by entity type, format and template source.
+ */
+@Component
+public class ExportMetricsServiceImpl implements ExportMetricsService {
+    private static final String METRIC_PHASE = "docx.export.phase";
+    private static final String METRIC_OUTPUT_BYTES = "docx.export.output.bytes";
+    private static final String METRIC_DESCRIPTIONS = "docx.export.descriptions";
+    private static final String METRIC_IMAGES = "docx.export.images";
+
+    private final MeterRegistry meterRegistry;
+
+    public ExportMetricsServiceImpl(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ExportTimings start(PluginEntityType entityType, FileFormats format) {
+        return new ExportTimings(entityType.name().toLowerCase(Locale.ROOT), format.getValue());
+    }
+
+    @Override
+    public void record(ExportTimings timings, long outputBytes) {
+        if (timings.getEntityType() == null) return;
+        Tags tags = Tags.of("entity", timings.getEntityType(), "format", timings.getFormat(), "template", timings.getTemplateSource());
+        for (ExportPhase phase : ExportPhase.values()) {
+            // phases the export did not go through are not recorded, so that they do not pull the distribution down
+            long nanos = timings.getNanos(phase);
+            if (nanos > 0) Timer.builder(METRIC_PHASE).tags(tags).tag("phase", phase.getTag()).register(this.meterRegistry).record(nanos, TimeUnit.NANOSECONDS);
+        }
+        DistributionSummary.builder(METRIC_OUTPUT_BYTES).baseUnit("bytes").tags(tags).register(this.meterRegistry).record(outputBytes);
+        DistributionSummary.builder(METRIC_DESCRIPTIONS).tags(tags).register(this.meterRegistry).record(timings.getDescriptions());
+        DistributionSummary.builder(METRIC_IMAGES).tags(tags).register(this.meterRegistry).record(timings.getImages());
+    }
+}
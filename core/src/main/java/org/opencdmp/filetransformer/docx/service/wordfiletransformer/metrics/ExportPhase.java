@@ -0,0 +1,30 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.metrics;
+
+/**
+ * Phases of an export, published as the {@code phase} tag of {@code docx.export.phase}.
+ * {@link #FIRST_PAGE} covers the substitution table and the placeholders of the first page, {@link #HEADER_FOOTER} the placeholders of the header and the footer.
+ * {@link #STORAGE} is the time spent storing the file, without the time spent writing it.
+ * {@link #HTML} and {@link #IMAGES} are spent within {@link #FIRST_PAGE} and {@link #SECTIONS}, and are summed over the threads
+ * that render descriptions in parallel, so they may add up to more than the phase they are part of.
+ */
+public enum ExportPhase {
+    TEMPLATE("template"),
+    FIRST_PAGE("first_page"),
+    SECTIONS("sections"),
+    HEADER_FOOTER("header_footer"),
+    HTML("html"),
+    IMAGES("images"),
+    WRITE("write"),
+    PDF("pdf"),
+    STORAGE("storage");
+
+    private final String tag;
+
+    ExportPhase(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+}
@@ -0,0 +1,79 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time spent in each {@link ExportPhase} of a single export, and what it produced. Phases may be timed from several threads
+ * at once, as descriptions rendered in parallel share the timings of their document.
+ */
+public class ExportTimings {
+    public static final String TEMPLATE_DEFAULT = "default";
+    public static final String TEMPLATE_CUSTOM = "custom";
+
+    private final String entityType;
+    private final String format;
+    private volatile String templateSource = TEMPLATE_DEFAULT;
+    private final LongAdder[] nanos = new LongAdder[ExportPhase.values().length];
+    private final LongAdder descriptions = new LongAdder();
+    private final LongAdder images = new LongAdder();
+
+    /**
+     * Timings that are not published, for documents rendered outside an export.
+     */
+    public ExportTimings() {
+        this(null, null);
+    }
+
+    public ExportTimings(String entityType, String format) {
+        this.entityType = entityType;
+        this.format = format;
+        for (int i = 0; i < this.nanos.length; i++) this.nanos[i] = new LongAdder();
+    }
+
+    /**
+     * Adds the time elapsed since {@code startNanos}, a {@link System#nanoTime()} value, to the phase.
+     */
+    public void record(ExportPhase phase, long startNanos) {
+        this.add(phase, System.nanoTime() - startNanos);
+    }
+
+    public void add(ExportPhase phase, long nanos) {
+        if (nanos > 0) this.nanos[phase.ordinal()].add(nanos);
+    }
+
+    public long getNanos(ExportPhase phase) {
+        return this.nanos[phase.ordinal()].sum();
+    }
+
+    public void addDescriptions(int count) {
+        this.descriptions.add(count);
+    }
+
+    public long getDescriptions() {
+        return this.descriptions.sum();
+    }
+
+    public void imageEmbedded() {
+        this.images.increment();
+    }
+
+    public long getImages() {
+        return this.images.sum();
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public String getTemplateSource() {
+        return templateSource;
+    }
+
+    public void setTemplateSource(String templateSource) {
+        this.templateSource = templateSource;
+    }
+}
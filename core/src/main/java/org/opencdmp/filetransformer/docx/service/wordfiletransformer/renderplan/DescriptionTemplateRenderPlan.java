@@ -0,0 +1,234 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.renderplan;
+
+import org.opencdmp.commonmodels.enums.FieldType;
+import org.opencdmp.commonmodels.models.descriptiotemplate.*;
+import org.opencdmp.commonmodels.models.descriptiotemplate.fielddata.RadioBoxDataModel;
+import org.opencdmp.commonmodels.models.descriptiotemplate.fielddata.SelectDataModel;
+
+import java.util.*;
+
+/**
+ * Immutable form of a {@link DescriptionTemplateModel} in the order the word builder walks it: fields sorted by ordinal,
+ * heading numbers already composed and option lookups indexed, so that descriptions sharing a template do not repeat that work.
+ * The template model itself is never modified. Pages, sections and field sets keep the order of the template, as before.
+ */
+public class DescriptionTemplateRenderPlan {
+    private final List<PagePlan> pages;
+
+    private DescriptionTemplateRenderPlan(List<PagePlan> pages) {
+        this.pages = pages;
+    }
+
+    public static DescriptionTemplateRenderPlan compile(DescriptionTemplateModel descriptionTemplate) {
+        if (descriptionTemplate == null || descriptionTemplate.getDefinition() == null || descriptionTemplate.getDefinition().getPages() == null) {
+            return new DescriptionTemplateRenderPlan(List.of());
+        }
+        List<PagePlan> pages = new ArrayList<>(descriptionTemplate.getDefinition().getPages().size());
+        for (PageModel page : descriptionTemplate.getDefinition().getPages()) {
+            int pageNumber = page.getOrdinal() + 1;
+            pages.add(new PagePlan(page.getId(), pageNumber + " " + page.getTitle(), compileSections(page.getSections(), pageNumber, null)));
+        }
+        return new DescriptionTemplateRenderPlan(List.copyOf(pages));
+    }
+
+    private static List<SectionPlan> compileSections(List<SectionModel> sections, int pageNumber, String parentNumber) {
+        if (sections == null) return null;
+        List<SectionPlan> plans = new ArrayList<>(sections.size());
+        for (SectionModel section : sections) {
+            String number = parentNumber != null ? parentNumber + "." + (section.getOrdinal() + 1) : "" + (section.getOrdinal() + 1);
+            plans.add(new SectionPlan(section.getId(), pageNumber + "." + number + " " + section.getTitle(),
+                    compileSections(section.getSections(), pageNumber, number), compileFieldSets(section.getFieldSets(), pageNumber, number)));
+        }
+        return List.copyOf(plans);
+    }
+
+    private static List<FieldSetPlan> compileFieldSets(List<FieldSetModel> fieldSets, int pageNumber, String sectionNumber) {
+        if (fieldSets == null) return null;
+        List<FieldSetPlan> plans = new ArrayList<>(fieldSets.size());
+        for (FieldSetModel fieldSet : fieldSets) {
+            String heading = fieldSet.getTitle() != null && !fieldSet.getTitle().isEmpty() ? pageNumber + "." + sectionNumber + "." + (fieldSet.getOrdinal() + 1) + " " + fieldSet.getTitle() : null;
+            List<FieldPlan> fields = fieldSet.getFields() == null ? List.of() : fieldSet.getFields().stream()
+                    .sorted(Comparator.comparingInt(FieldModel::getOrdinal))
+                    .map(FieldPlan::new)
+                    .toList();
+            plans.add(new FieldSetPlan(fieldSet, heading, fields));
+        }
+        return List.copyOf(plans);
+    }
+
+    public List<PagePlan> getPages() {
+        return pages;
+    }
+
+    public static class PagePlan {
+        private final String id;
+        private final String heading;
+        private final List<SectionPlan> sections;
+
+        private PagePlan(String id, String heading, List<SectionPlan> sections) {
+            this.id = id;
+            this.heading = heading;
+            this.sections = sections;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getHeading() {
+            return heading;
+        }
+
+        /**
+         * @return the sections of the page, or null when the template defines none
+         */
+        public List<SectionPlan> getSections() {
+            return sections;
+        }
+    }
+
+    public static class SectionPlan {
+        private final String id;
+        private final String heading;
+        private final List<SectionPlan> sections;
+        private final List<FieldSetPlan> fieldSets;
+
+        private SectionPlan(String id, String heading, List<SectionPlan> sections, List<FieldSetPlan> fieldSets) {
+            this.id = id;
+            this.heading = heading;
+            this.sections = sections;
+            this.fieldSets = fieldSets;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getHeading() {
+            return heading;
+        }
+
+        /**
+         * @return the nested sections, or null when the template defines none
+         */
+        public List<SectionPlan> getSections() {
+            return sections;
+        }
+
+        /**
+         * @return the field sets of the section, or null when the template defines none
+         */
+        public List<FieldSetPlan> getFieldSets() {
+            return fieldSets;
+        }
+    }
+
+    public static class FieldSetPlan {
+        private final FieldSetModel model;
+        private final String heading;
+        private final List<FieldPlan> fields;
+
+        private FieldSetPlan(FieldSetModel model, String heading, List<FieldPlan> fields) {
+            this.model = model;
+            this.heading = heading;
+            this.fields = fields;
+        }
+
+        public FieldSetModel getModel() {
+            return model;
+        }
+
+        public String getId() {
+            return model.getId();
+        }
+
+        /**
+         * @return the numbered title, or null when the field set has no title
+         */
+        public String getHeading() {
+            return heading;
+        }
+
+        public boolean isTableView() {
+            return model.getMultiplicity() != null && model.getMultiplicity().getTableView();
+        }
+
+        public boolean isListView() {
+            return model.getMultiplicity() != null && !model.getMultiplicity().getTableView();
+        }
+
+        /**
+         * @return the fields sorted by ordinal
+         */
+        public List<FieldPlan> getFields() {
+            return fields;
+        }
+    }
+
+    public static class FieldPlan {
+        private static final int[] NO_OPTIONS = new int[0];
+
+        private final FieldModel model;
+        private final List<String> optionLabels;
+        private final Map<String, int[]> optionsByValueOrLabel;
+
+        private FieldPlan(FieldModel model) {
+            this.model = model;
+
+            List<String> labels = new ArrayList<>();
+            Map<String, List<Integer>> indexes = new HashMap<>();
+            FieldType fieldType = model.getData() != null ? model.getData().getFieldType() : null;
+            if (fieldType == FieldType.SELECT && model.getData() instanceof SelectDataModel selectDataModel && selectDataModel.getOptions() != null) {
+                for (SelectDataModel.OptionModel option : selectDataModel.getOptions()) {
+                    index(indexes, labels.size(), option.getValue(), option.getLabel());
+                    labels.add(option.getLabel());
+                }
+            } else if (fieldType == FieldType.RADIO_BOX && model.getData() instanceof RadioBoxDataModel radioBoxDataModel && radioBoxDataModel.getOptions() != null) {
+                for (RadioBoxDataModel.RadioBoxOptionModel option : radioBoxDataModel.getOptions()) {
+                    index(indexes, labels.size(), option.getValue(), option.getLabel());
+                    labels.add(option.getLabel());
+                }
+            }
+            this.optionLabels = Collections.unmodifiableList(labels);
+            Map<String, int[]> optionsByValueOrLabel = new HashMap<>(indexes.size() * 2);
+            indexes.forEach((key, value) -> optionsByValueOrLabel.put(key, value.stream().mapToInt(Integer::intValue).toArray()));
+            this.optionsByValueOrLabel = optionsByValueOrLabel;
+        }
+
+        private static void index(Map<String, List<Integer>> indexes, int option, String value, String label) {
+            if (value != null) indexes.computeIfAbsent(value, x -> new ArrayList<>()).add(option);
+            if (label != null && !label.equals(value)) indexes.computeIfAbsent(label, x -> new ArrayList<>()).add(option);
+        }
+
+        public FieldModel getModel() {
+            return model;
+        }
+
+        public String getId() {
+            return model.getId();
+        }
+
+        /**
+         * @return the labels of the options whose value or label is one of the given values, in option order and without repeats
+         */
+        public List<String> selectedOptionLabels(Collection<String> values) {
+            if (values == null || values.isEmpty() || this.optionLabels.isEmpty()) return List.of();
+            BitSet selected = new BitSet(this.optionLabels.size());
+            for (String value : values) {
+                for (int option : this.optionsByValueOrLabel.getOrDefault(value, NO_OPTIONS)) selected.set(option);
+            }
+            List<String> labels = new ArrayList<>(selected.cardinality());
+            for (int option = selected.nextSetBit(0); option >= 0; option = selected.nextSetBit(option + 1)) labels.add(this.optionLabels.get(option));
+            return labels;
+        }
+
+        /**
+         * @return the label of the first option whose value or label equals the given value, or null when none does
+         */
+        public String firstOptionLabel(String value) {
+            if (value == null) return null;
+            int[] options = this.optionsByValueOrLabel.get(value);
+            return options == null ? null : this.optionLabels.get(options[0]);
+        }
+    }
+}
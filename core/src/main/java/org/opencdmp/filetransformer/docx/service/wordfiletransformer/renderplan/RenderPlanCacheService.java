@@ -0,0 +1,12 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.renderplan;
+
+import org.opencdmp.commonmodels.models.descriptiotemplate.DescriptionTemplateModel;
+
+public interface RenderPlanCacheService {
+	/**
+	 * @return the render plan of the template, compiled once per template id and version
+	 */
+	DescriptionTemplateRenderPlan get(DescriptionTemplateModel descriptionTemplate);
+
+	void evictAll();
+}
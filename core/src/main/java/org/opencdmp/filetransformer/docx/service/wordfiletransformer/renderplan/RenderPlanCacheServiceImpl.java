@@ -0,0 +1,48 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.renderplan;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.opencdmp.commonmodels.models.descriptiotemplate.DescriptionTemplateModel;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerServiceProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Shares the {@link DescriptionTemplateRenderPlan} of a template between all the descriptions that use it, within an export
+ * and across exports. A template version is immutable once published, so the id and version identify the plan;
+ * templates without an id are compiled on every call. Lookups are counted by the docx.renderplan cache metrics.
+ */
+@Component
+public class RenderPlanCacheServiceImpl implements RenderPlanCacheService {
+    private static final String METRIC_CACHE = "docx.renderplan";
+
+    private final WordFileTransformerServiceProperties.RenderPlanCache properties;
+    private final Cache<String, DescriptionTemplateRenderPlan> plans;
+
+    public RenderPlanCacheServiceImpl(WordFileTransformerServiceProperties wordFileTransformerServiceProperties, MeterRegistry meterRegistry) {
+        this.properties = wordFileTransformerServiceProperties.getRenderPlanCache();
+
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(this.properties.getMaximumSize())
+                .expireAfterAccess(Duration.ofMinutes(this.properties.getExpireAfterAccessMinutes()));
+        if (this.properties.isEnableRecordStats()) builder.recordStats();
+        this.plans = builder.build();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.plans, METRIC_CACHE);
+    }
+
+    @Override
+    public DescriptionTemplateRenderPlan get(DescriptionTemplateModel descriptionTemplate) {
+        if (!this.properties.isEnabled() || descriptionTemplate == null || descriptionTemplate.getId() == null) return DescriptionTemplateRenderPlan.compile(descriptionTemplate);
+
+        String key = descriptionTemplate.getId() + ":" + descriptionTemplate.getVersion();
+        return this.plans.get(key, x -> DescriptionTemplateRenderPlan.compile(descriptionTemplate));
+    }
+
+    @Override
+    public void evictAll() {
+        this.plans.invalidateAll();
+    }
+}
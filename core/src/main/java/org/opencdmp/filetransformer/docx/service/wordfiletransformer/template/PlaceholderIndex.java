@@ -0,0 +1,166 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.template;
+
+import gr.cite.tools.exception.MyApplicationException;
+import org.apache.poi.xwpf.usermodel.*;
+
+import java.util.*;
+
+/**
+ * Positions of the paragraphs of a template that hold at least one '{OPENCDMP.*}' code, compiled once per template.
+ * Positions are resolved against a fresh copy of the same template, before any generated content is added to it.
+ */
+public class PlaceholderIndex {
+    public static final String CODE_PREFIX = "'{OPENCDMP.";
+    private static final String CODE_SUFFIX = "}'";
+
+    private final List<Integer> bodyParagraphs;
+    private final List<CellPosition> tableParagraphs;
+    private final Map<Integer, List<Integer>> headerParagraphs;
+    private final Map<Integer, List<Integer>> footerParagraphs;
+    private final List<String> referenceTypeCodes;
+
+    private PlaceholderIndex(List<Integer> bodyParagraphs, List<CellPosition> tableParagraphs, Map<Integer, List<Integer>> headerParagraphs, Map<Integer, List<Integer>> footerParagraphs, List<String> referenceTypeCodes) {
+        this.bodyParagraphs = bodyParagraphs;
+        this.tableParagraphs = tableParagraphs;
+        this.headerParagraphs = headerParagraphs;
+        this.footerParagraphs = footerParagraphs;
+        this.referenceTypeCodes = referenceTypeCodes;
+    }
+
+    public static PlaceholderIndex compile(XWPFDocument document) {
+        if (document == null) throw new MyApplicationException("Document required");
+
+        List<String> codes = new ArrayList<>();
+        List<Integer> bodyParagraphs = new ArrayList<>();
+        List<XWPFParagraph> paragraphs = document.getParagraphs();
+        for (int i = 0; i < paragraphs.size(); i++) {
+            if (hasCode(paragraphs.get(i), codes)) bodyParagraphs.add(i);
+        }
+
+        List<CellPosition> tableParagraphs = new ArrayList<>();
+        List<XWPFTable> tables = document.getTables();
+        for (int t = 0; t < tables.size(); t++) {
+            List<XWPFTableRow> rows = tables.get(t).getRows();
+            for (int r = 0; r < rows.size(); r++) {
+                List<XWPFTableCell> cells = rows.get(r).getTableCells();
+                for (int c = 0; c < cells.size(); c++) {
+                    List<XWPFParagraph> cellParagraphs = cells.get(c).getParagraphs();
+                    for (int p = 0; p < cellParagraphs.size(); p++) {
+                        if (hasCode(cellParagraphs.get(p), codes)) tableParagraphs.add(new CellPosition(t, r, c, p));
+                    }
+                }
+            }
+        }
+
+        Map<Integer, List<Integer>> headerParagraphs = new LinkedHashMap<>();
+        List<XWPFHeader> headers = document.getHeaderList();
+        for (int h = 0; h < headers.size(); h++) {
+            List<Integer> positions = indexOf(headers.get(h).getParagraphs(), codes);
+            if (!positions.isEmpty()) headerParagraphs.put(h, positions);
+        }
+
+        Map<Integer, List<Integer>> footerParagraphs = new LinkedHashMap<>();
+        List<XWPFFooter> footers = document.getFooterList();
+        for (int f = 0; f < footers.size(); f++) {
+            List<Integer> positions = indexOf(footers.get(f).getParagraphs(), codes);
+            if (!positions.isEmpty()) footerParagraphs.put(f, positions);
+        }
+
+        return new PlaceholderIndex(List.copyOf(bodyParagraphs), List.copyOf(tableParagraphs), Collections.unmodifiableMap(headerParagraphs), Collections.unmodifiableMap(footerParagraphs), List.copyOf(codes));
+    }
+
+    public List<String> getReferenceTypeCodes() {
+        return referenceTypeCodes;
+    }
+
+    public List<XWPFParagraph> getBodyParagraphs(XWPFDocument document) {
+        List<XWPFParagraph> paragraphs = document.getParagraphs();
+        List<XWPFParagraph> result = new ArrayList<>(this.bodyParagraphs.size());
+        for (Integer position : this.bodyParagraphs) {
+            if (position < paragraphs.size()) result.add(paragraphs.get(position));
+        }
+        return result;
+    }
+
+    public List<XWPFParagraph> getTableParagraphs(XWPFDocument document) {
+        List<XWPFTable> tables = document.getTables();
+        List<XWPFParagraph> result = new ArrayList<>(this.tableParagraphs.size());
+        for (CellPosition position : this.tableParagraphs) {
+            if (position.table >= tables.size()) continue;
+            XWPFTableRow row = tables.get(position.table).getRow(position.row);
+            if (row == null || position.cell >= row.getTableCells().size()) continue;
+            List<XWPFParagraph> paragraphs = row.getTableCells().get(position.cell).getParagraphs();
+            if (position.paragraph < paragraphs.size()) result.add(paragraphs.get(position.paragraph));
+        }
+        return result;
+    }
+
+    public List<XWPFParagraph> getHeaderParagraphs(XWPFDocument document) {
+        List<XWPFParagraph> result = new ArrayList<>();
+        List<XWPFHeader> headers = document.getHeaderList();
+        this.headerParagraphs.forEach((header, positions) -> {
+            if (header < headers.size()) resolve(headers.get(header).getParagraphs(), positions, result);
+        });
+        return result;
+    }
+
+    public List<XWPFParagraph> getFooterParagraphs(XWPFDocument document) {
+        List<XWPFParagraph> result = new ArrayList<>();
+        List<XWPFFooter> footers = document.getFooterList();
+        this.footerParagraphs.forEach((footer, positions) -> {
+            if (footer < footers.size()) resolve(footers.get(footer).getParagraphs(), positions, result);
+        });
+        return result;
+    }
+
+    private static void resolve(List<XWPFParagraph> paragraphs, List<Integer> positions, List<XWPFParagraph> result) {
+        for (Integer position : positions) {
+            if (position < paragraphs.size()) result.add(paragraphs.get(position));
+        }
+    }
+
+    private static List<Integer> indexOf(List<XWPFParagraph> paragraphs, List<String> codes) {
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < paragraphs.size(); i++) {
+            if (hasCode(paragraphs.get(i), codes)) positions.add(i);
+        }
+        return positions;
+    }
+
+    private static boolean hasCode(XWPFParagraph paragraph, List<String> codes) {
+        String text = paragraph.getText();
+        if (text == null || !text.contains(CODE_PREFIX)) return false;
+        collectReferenceTypeCodes(text, codes);
+        return true;
+    }
+
+    private static void collectReferenceTypeCodes(String text, List<String> existingCodes) {
+        if ((text.contains("'{OPENCDMP.PLAN-REFERENCE.") || text.contains("'{OPENCDMP.DESCRIPTION-REFERENCE.")) && text.contains(CODE_SUFFIX)) {
+            String[] parts = text.split("\\.");
+            for (int i = 0; i < parts.length - 1; i++) {
+                if (parts[i].equals("PLAN-REFERENCE") || parts[i].equals("DESCRIPTION-REFERENCE")) {
+                    // the next part starts with the code
+                    String codeParts = parts[i + 1];
+                    if (codeParts.contains(CODE_SUFFIX)) {
+                        String code = codeParts.split(CODE_SUFFIX)[0];
+                        if (!existingCodes.contains(code)) existingCodes.add(code);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class CellPosition {
+        private final int table;
+        private final int row;
+        private final int cell;
+        private final int paragraph;
+
+        private CellPosition(int table, int row, int cell, int paragraph) {
+            this.table = table;
+            this.row = row;
+            this.cell = cell;
+            this.paragraph = paragraph;
+        }
+    }
+}
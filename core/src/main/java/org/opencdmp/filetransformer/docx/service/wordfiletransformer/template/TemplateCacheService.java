@@ -0,0 +1,9 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.template;
+
+import org.opencdmp.commonmodels.enums.PluginEntityType;
+
+public interface TemplateCacheService {
+    TemplateDocument getDefaultTemplate(PluginEntityType entityType);
+
+    TemplateDocument getCustomTemplate(byte[] content);
+}
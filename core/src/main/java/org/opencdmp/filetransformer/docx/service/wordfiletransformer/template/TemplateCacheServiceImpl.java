@@ -0,0 +1,147 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.template;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import gr.cite.tools.exception.MyApplicationException;
+import gr.cite.tools.logging.LoggerService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.opencdmp.commonmodels.enums.PluginEntityType;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerServiceProperties;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class TemplateCacheServiceImpl implements TemplateCacheService {
+    private static final LoggerService logger = new LoggerService(LoggerFactory.getLogger(TemplateCacheServiceImpl.class));
+
+    private static final String METRIC_REQUESTS = "docx.template.cache.requests";
+    private static final String METRIC_LOAD = "docx.template.cache.load";
+    private static final String METRIC_CUSTOM_CACHE = "docx.template.custom";
+    private static final long NOT_FILE_BACKED = -1L;
+
+    private final WordFileTransformerServiceProperties properties;
+    private final ResourceLoader resourceLoader;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, TemplateSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Cache<String, TemplateSnapshot> customSnapshots;
+
+    public TemplateCacheServiceImpl(WordFileTransformerServiceProperties properties, ResourceLoader resourceLoader, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.resourceLoader = resourceLoader;
+        this.meterRegistry = meterRegistry;
+
+        WordFileTransformerServiceProperties.CustomTemplateCache cacheProperties = this.properties.getCustomTemplateCache();
+        Caffeine<String, TemplateSnapshot> builder = Caffeine.newBuilder()
+                .maximumWeight(cacheProperties.getMaximumWeightInBytes())
+                .weigher((String key, TemplateSnapshot value) -> value.getSize())
+                .expireAfterAccess(Duration.ofMinutes(cacheProperties.getExpireAfterAccessMinutes()));
+        if (cacheProperties.isEnableRecordStats()) builder.recordStats();
+        this.customSnapshots = builder.build();
+        CaffeineCacheMetrics.monitor(this.meterRegistry, this.customSnapshots, METRIC_CUSTOM_CACHE);
+    }
+
+    @Override
+    public TemplateDocument getDefaultTemplate(PluginEntityType entityType) {
+        String location = switch (entityType) {
+            case Plan -> this.properties.getWordPlanTemplate();
+            case Description -> this.properties.getWordDescriptionTemplate();
+            default -> throw new MyApplicationException("Invalid type " + entityType);
+        };
+        String templateTag = entityType.name().toLowerCase();
+
+        Resource resource = this.resourceLoader.getResource(location);
+        TemplateSnapshot snapshot = this.snapshots.get(location);
+        if (snapshot == null || this.isModified(resource, snapshot)) {
+            this.requestCounter(templateTag, "miss").increment();
+            snapshot = this.snapshots.compute(location, (key, current) -> current != null && !this.isModified(resource, current) ? current : this.load(resource, templateTag));
+        } else {
+            this.requestCounter(templateTag, "hit").increment();
+        }
+
+        try {
+            return snapshot.newDocument();
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            throw new MyApplicationException(e.getMessage());
+        }
+    }
+
+    @Override
+    public TemplateDocument getCustomTemplate(byte[] content) {
+        if (content == null || content.length == 0) throw new MyApplicationException("template content required");
+
+        String digest = DigestUtils.sha256Hex(content);
+        TemplateSnapshot snapshot = this.customSnapshots.get(digest, key -> {
+            Timer.Sample sample = Timer.start(this.meterRegistry);
+            try {
+                return TemplateSnapshot.of(content, NOT_FILE_BACKED);
+            } catch (IOException e) {
+                throw new MyApplicationException("invalid custom docx template " + key);
+            } finally {
+                sample.stop(Timer.builder(METRIC_LOAD).tag("template", "custom").register(this.meterRegistry));
+            }
+        });
+
+        try {
+            return snapshot.newDocument();
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            throw new MyApplicationException(e.getMessage());
+        }
+    }
+
+    private TemplateSnapshot load(Resource resource, String templateTag) {
+        Timer.Sample sample = Timer.start(this.meterRegistry);
+        try (InputStream inputStream = resource.getInputStream()) {
+            TemplateSnapshot snapshot = TemplateSnapshot.of(inputStream.readAllBytes(), this.lastModified(resource));
+            logger.debug("loaded docx template " + resource.getDescription() + " (" + snapshot.getSize() + " bytes)");
+            return snapshot;
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            throw new MyApplicationException("could not load docx template " + resource.getDescription());
+        } finally {
+            sample.stop(Timer.builder(METRIC_LOAD).tag("template", templateTag).register(this.meterRegistry));
+        }
+    }
+
+    private boolean isModified(Resource resource, TemplateSnapshot snapshot) {
+        if (snapshot.getLastModified() == NOT_FILE_BACKED) return false;
+        Long lastModified = this.readLastModified(resource);
+        // the cached copy is kept when the time cannot be read, instead of reloading the template on every export
+        return lastModified != null && lastModified != snapshot.getLastModified();
+    }
+
+    /**
+     * @return the last modified time, 0 when it cannot be read so that the template is reloaded once it can, or {@link #NOT_FILE_BACKED}
+     */
+    private long lastModified(Resource resource) {
+        if (!resource.isFile()) return NOT_FILE_BACKED;
+        Long lastModified = this.readLastModified(resource);
+        return lastModified != null ? lastModified : 0;
+    }
+
+    private Long readLastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            logger.warn("cannot read last modified time of " + resource.getDescription() + ", keeping the cached template", e);
+            return null;
+        }
+    }
+
+    private Counter requestCounter(String templateTag, String result) {
+        return Counter.builder(METRIC_REQUESTS).tag("template", templateTag).tag("result", result).register(this.meterRegistry);
+    }
+}
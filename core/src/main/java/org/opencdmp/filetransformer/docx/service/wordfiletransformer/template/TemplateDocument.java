@@ -0,0 +1,21 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.template;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+public class TemplateDocument {
+    private final XWPFDocument document;
+    private final PlaceholderIndex placeholderIndex;
+
+    public TemplateDocument(XWPFDocument document, PlaceholderIndex placeholderIndex) {
+        this.document = document;
+        this.placeholderIndex = placeholderIndex;
+    }
+
+    public XWPFDocument getDocument() {
+        return document;
+    }
+
+    public PlaceholderIndex getPlaceholderIndex() {
+        return placeholderIndex;
+    }
+}
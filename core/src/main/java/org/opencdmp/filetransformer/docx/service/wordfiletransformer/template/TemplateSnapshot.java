@@ -0,0 +1,71 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.template;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Immutable in-memory copy of a parsed and validated docx template, together with its compiled {@link PlaceholderIndex}.
+ * The package is kept re-zipped without compression so that handing out a new document skips both the resource I/O and the inflate step.
+ */
+public class TemplateSnapshot {
+    private final byte[] content;
+    private final long lastModified;
+    private final PlaceholderIndex placeholderIndex;
+
+    private TemplateSnapshot(byte[] content, long lastModified, PlaceholderIndex placeholderIndex) {
+        this.content = content;
+        this.lastModified = lastModified;
+        this.placeholderIndex = placeholderIndex;
+    }
+
+    public static TemplateSnapshot of(byte[] source, long lastModified) throws IOException {
+        byte[] stored = toStoredZip(source);
+        PlaceholderIndex placeholderIndex;
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(stored))) {
+            // parse once so that a broken template is reported when it is loaded and not on every export
+            placeholderIndex = PlaceholderIndex.compile(document);
+        }
+        return new TemplateSnapshot(stored, lastModified, placeholderIndex);
+    }
+
+    public TemplateDocument newDocument() throws IOException {
+        return new TemplateDocument(new XWPFDocument(new ByteArrayInputStream(this.content)), this.placeholderIndex);
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public int getSize() {
+        return this.content.length;
+    }
+
+    private static byte[] toStoredZip(byte[] source) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(source.length * 4);
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(source)); ZipOutputStream zipOutputStream = new ZipOutputStream(out)) {
+            zipOutputStream.setMethod(ZipOutputStream.STORED);
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                byte[] data = zipInputStream.readAllBytes();
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                ZipEntry storedEntry = new ZipEntry(entry.getName());
+                storedEntry.setMethod(ZipEntry.STORED);
+                storedEntry.setSize(data.length);
+                storedEntry.setCompressedSize(data.length);
+                storedEntry.setCrc(crc.getValue());
+                zipOutputStream.putNextEntry(storedEntry);
+                zipOutputStream.write(data);
+                zipOutputStream.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+}
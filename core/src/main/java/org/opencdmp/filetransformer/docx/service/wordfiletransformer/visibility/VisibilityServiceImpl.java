@@ -2,22 +2,57 @@ package org.opencdmp.filetransformer.docx.service.wordfiletransformer.visibility
 
 import org.opencdmp.commonmodels.models.description.VisibilityStateModel;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Visibility of a description, indexed once when the description is rendered.
+ * Field ids are mapped to dense indexes; each index has a bit set of its visible ordinals and one bit for the state without ordinal,
+ * so a lookup is a map get on the (hash cached) id and a bit test, and allocates nothing.
+ * As before, a later state for the same field and ordinal overrides an earlier one, and a missing state means not visible.
+ * Ordinals are item positions and never negative; a negative ordinal is treated as not visible.
+ */
 public class VisibilityServiceImpl implements VisibilityService {
-	private final Map<FieldKey, Boolean> visibility;
-	
+	private final Map<String, Integer> fieldIndexes;
+	private final BitSet visibleWithoutOrdinal;
+	private BitSet[] visibleOrdinals;
+
     public VisibilityServiceImpl(List<VisibilityStateModel> visibilityStates) {
-	    this.visibility = new HashMap<>();
-	    for (VisibilityStateModel visibilityState : visibilityStates) this.visibility.put(new FieldKey(visibilityState.getFieldId(), visibilityState.getOrdinal()), visibilityState.getVisible());
+	    this.fieldIndexes = new HashMap<>(Math.max(16, visibilityStates.size()));
+	    this.visibleWithoutOrdinal = new BitSet();
+	    this.visibleOrdinals = new BitSet[16];
+	    for (VisibilityStateModel visibilityState : visibilityStates) {
+		    int index = this.fieldIndexes.computeIfAbsent(visibilityState.getFieldId(), key -> this.fieldIndexes.size());
+		    boolean visible = Boolean.TRUE.equals(visibilityState.getVisible());
+		    Integer ordinal = visibilityState.getOrdinal();
+		    if (ordinal == null) {
+			    this.visibleWithoutOrdinal.set(index, visible);
+		    } else if (ordinal >= 0) {
+			    this.ordinalsOf(index).set(ordinal, visible);
+		    }
+	    }
     }
 
 	@Override
 	public boolean isVisible(String id, Integer ordinal) {
-		FieldKey fieldKey = new FieldKey(id, ordinal);
-		return this.visibility.getOrDefault(fieldKey, false);
+		Integer index = this.fieldIndexes.get(id);
+		if (index == null) return false;
+		if (ordinal == null) return this.visibleWithoutOrdinal.get(index);
+		if (ordinal < 0 || index >= this.visibleOrdinals.length) return false;
+		BitSet ordinals = this.visibleOrdinals[index];
+		return ordinals != null && ordinals.get(ordinal);
 	}
-}
 
+	private BitSet ordinalsOf(int index) {
+		if (index >= this.visibleOrdinals.length) this.visibleOrdinals = Arrays.copyOf(this.visibleOrdinals, Math.max(index + 1, 2 * this.visibleOrdinals.length));
+		BitSet ordinals = this.visibleOrdinals[index];
+		if (ordinals == null) {
+			ordinals = new BitSet();
+			this.visibleOrdinals[index] = ordinals;
+		}
+		return ordinals;
+	}
+}
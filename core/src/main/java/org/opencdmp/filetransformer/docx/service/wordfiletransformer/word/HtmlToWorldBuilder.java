@@ -1,8 +1,8 @@
 package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
 
 import org.apache.poi.xwpf.usermodel.*;
-import org.apache.xmlbeans.XmlCursor;
 import org.jsoup.Jsoup;
+import org.jsoup.internal.StringUtil;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Node;
 import org.jsoup.nodes.TextNode;
@@ -12,113 +12,142 @@ import org.openxmlformats.schemas.wordprocessingml.x2006.main.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigInteger;
 import java.net.URI;
-import java.net.URL;
 import java.util.function.Predicate;
 import java.util.*;
 
+/**
+ * Converts html to a {@link RichTextFragment}. The visitor decides what has to be written for every node and records it;
+ * the fragment then writes it to the document.
+ */
 public class HtmlToWorldBuilder implements NodeVisitor {
 
     private static final Logger log = LoggerFactory.getLogger(HtmlToWorldBuilder.class);
+    private static final int HAS_TEXT = 1;
+    private static final int HAS_BR = 2;
+    private static final int OP_WEIGHT = 48;
     private final Map<String, Boolean> properties = new LinkedHashMap<>();
-    private XWPFParagraph paragraph;
-    private XWPFRun run;
-    private Boolean dumpRun;
-    private final float indentation;
-    private Boolean isIdentationUsed;
-    private XWPFNumbering numbering;
-    private final Queue<BigInteger> abstractNumId;
-    private BigInteger numberingLevel;
-    private XmlCursor cursor;
+    private final List<RichTextFragment.Op> ops = new ArrayList<>();
+    private final Map<Node, Integer> contentFlags = new IdentityHashMap<>();
+    private int textWeight;
 
-    public static HtmlToWorldBuilder convertInTable(XWPFTableCell document, Document htmlDocument, float indentation) {
-        XWPFParagraph paragraph = document.addParagraph();
-        paragraph.setIndentFromLeft(Math.round(400 * indentation));
-        HtmlToWorldBuilder htmlToWorldBuilder = new HtmlToWorldBuilder(paragraph, indentation, null);
-        NodeTraversor.traverse(htmlToWorldBuilder, htmlDocument);
-        return htmlToWorldBuilder;
+    /**
+     * Converts the html, with new lines as breaks. Text without markup, entities or carriage returns gives the same runs
+     * as its parsed form, so it is recorded directly and jsoup is skipped.
+     */
+    public static RichTextFragment record(String html) {
+        HtmlToWorldBuilder htmlToWorldBuilder = new HtmlToWorldBuilder();
+        if (isPlainText(html)) {
+            // the parser drops the whitespace before the first text into the head
+            String[] lines = stripLeadingWhitespace(html).split("\n", -1);
+            for (int i = 0; i < lines.length; i++) {
+                if (i > 0) htmlToWorldBuilder.add(writer -> writer.getRun().addBreak());
+                if (isBlank(lines[i])) continue;
+                htmlToWorldBuilder.addText(StringUtil.normaliseWhitespace(lines[i]));
+            }
+        } else {
+            NodeTraversor.traverse(htmlToWorldBuilder, Jsoup.parse(html.replace("\n", "<br>")));
+        }
+        return htmlToWorldBuilder.build();
     }
 
-    public static HtmlToWorldBuilder convert(XWPFDocument document, Document htmlDocument, float indentation) {
-        XWPFParagraph paragraph = document.createParagraph();
-        paragraph.setIndentFromLeft(Math.round(400 * indentation));
-        HtmlToWorldBuilder htmlToWorldBuilder = new HtmlToWorldBuilder(paragraph, indentation, null);
+    public static RichTextFragment record(Document htmlDocument) {
+        HtmlToWorldBuilder htmlToWorldBuilder = new HtmlToWorldBuilder();
         NodeTraversor.traverse(htmlToWorldBuilder, htmlDocument);
-        return htmlToWorldBuilder;
+        return htmlToWorldBuilder.build();
+    }
+
+    public static boolean isPlainText(String html) {
+        for (int i = 0; i < html.length(); i++) {
+            char c = html.charAt(i);
+            if (c == '<' || c == '&' || c == '\r' || c == '\0') return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the text has no visible character once whitespace is normalised, as {@code Element.text().trim()} would see it:
+     * non breaking spaces and invisible characters count as whitespace
+     */
+    private static boolean isBlank(String text) {
+        for (int i = 0; i < text.length(); ) {
+            int c = text.codePointAt(i);
+            if (c > ' ' && !StringUtil.isActuallyWhitespace(c) && !StringUtil.isInvisibleChar(c)) return false;
+            i += Character.charCount(c);
+        }
+        return true;
+    }
+
+    private static String stripLeadingWhitespace(String text) {
+        int start = 0;
+        while (start < text.length() && (text.charAt(start) == ' ' || text.charAt(start) == '\t' || text.charAt(start) == '\f')) start++;
+        return text.substring(start);
+    }
+
+    private HtmlToWorldBuilder() {
+    }
+
+    private RichTextFragment build() {
+        return new RichTextFragment(this.ops, this.textWeight + this.ops.size() * OP_WEIGHT);
     }
 
-    public HtmlToWorldBuilder(XWPFParagraph paragraph, float indentation, XmlCursor cursor) {
-        this.paragraph = paragraph;
-        this.run = this.paragraph.createRun();
-        this.dumpRun = false;
-        this.indentation = indentation;
-        this.isIdentationUsed = false;
-        this.run.setFontSize(11);
-        this.abstractNumId = new ArrayDeque<>();
-        this.numberingLevel = BigInteger.valueOf(-1);
-        this.setDefaultIndentation();
-        this.cursor  = cursor;
+    private void add(RichTextFragment.Op op) {
+        this.ops.add(op);
+    }
+
+    private void addText(String text) {
+        this.textWeight += 2 * text.length();
+        this.add(writer -> writer.text(text));
     }
 
     @Override
     public void head(Node node, int i) {
-
-        if (!node.outerHtml().contains("br")) {
-            String htmlToPlainText = Jsoup.parse(node.outerHtml()).text();
-            if (htmlToPlainText.trim().isEmpty()) return;
-        }
+        if (this.isEmpty(node)) return;
 
         String name = node.nodeName();
         if (name.equals("#text")) {
-            String text = ((TextNode)node).text();
-            this.run.setText(text);
-            this.dumpRun = true;
+            this.addText(((TextNode)node).text());
         } else {
             properties.put(name, true);
         }
-        if (dumpRun) {
-            this.run = this.paragraph.createRun();
-            this.run.setFontSize(11);
-            this.dumpRun = false;
-        }
         parseProperties(node);
         properties.clear();
     }
 
     private void parseProperties(Node node) {
         properties.entrySet().forEach(stringBooleanEntry -> {
-            this.run.setFontSize(11);
+            this.add(writer -> writer.getRun().setFontSize(11));
+            boolean value = stringBooleanEntry.getValue();
             switch (stringBooleanEntry.getKey()) {
                 case "i" :
                 case "em":
-                    this.run.setItalic(stringBooleanEntry.getValue());
+                    this.add(writer -> writer.getRun().setItalic(value));
                     break;
                 case "b":
                 case "strong":
-                    this.run.setBold(stringBooleanEntry.getValue());
+                    this.add(writer -> writer.getRun().setBold(value));
                     break;
                 case "u":
                 case "ins":
-                    this.run.setUnderline(stringBooleanEntry.getValue() ? UnderlinePatterns.SINGLE : UnderlinePatterns.NONE);
+                    this.add(writer -> writer.getRun().setUnderline(value ? UnderlinePatterns.SINGLE : UnderlinePatterns.NONE));
                     break;
                 case "small":
-                    this.run.setFontSize(stringBooleanEntry.getValue() ? 8 : 11);
+                    this.add(writer -> writer.getRun().setFontSize(value ? 8 : 11));
                     break;
                 case "del":
                 case "strike":
                 case "strikethrough":
                 case "s":
-                    this.run.setStrikeThrough(stringBooleanEntry.getValue());
+                    this.add(writer -> writer.getRun().setStrikeThrough(value));
                     break;
                 case "mark":
-                    this.run.setTextHighlightColor(stringBooleanEntry.getValue() ? STHighlightColor.YELLOW.toString() : STHighlightColor.NONE.toString());
+                    this.add(writer -> writer.getRun().setTextHighlightColor(value ? STHighlightColor.YELLOW.toString() : STHighlightColor.NONE.toString()));
                     break;
                 case "sub":
-                    this.run.setSubscript(stringBooleanEntry.getValue() ? VerticalAlign.SUBSCRIPT : VerticalAlign.BASELINE);
+                    this.add(writer -> writer.getRun().setSubscript(value ? VerticalAlign.SUBSCRIPT : VerticalAlign.BASELINE));
                     break;
                 case "sup":
-                    this.run.setSubscript(stringBooleanEntry.getValue() ? VerticalAlign.SUPERSCRIPT : VerticalAlign.BASELINE);
+                    this.add(writer -> writer.getRun().setSubscript(value ? VerticalAlign.SUPERSCRIPT : VerticalAlign.BASELINE));
                     break;
                 case "div":
                     if (node.childNodeSize() > 0) {
@@ -131,150 +160,112 @@ public class HtmlToWorldBuilder implements NodeVisitor {
                             break;
                         }
                     }
-                case "p":
-                    if(this.cursor != null) {
-                        this.paragraph = this.paragraph.getDocument().insertNewParagraph(this.cursor);
-                        this.cursor = this.paragraph.getCTP().newCursor();
-                        this.cursor.toNextSibling();
-                    } else {
-                        this.paragraph = this.paragraph.getDocument().createParagraph();
-                    }
-                    this.paragraph.setSpacingBefore(0);
-                    this.paragraph.setSpacingAfter(0);
-                    this.run = this.paragraph.createRun();
-                    this.isIdentationUsed = false;
-                    this.setDefaultIndentation();
-                    if (stringBooleanEntry.getValue()) {
-                        if (node.hasAttr("align")) {
-                            String alignment = node.attr("align");
-                            if(alignment.toUpperCase(Locale.ROOT).equals("JUSTIFY")) {
-                                alignment = "both";
-                            }
-                            this.paragraph.setAlignment(ParagraphAlignment.valueOf(alignment.toUpperCase(Locale.ROOT)));
+                case "p": {
+                    ParagraphAlignment alignment = null;
+                    if (value && node.hasAttr("align")) {
+                        String align = node.attr("align");
+                        if(align.toUpperCase(Locale.ROOT).equals("JUSTIFY")) {
+                            align = "both";
                         }
+                        alignment = ParagraphAlignment.valueOf(align.toUpperCase(Locale.ROOT));
                     }
+                    ParagraphAlignment paragraphAlignment = alignment;
+                    this.add(writer -> {
+                        writer.newParagraph();
+                        writer.getParagraph().setSpacingBefore(0);
+                        writer.getParagraph().setSpacingAfter(0);
+                        writer.newRun();
+                        writer.resetIndentation();
+                        if (paragraphAlignment != null) writer.getParagraph().setAlignment(paragraphAlignment);
+                    });
                     break;
+                }
                 case "blockquote":
-                    if(this.cursor != null) {
-                        this.paragraph = this.paragraph.getDocument().insertNewParagraph(this.cursor);
-                        this.cursor = this.paragraph.getCTP().newCursor();
-                        cursor.toNextSibling();
-                    } else {
-                        this.paragraph = this.paragraph.getDocument().createParagraph();
-                    }
-                    this.run = this.paragraph.createRun();
-                    if (stringBooleanEntry.getValue()) {
-                        this.paragraph.setIndentationLeft(400);
-                    } else {
-                        this.isIdentationUsed = false;
-                        this.setDefaultIndentation();
-                    }
-                    break;
-                case "ul":
-                    if (stringBooleanEntry.getValue()) {
-                        createNumbering(STNumberFormat.BULLET);
-                    } else {
-                        if(this.cursor != null) {
-                            this.paragraph = this.paragraph.getDocument().insertNewParagraph(this.cursor);
-                            this.cursor = this.paragraph.getCTP().newCursor();
-                            cursor.toNextSibling();
+                    this.add(writer -> {
+                        writer.newParagraph();
+                        writer.newRun();
+                        if (value) {
+                            writer.getParagraph().setIndentationLeft(400);
                         } else {
-                            this.paragraph = this.paragraph.getDocument().createParagraph();
+                            writer.resetIndentation();
                         }
-                        this.paragraph.setSpacingBefore(0);
-                        this.paragraph.setSpacingAfter(0);
-                        this.run = this.paragraph.createRun();
-                        this.isIdentationUsed = false;
-                        this.setDefaultIndentation();
-                        this.numberingLevel = this.numberingLevel.subtract(BigInteger.ONE);
-                        ((ArrayDeque)this.abstractNumId).removeLast();
-                    }
+                    });
                     break;
+                case "ul":
                 case "ol":
-                    if (stringBooleanEntry.getValue()) {
-                        createNumbering(STNumberFormat.DECIMAL);
+                    if (value) {
+                        STNumberFormat.Enum format = stringBooleanEntry.getKey().equals("ul") ? STNumberFormat.BULLET : STNumberFormat.DECIMAL;
+                        this.add(writer -> writer.createNumbering(format));
                     } else {
-                        if(this.cursor != null) {
-                            this.paragraph = this.paragraph.getDocument().insertNewParagraph(this.cursor);
-                            this.cursor = this.paragraph.getCTP().newCursor();
-                            cursor.toNextSibling();
-                        } else {
-                            this.paragraph = this.paragraph.getDocument().createParagraph();
-                        }
-                        this.paragraph.setSpacingBefore(0);
-                        this.paragraph.setSpacingAfter(0);
-                        this.run = this.paragraph.createRun();
-                        this.isIdentationUsed = false;
-                        this.setDefaultIndentation();
-                        this.numberingLevel = this.numberingLevel.subtract(BigInteger.ONE);
-                        ((ArrayDeque)this.abstractNumId).removeLast();
+                        this.add(writer -> {
+                            writer.newParagraph();
+                            writer.getParagraph().setSpacingBefore(0);
+                            writer.getParagraph().setSpacingAfter(0);
+                            writer.newRun();
+                            writer.resetIndentation();
+                            writer.endList();
+                        });
                     }
                     break;
                 case "li":
-                    if (stringBooleanEntry.getValue()) {
-                        if(this.cursor != null) {
-                            this.paragraph = this.paragraph.getDocument().insertNewParagraph(this.cursor);
-                            this.cursor = this.paragraph.getCTP().newCursor();
-                            cursor.toNextSibling();
-                        } else {
-                            this.paragraph = this.paragraph.getDocument().createParagraph();
-                        }
-                        //                            this.paragraph.setIndentationLeft(Math.round(indentation * 720) * (numberingLevel.intValue() + 1));
-                        this.paragraph.setIndentFromLeft(Math.round(numberingLevel.intValue() * 400 + this.indentation*400));
-                        this.run = this.paragraph.createRun();
-                        this.paragraph.setNumID(((ArrayDeque<BigInteger>)abstractNumId).getLast().add(BigInteger.ONE)); // sets the list-element numId that should match the numId of the corresponding list
+                    if (value) {
+                        this.add(RichTextWriter::listItem);
                     }
                     break;
                 case "font":
-                    if (stringBooleanEntry.getValue()) {
+                    if (value) {
                         if (node.hasAttr("color")) {
-                            this.run.setColor(node.attr("color").substring(1));
+                            String color = node.attr("color").substring(1);
+                            this.add(writer -> writer.getRun().setColor(color));
                         }
                     } else {
-                        this.run.setColor("000000");
+                        this.add(writer -> writer.getRun().setColor("000000"));
                     }
                     break;
                 case "a":
-                    if (stringBooleanEntry.getValue()) {
+                    if (value) {
                         if (node.hasAttr("href")) {
-                            XWPFHyperlinkRun xwpfHyperlinkRun = createHyperLinkRun(node.attr("href"));
-                            if (xwpfHyperlinkRun != null) {
-                                this.run = xwpfHyperlinkRun;
-                                this.run.setColor("0000FF");
-                                this.run.setUnderline(UnderlinePatterns.SINGLE);
+                            String href = node.attr("href");
+                            String uri = fixUri(href);
+                            if (uri != null) {
+                                this.add(writer -> writer.hyperlink(uri));
                             } else {
-                                this.run.setText(node.attr("href") + " ");
+                                this.add(writer -> writer.getRun().setText(href + " "));
                             }
                         }
                     } else {
-                        this.run = paragraph.createRun();
+                        this.add(RichTextWriter::newRun);
                     }
                     break;
                 case "br":
-                    if (stringBooleanEntry.getValue()) {
-                        this.run.addBreak();
+                    if (value) {
+                        this.add(writer -> writer.getRun().addBreak());
                     }
                     break;
                 case "h1":
-                    this.run.setFontSize(24);
+                    this.add(writer -> writer.getRun().setFontSize(24));
                     break;
                 case "h2":
-                    this.run.setFontSize(20);
+                    this.add(writer -> writer.getRun().setFontSize(20));
                     break;
                 case "h3":
-                    this.run.setFontSize(16);
+                    this.add(writer -> writer.getRun().setFontSize(16));
                     break;
                 case "h4":
-                    this.run.setFontSize(14);
-                    this.run.setBold(stringBooleanEntry.getValue());
+                    this.add(writer -> {
+                        writer.getRun().setFontSize(14);
+                        writer.getRun().setBold(value);
+                    });
                     break;
                 case "h5":
-                    this.run.setFontSize(14);
+                    this.add(writer -> writer.getRun().setFontSize(14));
                     break;
                 case "h6":
-                    this.run.setFontSize(11);
-                    this.run.setBold(stringBooleanEntry.getValue());
-                    this.run.setCapitalized(stringBooleanEntry.getValue());
+                    this.add(writer -> {
+                        writer.getRun().setFontSize(11);
+                        writer.getRun().setBold(value);
+                        writer.getRun().setCapitalized(value);
+                    });
                     break;
             }
         });
@@ -282,10 +273,7 @@ public class HtmlToWorldBuilder implements NodeVisitor {
 
     @Override
     public void tail(Node node, int i) {
-        if (!node.outerHtml().contains("br")) {
-            String htmlToPlainText = Jsoup.parse(node.outerHtml()).text();
-            if (htmlToPlainText.trim().isEmpty()) return;
-        }
+        if (this.isEmpty(node)) return;
 
         String name = node.nodeName();
         properties.put(name, false);
@@ -293,43 +281,40 @@ public class HtmlToWorldBuilder implements NodeVisitor {
         properties.clear();
     }
 
-    //GK: This function creates one numbering.xml for the word document and adds a specific format.
-    //It imitates the numbering.xml that is usually generated by word editors like LibreOffice
-    private void createNumbering(STNumberFormat.Enum format) {
-        CTAbstractNum ctAbstractNum = CTAbstractNum.Factory.newInstance();
-        if (this.numbering == null) this.numbering = this.paragraph.getDocument().createNumbering();
-        BigInteger tempNumId = BigInteger.ONE;
-        boolean found = false;
-        while (!found) {
-            Object o = numbering.getAbstractNum(tempNumId);
-            found = (o == null);
-            if (!found) tempNumId = tempNumId.add(BigInteger.ONE);
+    // a node without a <br> and without non blank text in its subtree produces no output
+    private boolean isEmpty(Node node) {
+        Integer flags = this.contentFlags.get(node);
+        if (flags == null) {
+            this.indexContent(node);
+            flags = this.contentFlags.get(node);
         }
-        ctAbstractNum.setAbstractNumId(tempNumId);
-        CTLvl ctLvl = ctAbstractNum.addNewLvl();
-        this.numberingLevel = numberingLevel.add(BigInteger.ONE);
-        ctLvl.setIlvl(numberingLevel);
-        ctLvl.addNewNumFmt().setVal(format);
-        ctLvl.addNewStart().setVal(BigInteger.ONE);
-        if (format == STNumberFormat.BULLET) {
-            ctLvl.addNewLvlJc().setVal(STJc.LEFT);
-            ctLvl.addNewLvlText().setVal("\u2022");
-            ctLvl.addNewRPr(); //Set the Symbol font
-            CTFonts f = ctLvl.getRPr().addNewRFonts();
-            f.setAscii("Symbol");
-            f.setHAnsi("Symbol");
-            f.setCs("Symbol");
-            f.setHint(STHint.DEFAULT);
-        } else {
-            ctLvl.addNewLvlText().setVal("%1.");
-        }
-        XWPFAbstractNum xwpfAbstractNum = new XWPFAbstractNum(ctAbstractNum);
+        return flags == 0;
+    }
+
+    // computes the flags of every node of the subtree bottom up, so each node is looked at once for the whole traversal
+    private void indexContent(Node root) {
+        NodeTraversor.traverse(new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+            }
 
-        this.abstractNumId.add(this.numbering.addAbstractNum(xwpfAbstractNum));
-        this.numbering.addNum(((ArrayDeque<BigInteger>)abstractNumId).getLast());
+            @Override
+            public void tail(Node node, int depth) {
+                int flags = 0;
+                if (node instanceof TextNode) {
+                    if (!isBlank(((TextNode) node).getWholeText())) flags |= HAS_TEXT;
+                } else if (node.nodeName().equals("br")) {
+                    flags |= HAS_BR;
+                }
+                for (int child = 0; child < node.childNodeSize(); child++) {
+                    flags |= contentFlags.getOrDefault(node.childNode(child), 0);
+                }
+                contentFlags.put(node, flags);
+            }
+        }, root);
     }
 
-    private XWPFHyperlinkRun createHyperLinkRun(String uri) {
+    private static String fixUri(String uri) {
         URI fixedUri = null;
         try {
             fixedUri = URI.create(uri);
@@ -343,30 +328,6 @@ public class HtmlToWorldBuilder implements NodeVisitor {
                 log.warn("cannot create uri: " + uri);
             }
         }
-        if (fixedUri == null) return null;
-        
-        String rId = this.paragraph.getDocument().getPackagePart().addExternalRelationship(fixedUri.toASCIIString(), XWPFRelation.HYPERLINK.getRelation()).getId();
-
-        CTHyperlink cthyperLink=paragraph.getCTP().addNewHyperlink();
-        cthyperLink.setId(rId);
-        cthyperLink.addNewR();
-
-        return new XWPFHyperlinkRun(
-                cthyperLink,
-                cthyperLink.getRArray(0),
-                paragraph
-        );
-    }
-
-    private void setDefaultIndentation() {
-        if (!isIdentationUsed) {
-//            this.paragraph.setIndentationLeft(Math.round(indentation * 720.0F));
-            this.paragraph.setIndentFromLeft(Math.round(indentation * 400));
-            this.isIdentationUsed = true;
-        }
-    }
-
-    public XWPFParagraph getParagraph() {
-        return paragraph;
+        return fixedUri != null ? fixedUri.toASCIIString() : null;
     }
 }
@@ -0,0 +1,137 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
+
+import gr.cite.tools.exception.MyApplicationException;
+import org.apache.poi.xwpf.usermodel.XWPFAbstractNum;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFNum;
+import org.apache.poi.xwpf.usermodel.XWPFNumbering;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.*;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * List numbering of one document. Abstract numbering definitions are created once per (format, level) and shared by all
+ * lists of the document; every list gets its own numbering instance that restarts at one.
+ * Ids are handed out from counters that start after the highest id already in the document (the template's own numbering),
+ * so creating a list does not scan the numbering part.
+ * A registry binds to the first document it is used with and, like the {@link RenderContext} that holds it, is not thread safe.
+ */
+public class NumberingRegistry {
+    private XWPFDocument document;
+    private XWPFNumbering numbering;
+    private BigInteger nextAbstractNumId;
+    private BigInteger nextNumId;
+    private final Map<String, BigInteger> abstractNumIds = new HashMap<>();
+
+    /**
+     * @return the id of a new numbering instance, to be set on the list item paragraphs
+     */
+    public BigInteger newList(XWPFDocument document, STNumberFormat.Enum format, BigInteger level) {
+        this.bind(document);
+        BigInteger abstractNumId = this.abstractNumIds.computeIfAbsent(format + ":" + level, key -> this.addAbstractNum(format, level));
+
+        CTNum ctNum = CTNum.Factory.newInstance();
+        ctNum.setNumId(this.nextNumId);
+        ctNum.addNewAbstractNumId().setVal(abstractNumId);
+        CTNumLvl override = ctNum.addNewLvlOverride();
+        override.setIlvl(level);
+        override.addNewStartOverride().setVal(BigInteger.ONE);
+        this.nextNumId = this.nextNumId.add(BigInteger.ONE);
+        return this.numbering.addNum(new XWPFNum(ctNum, this.numbering));
+    }
+
+    /**
+     * Copies the lists of a fragment, rendered in its own document with its own registry, to this document.
+     * Abstract numbering definitions the fragment registry created for a (format, level) that this registry has already created are shared.
+     * @return the numbering instance ids of the fragment mapped to the ids of their copies
+     */
+    public Map<BigInteger, BigInteger> importNumbering(XWPFDocument document, XWPFNumbering source) {
+        if (source == null) return Map.of();
+        this.bind(document);
+
+        Map<BigInteger, BigInteger> abstractNumIds = new HashMap<>();
+        for (XWPFAbstractNum abstractNum : source.getAbstractNums()) {
+            CTAbstractNum ctAbstractNum = abstractNum.getCTAbstractNum();
+            String key = this.keyOf(ctAbstractNum);
+            BigInteger id = key != null ? this.abstractNumIds.computeIfAbsent(key, x -> this.copyAbstractNum(ctAbstractNum)) : this.copyAbstractNum(ctAbstractNum);
+            abstractNumIds.put(ctAbstractNum.getAbstractNumId(), id);
+        }
+
+        Map<BigInteger, BigInteger> numIds = new HashMap<>();
+        for (XWPFNum num : source.getNums()) {
+            CTNum ctNum = (CTNum) num.getCTNum().copy();
+            BigInteger sourceId = ctNum.getNumId();
+            if (ctNum.getAbstractNumId() != null && abstractNumIds.containsKey(ctNum.getAbstractNumId().getVal())) {
+                ctNum.getAbstractNumId().setVal(abstractNumIds.get(ctNum.getAbstractNumId().getVal()));
+            }
+            ctNum.setNumId(this.nextNumId);
+            this.nextNumId = this.nextNumId.add(BigInteger.ONE);
+            numIds.put(sourceId, this.numbering.addNum(new XWPFNum(ctNum, this.numbering)));
+        }
+        return numIds;
+    }
+
+    /**
+     * @return the key of a single level definition, the shape {@link #addAbstractNum} creates, or null for any other definition
+     */
+    private String keyOf(CTAbstractNum ctAbstractNum) {
+        if (ctAbstractNum.sizeOfLvlArray() != 1) return null;
+        CTLvl ctLvl = ctAbstractNum.getLvlArray(0);
+        if (ctLvl.getNumFmt() == null || ctLvl.getNumFmt().getVal() == null || ctLvl.getIlvl() == null) return null;
+        return ctLvl.getNumFmt().getVal() + ":" + ctLvl.getIlvl();
+    }
+
+    private BigInteger copyAbstractNum(CTAbstractNum source) {
+        CTAbstractNum ctAbstractNum = (CTAbstractNum) source.copy();
+        ctAbstractNum.setAbstractNumId(this.nextAbstractNumId);
+        this.nextAbstractNumId = this.nextAbstractNumId.add(BigInteger.ONE);
+        return this.numbering.addAbstractNum(new XWPFAbstractNum(ctAbstractNum));
+    }
+
+    private void bind(XWPFDocument document) {
+        if (this.document == document) return;
+        if (this.document != null) throw new MyApplicationException("numbering registry already bound to another document");
+
+        this.document = document;
+        this.numbering = document.createNumbering();
+        BigInteger maxAbstractNumId = BigInteger.ZERO;
+        for (XWPFAbstractNum abstractNum : this.numbering.getAbstractNums()) {
+            BigInteger id = abstractNum.getCTAbstractNum().getAbstractNumId();
+            if (id != null) maxAbstractNumId = maxAbstractNumId.max(id);
+        }
+        BigInteger maxNumId = BigInteger.ZERO;
+        for (XWPFNum num : this.numbering.getNums()) {
+            BigInteger id = num.getCTNum().getNumId();
+            if (id != null) maxNumId = maxNumId.max(id);
+        }
+        this.nextAbstractNumId = maxAbstractNumId.add(BigInteger.ONE);
+        this.nextNumId = maxNumId.add(BigInteger.ONE);
+    }
+
+    //GK: This function creates one numbering.xml for the word document and adds a specific format.
+    //It imitates the numbering.xml that is usually generated by word editors like LibreOffice
+    private BigInteger addAbstractNum(STNumberFormat.Enum format, BigInteger level) {
+        CTAbstractNum ctAbstractNum = CTAbstractNum.Factory.newInstance();
+        ctAbstractNum.setAbstractNumId(this.nextAbstractNumId);
+        this.nextAbstractNumId = this.nextAbstractNumId.add(BigInteger.ONE);
+        CTLvl ctLvl = ctAbstractNum.addNewLvl();
+        ctLvl.setIlvl(level);
+        ctLvl.addNewNumFmt().setVal(format);
+        ctLvl.addNewStart().setVal(BigInteger.ONE);
+        if (format == STNumberFormat.BULLET) {
+            ctLvl.addNewLvlJc().setVal(STJc.LEFT);
+            ctLvl.addNewLvlText().setVal("\u2022");
+            ctLvl.addNewRPr(); //Set the Symbol font
+            CTFonts f = ctLvl.getRPr().addNewRFonts();
+            f.setAscii("Symbol");
+            f.setHAnsi("Symbol");
+            f.setCs("Symbol");
+            f.setHint(STHint.DEFAULT);
+        } else {
+            ctLvl.addNewLvlText().setVal("%1.");
+        }
+        return this.numbering.addAbstractNum(new XWPFAbstractNum(ctAbstractNum));
+    }
+}
@@ -0,0 +1,131 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton over a fixed set of placeholder codes, compiled into a dense transition table.
+ * Instances are immutable and can be shared between threads.
+ */
+public class PlaceholderAutomaton {
+    private static final int ROOT = 0;
+
+    private final List<String> patterns;
+    private final int[] charClasses;
+    private final Map<Character, Integer> extendedCharClasses;
+    private final int[][] transitions;
+    private final int[][] outputs;
+
+    private PlaceholderAutomaton(List<String> patterns, int[] charClasses, Map<Character, Integer> extendedCharClasses, int[][] transitions, int[][] outputs) {
+        this.patterns = patterns;
+        this.charClasses = charClasses;
+        this.extendedCharClasses = extendedCharClasses;
+        this.transitions = transitions;
+        this.outputs = outputs;
+    }
+
+    public static PlaceholderAutomaton compile(Collection<String> codes) {
+        List<String> patterns = codes.stream().filter(x -> x != null && !x.isEmpty()).distinct().toList();
+
+        int[] charClasses = new int[128];
+        Arrays.fill(charClasses, -1);
+        Map<Character, Integer> extendedCharClasses = new HashMap<>();
+        int classCount = 0;
+        for (String pattern : patterns) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c < 128) {
+                    if (charClasses[c] == -1) charClasses[c] = classCount++;
+                } else if (!extendedCharClasses.containsKey(c)) {
+                    extendedCharClasses.put(c, classCount++);
+                }
+            }
+        }
+
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> trieOutputs = new ArrayList<>();
+        trie.add(newState(classCount));
+        trieOutputs.add(new ArrayList<>());
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            int state = ROOT;
+            for (int i = 0; i < pattern.length(); i++) {
+                int charClass = classOf(pattern.charAt(i), charClasses, extendedCharClasses);
+                if (trie.get(state)[charClass] == -1) {
+                    trie.get(state)[charClass] = trie.size();
+                    trie.add(newState(classCount));
+                    trieOutputs.add(new ArrayList<>());
+                }
+                state = trie.get(state)[charClass];
+            }
+            trieOutputs.get(state).add(p);
+        }
+
+        int[][] transitions = trie.toArray(new int[0][]);
+        int[] failure = new int[transitions.length];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < classCount; c++) {
+            int next = transitions[ROOT][c];
+            if (next == -1) {
+                transitions[ROOT][c] = ROOT;
+            } else {
+                failure[next] = ROOT;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            trieOutputs.get(state).addAll(trieOutputs.get(failure[state]));
+            for (int c = 0; c < classCount; c++) {
+                int next = transitions[state][c];
+                if (next == -1) {
+                    transitions[state][c] = transitions[failure[state]][c];
+                } else {
+                    failure[next] = transitions[failure[state]][c];
+                    queue.add(next);
+                }
+            }
+        }
+
+        int[][] outputs = new int[transitions.length][];
+        for (int state = 0; state < outputs.length; state++) {
+            outputs[state] = trieOutputs.get(state).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return new PlaceholderAutomaton(patterns, charClasses, Map.copyOf(extendedCharClasses), transitions, outputs);
+    }
+
+    public int initialState() {
+        return ROOT;
+    }
+
+    public int next(int state, char c) {
+        int charClass = classOf(c, this.charClasses, this.extendedCharClasses);
+        return charClass == -1 ? ROOT : this.transitions[state][charClass];
+    }
+
+    /**
+     * Indexes into {@link #getPatterns()} of the codes that end at the given state.
+     */
+    public int[] matches(int state) {
+        return this.outputs[state];
+    }
+
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    public boolean isEmpty() {
+        return this.patterns.isEmpty();
+    }
+
+    private static int classOf(char c, int[] charClasses, Map<Character, Integer> extendedCharClasses) {
+        if (c < 128) return charClasses[c];
+        Integer charClass = extendedCharClasses.get(c);
+        return charClass == null ? -1 : charClass;
+    }
+
+    private static int[] newState(int classCount) {
+        int[] state = new int[classCount];
+        Arrays.fill(state, -1);
+        return state;
+    }
+}
@@ -0,0 +1,187 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
+
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTText;
+
+import javax.xml.namespace.QName;
+import java.util.*;
+
+/**
+ * Replaces every code of a {@link PlaceholderAutomaton} found in a paragraph with a single pass over its runs.
+ * Codes may be split over several runs; as with the previous per-code search, the text before a code stays in its first run,
+ * the replacement is appended to that run, the text after the code stays in its last run and the runs in between are removed.
+ * A run element other than text or run properties (a tab, a break, a drawing) interrupts a code.
+ */
+public class PlaceholderReplacer {
+    private static final QName TEXT = new QName("http://schemas.openxmlformats.org/wordprocessingml/2006/main", "t");
+
+    private final PlaceholderAutomaton automaton;
+    private final Map<String, Replacement> replacements;
+
+    public PlaceholderReplacer(Map<String, Replacement> replacements) {
+        this(PlaceholderAutomaton.compile(replacements.keySet()), replacements);
+    }
+
+    /**
+     * @param automaton compiled over the codes of the replacements, possibly shared with other replacers of the same codes
+     */
+    public PlaceholderReplacer(PlaceholderAutomaton automaton, Map<String, Replacement> replacements) {
+        this.replacements = replacements;
+        this.automaton = automaton;
+    }
+
+    /**
+     * @return the codes that were found and replaced, in document order
+     */
+    public List<String> replace(XWPFParagraph paragraph) {
+        if (this.automaton.isEmpty()) return List.of();
+        List<XWPFRun> runs = paragraph.getRuns();
+        if (runs.isEmpty()) return List.of();
+
+        List<TextNode> nodes = new ArrayList<>();
+        List<Match> candidates = new ArrayList<>();
+        int state = this.automaton.initialState();
+        int offset = 0;
+        for (int runPos = 0; runPos < runs.size(); runPos++) {
+            int textPos = 0;
+            try (XmlCursor c = runs.get(runPos).getCTR().newCursor()) {
+                c.selectPath("./*");
+                while (c.toNextSelection()) {
+                    XmlObject o = c.getObject();
+                    if (o instanceof CTText && TEXT.equals(c.getName())) {
+                        String text = ((CTText) o).getStringValue();
+                        nodes.add(new TextNode(runPos, textPos, offset));
+                        for (int charPos = 0; charPos < text.length(); charPos++) {
+                            state = this.automaton.next(state, text.charAt(charPos));
+                            for (int pattern : this.automaton.matches(state)) {
+                                int length = this.automaton.getPatterns().get(pattern).length();
+                                candidates.add(new Match(pattern, offset + charPos - length + 1, offset + charPos));
+                            }
+                        }
+                        offset += text.length();
+                        textPos++;
+                    } else if (!(o instanceof CTRPr)) {
+                        state = this.automaton.initialState();
+                    }
+                }
+            }
+        }
+        if (candidates.isEmpty()) return List.of();
+
+        candidates.sort(Comparator.comparingInt((Match x) -> x.start).thenComparingInt(x -> -x.end));
+        List<Match> matches = new ArrayList<>();
+        int lastEnd = -1;
+        for (Match candidate : candidates) {
+            if (candidate.start > lastEnd) {
+                matches.add(candidate);
+                lastEnd = candidate.end;
+            }
+        }
+
+        List<String> found = new ArrayList<>(matches.size());
+        for (Match match : matches) found.add(this.automaton.getPatterns().get(match.pattern));
+
+        for (int i = matches.size() - 1; i >= 0; i--) {
+            Match match = matches.get(i);
+            this.apply(paragraph, runs, this.locate(nodes, match.start), this.locate(nodes, match.end), this.replacements.get(this.automaton.getPatterns().get(match.pattern)));
+        }
+        return found;
+    }
+
+    private void apply(XWPFParagraph paragraph, List<XWPFRun> runs, Position begin, Position end, Replacement replacement) {
+        XWPFRun beginRun = runs.get(begin.run);
+        String textInBeginRun = beginRun.getText(begin.text);
+        String textBefore = textInBeginRun.substring(0, begin.charPos);
+
+        XWPFRun endRun = runs.get(end.run);
+        String textInEndRun = endRun.getText(end.text);
+        String textAfter = textInEndRun.substring(end.charPos + 1);
+
+        String value = replacement.getText() != null ? replacement.getText() : "";
+        if (begin.run == end.run && begin.text == end.text) {
+            beginRun.setText(textBefore + value + textAfter, begin.text);
+        } else {
+            beginRun.setText(textBefore + value, begin.text);
+            endRun.setText(textAfter, end.text);
+        }
+        if (replacement.getFontSize() != null) {
+            beginRun.setFontSize(replacement.getFontSize());
+        }
+        for (int runBetween = end.run - 1; runBetween > begin.run; runBetween--) {
+            paragraph.removeRun(runBetween);
+        }
+    }
+
+    private Position locate(List<TextNode> nodes, int offset) {
+        int low = 0, high = nodes.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (nodes.get(mid).offset <= offset) low = mid;
+            else high = mid - 1;
+        }
+        TextNode node = nodes.get(low);
+        return new Position(node.run, node.text, offset - node.offset);
+    }
+
+    public static class Replacement {
+        private final String text;
+        private final Integer fontSize;
+
+        public Replacement(String text) {
+            this(text, null);
+        }
+
+        public Replacement(String text, Integer fontSize) {
+            this.text = text;
+            this.fontSize = fontSize;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public Integer getFontSize() {
+            return fontSize;
+        }
+    }
+
+    private static class TextNode {
+        private final int run;
+        private final int text;
+        private final int offset;
+
+        private TextNode(int run, int text, int offset) {
+            this.run = run;
+            this.text = text;
+            this.offset = offset;
+        }
+    }
+
+    private static class Position {
+        private final int run;
+        private final int text;
+        private final int charPos;
+
+        private Position(int run, int text, int charPos) {
+            this.run = run;
+            this.text = text;
+            this.charPos = charPos;
+        }
+    }
+
+    private static class Match {
+        private final int pattern;
+        private final int start;
+        private final int end;
+
+        private Match(int pattern, int start, int end) {
+            this.pattern = pattern;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
+
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.image.ImageRegistry;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.metrics.ExportTimings;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTAbstractNum;
+
+import java.math.BigInteger;
+
+/**
+ * Mutable state of a single document export (current indentation, image caption numbering, listing levels, list numbering, embedded images, phase timings).
+ * A new context is created for every exported document and is passed through the {@link WordBuilder} calls,
+ * so that the builder itself holds no per-document state and can be shared between concurrent exports.
+ * A context is not thread safe and must not be shared between documents.
+ */
+public class RenderContext {
+    private final CTAbstractNum abstractNum;
+    private BigInteger numId;
+    private int indent;
+    private int imageCount;
+    private final NumberingRegistry numberingRegistry;
+    private final ImageRegistry imageRegistry;
+    private final ExportTimings timings;
+
+    public RenderContext() {
+        this(new ExportTimings());
+    }
+
+    /**
+     * @param timings the timings of the export the document is part of; documents rendered in parallel for one export share them
+     */
+    public RenderContext(ExportTimings timings) {
+        this.abstractNum = CTAbstractNum.Factory.newInstance();
+        this.abstractNum.setAbstractNumId(BigInteger.valueOf(1));
+        this.indent = 0;
+        this.imageCount = 0;
+        this.numberingRegistry = new NumberingRegistry();
+        this.imageRegistry = new ImageRegistry();
+        this.timings = timings;
+    }
+
+    public CTAbstractNum getAbstractNum() {
+        return abstractNum;
+    }
+
+    public BigInteger getNumId() {
+        return numId;
+    }
+
+    public void setNumId(BigInteger numId) {
+        this.numId = numId;
+    }
+
+    public int getIndent() {
+        return indent;
+    }
+
+    public void setIndent(int indent) {
+        this.indent = indent;
+    }
+
+    public NumberingRegistry getNumberingRegistry() {
+        return numberingRegistry;
+    }
+
+    public ImageRegistry getImageRegistry() {
+        return imageRegistry;
+    }
+
+    public ExportTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * @return the caption number of the next image of the document
+     */
+    public int nextImageNumber() {
+        return ++this.imageCount;
+    }
+}
@@ -0,0 +1,10 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
+
+public interface RichTextCacheService {
+	/**
+	 * @return the converted form of the html, recorded on first use and shared afterwards
+	 */
+	RichTextFragment get(String html);
+
+	void evictAll();
+}
@@ -0,0 +1,47 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerServiceProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Keeps the {@link RichTextFragment} of html values that repeat across exports (field set comments, boilerplate answers,
+ * plan and description descriptions), bounded by the estimated fragment size.
+ * Fragments are keyed by the html exactly as given, since any rewriting of it could change the runs it converts to.
+ * Hits and misses are published by the cache metrics when stats are recorded.
+ */
+@Component
+public class RichTextCacheServiceImpl implements RichTextCacheService {
+    private static final String METRIC_CACHE = "docx.richtext";
+
+    private final WordFileTransformerServiceProperties.RichTextCache properties;
+    private final Cache<String, RichTextFragment> fragments;
+
+    public RichTextCacheServiceImpl(WordFileTransformerServiceProperties wordFileTransformerServiceProperties, MeterRegistry meterRegistry) {
+        this.properties = wordFileTransformerServiceProperties.getRichTextCache();
+
+        Caffeine<String, RichTextFragment> builder = Caffeine.newBuilder()
+                .maximumWeight(this.properties.getMaximumWeightInBytes())
+                .weigher((String key, RichTextFragment value) -> 2 * key.length() + value.getWeight())
+                .expireAfterAccess(Duration.ofMinutes(this.properties.getExpireAfterAccessMinutes()));
+        if (this.properties.isEnableRecordStats()) builder.recordStats();
+        this.fragments = builder.build();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.fragments, METRIC_CACHE);
+    }
+
+    @Override
+    public RichTextFragment get(String html) {
+        if (!this.properties.isEnabled()) return HtmlToWorldBuilder.record(html);
+        return this.fragments.get(html, HtmlToWorldBuilder::record);
+    }
+
+    @Override
+    public void evictAll() {
+        this.fragments.invalidateAll();
+    }
+}
@@ -0,0 +1,61 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.xmlbeans.XmlCursor;
+
+import java.util.List;
+
+/**
+ * The converted form of one html value: the paragraph and run operations {@link HtmlToWorldBuilder} derived from it,
+ * in document order. Writing a fragment replays them against a target paragraph, so the same fragment can be written
+ * any number of times, into any document, without parsing the html again.
+ * Operations hold no document state (numbering ids and hyperlink relationships are created while writing),
+ * so instances are immutable and can be shared between threads.
+ */
+public class RichTextFragment {
+    private final List<Op> ops;
+    private final int weight;
+
+    RichTextFragment(List<Op> ops, int weight) {
+        this.ops = List.copyOf(ops);
+        this.weight = weight;
+    }
+
+    public XWPFParagraph appendTo(XWPFDocument document, float indentation, NumberingRegistry numberingRegistry) {
+        XWPFParagraph paragraph = document.createParagraph();
+        paragraph.setIndentFromLeft(Math.round(400 * indentation));
+        return this.writeTo(paragraph, indentation, null, numberingRegistry);
+    }
+
+    public XWPFParagraph appendTo(XWPFTableCell cell, float indentation, NumberingRegistry numberingRegistry) {
+        XWPFParagraph paragraph = cell.addParagraph();
+        paragraph.setIndentFromLeft(Math.round(400 * indentation));
+        return this.writeTo(paragraph, indentation, null, numberingRegistry);
+    }
+
+    /**
+     * Writes the fragment starting with the given paragraph. Further paragraphs are inserted at the cursor, or appended
+     * to the document when the cursor is null. Lists are numbered through the registry of the target document.
+     *
+     * @return the last paragraph written
+     */
+    public XWPFParagraph writeTo(XWPFParagraph paragraph, float indentation, XmlCursor cursor, NumberingRegistry numberingRegistry) {
+        RichTextWriter writer = new RichTextWriter(paragraph, indentation, cursor, numberingRegistry);
+        for (Op op : this.ops) op.apply(writer);
+        return writer.getParagraph();
+    }
+
+    /**
+     * Approximate retained size in bytes, used to bound caches of fragments.
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    @FunctionalInterface
+    interface Op {
+        void apply(RichTextWriter writer);
+    }
+}
@@ -0,0 +1,112 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
+
+import org.apache.poi.xwpf.usermodel.*;
+import org.apache.xmlbeans.XmlCursor;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTHyperlink;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STNumberFormat;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Document side state of writing a {@link RichTextFragment}: the current paragraph and run, the insertion cursor and the open lists.
+ */
+class RichTextWriter {
+    private XWPFParagraph paragraph;
+    private XWPFRun run;
+    private final float indentation;
+    private boolean isIdentationUsed;
+    private final NumberingRegistry numberingRegistry;
+    private final Deque<BigInteger> numIds;
+    private BigInteger numberingLevel;
+    private XmlCursor cursor;
+
+    RichTextWriter(XWPFParagraph paragraph, float indentation, XmlCursor cursor, NumberingRegistry numberingRegistry) {
+        this.paragraph = paragraph;
+        this.run = this.paragraph.createRun();
+        this.indentation = indentation;
+        this.isIdentationUsed = false;
+        this.run.setFontSize(11);
+        this.numberingRegistry = numberingRegistry;
+        this.numIds = new ArrayDeque<>();
+        this.numberingLevel = BigInteger.valueOf(-1);
+        this.setDefaultIndentation();
+        this.cursor = cursor;
+    }
+
+    XWPFParagraph getParagraph() {
+        return paragraph;
+    }
+
+    XWPFRun getRun() {
+        return run;
+    }
+
+    void text(String text) {
+        this.run.setText(text);
+        this.run = this.paragraph.createRun();
+        this.run.setFontSize(11);
+    }
+
+    void newRun() {
+        this.run = this.paragraph.createRun();
+    }
+
+    void newParagraph() {
+        if (this.cursor != null) {
+            this.paragraph = this.paragraph.getDocument().insertNewParagraph(this.cursor);
+            this.cursor = this.paragraph.getCTP().newCursor();
+            this.cursor.toNextSibling();
+        } else {
+            this.paragraph = this.paragraph.getDocument().createParagraph();
+        }
+    }
+
+    void resetIndentation() {
+        this.isIdentationUsed = false;
+        this.setDefaultIndentation();
+    }
+
+    void listItem() {
+        this.newParagraph();
+//        this.paragraph.setIndentationLeft(Math.round(indentation * 720) * (numberingLevel.intValue() + 1));
+        this.paragraph.setIndentFromLeft(Math.round(this.numberingLevel.intValue() * 400 + this.indentation * 400));
+        this.run = this.paragraph.createRun();
+        this.paragraph.setNumID(this.numIds.getLast());
+    }
+
+    void endList() {
+        this.numberingLevel = this.numberingLevel.subtract(BigInteger.ONE);
+        this.numIds.removeLast();
+    }
+
+    void hyperlink(String uri) {
+        String rId = this.paragraph.getDocument().getPackagePart().addExternalRelationship(uri, XWPFRelation.HYPERLINK.getRelation()).getId();
+
+        CTHyperlink cthyperLink = this.paragraph.getCTP().addNewHyperlink();
+        cthyperLink.setId(rId);
+        cthyperLink.addNewR();
+
+        this.run = new XWPFHyperlinkRun(
+                cthyperLink,
+                cthyperLink.getRArray(0),
+                this.paragraph
+        );
+        this.run.setColor("0000FF");
+        this.run.setUnderline(UnderlinePatterns.SINGLE);
+    }
+
+    void createNumbering(STNumberFormat.Enum format) {
+        this.numberingLevel = this.numberingLevel.add(BigInteger.ONE);
+        this.numIds.add(this.numberingRegistry.newList(this.paragraph.getDocument(), format, this.numberingLevel));
+    }
+
+    private void setDefaultIndentation() {
+        if (!isIdentationUsed) {
+//            this.paragraph.setIndentationLeft(Math.round(indentation * 720.0F));
+            this.paragraph.setIndentFromLeft(Math.round(indentation * 400));
+            this.isIdentationUsed = true;
+        }
+    }
+}
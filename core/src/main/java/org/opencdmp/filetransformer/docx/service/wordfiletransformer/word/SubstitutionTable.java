@@ -0,0 +1,55 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
+
+import java.util.Map;
+
+/**
+ * Placeholder values of a single export, computed once and shared by the first page, table, header and footer passes.
+ * The three value sets (body, tables, header and footer) have the same codes, so they share one compiled {@link PlaceholderAutomaton}.
+ * Instances are immutable.
+ */
+public class SubstitutionTable {
+    private final PlaceholderReplacer bodyReplacer;
+    private final PlaceholderReplacer tableReplacer;
+    private final PlaceholderReplacer headerFooterReplacer;
+    private final String planDescription;
+    private final String descriptionDescription;
+
+    public SubstitutionTable(Map<String, PlaceholderReplacer.Replacement> bodyReplacements, Map<String, PlaceholderReplacer.Replacement> tableReplacements,
+                             Map<String, PlaceholderReplacer.Replacement> headerFooterReplacements, String planDescription, String descriptionDescription) {
+        PlaceholderAutomaton automaton = PlaceholderAutomaton.compile(bodyReplacements.keySet());
+        this.bodyReplacer = new PlaceholderReplacer(automaton, Map.copyOf(bodyReplacements));
+        this.tableReplacer = new PlaceholderReplacer(automaton, Map.copyOf(tableReplacements));
+        this.headerFooterReplacer = new PlaceholderReplacer(automaton, Map.copyOf(headerFooterReplacements));
+        this.planDescription = planDescription;
+        this.descriptionDescription = descriptionDescription;
+    }
+
+    /**
+     * Codes of the body paragraphs; the plan and description descriptions are replaced by nothing, as they are rendered as html after their paragraph.
+     */
+    public PlaceholderReplacer getBodyReplacer() {
+        return bodyReplacer;
+    }
+
+    public PlaceholderReplacer getTableReplacer() {
+        return tableReplacer;
+    }
+
+    public PlaceholderReplacer getHeaderFooterReplacer() {
+        return headerFooterReplacer;
+    }
+
+    /**
+     * @return the html description of the plan, or null
+     */
+    public String getPlanDescription() {
+        return planDescription;
+    }
+
+    /**
+     * @return the html description of the exported description, or null when a plan is exported
+     */
+    public String getDescriptionDescription() {
+        return descriptionDescription;
+    }
+}
@@ -5,24 +5,32 @@ import org.opencdmp.commonmodels.models.description.PropertyDefinitionModel;
 import org.opencdmp.commonmodels.models.descriptiotemplate.DescriptionTemplateModel;
 import org.opencdmp.commonmodels.models.plan.PlanModel;
 import org.opencdmp.filetransformer.docx.model.enums.ParagraphStyle;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.template.PlaceholderIndex;
 import org.opencdmp.filetransformer.docx.service.wordfiletransformer.visibility.VisibilityService;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.List;
 
 public interface WordBuilder {
-	void build(XWPFDocument document, DescriptionTemplateModel descriptionTemplate, PropertyDefinitionModel propertyDefinitionModel, VisibilityService visibilityService) throws IOException;
+	void build(XWPFDocument document, DescriptionTemplateModel descriptionTemplate, PropertyDefinitionModel propertyDefinitionModel, VisibilityService visibilityService, RenderContext context) throws IOException;
 
-	XWPFParagraph addParagraphContent(Object content, XWPFDocument mainDocumentPart, ParagraphStyle style, BigInteger numId, int indent);
+	XWPFParagraph addParagraphContent(Object content, XWPFDocument mainDocumentPart, ParagraphStyle style, BigInteger numId, int indent, RenderContext context);
 
 	int findPosOfPoweredBy(XWPFDocument document);
 
-	void fillFirstPage(PlanModel planEntity, DescriptionModel descriptionModel, XWPFDocument document, boolean isDescription);
+	/**
+	 * @param descriptionModel the exported description, or null when a plan is exported
+	 * @param referenceTypeCodes the reference type codes used by the placeholders of the template
+	 */
+	SubstitutionTable buildSubstitutionTable(PlanModel planEntity, DescriptionModel descriptionModel, List<String> referenceTypeCodes);
 
-	void fillFooter(PlanModel planEntity, DescriptionModel descriptionModel, XWPFDocument document);
+	void fillFirstPage(SubstitutionTable substitutionTable, XWPFDocument document, PlaceholderIndex placeholderIndex, boolean isDescription, RenderContext context);
 
-	void fillHeader(PlanModel planEntity, DescriptionModel descriptionModel, XWPFDocument document);
+	void fillFooter(SubstitutionTable substitutionTable, XWPFDocument document, PlaceholderIndex placeholderIndex);
+
+	void fillHeader(SubstitutionTable substitutionTable, XWPFDocument document, PlaceholderIndex placeholderIndex);
 
 }
@@ -20,38 +20,35 @@ import org.opencdmp.filetransformer.docx.model.Language;
 import org.opencdmp.filetransformer.docx.service.language.LanguageService;
 import org.opencdmp.filetransformer.docx.service.storage.FileStorageService;
 import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerServiceProperties;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.image.EmbeddedImage;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.image.ImageService;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.metrics.ExportPhase;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.renderplan.DescriptionTemplateRenderPlan;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.renderplan.RenderPlanCacheService;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.template.PlaceholderIndex;
 import org.opencdmp.filetransformer.docx.model.PidLink;
-import org.opencdmp.filetransformer.docx.model.interfaces.ApplierWithValue;
+import org.opencdmp.filetransformer.docx.model.interfaces.ApplierWithValueAndContext;
 import org.opencdmp.filetransformer.docx.service.pid.PidService;
 import org.opencdmp.filetransformer.docx.model.enums.ParagraphStyle;
 import org.opencdmp.filetransformer.docx.service.wordfiletransformer.visibility.VisibilityService;
-import org.apache.poi.util.Units;
 import org.apache.poi.xwpf.usermodel.*;
 import org.apache.xmlbeans.XmlCursor;
-import org.apache.xmlbeans.XmlObject;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.select.NodeTraversor;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.config.ConfigurableBeanFactory;
-import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
-import javax.imageio.ImageIO;
-import javax.imageio.ImageReader;
-import javax.imageio.stream.ImageInputStream;
 import java.io.*;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.regex.Pattern;
 
 import static org.apache.poi.xwpf.usermodel.Document.*;
 
 @Component
-@Scope(value = ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 public class WordBuilderImpl implements WordBuilder {
     private static final Logger logger = LoggerFactory.getLogger(WordBuilderImpl.class);
     private static final Map<String, Integer> IMAGE_TYPE_MAP = Map.of(
@@ -62,32 +59,34 @@ public class WordBuilderImpl implements WordBuilder {
             "image/bmp", PICTURE_TYPE_BMP,
             "image/wmf", PICTURE_TYPE_WMF
     );
-    private BigInteger numId;
-    private Integer indent;
-    private Integer imageCount;
-    private final CTAbstractNum cTAbstractNum;
     private final FileStorageService fileStorageService;
     private final WordFileTransformerServiceProperties wordFileTransformerServiceProperties;
     private final PidService pidService;
-    private final Map<ParagraphStyle, ApplierWithValue<XWPFDocument, Object, XWPFParagraph>> options = new HashMap<>();
-    private final Map<ParagraphStyle, ApplierWithValue<XWPFTableCell, Object, XWPFParagraph>> optionsInTable = new HashMap<>();
+    private final Map<ParagraphStyle, ApplierWithValueAndContext<XWPFDocument, Object, RenderContext, XWPFParagraph>> options = new HashMap<>();
+    private final Map<ParagraphStyle, ApplierWithValueAndContext<XWPFTableCell, Object, RenderContext, XWPFParagraph>> optionsInTable = new HashMap<>();
     private final LanguageService languageService;
-
-    public WordBuilderImpl(FileStorageService fileStorageService, WordFileTransformerServiceProperties wordFileTransformerServiceProperties, PidService pidService, LanguageService languageService) {
+    private final RichTextCacheService richTextCacheService;
+    private final RenderPlanCacheService renderPlanCacheService;
+    private final ImageService imageService;
+    private static final Pattern DIV_OPEN = Pattern.compile("<div.*?>");
+    private static final String PLAN_DESCRIPTION_CODE = "'{OPENCDMP.PLAN.DESCRIPTION}'";
+    private static final String DESCRIPTION_DESCRIPTION_CODE = "'{OPENCDMP.DESCRIPTION.DESCRIPTION}'";
+    private static final DateTimeFormatter PLACEHOLDER_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy").withZone(ZoneId.systemDefault());
+
+    public WordBuilderImpl(FileStorageService fileStorageService, WordFileTransformerServiceProperties wordFileTransformerServiceProperties, PidService pidService, LanguageService languageService, RichTextCacheService richTextCacheService, RenderPlanCacheService renderPlanCacheService, ImageService imageService) {
 	    this.fileStorageService = fileStorageService;
 	    this.wordFileTransformerServiceProperties = wordFileTransformerServiceProperties;
         this.pidService = pidService;
         this.languageService = languageService;
-        this.cTAbstractNum = CTAbstractNum.Factory.newInstance();
-        this.cTAbstractNum.setAbstractNumId(BigInteger.valueOf(1));
-        this.indent = 0;
-        this.imageCount = 0;
+        this.richTextCacheService = richTextCacheService;
+        this.renderPlanCacheService = renderPlanCacheService;
+        this.imageService = imageService;
         this.buildOptions();
         this.buildOptionsInTable();
     }
 
     private void buildOptionsInTable() {
-        this.optionsInTable.put(ParagraphStyle.TEXT, (mainDocumentPart, item) -> {
+        this.optionsInTable.put(ParagraphStyle.TEXT, (mainDocumentPart, item, context) -> {
             XWPFParagraph paragraph = mainDocumentPart.addParagraph();
             XWPFRun run = paragraph.createRun();
             if (item != null)
@@ -95,12 +94,17 @@ public class WordBuilderImpl implements WordBuilder {
             run.setFontSize(11);
             return paragraph;
         });
-        this.optionsInTable.put(ParagraphStyle.HTML, (mainDocumentPart, item) -> {
-            Document htmlDoc = Jsoup.parse(((String) item).replaceAll("<div.*?>", "\n").replaceAll("</div>", "").replaceAll("\n", "<br>"));
-            HtmlToWorldBuilder htmlToWorldBuilder = HtmlToWorldBuilder.convertInTable(mainDocumentPart, htmlDoc, 0);
-            return htmlToWorldBuilder.getParagraph();
+        this.optionsInTable.put(ParagraphStyle.HTML, (mainDocumentPart, item, context) -> {
+            String html = (String) item;
+            if (html.contains("<div")) html = DIV_OPEN.matcher(html).replaceAll("\n");
+            long start = System.nanoTime();
+            try {
+                return this.richTextCacheService.get(html.replace("</div>", "")).appendTo(mainDocumentPart, 0, context.getNumberingRegistry());
+            } finally {
+                context.getTimings().record(ExportPhase.HTML, start);
+            }
         });
-        this.optionsInTable.put(ParagraphStyle.TITLE, (mainDocumentPart, item) -> {
+        this.optionsInTable.put(ParagraphStyle.TITLE, (mainDocumentPart, item, context) -> {
             XWPFParagraph paragraph = mainDocumentPart.addParagraph();
             paragraph.setStyle("Title");
             paragraph.setAlignment(ParagraphAlignment.CENTER);
@@ -110,7 +114,7 @@ public class WordBuilderImpl implements WordBuilder {
             run.setFontSize(14);
             return paragraph;
         });
-        this.optionsInTable.put(ParagraphStyle.IMAGE, (mainDocumentPart, item) -> {
+        this.optionsInTable.put(ParagraphStyle.IMAGE, (mainDocumentPart, item, context) -> {
             XWPFParagraph paragraph = mainDocumentPart.addParagraph();
             XWPFRun run = paragraph.createRun();
             if (item instanceof FileEnvelopeModel)
@@ -122,7 +126,7 @@ public class WordBuilderImpl implements WordBuilder {
     }
 
     private void buildOptions() {
-        this.options.put(ParagraphStyle.TEXT, (mainDocumentPart, item) -> {
+        this.options.put(ParagraphStyle.TEXT, (mainDocumentPart, item, context) -> {
             XWPFParagraph paragraph = mainDocumentPart.createParagraph();
             XWPFRun run = paragraph.createRun();
             if (item != null)
@@ -130,12 +134,15 @@ public class WordBuilderImpl implements WordBuilder {
             run.setFontSize(11);
             return paragraph;
         });
-        this.options.put(ParagraphStyle.HTML, (mainDocumentPart, item) -> {
-            Document htmlDoc = Jsoup.parse(((String) item).replaceAll("\n", "<br>"));
-            HtmlToWorldBuilder htmlToWorldBuilder = HtmlToWorldBuilder.convert(mainDocumentPart, htmlDoc, this.indent);
-            return htmlToWorldBuilder.getParagraph();
+        this.options.put(ParagraphStyle.HTML, (mainDocumentPart, item, context) -> {
+            long start = System.nanoTime();
+            try {
+                return this.richTextCacheService.get((String) item).appendTo(mainDocumentPart, context.getIndent(), context.getNumberingRegistry());
+            } finally {
+                context.getTimings().record(ExportPhase.HTML, start);
+            }
         });
-        this.options.put(ParagraphStyle.TITLE, (mainDocumentPart, item) -> {
+        this.options.put(ParagraphStyle.TITLE, (mainDocumentPart, item, context) -> {
             XWPFParagraph paragraph = mainDocumentPart.createParagraph();
             paragraph.setStyle("Title");
             paragraph.setAlignment(ParagraphAlignment.CENTER);
@@ -145,62 +152,62 @@ public class WordBuilderImpl implements WordBuilder {
             run.setFontSize(14);
             return paragraph;
         });
-        this.options.put(ParagraphStyle.HEADER1, (mainDocumentPart, item) -> {
+        this.options.put(ParagraphStyle.HEADER1, (mainDocumentPart, item, context) -> {
             XWPFParagraph paragraph = mainDocumentPart.createParagraph();
             paragraph.setStyle("Heading1");
             XWPFRun run = paragraph.createRun();
             run.setText((String) item);
             return paragraph;
         });
-        this.options.put(ParagraphStyle.HEADER2, (mainDocumentPart, item) -> {
+        this.options.put(ParagraphStyle.HEADER2, (mainDocumentPart, item, context) -> {
             XWPFParagraph paragraph = mainDocumentPart.createParagraph();
             paragraph.setStyle("Heading2");
             XWPFRun run = paragraph.createRun();
             run.setText("" + item);
             return paragraph;
         });
-        this.options.put(ParagraphStyle.HEADER3, (mainDocumentPart, item) -> {
+        this.options.put(ParagraphStyle.HEADER3, (mainDocumentPart, item, context) -> {
             XWPFParagraph paragraph = mainDocumentPart.createParagraph();
             paragraph.setStyle("Heading3");
             XWPFRun run = paragraph.createRun();
             run.setText("" + item);
             return paragraph;
         });
-        this.options.put(ParagraphStyle.HEADER4, (mainDocumentPart, item) -> {
+        this.options.put(ParagraphStyle.HEADER4, (mainDocumentPart, item, context) -> {
             XWPFParagraph paragraph = mainDocumentPart.createParagraph();
             paragraph.setStyle("Heading4");
             XWPFRun run = paragraph.createRun();
             run.setText((String) item);
             return paragraph;
         });
-        this.options.put(ParagraphStyle.HEADER5, (mainDocumentPart, item) -> {
+        this.options.put(ParagraphStyle.HEADER5, (mainDocumentPart, item, context) -> {
             XWPFParagraph paragraph = mainDocumentPart.createParagraph();
             paragraph.setStyle("Heading5");
             XWPFRun run = paragraph.createRun();
             run.setText("" + item);
             return paragraph;
         });
-        this.options.put(ParagraphStyle.HEADER6, (mainDocumentPart, item) -> {
+        this.options.put(ParagraphStyle.HEADER6, (mainDocumentPart, item, context) -> {
             XWPFParagraph paragraph = mainDocumentPart.createParagraph();
             paragraph.setStyle("Heading6");
             XWPFRun run = paragraph.createRun();
             run.setText("" + item);
             return paragraph;
         });
-        this.options.put(ParagraphStyle.FOOTER, (mainDocumentPart, item) -> {
+        this.options.put(ParagraphStyle.FOOTER, (mainDocumentPart, item, context) -> {
             XWPFParagraph paragraph = mainDocumentPart.createParagraph();
             XWPFRun run = paragraph.createRun();
             run.setText((String) item);
             return paragraph;
         });
-        this.options.put(ParagraphStyle.COMMENT, (mainDocumentPart, item) -> {
+        this.options.put(ParagraphStyle.COMMENT, (mainDocumentPart, item, context) -> {
             XWPFParagraph paragraph = mainDocumentPart.createParagraph();
             XWPFRun run = paragraph.createRun();
             run.setText("" + item);
             run.setItalic(true);
             return paragraph;
         });
-        this.options.put(ParagraphStyle.IMAGE, (mainDocumentPart, item) -> {
+        this.options.put(ParagraphStyle.IMAGE, (mainDocumentPart, item, context) -> {
             XWPFParagraph paragraph = mainDocumentPart.createParagraph();
             paragraph.setPageBreak(true);
             paragraph.setSpacingAfter(0);
@@ -208,93 +215,51 @@ public class WordBuilderImpl implements WordBuilder {
             XWPFRun run = paragraph.createRun();
             FileEnvelopeModel itemTyped = (FileEnvelopeModel)item;
             if (itemTyped == null) return paragraph;
+            long start = System.nanoTime();
             try {
 
                 String fileName = itemTyped.getFilename();
                 String fileType = itemTyped.getMimeType();
-                int format;
-                format = IMAGE_TYPE_MAP.getOrDefault(fileType, 0);
-                byte[] file;
+                ByteBuffer file;
                 if (this.wordFileTransformerServiceProperties.isUseSharedStorage() && itemTyped.getFileRef() != null && !itemTyped.getFileRef().isBlank()) {
-                    file = this.fileStorageService.readFile(itemTyped.getFileRef());
+                    file = this.fileStorageService.mapFile(itemTyped.getFileRef());
                 } else {
-                    file = itemTyped.getFile();
+                    file = itemTyped.getFile() != null ? ByteBuffer.wrap(itemTyped.getFile()) : null;
                 }
-                InputStream image = new ByteArrayInputStream(file);
-                ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(file));
-                Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
-                if (readers.hasNext()) {
-                    ImageReader reader = readers.next();
-                    reader.setInput(iis);
-
-                    int initialImageWidth = reader.getWidth(0);
-                    int initialImageHeight = reader.getHeight(0);
-
-                    float ratio = initialImageHeight / (float) initialImageWidth;
-
-                    int marginLeftInDXA = this.toIntFormBigInteger(mainDocumentPart.getDocument().getBody().getSectPr().getPgMar().getLeft());
-                    int marginRightInDXA = this.toIntFormBigInteger(mainDocumentPart.getDocument().getBody().getSectPr().getPgMar().getRight());
-                    int pageWidthInDXA = this.toIntFormBigInteger(mainDocumentPart.getDocument().getBody().getSectPr().getPgSz().getW());
-                    int pageWidth = Math.round((pageWidthInDXA - marginLeftInDXA - marginRightInDXA) / (float) 20); // /20 converts dxa to points
-
-                    int imageWidth = Math.round(initialImageWidth * (float) 0.75);    // *0.75 converts pixels to points
-                    int width = Math.min(imageWidth, pageWidth);
-
-                    int marginTopInDXA =  this.toIntFormBigInteger(mainDocumentPart.getDocument().getBody().getSectPr().getPgMar().getTop());
-                    int marginBottomInDXA = this.toIntFormBigInteger(mainDocumentPart.getDocument().getBody().getSectPr().getPgMar().getBottom());
-                    int pageHeightInDXA = this.toIntFormBigInteger(mainDocumentPart.getDocument().getBody().getSectPr().getPgSz().getH());
-                    int pageHeight = Math.round((pageHeightInDXA - marginTopInDXA - marginBottomInDXA) / (float) 20);    // /20 converts dxa to points
-
-                    int imageHeight = Math.round(initialImageHeight * ((float) 0.75));  // *0.75 converts pixels to points
-
-                    int height = Math.round(width * ratio);
-                    if (height > pageHeight) {
-                        // height calculated with ratio is too large. Image may have Portrait (vertical) orientation. Recalculate image dimensions.
-                        height = Math.min(imageHeight, pageHeight);
-                        width = Math.round(height / ratio);
-                    }
-
-                    run.addPicture(image, format, fileName, Units.toEMU(width), Units.toEMU(height));
+                EmbeddedImage image = this.imageService.embed(run, file, fileType, fileName, mainDocumentPart, context.getImageRegistry());
+                if (image != null) {
+                    context.getTimings().imageEmbedded();
                     paragraph.setPageBreak(false);
-                    imageCount++;
                     XWPFParagraph captionParagraph = mainDocumentPart.createParagraph();
                     captionParagraph.setAlignment(ParagraphAlignment.CENTER);
                     captionParagraph.setSpacingBefore(0);
                     captionParagraph.setStyle("Caption");
                     XWPFRun captionRun = captionParagraph.createRun();
-                    captionRun.setText("Image " + imageCount);
+                    captionRun.setText("Image " + context.nextImageNumber());
 
                 }
             } catch (Exception e) {
                 logger.error(e.getMessage(), e);
+            } finally {
+                context.getTimings().record(ExportPhase.IMAGES, start);
             }
             return paragraph;
         });
     }
     
-    private int toIntFormBigInteger(Object object){
-        try {
-            if (object instanceof BigInteger) return ((BigInteger) object).intValue();
-            return (int) object;
-        } catch (Exception e){
-            logger.error(e.getMessage(), e);
-            return 0;
-        }
-    }
-
     @Override
-    public void build(XWPFDocument document, DescriptionTemplateModel descriptionTemplate, PropertyDefinitionModel propertyDefinitionModel, VisibilityService visibilityService) {
-        createPages(descriptionTemplate.getDefinition().getPages(), propertyDefinitionModel, document, visibilityService);
+    public void build(XWPFDocument document, DescriptionTemplateModel descriptionTemplate, PropertyDefinitionModel propertyDefinitionModel, VisibilityService visibilityService, RenderContext context) {
+        createPages(this.renderPlanCacheService.get(descriptionTemplate).getPages(), propertyDefinitionModel, document, visibilityService, context);
     }
 
-    private void createPages(List<PageModel> datasetProfilePages, PropertyDefinitionModel propertyDefinitionModel, XWPFDocument mainDocumentPart, VisibilityService visibilityService) {
-	    for (PageModel item : datasetProfilePages) {
+    private void createPages(List<DescriptionTemplateRenderPlan.PagePlan> datasetProfilePages, PropertyDefinitionModel propertyDefinitionModel, XWPFDocument mainDocumentPart, VisibilityService visibilityService, RenderContext context) {
+	    for (DescriptionTemplateRenderPlan.PagePlan item : datasetProfilePages) {
                 if (item.getSections() != null) {
                     try {
-                        XWPFParagraph paragraph = addParagraphContent(item.getOrdinal() + 1 + " " + item.getTitle(), mainDocumentPart, ParagraphStyle.HEADER5, numId, 0);
+                        XWPFParagraph paragraph = addParagraphContent(item.getHeading(), mainDocumentPart, ParagraphStyle.HEADER5, context.getNumId(), 0, context);
                         mainDocumentPart.getPosOfParagraph(paragraph);
                         if (visibilityService.isVisible(item.getId(), null)) {
-                            createSections(item.getSections(), propertyDefinitionModel, mainDocumentPart, 1, false, item.getOrdinal() + 1, null, visibilityService);
+                            createSections(item.getSections(), propertyDefinitionModel, mainDocumentPart, 1, false, visibilityService, context);
                         }
                     } catch (Exception e) {
                         logger.error(e.getMessage(), e);
@@ -303,24 +268,23 @@ public class WordBuilderImpl implements WordBuilder {
             }
     }
 
-    private boolean createSections(List<SectionModel> sections, PropertyDefinitionModel propertyDefinitionModel, XWPFDocument mainDocumentPart, Integer indent, Boolean createListing, Integer page, String sectionString, VisibilityService visibilityService) {
-        if (createListing) this.addListing(indent, false, true);
+    private boolean createSections(List<DescriptionTemplateRenderPlan.SectionPlan> sections, PropertyDefinitionModel propertyDefinitionModel, XWPFDocument mainDocumentPart, Integer indent, Boolean createListing, VisibilityService visibilityService, RenderContext context) {
+        if (createListing) this.addListing(indent, false, true, context);
         boolean hasAnySectionValue = false;
         
-        for (SectionModel section : sections) {
+        for (DescriptionTemplateRenderPlan.SectionPlan section : sections) {
             if (!visibilityService.isVisible(section.getId(), null)) continue;
             boolean hasValue = false;
             int paragraphPos = -1;
-            String tempSectionString = sectionString != null ? sectionString + "." + (section.getOrdinal() + 1) : "" + (section.getOrdinal() + 1);
             if (!createListing) {
-                XWPFParagraph paragraph = addParagraphContent(page + "." + tempSectionString + " " + section.getTitle(), mainDocumentPart, ParagraphStyle.HEADER5, numId, indent);
+                XWPFParagraph paragraph = addParagraphContent(section.getHeading(), mainDocumentPart, ParagraphStyle.HEADER5, context.getNumId(), indent, context);
                 paragraphPos = mainDocumentPart.getPosOfParagraph(paragraph);
             }
             if (section.getSections() != null) {
-                hasValue = createSections(section.getSections(), propertyDefinitionModel, mainDocumentPart, indent + 1, createListing, page, tempSectionString, visibilityService);
+                hasValue = createSections(section.getSections(), propertyDefinitionModel, mainDocumentPart, indent + 1, createListing, visibilityService, context);
             }
             if (section.getFieldSets() != null) {
-                hasValue = createFieldSetFields(section.getFieldSets(), propertyDefinitionModel, mainDocumentPart, indent + 1, createListing, page, tempSectionString, visibilityService);
+                hasValue = createFieldSetFields(section.getFieldSets(), propertyDefinitionModel, mainDocumentPart, indent + 1, createListing, visibilityService, context);
             }
 
             if (!hasValue && paragraphPos > -1) {
@@ -333,29 +297,29 @@ public class WordBuilderImpl implements WordBuilder {
     }
 
 
-    private Boolean createFieldSetFields(List<FieldSetModel> fieldSetModels, PropertyDefinitionModel propertyDefinitionModel, XWPFDocument mainDocumentPart, Integer indent, Boolean createListing, Integer page, String section, VisibilityService visibilityService) {
-        if (createListing) this.addListing(indent, true, true);
+    private Boolean createFieldSetFields(List<DescriptionTemplateRenderPlan.FieldSetPlan> fieldSets, PropertyDefinitionModel propertyDefinitionModel, XWPFDocument mainDocumentPart, Integer indent, Boolean createListing, VisibilityService visibilityService, RenderContext context) {
+        if (createListing) this.addListing(indent, true, true, context);
         boolean hasValue = false;
         boolean returnedValue = false;
 
-        for (FieldSetModel fieldSetModel : fieldSetModels) {
-            PropertyDefinitionFieldSetModel propertyDefinitionFieldSetModel = propertyDefinitionModel.getFieldSets().getOrDefault(fieldSetModel.getId(), null);
+        for (DescriptionTemplateRenderPlan.FieldSetPlan fieldSet : fieldSets) {
+            PropertyDefinitionFieldSetModel propertyDefinitionFieldSetModel = propertyDefinitionModel.getFieldSets().getOrDefault(fieldSet.getId(), null);
             List<PropertyDefinitionFieldSetItemModel> propertyDefinitionFieldSetItemModels = propertyDefinitionFieldSetModel != null && propertyDefinitionFieldSetModel.getItems() != null ? propertyDefinitionFieldSetModel.getItems() : new ArrayList<>();
             propertyDefinitionFieldSetItemModels = propertyDefinitionFieldSetItemModels.stream().sorted(Comparator.comparingInt(PropertyDefinitionFieldSetItemModel::getOrdinal)).toList();
-            if (propertyDefinitionFieldSetItemModels.stream().anyMatch(x -> visibilityService.isVisible(fieldSetModel.getId(), x.getOrdinal()))) {
+            if (propertyDefinitionFieldSetItemModels.stream().anyMatch(x -> visibilityService.isVisible(fieldSet.getId(), x.getOrdinal()))) {
 
                 char c = 'a';
                 int multiplicityItems = 0;
                 boolean hasMultiplicityItems = false;
                 int paragraphPos = -1;
                 int paragraphPosInner = -1;
-                if (fieldSetModel.getTitle() != null && !fieldSetModel.getTitle().isEmpty() && !createListing) {
-                    XWPFParagraph paragraph = addParagraphContent(page + "." + section + "." + (fieldSetModel.getOrdinal() + 1) + " " + fieldSetModel.getTitle(), mainDocumentPart, ParagraphStyle.HEADER6, numId, indent);
+                if (fieldSet.getHeading() != null && !createListing) {
+                    XWPFParagraph paragraph = addParagraphContent(fieldSet.getHeading(), mainDocumentPart, ParagraphStyle.HEADER6, context.getNumId(), indent, context);
 //                    CTDecimalNumber number = paragraph.getCTP().getPPr().getNumPr().addNewIlvl();
 //                    number.setVal(BigInteger.valueOf(indent));
                     paragraphPos = mainDocumentPart.getPosOfParagraph(paragraph);
-                    if (fieldSetModel.getMultiplicity() != null && !fieldSetModel.getMultiplicity().getTableView() && propertyDefinitionFieldSetItemModels.size() > 1) {
-                        XWPFParagraph paragraphInner = addParagraphContent(c + ". ", mainDocumentPart, ParagraphStyle.TEXT, numId, indent);
+                    if (fieldSet.isListView() && propertyDefinitionFieldSetItemModels.size() > 1) {
+                        XWPFParagraph paragraphInner = addParagraphContent(c + ". ", mainDocumentPart, ParagraphStyle.TEXT, context.getNumId(), indent, context);
                         paragraphPosInner = mainDocumentPart.getPosOfParagraph(paragraphInner);
                         hasMultiplicityItems = true;
                         multiplicityItems++;
@@ -364,18 +328,18 @@ public class WordBuilderImpl implements WordBuilder {
                 XWPFTable tbl = null;
                 XWPFTableRow row = null;
                 int numOfRows = 0;
-                if (fieldSetModel.getMultiplicity() != null && fieldSetModel.getMultiplicity().getTableView()) {
+                if (fieldSet.isTableView()) {
                     tbl = mainDocumentPart.createTable();
                     tbl.setWidthType(TableWidthType.PCT);
                     tbl.setWidth("100%");
                     tbl.setTableAlignment(TableRowAlign.CENTER);
                     mainDocumentPart.createParagraph();
-                    createHeadersInTable(fieldSetModel.getFields(), propertyDefinitionFieldSetItemModels.getFirst(), tbl, visibilityService);
+                    createHeadersInTable(fieldSet.getFields(), propertyDefinitionFieldSetItemModels.getFirst(), tbl, visibilityService);
                     numOfRows = tbl.getRows().size();
                     row = tbl.createRow();
                 }
-                if (fieldSetModel.getMultiplicity() != null && fieldSetModel.getMultiplicity().getTableView()) {
-                    hasValue = createFieldsInTable(fieldSetModel, propertyDefinitionFieldSetItemModels.getFirst(), row, indent, createListing, hasMultiplicityItems, numOfRows, visibilityService);
+                if (fieldSet.isTableView()) {
+                    hasValue = createFieldsInTable(fieldSet, propertyDefinitionFieldSetItemModels.getFirst(), row, indent, createListing, hasMultiplicityItems, numOfRows, visibilityService, context);
                     if (!hasValue && propertyDefinitionFieldSetItemModels.size() > 1 && tbl != null) {
                         tbl.removeRow(numOfRows);
                     } else if (!hasValue && tbl != null) {
@@ -384,7 +348,7 @@ public class WordBuilderImpl implements WordBuilder {
                         }
                     } else numOfRows++;
                 } else {
-                    hasValue = createFields(fieldSetModel, propertyDefinitionFieldSetItemModels.getFirst(), mainDocumentPart, indent, createListing, hasMultiplicityItems, visibilityService);
+                    hasValue = createFields(fieldSet, propertyDefinitionFieldSetItemModels.getFirst(), mainDocumentPart, indent, createListing, hasMultiplicityItems, visibilityService, context);
                 }
                 if (hasValue) {
                     returnedValue = true;
@@ -397,19 +361,19 @@ public class WordBuilderImpl implements WordBuilder {
                     int fieldsCount = 0;
                     for (PropertyDefinitionFieldSetItemModel multiplicityFieldset : propertyDefinitionFieldSetItemModels.stream().skip(1).toList()) {
                         paragraphPosInner = -1;
-                        if (fieldSetModel.getMultiplicity() != null && !fieldSetModel.getMultiplicity().getTableView() && !createListing) {
+                        if (fieldSet.isListView() && !createListing) {
                             c++;
 //                            addParagraphContent(c + ". ", mainDocumentPart, ParagraphStyle.HEADER6, numId);
-                            XWPFParagraph paragraphInner = addParagraphContent(c + ". ", mainDocumentPart, ParagraphStyle.TEXT, numId, indent);
+                            XWPFParagraph paragraphInner = addParagraphContent(c + ". ", mainDocumentPart, ParagraphStyle.TEXT, context.getNumId(), indent, context);
                             paragraphPosInner = mainDocumentPart.getPosOfParagraph(paragraphInner);
                             hasMultiplicityItems = true;
                             multiplicityItems++;
                         }
 //                        hasValue = createFields(multiplicityFieldset.getFields(), mainDocumentPart, 3, createListing, visibilityRuleService, hasMultiplicityItems);
                         boolean hasValueInner = false;
-                        if (fieldSetModel.getMultiplicity() != null && fieldSetModel.getMultiplicity().getTableView() && tbl != null) {
+                        if (fieldSet.isTableView() && tbl != null) {
                             row = tbl.createRow();
-                            hasValueInner = createFieldsInTable(fieldSetModel, multiplicityFieldset, row, indent, createListing, hasMultiplicityItems, numOfRows, visibilityService);
+                            hasValueInner = createFieldsInTable(fieldSet, multiplicityFieldset, row, indent, createListing, hasMultiplicityItems, numOfRows, visibilityService, context);
                             if (!hasValueInner && numOfRows <= 1 && fieldsCount == propertyDefinitionFieldSetItemModels.size()-2) { //-2 because we skip 1
                                 for (int i = numOfRows; i >= 0; i--) {
                                     tbl.removeRow(i);
@@ -418,7 +382,7 @@ public class WordBuilderImpl implements WordBuilder {
                                 tbl.removeRow(numOfRows);
                             } else numOfRows++;
                         } else {
-                            hasValueInner = createFields(fieldSetModel, multiplicityFieldset, mainDocumentPart, indent, createListing, hasMultiplicityItems, visibilityService);
+                            hasValueInner = createFields(fieldSet, multiplicityFieldset, mainDocumentPart, indent, createListing, hasMultiplicityItems, visibilityService, context);
                         }
 //                        if(hasValue){
                         if (hasValueInner) {
@@ -440,7 +404,7 @@ public class WordBuilderImpl implements WordBuilder {
                     }
                 }
                 if (propertyDefinitionFieldSetModel.getComment() != null && !propertyDefinitionFieldSetModel.getComment().isEmpty()) {
-                    addParagraphContent("<i>Comment:</i>\n" + propertyDefinitionFieldSetModel.getComment(), mainDocumentPart, ParagraphStyle.HTML, numId, indent);
+                    addParagraphContent("<i>Comment:</i>\n" + propertyDefinitionFieldSetModel.getComment(), mainDocumentPart, ParagraphStyle.HTML, context.getNumId(), indent, context);
                     hasValue = true;
                     returnedValue = true;
                 }
@@ -453,12 +417,12 @@ public class WordBuilderImpl implements WordBuilder {
         return returnedValue;
     }
 
-    private void createHeadersInTable(List<FieldModel> fields, PropertyDefinitionFieldSetItemModel propertyDefinitionFieldSetItemModel, XWPFTable table, VisibilityService visibilityService) {
+    private void createHeadersInTable(List<DescriptionTemplateRenderPlan.FieldPlan> fields, PropertyDefinitionFieldSetItemModel propertyDefinitionFieldSetItemModel, XWPFTable table, VisibilityService visibilityService) {
         boolean atLeastOneHeader = false;
-        List<FieldModel> tempFields = fields.stream().sorted(Comparator.comparingInt(FieldModel::getOrdinal)).toList();
         int index = 0;
         XWPFTableRow row = table.getRow(0);
-        for (FieldModel field : tempFields) {
+        for (DescriptionTemplateRenderPlan.FieldPlan fieldPlan : fields) {
+            FieldModel field = fieldPlan.getModel();
             if (field.getIncludeInExport() && visibilityService.isVisible(field.getId(), propertyDefinitionFieldSetItemModel.getOrdinal())) {
                 XWPFTableCell cell;
                 if (index == 0) {
@@ -498,12 +462,12 @@ public class WordBuilderImpl implements WordBuilder {
         }
     }
 
-    private Boolean createFieldsInTable(FieldSetModel fieldSetModel, PropertyDefinitionFieldSetItemModel propertyDefinitionFieldSetItemModel, XWPFTableRow mainDocumentPart,
-                                        Integer indent, Boolean createListing, boolean hasMultiplicityItems, int numOfRows, VisibilityService visibilityService) {
+    private Boolean createFieldsInTable(DescriptionTemplateRenderPlan.FieldSetPlan fieldSet, PropertyDefinitionFieldSetItemModel propertyDefinitionFieldSetItemModel, XWPFTableRow mainDocumentPart,
+                                        Integer indent, Boolean createListing, boolean hasMultiplicityItems, int numOfRows, VisibilityService visibilityService, RenderContext context) {
         int numOfCells = 0;
         boolean hasValue = false;
-        List<FieldModel> tempFields = fieldSetModel.getFields().stream().sorted(Comparator.comparingInt(FieldModel::getOrdinal)).toList();
-        for (FieldModel field : tempFields) {
+        for (DescriptionTemplateRenderPlan.FieldPlan fieldPlan : fieldSet.getFields()) {
+            FieldModel field = fieldPlan.getModel();
             if (field.getIncludeInExport() && visibilityService.isVisible(field.getId(), propertyDefinitionFieldSetItemModel.getOrdinal())) {
                 if (!createListing) {
                     org.opencdmp.commonmodels.models.description.FieldModel fieldValueModel = propertyDefinitionFieldSetItemModel.getFields().getOrDefault(field.getId(), null);
@@ -518,7 +482,7 @@ public class WordBuilderImpl implements WordBuilder {
                         }
                         if (isImage) {
                             if (fieldValueModel != null && fieldValueModel.getTextValue() != null && !fieldValueModel.getTextValue().isEmpty()) {
-                                XWPFParagraph paragraph = addCellContent(fieldValueModel.getFile(), mainDocumentPart, ParagraphStyle.IMAGE, numId, 0, numOfRows, numOfCells, 0);
+                                XWPFParagraph paragraph = addCellContent(fieldValueModel.getFile(), mainDocumentPart, ParagraphStyle.IMAGE, context.getNumId(), 0, numOfRows, numOfCells, 0, context);
                                 if (paragraph != null) {
                                     hasValue = true;
                                 }
@@ -528,7 +492,7 @@ public class WordBuilderImpl implements WordBuilder {
                             }
                         } else if (fieldValueModel != null && fieldValueModel.getTextValue() != null && !fieldValueModel.getTextValue().isEmpty() && fieldValueModel.getFile() != null) {
                             if (fieldValueModel.getFile().getFilename() != null && !fieldValueModel.getFile().getFilename().isBlank()) {
-                                XWPFParagraph paragraph = addCellContent(fieldValueModel.getFile().getFilename(), mainDocumentPart, ParagraphStyle.TEXT, numId, indent, numOfRows, numOfCells, 0);
+                                XWPFParagraph paragraph = addCellContent(fieldValueModel.getFile().getFilename(), mainDocumentPart, ParagraphStyle.TEXT, context.getNumId(), indent, numOfRows, numOfCells, 0, context);
                                 if (paragraph != null) {
                                     hasValue = true;
                                 }
@@ -538,13 +502,13 @@ public class WordBuilderImpl implements WordBuilder {
                             }
                         }
                     } else if (fieldValueModel != null) {
-                        this.indent = indent;
+                        context.setIndent(indent);
                         boolean isResearcher = false;
                         if (field.getData() instanceof ReferenceTypeDataModel) {
                             isResearcher = ((ReferenceTypeDataModel) field.getData()).getReferenceType().getCode().equals(this.wordFileTransformerServiceProperties.getResearcherReferenceCode());
                         }
 
-                        List<String> extractValues = this.extractValues(field, fieldValueModel);
+                        List<String> extractValues = this.extractValues(fieldPlan, fieldValueModel);
                         if (!extractValues.isEmpty()){
                             int numOfValuesInCell = 0;
                             for (String extractValue : extractValues){
@@ -569,7 +533,7 @@ public class WordBuilderImpl implements WordBuilder {
                                     hasValue = true;
                                     hasMultiplicityItems = false;
                                 } else {
-                                    XWPFParagraph paragraph = addCellContent(extractValue, mainDocumentPart, field.getData().getFieldType().equals(FieldType.RICH_TEXT_AREA) ? ParagraphStyle.HTML : ParagraphStyle.TEXT, numId, indent, numOfRows, numOfCells, numOfValuesInCell);
+                                    XWPFParagraph paragraph = addCellContent(extractValue, mainDocumentPart, field.getData().getFieldType().equals(FieldType.RICH_TEXT_AREA) ? ParagraphStyle.HTML : ParagraphStyle.TEXT, context.getNumId(), indent, numOfRows, numOfCells, numOfValuesInCell, context);
                                     if (paragraph != null) {
                                         numOfValuesInCell++;
                                         if (orcidResearcher) {
@@ -593,14 +557,14 @@ public class WordBuilderImpl implements WordBuilder {
         return hasValue;
     }
 
-    private void createHypeLink(XWPFDocument mainDocumentPart, String format, String pidType, String pid, boolean hasMultiplicityItems, boolean isMultiAutoComplete) {
+    private void createHypeLink(XWPFDocument mainDocumentPart, String format, String pidType, String pid, boolean hasMultiplicityItems, boolean isMultiAutoComplete, RenderContext context) {
         PidLink pidLink = pidService.getPid(pidType);
         if (pidLink != null) {
             if (!hasMultiplicityItems) {
                 XWPFParagraph paragraph = mainDocumentPart.createParagraph();
-                paragraph.setIndentFromLeft(400 * indent);
-                if (numId != null) {
-                    paragraph.setNumID(numId);
+                paragraph.setIndentFromLeft(400 * context.getIndent());
+                if (context.getNumId() != null) {
+                    paragraph.setNumID(context.getNumId());
                 }
             }
 
@@ -619,7 +583,7 @@ public class WordBuilderImpl implements WordBuilder {
             } catch (Exception e) {
                 String newFormat = (isMultiAutoComplete) ? "• " + format : format;
                 if (hasMultiplicityItems) {
-                    addParagraphContent(newFormat, mainDocumentPart, ParagraphStyle.TEXT, numId, indent);
+                    addParagraphContent(newFormat, mainDocumentPart, ParagraphStyle.TEXT, context.getNumId(), context.getIndent(), context);
                 } else {
                     mainDocumentPart.getLastParagraph().createRun().setText(newFormat);
                 }
@@ -629,16 +593,16 @@ public class WordBuilderImpl implements WordBuilder {
             if (hasMultiplicityItems) {
                 mainDocumentPart.getLastParagraph().createRun().setText(newFormat);
             } else {
-                addParagraphContent(newFormat, mainDocumentPart, ParagraphStyle.TEXT, numId, indent);
+                addParagraphContent(newFormat, mainDocumentPart, ParagraphStyle.TEXT, context.getNumId(), context.getIndent(), context);
             }
         }
     }
 
-    private Boolean createFields(FieldSetModel fieldSetModel, PropertyDefinitionFieldSetItemModel propertyDefinitionFieldSetItemModel, XWPFDocument mainDocumentPart, Integer indent, Boolean createListing, boolean hasMultiplicityItems, VisibilityService visibilityService) {
-        if (createListing) this.addListing(indent, false, false);
+    private Boolean createFields(DescriptionTemplateRenderPlan.FieldSetPlan fieldSet, PropertyDefinitionFieldSetItemModel propertyDefinitionFieldSetItemModel, XWPFDocument mainDocumentPart, Integer indent, Boolean createListing, boolean hasMultiplicityItems, VisibilityService visibilityService, RenderContext context) {
+        if (createListing) this.addListing(indent, false, false, context);
         boolean hasValue = false;
-        List<FieldModel> tempFields = fieldSetModel.getFields().stream().sorted(Comparator.comparingInt(FieldModel::getOrdinal)).toList();
-        for (FieldModel field : tempFields) {
+        for (DescriptionTemplateRenderPlan.FieldPlan fieldPlan : fieldSet.getFields()) {
+            FieldModel field = fieldPlan.getModel();
             if (field.getIncludeInExport() && visibilityService.isVisible(field.getId(), propertyDefinitionFieldSetItemModel.getOrdinal())) {
                 if (!createListing) {
                         org.opencdmp.commonmodels.models.description.FieldModel fieldValueModel = propertyDefinitionFieldSetItemModel.getFields().getOrDefault(field.getId(), null);
@@ -654,7 +618,7 @@ public class WordBuilderImpl implements WordBuilder {
                                 }
                                 if (isImage) {
                                     if (fieldValueModel.getTextValue() != null && !fieldValueModel.getTextValue().isEmpty()) {
-                                        XWPFParagraph paragraph = addParagraphContent(fieldValueModel.getFile(), mainDocumentPart, ParagraphStyle.IMAGE, numId, 0); //TODO
+                                        XWPFParagraph paragraph = addParagraphContent(fieldValueModel.getFile(), mainDocumentPart, ParagraphStyle.IMAGE, context.getNumId(), 0, context); //TODO
                                         if (paragraph != null) {
                                             hasValue = true;
                                         }
@@ -664,7 +628,7 @@ public class WordBuilderImpl implements WordBuilder {
                                     }
                                 } else if (fieldValueModel != null && fieldValueModel.getTextValue() != null && !fieldValueModel.getTextValue().isEmpty() && fieldValueModel.getFile() != null) {
                                     if (fieldValueModel.getFile().getFilename() != null && !fieldValueModel.getFile().getFilename().isBlank()) {
-                                        XWPFParagraph paragraph = addParagraphContent(fieldValueModel.getFile().getFilename(), mainDocumentPart, ParagraphStyle.TEXT, numId, indent);
+                                        XWPFParagraph paragraph = addParagraphContent(fieldValueModel.getFile().getFilename(), mainDocumentPart, ParagraphStyle.TEXT, context.getNumId(), indent, context);
                                         if (paragraph != null) {
                                             hasValue = true;
                                         }
@@ -674,7 +638,7 @@ public class WordBuilderImpl implements WordBuilder {
                                     }
                                 }
                             } else if (fieldValueModel != null) {
-                                this.indent = indent;
+                                context.setIndent(indent);
                                 boolean isMultiAutoComplete = false;
                                 boolean isResearcher = false;
                                 boolean isOrganization = false;
@@ -704,7 +668,7 @@ public class WordBuilderImpl implements WordBuilder {
                                                 label = (label.isBlank() ? "" : " ") + referenceModel.getDescription();
                                             }
                                             ReferenceFieldModel fieldModel = referenceModel.getDefinition() != null && referenceModel.getDefinition().getFields() != null &&  !referenceModel.getDefinition().getFields().isEmpty() ? referenceModel.getDefinition().getFields().stream().filter(x -> x.getCode().equals("pidTypeField")).findFirst().orElse(null) : null;
-                                            createHypeLink(mainDocumentPart, label, fieldModel != null ? fieldModel.getValue() : null, referenceModel.getReference(), hasMultiplicityItems, isMultiAutoComplete && fieldValueModel.getReferences().size() > 1);
+                                            createHypeLink(mainDocumentPart, label, fieldModel != null ? fieldModel.getValue() : null, referenceModel.getReference(), hasMultiplicityItems, isMultiAutoComplete && fieldValueModel.getReferences().size() > 1, context);
                                         }
                                         if (hasMultiplicityItems) hasMultiplicityItems = false;
 
@@ -712,7 +676,7 @@ public class WordBuilderImpl implements WordBuilder {
                                     }
 
                                 } else {
-                                    List<String> extractValues = this.extractValues(field, fieldValueModel);
+                                    List<String> extractValues = this.extractValues(fieldPlan, fieldValueModel);
 
                                     if (!extractValues.isEmpty()){
                                         for (String extractValue : extractValues){
@@ -736,7 +700,7 @@ public class WordBuilderImpl implements WordBuilder {
                                                 hasValue = true;
                                                 hasMultiplicityItems = false;
                                             } else {
-                                                XWPFParagraph paragraph = addParagraphContent(extractValue, mainDocumentPart, field.getData().getFieldType().equals(FieldType.RICH_TEXT_AREA) ? ParagraphStyle.HTML : ParagraphStyle.TEXT, numId, indent);
+                                                XWPFParagraph paragraph = addParagraphContent(extractValue, mainDocumentPart, field.getData().getFieldType().equals(FieldType.RICH_TEXT_AREA) ? ParagraphStyle.HTML : ParagraphStyle.TEXT, context.getNumId(), indent, context);
                                                 if (paragraph != null) {
                                                     if (orcidResearcher) {
                                                         XWPFHyperlinkRun run = paragraph.createHyperlinkRun("https://orcid.org/" + orcId);
@@ -759,11 +723,11 @@ public class WordBuilderImpl implements WordBuilder {
         return hasValue;
     }
 
-    private XWPFParagraph addCellContent(Object content, XWPFTableRow mainDocumentPart, ParagraphStyle style, BigInteger numId, int indent, int numOfRows, int numOfCells, int numOfValuesInCell) {
+    private XWPFParagraph addCellContent(Object content, XWPFTableRow mainDocumentPart, ParagraphStyle style, BigInteger numId, int indent, int numOfRows, int numOfCells, int numOfValuesInCell, RenderContext context) {
         if (content == null) return null;
         if (content instanceof String && ((String) content).isEmpty())  return null;
         
-        this.indent = indent;
+        context.setIndent(indent);
         XWPFTableCell cell;
         if (numOfRows > 0 || numOfValuesInCell > 0) {
             cell = mainDocumentPart.getCell(numOfCells);
@@ -775,7 +739,7 @@ public class WordBuilderImpl implements WordBuilder {
             cell.removeParagraph(0);
         }
 
-        XWPFParagraph paragraph = this.optionsInTable.get(style).apply(cell, content);
+        XWPFParagraph paragraph = this.optionsInTable.get(style).apply(cell, content, context);
         if (paragraph != null) {
             paragraph.setAlignment(ParagraphAlignment.CENTER);
             paragraph.setSpacingBefore(100);
@@ -788,13 +752,13 @@ public class WordBuilderImpl implements WordBuilder {
     }
 
     @Override
-    public XWPFParagraph addParagraphContent(Object content, XWPFDocument mainDocumentPart, ParagraphStyle style, BigInteger numId, int indent) {
+    public XWPFParagraph addParagraphContent(Object content, XWPFDocument mainDocumentPart, ParagraphStyle style, BigInteger numId, int indent, RenderContext context) {
         if (content != null) {
             if (content instanceof String && ((String)content).isEmpty()) {
                 return null;
             }
-            this.indent = indent;
-            XWPFParagraph paragraph = this.options.get(style).apply(mainDocumentPart, content);
+            context.setIndent(indent);
+            XWPFParagraph paragraph = this.options.get(style).apply(mainDocumentPart, content, context);
             if (paragraph != null) {
                 paragraph.setIndentFromLeft(400*indent);
                 if (numId != null) {
@@ -806,8 +770,8 @@ public class WordBuilderImpl implements WordBuilder {
         return null;
     }
 
-    private void addListing(int indent, boolean question, Boolean hasIndication) {
-        CTLvl cTLvl = this.cTAbstractNum.addNewLvl();
+    private void addListing(int indent, boolean question, Boolean hasIndication, RenderContext context) {
+        CTLvl cTLvl = context.getAbstractNum().addNewLvl();
 
         if (question) {
             cTLvl.addNewNumFmt().setVal(STNumberFormat.DECIMAL);
@@ -823,8 +787,9 @@ public class WordBuilderImpl implements WordBuilder {
         }
     }
 
-    private List<String> extractValues(FieldModel field, org.opencdmp.commonmodels.models.description.FieldModel fieldValueModel) {
+    private List<String> extractValues(DescriptionTemplateRenderPlan.FieldPlan fieldPlan, org.opencdmp.commonmodels.models.description.FieldModel fieldValueModel) {
         List<String> values = new ArrayList<>();
+        FieldModel field = fieldPlan != null ? fieldPlan.getModel() : null;
         if (fieldValueModel == null || field == null || field.getData() == null) {
             return values;
         }
@@ -852,18 +817,7 @@ public class WordBuilderImpl implements WordBuilder {
                 break;
             case SELECT: {
                 if (fieldValueModel.getTextListValue() != null && !fieldValueModel.getTextListValue().isEmpty()) {
-                    SelectDataModel selectDataModel;
-                    try {
-                        selectDataModel = (SelectDataModel) field.getData();
-                    } catch (Exception e) {
-                        logger.error("data: " + field.getData() + "values: " + fieldValueModel.getTextListValue());
-                        throw e;
-                    }
-                    if (selectDataModel != null && selectDataModel.getOptions() != null && !selectDataModel.getOptions().isEmpty()) {
-                        for (SelectDataModel.OptionModel option : selectDataModel.getOptions()) {
-                            if (fieldValueModel.getTextListValue().contains(option.getValue()) || fieldValueModel.getTextListValue().contains(option.getLabel())) values.add(option.getLabel());
-                        }
-                    }
+                    values.addAll(fieldPlan.selectedOptionLabels(fieldValueModel.getTextListValue()));
                 }
                 break;
             }
@@ -872,14 +826,9 @@ public class WordBuilderImpl implements WordBuilder {
                 if (fieldValueModel.getBooleanValue() != null && !fieldValueModel.getBooleanValue()) values.add("No");
                 break;
             case RADIO_BOX:
-                RadioBoxDataModel radioBoxDataModel = (RadioBoxDataModel) field.getData();
-                if (fieldValueModel.getTextValue() != null && radioBoxDataModel != null && radioBoxDataModel.getOptions() != null) {
-                    for (RadioBoxDataModel.RadioBoxOptionModel option : radioBoxDataModel.getOptions()) {
-                        if (option.getValue().equals(fieldValueModel.getTextValue()) || option.getLabel().equals(fieldValueModel.getTextValue())) {
-                            values.add(option.getLabel());
-                            break;
-                        }
-                    }
+                if (fieldValueModel.getTextValue() != null) {
+                    String label = fieldPlan.firstOptionLabel(fieldValueModel.getTextValue());
+                    if (label != null) values.add(label);
                 }
                 break;
             case CHECK_BOX: {
@@ -936,89 +885,30 @@ public class WordBuilderImpl implements WordBuilder {
         return -1;
     }
 
-    private List<String> getReferenceTypeCodesFromDocument(XWPFDocument doc, boolean isFooterMode) {
-        List<String> codes = new ArrayList<>();
-        if (doc == null) throw new MyApplicationException("Document required");
-
-        if (doc.getParagraphs() != null && !isFooterMode) {
-            for (XWPFParagraph p : doc.getParagraphs()) {
-                this.getReferenceTypeCodeFromText(p.getText(), codes);
-            }
-        }
-
-        if (doc.getTables() != null) {
-            for (XWPFTable tbl : doc.getTables()) {
-                for (XWPFTableRow row : tbl.getRows()) {
-                    for (XWPFTableCell cell : row.getTableCells()) {
-                        for (XWPFParagraph p : cell.getParagraphs()) {
-                            this.getReferenceTypeCodeFromText(p.getText(), codes);
-                        }
-                    }
-                }
-            }
-        }
-
-        if (doc.getFooterList() != null) {
-            for (XWPFFooter f : doc.getFooterList()) {
-                for(XWPFParagraph p : f.getParagraphs()){
-                    this.getReferenceTypeCodeFromText(p.getText(), codes);
-                }
-            }
-        }
-
-        if (doc.getHeaderList() != null) {
-            for (XWPFHeader f : doc.getHeaderList()) {
-                for(XWPFParagraph p : f.getParagraphs()){
-                    this.getReferenceTypeCodeFromText(p.getText(), codes);
-                }
-            }
-        }
-
-        return codes;
-    }
-
-    private void getReferenceTypeCodeFromText(String text, List<String> existingCodes) {
-        if (text != null && (text.contains("'{OPENCDMP.PLAN-REFERENCE.") || text.contains("'{OPENCDMP.DESCRIPTION-REFERENCE.")) && text.contains("}'")) {
-            String[] parts = text.split("\\.");
-            int i = 0;
-            for (String part: parts) {
-                if (part.equals("PLAN-REFERENCE") || part.equals("DESCRIPTION-REFERENCE")) {
-                    // find the next word that contains code
-                    String codeParts = parts[i + 1];
-                    if (codeParts.contains("}'")) {
-                        String code = codeParts.split("}'")[0];
-                        if (code != null && !existingCodes.contains(code)) existingCodes.add(code);
-                    }
-                }
-                i++;
-            }
-        }
-    }
-
-    private List<ReferenceModel> getPlanReferenceModelOfTypeCode(PlanModel plan, String code) {
-        List<ReferenceModel> response = new ArrayList<>();
+    private Map<String, List<ReferenceModel>> groupPlanReferencesByTypeCode(PlanModel plan) {
+        Map<String, List<ReferenceModel>> response = new HashMap<>();
         if (plan.getReferences() == null) return response;
         for (PlanReferenceModel planReferenceModel : plan.getReferences()) {
-            if (planReferenceModel.getReference() != null && planReferenceModel.getReference().getType() != null && planReferenceModel.getReference().getType().getCode() != null && planReferenceModel.getReference().getType().getCode().equalsIgnoreCase(code)) {
-                response.add(planReferenceModel.getReference());
+            if (planReferenceModel.getReference() != null && planReferenceModel.getReference().getType() != null && planReferenceModel.getReference().getType().getCode() != null) {
+                response.computeIfAbsent(planReferenceModel.getReference().getType().getCode().toLowerCase(Locale.ROOT), x -> new ArrayList<>()).add(planReferenceModel.getReference());
             }
         }
         return response;
     }
 
-    private List<ReferenceModel> getDescriptionReferenceModelOfTypeCode(DescriptionModel description, String code) {
-        List<ReferenceModel> response = new ArrayList<>();
+    private Map<String, List<ReferenceModel>> groupDescriptionReferencesByTypeCode(DescriptionModel description) {
+        Map<String, List<ReferenceModel>> response = new HashMap<>();
 
         if (description.getProperties() != null && description.getProperties().getFieldSets() != null) {
-            for (Map.Entry<String, PropertyDefinitionFieldSetModel> entry : description.getProperties().getFieldSets().entrySet()) {
-                PropertyDefinitionFieldSetModel fieldSet = entry.getValue();
+            for (PropertyDefinitionFieldSetModel fieldSet : description.getProperties().getFieldSets().values()) {
+                if (fieldSet.getItems() == null) continue;
                 for (PropertyDefinitionFieldSetItemModel item : fieldSet.getItems()) {
-                    for (Map.Entry<String, org.opencdmp.commonmodels.models.description.FieldModel> fieldEntry : item.getFields().entrySet()) {
-                        org.opencdmp.commonmodels.models.description.FieldModel field = fieldEntry.getValue();
+                    if (item.getFields() == null) continue;
+                    for (org.opencdmp.commonmodels.models.description.FieldModel field : item.getFields().values()) {
                         if (field.getReferences() != null) {
                             for (ReferenceModel referenceModel : field.getReferences()) {
-                                if (referenceModel.getType().getCode().equalsIgnoreCase(code)) {
-                                    response.add(referenceModel);
+                                if (referenceModel.getType() != null && referenceModel.getType().getCode() != null) {
+                                    response.computeIfAbsent(referenceModel.getType().getCode().toLowerCase(Locale.ROOT), x -> new ArrayList<>()).add(referenceModel);
                                 }
                             }
                         }
@@ -1030,301 +920,182 @@ public class WordBuilderImpl implements WordBuilder {
     }
 
     @Override
-    public void fillFirstPage(PlanModel planEntity, DescriptionModel descriptionModel, XWPFDocument document, boolean isDescription) {
-        if (planEntity == null) throw new MyApplicationException("planEntity required");
+    public void fillFirstPage(SubstitutionTable substitutionTable, XWPFDocument document, PlaceholderIndex placeholderIndex, boolean isDescription, RenderContext context) {
+        if (substitutionTable == null) throw new MyApplicationException("substitutionTable required");
         if (document == null) throw new MyApplicationException("Document required");
 
-        int parPos = 0;
-        int descrParPos = -1;
-        List<String> referenceTypeCodes = this.getReferenceTypeCodesFromDocument(document, false);
+        PlaceholderIndex index = placeholderIndex != null ? placeholderIndex : PlaceholderIndex.compile(document);
 
         XWPFParagraph descrPar = null;
-        for (XWPFParagraph p : document.getParagraphs()) {
-
-            this.fillCodes(planEntity, descriptionModel, p, referenceTypeCodes, false, false);
-
-            if (this.textSegmentExists(p, "'{OPENCDMP.PLAN.DESCRIPTION}'")) {
-                descrParPos = parPos;
-                descrPar = p;
-                this.replaceTextSegment(p, "'{OPENCDMP.PLAN.DESCRIPTION}'", "");
-            }
-            if (this.textSegmentExists(p, "'{OPENCDMP.DESCRIPTION.DESCRIPTION}'")) {
-                descrParPos = parPos;
+        for (XWPFParagraph p : index.getBodyParagraphs(document)) {
+            List<String> found = substitutionTable.getBodyReplacer().replace(p);
+            if (found.contains(PLAN_DESCRIPTION_CODE) || found.contains(DESCRIPTION_DESCRIPTION_CODE)) {
                 descrPar = p;
-                this.replaceTextSegment(p, "'{OPENCDMP.DESCRIPTION.DESCRIPTION}'", "");
             }
         }
-        if ((descrParPos != -1) &&  (planEntity.getDescription() != null) && !isDescription) {
+        if ((descrPar != null) && (substitutionTable.getPlanDescription() != null) && !isDescription) {
             XmlCursor cursor = descrPar.getCTP().newCursor();
             cursor.toNextSibling();
-            Document htmlDoc = Jsoup.parse((planEntity.getDescription()).replaceAll("\n", "<br>"));
-            HtmlToWorldBuilder htmlToWorldBuilder = new HtmlToWorldBuilder(descrPar, 0, cursor);
-            NodeTraversor.traverse(htmlToWorldBuilder, htmlDoc);
+            long start = System.nanoTime();
+            this.richTextCacheService.get(substitutionTable.getPlanDescription()).writeTo(descrPar, 0, cursor, context.getNumberingRegistry());
+            context.getTimings().record(ExportPhase.HTML, start);
         }
-        if ((descrParPos != -1) && (descriptionModel != null) && (descriptionModel.getDescription() != null) && isDescription) {
+        if ((descrPar != null) && (substitutionTable.getDescriptionDescription() != null) && isDescription) {
             XmlCursor cursor = descrPar.getCTP().newCursor();
             cursor.toNextSibling();
-            Document htmlDoc = Jsoup.parse((descriptionModel.getDescription()).replaceAll("\n", "<br>"));
-            HtmlToWorldBuilder htmlToWorldBuilder = new HtmlToWorldBuilder(descrPar, 0, cursor);
-            NodeTraversor.traverse(htmlToWorldBuilder, htmlDoc);
+            long start = System.nanoTime();
+            this.richTextCacheService.get(substitutionTable.getDescriptionDescription()).writeTo(descrPar, 0, cursor, context.getNumberingRegistry());
+            context.getTimings().record(ExportPhase.HTML, start);
         }
 
-        for (XWPFTable tbl : document.getTables()) {
-            for (XWPFTableRow row : tbl.getRows()) {
-                for (XWPFTableCell cell : row.getTableCells()) {
-                    for (XWPFParagraph p : cell.getParagraphs()) {
-                        this.fillCodes(planEntity, descriptionModel, p, referenceTypeCodes,false, true);
-                    }
-                }
-            }
+        for (XWPFParagraph p : index.getTableParagraphs(document)) {
+            substitutionTable.getTableReplacer().replace(p);
         }
     }
 
-    private void fillCodes(PlanModel planEntity, DescriptionModel descriptionModel, XWPFParagraph paragraph, List<String> referenceTypeCodes, boolean isFooterMode, boolean isTextDescriptionIncluded){
+    @Override
+    public SubstitutionTable buildSubstitutionTable(PlanModel planEntity, DescriptionModel descriptionModel, List<String> referenceTypeCodes) {
+        if (planEntity == null) throw new MyApplicationException("planEntity required");
 
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy").withZone(ZoneId.systemDefault());
+        Map<String, PlaceholderReplacer.Replacement> replacements = new HashMap<>();
+        Map<String, PlaceholderReplacer.Replacement> footerReplacements = new HashMap<>();
 
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.PLAN.TITLE}'", planEntity.getLabel());
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.PLAN.VERSION}'", "" + planEntity.getVersion());
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.PLAN.STATUS}'",  planEntity.getStatus() != null ? planEntity.getStatus().getName() : "");
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.PLAN.ID}'", planEntity.getId() != null ?  planEntity.getId().toString() : "");
-        if (this.textSegmentExists(paragraph, "'{OPENCDMP.PLAN.LANGUAGE}'")) {
-            if (planEntity.getLanguage() != null) {
-                Language language = this.languageService.getLanguage(planEntity.getLanguage());
-                if (language != null) this.replaceTextSegment(paragraph, "'{OPENCDMP.PLAN.LANGUAGE}'",  language.getName() != null ? language.getName(): "");
-            }
-            else this.replaceTextSegment(paragraph, "'{OPENCDMP.PLAN.LANGUAGE}'",  "");
+        this.put(replacements, "'{OPENCDMP.PLAN.TITLE}'", planEntity.getLabel());
+        this.put(replacements, "'{OPENCDMP.PLAN.VERSION}'", "" + planEntity.getVersion());
+        this.put(replacements, "'{OPENCDMP.PLAN.STATUS}'",  planEntity.getStatus() != null ? planEntity.getStatus().getName() : "");
+        this.put(replacements, "'{OPENCDMP.PLAN.ID}'", planEntity.getId() != null ?  planEntity.getId().toString() : "");
+        if (planEntity.getLanguage() != null) {
+            Language language = this.languageService.getLanguage(planEntity.getLanguage());
+            if (language != null) this.put(replacements, "'{OPENCDMP.PLAN.LANGUAGE}'",  language.getName() != null ? language.getName(): "");
         }
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.PLAN.ACCESS-TYPE}'", planEntity.getAccessType() != null ? planEntity.getAccessType().name() : "");
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.PLAN.BLUEPRINT.NAME}'", planEntity.getPlanBlueprint() != null ?  planEntity.getPlanBlueprint().getLabel() : "");
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.PLAN.CREATED-AT}'", planEntity.getCreatedAt() != null ? formatter.format(planEntity.getCreatedAt()) : "-" );
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.PLAN.UPDATED-AT}'", planEntity.getUpdatedAt() != null ? formatter.format(planEntity.getUpdatedAt()) : "-" );
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.PLAN.FINALIZED-AT}'", planEntity.getFinalizedAt() != null ? formatter.format(planEntity.getFinalizedAt()) : "-" );
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.PLAN.DEPOSIT-IDENTIFIERS}'", planEntity.getEntityDois() != null && !planEntity.getEntityDois().isEmpty() ? planEntity.getEntityDois().getFirst().getDoi() : isFooterMode ? "-" : "");
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.PLAN.CREATOR.NAME}'", planEntity.getCreator() != null && planEntity.getCreator().getName() != null && !planEntity.getCreator().getName().isEmpty() ? planEntity.getCreator().getName(): isFooterMode ? "-" : "");
-
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.DESCRIPTION.ID}'", descriptionModel != null && descriptionModel.getId() != null ?  descriptionModel.getId().toString() : "");
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.DESCRIPTION.TITLE}'", descriptionModel != null ? descriptionModel.getLabel() : "");
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.DESCRIPTION.STATUS}'", descriptionModel != null && descriptionModel.getStatus() != null ? descriptionModel.getStatus().getName() : "");
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.DESCRIPTION.TEMPLATE.NAME}'", descriptionModel != null && descriptionModel.getDescriptionTemplate() != null && descriptionModel.getDescriptionTemplate().getLabel() != null ? descriptionModel.getDescriptionTemplate().getLabel() : "");
-        this.replaceTextSegment(paragraph, "'{OPENCDMP.DESCRIPTION.CREATED-AT}'",descriptionModel != null && descriptionModel.getCreatedAt() != null ? formatter.format(descriptionModel.getCreatedAt()) : "-" );
-        if (this.textSegmentExists(paragraph, "'{OPENCDMP.DESCRIPTION.SECTION}'")) {
-            if (descriptionModel != null && descriptionModel.getSectionId() != null && planEntity.getPlanBlueprint() != null && planEntity.getPlanBlueprint().getDefinition() != null && planEntity.getPlanBlueprint().getDefinition().getSections() != null) {
-                org.opencdmp.commonmodels.models.planblueprint.SectionModel sectionModel = planEntity.getPlanBlueprint().getDefinition().getSections().stream()
-                        .filter(section -> section.getId() != null && section.getId().equals(descriptionModel.getSectionId()))
-                        .findFirst().orElse(null);
-                this.replaceTextSegment(paragraph, "'{OPENCDMP.DESCRIPTION.SECTION}'", sectionModel != null ? sectionModel.getLabel() : "");
-            } else {
-                this.replaceTextSegment(paragraph, "'{OPENCDMP.DESCRIPTION.SECTION}'", "");
-            }
+        else this.put(replacements, "'{OPENCDMP.PLAN.LANGUAGE}'",  "");
+        this.put(replacements, "'{OPENCDMP.PLAN.ACCESS-TYPE}'", planEntity.getAccessType() != null ? planEntity.getAccessType().name() : "");
+        this.put(replacements, "'{OPENCDMP.PLAN.BLUEPRINT.NAME}'", planEntity.getPlanBlueprint() != null ?  planEntity.getPlanBlueprint().getLabel() : "");
+        this.put(replacements, "'{OPENCDMP.PLAN.CREATED-AT}'", planEntity.getCreatedAt() != null ? PLACEHOLDER_DATE_FORMATTER.format(planEntity.getCreatedAt()) : "-" );
+        this.put(replacements, "'{OPENCDMP.PLAN.UPDATED-AT}'", planEntity.getUpdatedAt() != null ? PLACEHOLDER_DATE_FORMATTER.format(planEntity.getUpdatedAt()) : "-" );
+        this.put(replacements, "'{OPENCDMP.PLAN.FINALIZED-AT}'", planEntity.getFinalizedAt() != null ? PLACEHOLDER_DATE_FORMATTER.format(planEntity.getFinalizedAt()) : "-" );
+
+        this.put(replacements, "'{OPENCDMP.DESCRIPTION.ID}'", descriptionModel != null && descriptionModel.getId() != null ?  descriptionModel.getId().toString() : "");
+        this.put(replacements, "'{OPENCDMP.DESCRIPTION.TITLE}'", descriptionModel != null ? descriptionModel.getLabel() : "");
+        this.put(replacements, "'{OPENCDMP.DESCRIPTION.STATUS}'", descriptionModel != null && descriptionModel.getStatus() != null ? descriptionModel.getStatus().getName() : "");
+        this.put(replacements, "'{OPENCDMP.DESCRIPTION.TEMPLATE.NAME}'", descriptionModel != null && descriptionModel.getDescriptionTemplate() != null && descriptionModel.getDescriptionTemplate().getLabel() != null ? descriptionModel.getDescriptionTemplate().getLabel() : "");
+        this.put(replacements, "'{OPENCDMP.DESCRIPTION.CREATED-AT}'",descriptionModel != null && descriptionModel.getCreatedAt() != null ? PLACEHOLDER_DATE_FORMATTER.format(descriptionModel.getCreatedAt()) : "-" );
+        if (descriptionModel != null && descriptionModel.getSectionId() != null && planEntity.getPlanBlueprint() != null && planEntity.getPlanBlueprint().getDefinition() != null && planEntity.getPlanBlueprint().getDefinition().getSections() != null) {
+            org.opencdmp.commonmodels.models.planblueprint.SectionModel sectionModel = planEntity.getPlanBlueprint().getDefinition().getSections().stream()
+                    .filter(section -> section.getId() != null && section.getId().equals(descriptionModel.getSectionId()))
+                    .findFirst().orElse(null);
+            this.put(replacements, "'{OPENCDMP.DESCRIPTION.SECTION}'", sectionModel != null ? sectionModel.getLabel() : "");
+        } else {
+            this.put(replacements, "'{OPENCDMP.DESCRIPTION.SECTION}'", "");
         }
+        footerReplacements.putAll(replacements);
 
+        this.put(replacements, footerReplacements, "'{OPENCDMP.PLAN.DEPOSIT-IDENTIFIERS}'", planEntity.getEntityDois() != null && !planEntity.getEntityDois().isEmpty() ? planEntity.getEntityDois().getFirst().getDoi() : null);
+        this.put(replacements, footerReplacements, "'{OPENCDMP.PLAN.CREATOR.NAME}'", planEntity.getCreator() != null && planEntity.getCreator().getName() != null && !planEntity.getCreator().getName().isEmpty() ? planEntity.getCreator().getName() : null);
+
+        Map<String, List<ReferenceModel>> planReferencesByTypeCode = this.groupPlanReferencesByTypeCode(planEntity);
         for (String code: referenceTypeCodes) {
-            List<ReferenceModel> referencesByTypeCode = this.getPlanReferenceModelOfTypeCode(planEntity, code);
-            this.replaceReference(paragraph, referencesByTypeCode, "'{OPENCDMP.PLAN-REFERENCE." + code.toUpperCase() + "}'", isFooterMode);
+            List<ReferenceModel> referencesByTypeCode = planReferencesByTypeCode.getOrDefault(code.toLowerCase(Locale.ROOT), List.of());
+            replacements.put("'{OPENCDMP.PLAN-REFERENCE." + code.toUpperCase() + "}'", this.buildReferenceReplacement(referencesByTypeCode, false));
+            footerReplacements.put("'{OPENCDMP.PLAN-REFERENCE." + code.toUpperCase() + "}'", this.buildReferenceReplacement(referencesByTypeCode, true));
         }
         if (descriptionModel != null) {
+            Map<String, List<ReferenceModel>> descriptionReferencesByTypeCode = this.groupDescriptionReferencesByTypeCode(descriptionModel);
             for (String code : referenceTypeCodes) {
-                List<ReferenceModel> referencesByTypeCode = this.getDescriptionReferenceModelOfTypeCode(descriptionModel, code);
-                this.replaceReference(paragraph, referencesByTypeCode, "'{OPENCDMP.DESCRIPTION-REFERENCE." + code.toUpperCase() + "}'", isFooterMode);
+                List<ReferenceModel> referencesByTypeCode = descriptionReferencesByTypeCode.getOrDefault(code.toLowerCase(Locale.ROOT), List.of());
+                replacements.put("'{OPENCDMP.DESCRIPTION-REFERENCE." + code.toUpperCase() + "}'", this.buildReferenceReplacement(referencesByTypeCode, false));
+                footerReplacements.put("'{OPENCDMP.DESCRIPTION-REFERENCE." + code.toUpperCase() + "}'", this.buildReferenceReplacement(referencesByTypeCode, true));
             }
         }
-        if (this.textSegmentExists(paragraph, "'{OPENCDMP.PLAN.USERS}'") || this.textSegmentExists(paragraph, "'{OPENCDMP.PLAN.USERS-WITH-ROLES}'")) {
-            boolean isUserCodeWithRole =  this.textSegmentExists(paragraph, "'{OPENCDMP.PLAN.USERS-WITH-ROLES}'");
 
-            List<PlanUserModel> userModels = planEntity.getUsers();
+        List<PlanUserModel> userModels = planEntity.getUsers();
+        if (userModels != null && !userModels.isEmpty()) {
             StringBuilder usersString = new StringBuilder();
-            if (userModels != null && !userModels.isEmpty()) {
-                int i = 0;
-                for (PlanUserModel userModel : userModels) {
-                    i++;
-                    if(userModel != null){
-                        if(!isUserCodeWithRole) usersString.append(userModel.getUser().getName()).append(i < userModels.size() ? ", " : "");
-                        else usersString.append(userModel.getUser().getName()).append(" (").append(userModel.getRole()).append(") ").append(i < userModels.size() ? ", " : "");
-                    }
+            StringBuilder usersWithRolesString = new StringBuilder();
+            int i = 0;
+            for (PlanUserModel userModel : userModels) {
+                i++;
+                if(userModel != null){
+                    usersString.append(userModel.getUser().getName()).append(i < userModels.size() ? ", " : "");
+                    usersWithRolesString.append(userModel.getUser().getName()).append(" (").append(userModel.getRole()).append(") ").append(i < userModels.size() ? ", " : "");
                 }
-                this.replaceTextSegment(paragraph, isUserCodeWithRole ? "'{OPENCDMP.PLAN.USERS-WITH-ROLES}'" : "'{OPENCDMP.PLAN.USERS}'" , usersString.toString());
-            } else this.replaceTextSegment(paragraph, isUserCodeWithRole ? "'{OPENCDMP.PLAN.USERS-WITH-ROLES}'" : "'{OPENCDMP.PLAN.USERS}'", isFooterMode ? "-" : "");
+            }
+            this.put(replacements, footerReplacements, "'{OPENCDMP.PLAN.USERS}'", usersString.toString());
+            this.put(replacements, footerReplacements, "'{OPENCDMP.PLAN.USERS-WITH-ROLES}'", usersWithRolesString.toString());
+        } else {
+            this.put(replacements, footerReplacements, "'{OPENCDMP.PLAN.USERS}'", null);
+            this.put(replacements, footerReplacements, "'{OPENCDMP.PLAN.USERS-WITH-ROLES}'", null);
         }
 
-        if (this.textSegmentExists(paragraph, "'{OPENCDMP.PLAN.CONTACTS}'")) {
-            List<PlanContactModel> contactModels = planEntity.getProperties().getContacts();
+        List<PlanContactModel> contactModels = planEntity.getProperties() != null ? planEntity.getProperties().getContacts() : null;
+        if (contactModels != null && !contactModels.isEmpty()) {
             StringBuilder contactsString = new StringBuilder();
-            if (contactModels != null && !contactModels.isEmpty()) {
-                int i = 0;
-                for (PlanContactModel planContactModel : contactModels) {
-                    i++;
-                    if(planContactModel != null){
-                        contactsString.append(planContactModel.getFirstName()).append(" ").append(planContactModel.getLastName()).append(" (").append(planContactModel.getEmail()).append(") ").append(i < contactModels.size() ? ", " : "");
-                    }
+            int i = 0;
+            for (PlanContactModel planContactModel : contactModels) {
+                i++;
+                if(planContactModel != null){
+                    contactsString.append(planContactModel.getFirstName()).append(" ").append(planContactModel.getLastName()).append(" (").append(planContactModel.getEmail()).append(") ").append(i < contactModels.size() ? ", " : "");
                 }
-                this.replaceTextSegment(paragraph,  "'{OPENCDMP.PLAN.CONTACTS}'" , contactsString.toString());
-            } else this.replaceTextSegment(paragraph,"'{OPENCDMP.PLAN.CONTACTS}'", isFooterMode ? "-" : "");
-        }
-
-        if(isTextDescriptionIncluded){
-            if (this.textSegmentExists(paragraph, "'{OPENCDMP.PLAN.DESCRIPTION}'")) {
-                this.replaceTextSegment(paragraph, "'{OPENCDMP.PLAN.DESCRIPTION}'", planEntity.getDescription()!= null ? planEntity.getDescription() : "");
-            }
-            if (this.textSegmentExists(paragraph, "'{OPENCDMP.DESCRIPTION.DESCRIPTION}'")) {
-                this.replaceTextSegment(paragraph, "'{OPENCDMP.DESCRIPTION.DESCRIPTION}'", descriptionModel != null && descriptionModel.getDescription()!= null ? descriptionModel.getDescription() : "");
             }
-        }
+            this.put(replacements, footerReplacements, "'{OPENCDMP.PLAN.CONTACTS}'", contactsString.toString());
+        } else this.put(replacements, footerReplacements, "'{OPENCDMP.PLAN.CONTACTS}'", null);
+
+        String planDescription = planEntity.getDescription();
+        String descriptionDescription = descriptionModel != null ? descriptionModel.getDescription() : null;
+        Map<String, PlaceholderReplacer.Replacement> tableReplacements = new HashMap<>(replacements);
+        this.put(tableReplacements, PLAN_DESCRIPTION_CODE, planDescription != null ? planDescription : "");
+        this.put(tableReplacements, DESCRIPTION_DESCRIPTION_CODE, descriptionDescription != null ? descriptionDescription : "");
+        this.put(footerReplacements, PLAN_DESCRIPTION_CODE, planDescription != null ? planDescription : "");
+        this.put(footerReplacements, DESCRIPTION_DESCRIPTION_CODE, descriptionDescription != null ? descriptionDescription : "");
+        // in the body the description is rendered as html right after the paragraph that holds the code
+        this.put(replacements, PLAN_DESCRIPTION_CODE, "");
+        this.put(replacements, DESCRIPTION_DESCRIPTION_CODE, "");
+
+        return new SubstitutionTable(replacements, tableReplacements, footerReplacements, planDescription, descriptionDescription);
+    }
+
+    private void put(Map<String, PlaceholderReplacer.Replacement> replacements, String code, String value) {
+        replacements.put(code, new PlaceholderReplacer.Replacement(value));
+    }
 
+    /**
+     * Puts a value that headers and footers show as "-" when it is missing, while the body and tables leave it empty.
+     */
+    private void put(Map<String, PlaceholderReplacer.Replacement> replacements, Map<String, PlaceholderReplacer.Replacement> footerReplacements, String code, String value) {
+        replacements.put(code, new PlaceholderReplacer.Replacement(value != null ? value : ""));
+        footerReplacements.put(code, new PlaceholderReplacer.Replacement(value != null ? value : "-"));
     }
 
-    private void replaceReference(XWPFParagraph paragraph, List<ReferenceModel> referencesByTypeCode, String textToFind, boolean isFooterMode) {
+    private PlaceholderReplacer.Replacement buildReferenceReplacement(List<ReferenceModel> referencesByTypeCode, boolean isFooterMode) {
+        if (isFooterMode) return new PlaceholderReplacer.Replacement(!referencesByTypeCode.isEmpty() ? referencesByTypeCode.getFirst().getReference() : "-");
+
         StringBuilder referencesByTypeCodeNames = new StringBuilder();
         int i = 0;
         for (ReferenceModel referenceModel : referencesByTypeCode) {
             i++;
             referencesByTypeCodeNames.append(referenceModel.getLabel()).append(i < referencesByTypeCode.size() ? ", " : "");
         }
-        if (!isFooterMode)
-            this.replaceTextSegment(paragraph, textToFind, referencesByTypeCodeNames.toString(), 15);
-        else
-            this.replaceTextSegment(paragraph, textToFind, !referencesByTypeCode.isEmpty() ? referencesByTypeCode.getFirst().getReference() : "-");
-    }
-
-    private boolean textSegmentExists(XWPFParagraph paragraph, String textToFind) {
-        PositionInParagraph startPos = new PositionInParagraph(0, 0, 0);
-        return this.searchText(paragraph, textToFind, startPos) != null;
-    }
-
-    private void replaceTextSegment(XWPFParagraph paragraph, String textToFind, String replacement) {
-        this.replaceTextSegment(paragraph, textToFind, replacement, null);
-    }
-    
-    private void replaceTextSegment(XWPFParagraph paragraph, String textToFind, String replacement, Integer fontSize) {
-        TextSegment foundTextSegment;
-        PositionInParagraph startPos = new PositionInParagraph(0, 0, 0);
-        while((foundTextSegment = this.searchText(paragraph, textToFind, startPos)) != null) { // search all text segments having text to find
-
-            logger.debug(foundTextSegment.getBeginRun()+":"+foundTextSegment.getBeginText()+":"+foundTextSegment.getBeginChar());
-            logger.debug(foundTextSegment.getEndRun()+":"+foundTextSegment.getEndText()+":"+foundTextSegment.getEndChar());
-
-            // maybe there is text before textToFind in begin run
-            XWPFRun beginRun = paragraph.getRuns().get(foundTextSegment.getBeginRun());
-            String textInBeginRun = beginRun.getText(foundTextSegment.getBeginText());
-            String textBefore = textInBeginRun.substring(0, foundTextSegment.getBeginChar()); // we only need the text before
-
-            // maybe there is text after textToFind in end run
-            XWPFRun endRun = paragraph.getRuns().get(foundTextSegment.getEndRun());
-            String textInEndRun = endRun.getText(foundTextSegment.getEndText());
-            String textAfter = textInEndRun.substring(foundTextSegment.getEndChar() + 1); // we only need the text after
-
-            if (foundTextSegment.getEndRun() == foundTextSegment.getBeginRun()) {
-                textInBeginRun = textBefore + replacement + textAfter; // if we have only one run, we need the text before, then the replacement, then the text after in that run
-            } else {
-                textInBeginRun = textBefore + replacement; // else we need the text before followed by the replacement in begin run
-                endRun.setText(textAfter, foundTextSegment.getEndText()); // and the text after in end run
-            }
-
-            beginRun.setText(textInBeginRun, foundTextSegment.getBeginText());
-            if (fontSize != null) {
-                beginRun.setFontSize(fontSize);
-            }
-            // runs between begin run and end run needs to be removed
-            for (int runBetween = foundTextSegment.getEndRun() - 1; runBetween > foundTextSegment.getBeginRun(); runBetween--) {
-                paragraph.removeRun(runBetween); // remove not needed runs
-            }
-
-        }
-    }
-
-    private TextSegment searchText(XWPFParagraph paragraph, String searched, PositionInParagraph startPos) {
-        int startRun = startPos.getRun(),
-                startText = startPos.getText(),
-                startChar = startPos.getChar();
-        int beginRunPos = 0, candCharPos = 0;
-        boolean newList = false;
-
-        //CTR[] rArray = paragraph.getRArray(); //This does not contain all runs. It lacks hyperlink runs for ex.
-        java.util.List<XWPFRun> runs = paragraph.getRuns();
-
-        int beginTextPos = 0, beginCharPos = 0; //must be outside the for loop
-
-        //for (int runPos = startRun; runPos < rArray.length; runPos++) {
-        for (int runPos = startRun; runPos < runs.size(); runPos++) {
-            //int beginTextPos = 0, beginCharPos = 0, textPos = 0, charPos; //int beginTextPos = 0, beginCharPos = 0 must be outside the for loop
-            int textPos = 0, charPos;
-            //CTR ctRun = rArray[runPos];
-            CTR ctRun = runs.get(runPos).getCTR();
-            XmlCursor c = ctRun.newCursor();
-	        try (c) {
-		        c.selectPath("./*");
-		        while (c.toNextSelection()) {
-			        XmlObject o = c.getObject();
-			        if (o instanceof CTText) {
-				        if (textPos >= startText) {
-					        String candidate = ((CTText) o).getStringValue();
-					        if (runPos == startRun) {
-						        charPos = startChar;
-					        } else {
-						        charPos = 0;
-					        }
-
-					        for (; charPos < candidate.length(); charPos++) {
-						        if ((candidate.charAt(charPos) == searched.charAt(0)) && (candCharPos == 0)) {
-							        beginTextPos = textPos;
-							        beginCharPos = charPos;
-							        beginRunPos = runPos;
-							        newList = true;
-						        }
-						        if (candidate.charAt(charPos) == searched.charAt(candCharPos)) {
-							        if (candCharPos + 1 < searched.length()) {
-								        candCharPos++;
-							        } else if (newList) {
-								        TextSegment segment = new TextSegment();
-								        segment.setBeginRun(beginRunPos);
-								        segment.setBeginText(beginTextPos);
-								        segment.setBeginChar(beginCharPos);
-								        segment.setEndRun(runPos);
-								        segment.setEndText(textPos);
-								        segment.setEndChar(charPos);
-								        return segment;
-							        }
-						        } else {
-							        candCharPos = 0;
-						        }
-					        }
-				        }
-				        textPos++;
-			        } else if (o instanceof CTProofErr) {
-				        c.removeXml();
-			        } else if (o instanceof CTRPr) {
-				        //do nothing
-			        } else {
-				        candCharPos = 0;
-			        }
-		        }
-	        }
-        }
-        return null;
+        return new PlaceholderReplacer.Replacement(referencesByTypeCodeNames.toString(), 15);
     }
 
     @Override
-    public void fillFooter(PlanModel planEntity, DescriptionModel descriptionModel, XWPFDocument document) {
-        if (planEntity == null) throw new MyApplicationException("planEntity required");
+    public void fillFooter(SubstitutionTable substitutionTable, XWPFDocument document, PlaceholderIndex placeholderIndex) {
+        if (substitutionTable == null) throw new MyApplicationException("substitutionTable required");
 
-        List<String> referenceTypeCodes = this.getReferenceTypeCodesFromDocument(document, true);
-        document.getFooterList().forEach(xwpfFooter -> {
-            for (XWPFParagraph p : xwpfFooter.getParagraphs()) {
-                this.fillCodes(planEntity, descriptionModel, p, referenceTypeCodes,true, true);
-            }
-        });
+        PlaceholderIndex index = placeholderIndex != null ? placeholderIndex : PlaceholderIndex.compile(document);
+        for (XWPFParagraph p : index.getFooterParagraphs(document)) {
+            substitutionTable.getHeaderFooterReplacer().replace(p);
+        }
     }
 
     @Override
-    public void fillHeader(PlanModel planEntity, DescriptionModel descriptionModel, XWPFDocument document) {
-        if (planEntity == null) throw new MyApplicationException("planEntity required");
+    public void fillHeader(SubstitutionTable substitutionTable, XWPFDocument document, PlaceholderIndex placeholderIndex) {
+        if (substitutionTable == null) throw new MyApplicationException("substitutionTable required");
 
-        List<String> referenceTypeCodes = this.getReferenceTypeCodesFromDocument(document, true);
-        document.getHeaderList().forEach(xwpfHeader -> {
-            for (XWPFParagraph p : xwpfHeader.getParagraphs()) {
-                this.fillCodes(planEntity, descriptionModel, p, referenceTypeCodes,true, true);
-            }
-        });
+        PlaceholderIndex index = placeholderIndex != null ? placeholderIndex : PlaceholderIndex.compile(document);
+        for (XWPFParagraph p : index.getHeaderParagraphs(document)) {
+            substitutionTable.getHeaderFooterReplacer().replace(p);
+        }
     }
 
 
@@ -0,0 +1,132 @@
+package org.opencdmp.filetransformer.docx.service.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencdmp.commonmodels.models.plan.PlanModel;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerServiceProperties;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Costs exports by the length of the plan description alone, so that each test plan reserves exactly its length out of a budget of 100.
+ */
+class AdmissionServiceImplTest {
+    private static final long BUDGET = 100;
+
+    private AdmissionProperties properties;
+    private MeterRegistry meterRegistry;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        this.properties = new AdmissionProperties();
+        this.properties.setBudgetBytes(BUDGET);
+        this.properties.setMaxConcurrentExports(10);
+        this.properties.setMaxQueuedExports(10);
+        this.properties.setAcquireTimeoutSeconds(10);
+        this.properties.getCost().setBaseBytes(0);
+        this.properties.getCost().setRichTextFactor(1);
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    void admitsWaitingExportsInArrivalOrder() throws Exception {
+        AdmissionServiceImpl admissionService = this.admissionService();
+        Admission first = admissionService.admit(plan(50));
+
+        Future<Admission> large = this.executor.submit(() -> admissionService.admit(plan(60)));
+        this.awaitQueued(1);
+        // fits next to the first export, but arrives after the large one
+        Future<Admission> small = this.executor.submit(() -> admissionService.admit(plan(45)));
+        this.awaitQueued(2);
+        assertFalse(large.isDone());
+        assertFalse(small.isDone());
+
+        first.close();
+        Admission largeAdmission = large.get(10, TimeUnit.SECONDS);
+        assertEquals(60, this.meterRegistry.get("docx.admission.budget.used").gauge().value());
+        assertEquals(1, this.meterRegistry.get("docx.admission.queued").gauge().value());
+        assertFalse(small.isDone());
+
+        largeAdmission.close();
+        small.get(10, TimeUnit.SECONDS).close();
+        assertEquals(0, this.meterRegistry.get("docx.admission.budget.used").gauge().value());
+    }
+
+    @Test
+    void rejectsAnExportWaitingLongerThanTheTimeout() {
+        this.properties.setAcquireTimeoutSeconds(1);
+        AdmissionServiceImpl admissionService = this.admissionService();
+
+        try (Admission ignored = admissionService.admit(plan(100))) {
+            ExportRejectedException exception = assertThrows(ExportRejectedException.class, () -> admissionService.admit(plan(10)));
+            assertTrue(exception.isRetryable());
+        }
+        assertEquals(1, this.rejected("timeout"));
+        assertEquals(0, this.meterRegistry.get("docx.admission.queued").gauge().value());
+    }
+
+    @Test
+    void rejectsAnExportWhenTheQueueIsFull() throws Exception {
+        this.properties.setMaxQueuedExports(1);
+        AdmissionServiceImpl admissionService = this.admissionService();
+        Admission first = admissionService.admit(plan(100));
+
+        Future<Admission> waiting = this.executor.submit(() -> admissionService.admit(plan(10)));
+        this.awaitQueued(1);
+        ExportRejectedException exception = assertThrows(ExportRejectedException.class, () -> admissionService.admit(plan(10)));
+        assertTrue(exception.isRetryable());
+        assertEquals(1, this.rejected("queue_full"));
+
+        first.close();
+        waiting.get(10, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    void rejectsAnExportLargerThanTheBudget() {
+        AdmissionServiceImpl admissionService = this.admissionService();
+
+        ExportRejectedException exception = assertThrows(ExportRejectedException.class, () -> admissionService.admit(plan(BUDGET + 1)));
+        assertFalse(exception.isRetryable());
+        assertEquals(1, this.rejected("too_large"));
+    }
+
+    private AdmissionServiceImpl admissionService() {
+        return new AdmissionServiceImpl(this.properties, new ExportCostEstimator(this.properties, new WordFileTransformerServiceProperties(), null), this.meterRegistry);
+    }
+
+    private void awaitQueued(int queued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (this.meterRegistry.get("docx.admission.queued").gauge().value() < queued) {
+            if (System.nanoTime() > deadline) fail("no " + queued + " exports waiting");
+            Thread.sleep(10);
+        }
+    }
+
+    private double rejected(String reason) {
+        return this.meterRegistry.get("docx.admission.rejected").tag("reason", reason).counter().count();
+    }
+
+    /**
+     * @return a plan without descriptions costing that many bytes
+     */
+    private static PlanModel plan(long bytes) {
+        PlanModel plan = new PlanModel();
+        plan.setDescription("x".repeat((int) bytes));
+        return plan;
+    }
+}
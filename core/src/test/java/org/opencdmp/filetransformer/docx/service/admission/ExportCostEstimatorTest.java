@@ -0,0 +1,115 @@
+package org.opencdmp.filetransformer.docx.service.admission;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencdmp.commonmodels.models.description.DescriptionModel;
+import org.opencdmp.commonmodels.models.description.FieldModel;
+import org.opencdmp.commonmodels.models.description.PropertyDefinitionFieldSetItemModel;
+import org.opencdmp.commonmodels.models.description.PropertyDefinitionFieldSetModel;
+import org.opencdmp.commonmodels.models.description.PropertyDefinitionModel;
+import org.opencdmp.commonmodels.models.plan.PlanModel;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerServiceProperties;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExportCostEstimatorTest {
+    private static final long BASE = 1000;
+    private static final long DESCRIPTION = 100;
+    private static final long FIELD = 10;
+
+    private WordFileTransformerServiceProperties wordFileTransformerServiceProperties;
+    private ExportCostEstimator exportCostEstimator;
+
+    @BeforeEach
+    void setUp() {
+        AdmissionProperties admissionProperties = new AdmissionProperties();
+        admissionProperties.getCost().setBaseBytes(BASE);
+        admissionProperties.getCost().setDescriptionBytes(DESCRIPTION);
+        admissionProperties.getCost().setFieldBytes(FIELD);
+        admissionProperties.getCost().setRichTextFactor(1);
+        admissionProperties.getCost().setImageFactor(1);
+        this.wordFileTransformerServiceProperties = new WordFileTransformerServiceProperties();
+        this.wordFileTransformerServiceProperties.getStreaming().setEnabled(true);
+        this.wordFileTransformerServiceProperties.getStreaming().setMinDescriptions(3);
+        this.exportCostEstimator = new ExportCostEstimator(admissionProperties, this.wordFileTransformerServiceProperties, null);
+    }
+
+    @Test
+    void costsEveryDescriptionOfAPlanKeptInTheDocument() {
+        ExportCost cost = this.exportCostEstimator.estimate(plan("plan", description(2, "abcd"), description(1, "ab")));
+
+        assertEquals(2, cost.getDescriptions());
+        assertEquals(3, cost.getFields());
+        assertEquals(4 + 8 + 2, cost.getRichTextCharacters());
+        assertEquals(BASE + 2 * DESCRIPTION + 3 * FIELD + 4 + 8 + 2, cost.getEstimatedBytes());
+    }
+
+    @Test
+    void costsTheSkeletonAndTheLargestDescriptionOfASpooledPlan() {
+        ExportCost cost = this.exportCostEstimator.estimate(plan("plan", description(1, "ab"), description(3, "abcdef"), description(2, "abc")));
+
+        assertEquals(3, cost.getDescriptions());
+        assertEquals(6, cost.getFields());
+        assertEquals(4 + 2 + 18 + 6, cost.getRichTextCharacters());
+        assertEquals(BASE + 4 + DESCRIPTION + 3 * FIELD + 18, cost.getEstimatedBytes());
+    }
+
+    @Test
+    void costsTheDescriptionsRenderedAheadOfASpooledPlan() {
+        this.wordFileTransformerServiceProperties.getParallelDescriptions().setEnabled(true);
+        this.wordFileTransformerServiceProperties.getParallelDescriptions().setThreads(2);
+
+        ExportCost cost = this.exportCostEstimator.estimate(plan("plan", description(1, "ab"), description(3, "abcdef"), description(2, "abc")));
+
+        assertEquals(BASE + 4 + (2 + 1) * (DESCRIPTION + 3 * FIELD + 18), cost.getEstimatedBytes());
+    }
+
+    @Test
+    void costsEveryDescriptionWhenStreamingIsDisabled() {
+        this.wordFileTransformerServiceProperties.getStreaming().setEnabled(false);
+
+        ExportCost cost = this.exportCostEstimator.estimate(plan("plan", description(1, "ab"), description(3, "abcdef"), description(2, "abc")));
+
+        assertEquals(BASE + 4 + 3 * DESCRIPTION + 6 * FIELD + 2 + 18 + 6, cost.getEstimatedBytes());
+    }
+
+    @Test
+    void costsADescriptionExport() {
+        ExportCost cost = this.exportCostEstimator.estimate(description(2, "abc"));
+
+        assertEquals(BASE + DESCRIPTION + 2 * FIELD + 6, cost.getEstimatedBytes());
+    }
+
+    private static PlanModel plan(String description, DescriptionModel... descriptions) {
+        PlanModel plan = new PlanModel();
+        plan.setDescription(description);
+        plan.setDescriptions(List.of(descriptions));
+        return plan;
+    }
+
+    /**
+     * @return a description with that many fields, each with the text value
+     */
+    private static DescriptionModel description(int fields, String textValue) {
+        Map<String, FieldModel> values = new HashMap<>();
+        for (int i = 0; i < fields; i++) {
+            FieldModel field = new FieldModel();
+            field.setTextValue(textValue);
+            values.put("field" + i, field);
+        }
+        PropertyDefinitionFieldSetItemModel item = new PropertyDefinitionFieldSetItemModel();
+        item.setOrdinal(0);
+        item.setFields(values);
+        PropertyDefinitionFieldSetModel fieldSet = new PropertyDefinitionFieldSetModel();
+        fieldSet.setItems(List.of(item));
+        PropertyDefinitionModel properties = new PropertyDefinitionModel();
+        properties.setFieldSets(Map.of("fs", fieldSet));
+        DescriptionModel description = new DescriptionModel();
+        description.setProperties(properties);
+        return description;
+    }
+}
@@ -0,0 +1,52 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPageMar;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPageSz;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSectPr;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+
+/**
+ * Documents and images shared by the rendering tests.
+ */
+public final class TestDocuments {
+    private TestDocuments() {
+    }
+
+    /**
+     * @return an empty document with an A4 page and margins of one inch, as the templates have
+     */
+    public static XWPFDocument a4Document() {
+        XWPFDocument document = new XWPFDocument();
+        CTSectPr sectPr = document.getDocument().getBody().addNewSectPr();
+        CTPageSz pageSize = sectPr.addNewPgSz();
+        pageSize.setW(BigInteger.valueOf(11906));
+        pageSize.setH(BigInteger.valueOf(16838));
+        CTPageMar pageMargins = sectPr.addNewPgMar();
+        pageMargins.setLeft(BigInteger.valueOf(1440));
+        pageMargins.setRight(BigInteger.valueOf(1440));
+        pageMargins.setTop(BigInteger.valueOf(1440));
+        pageMargins.setBottom(BigInteger.valueOf(1440));
+        return document;
+    }
+
+    /**
+     * @return a black image in the given ImageIO format with one red pixel, placed by the seed so that images of the same size differ
+     */
+    public static byte[] image(String format, int width, int height, int seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(seed % width, seed / width % height, 0xFF0000);
+        try (ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+            ImageIO.write(image, format, output);
+            return output.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
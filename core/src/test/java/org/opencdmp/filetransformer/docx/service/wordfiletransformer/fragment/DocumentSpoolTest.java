@@ -0,0 +1,187 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.fragment;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFHyperlink;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFPictureData;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.opencdmp.filetransformer.docx.service.storage.FileStorageServiceImpl;
+import org.opencdmp.filetransformer.docx.service.storage.FileStorageServiceProperties;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.TestDocuments;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerServiceProperties;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.image.ImageServiceImpl;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.RenderContext;
+
+import javax.xml.namespace.QName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writes the same items into a document directly and through a {@link DocumentSpool}, and expects the same body once both are written:
+ * no placeholder paragraph left, and every picture and hyperlink resolving to the same target.
+ */
+class DocumentSpoolTest {
+    private static final String RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String WORDPROCESSINGML_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final String DRAWING_NS = "http://schemas.openxmlformats.org/drawingml/2006/wordprocessingDrawing";
+    private static final String PICTURE_NS = "http://schemas.openxmlformats.org/drawingml/2006/picture";
+    private static final QName BOOKMARK_START = new QName(WORDPROCESSINGML_NS, "bookmarkStart");
+    private static final Set<QName> DRAWING_PROPERTIES = Set.of(new QName(DRAWING_NS, "docPr"), new QName(PICTURE_NS, "cNvPr"));
+    private static final int ITEMS = 7;
+
+    @TempDir
+    Path temp;
+
+    private FragmentRenderServiceImpl fragmentRenderService;
+
+    @AfterEach
+    void tearDown() {
+        if (this.fragmentRenderService != null) this.fragmentRenderService.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void spooledDocumentHasTheBodyOfTheDocumentWrittenDirectly(boolean parallel) throws IOException {
+        WordFileTransformerServiceProperties properties = new WordFileTransformerServiceProperties();
+        properties.getParallelDescriptions().setEnabled(parallel);
+        properties.getParallelDescriptions().setThreads(3);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        this.fragmentRenderService = new FragmentRenderServiceImpl(properties, meterRegistry);
+        ImageServiceImpl imageService = new ImageServiceImpl(properties, meterRegistry);
+        FileStorageServiceImpl fileStorageService = new FileStorageServiceImpl(new FileStorageServiceProperties(this.temp.toString(), this.temp.toString()));
+        List<Integer> items = IntStream.range(0, ITEMS).boxed().toList();
+        FragmentWriter<Integer> writer = (document, item, context) -> write(document, item, context, imageService);
+
+        byte[] expected;
+        try (XWPFDocument document = document()) {
+            RenderContext context = new RenderContext();
+            for (Integer item : items) writer.write(document, item, context);
+            expected = toByteArray(document);
+        }
+
+        byte[] actual;
+        try (XWPFDocument document = document(); DocumentSpool spool = new DocumentSpool(fileStorageService)) {
+            this.fragmentRenderService.spool(document, new RenderContext(), items, writer, spool);
+            assertTrue(spool.size() > 0);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            spool.write(document, output);
+            actual = output.toByteArray();
+        }
+
+        try (XWPFDocument expectedDocument = new XWPFDocument(new ByteArrayInputStream(expected));
+             XWPFDocument actualDocument = new XWPFDocument(new ByteArrayInputStream(actual))) {
+            assertFalse(hasSpoolBookmark(actualDocument), "placeholder paragraphs left in the spooled document");
+            assertEquals(body(expectedDocument), body(actualDocument));
+            assertEquals(IntStream.rangeClosed(1, ITEMS).mapToObj(n -> "Image " + n).toList(), captions(actualDocument));
+        }
+    }
+
+    /**
+     * An item as a description would render it: a heading, a hyperlink, a picture shared with other items and one of its own, captions and a table.
+     */
+    private static void write(XWPFDocument document, int item, RenderContext context, ImageServiceImpl imageService) {
+        XWPFParagraph heading = document.createParagraph();
+        heading.setStyle("Heading4");
+        heading.createRun().setText("Item " + item);
+
+        XWPFParagraph link = document.createParagraph();
+        link.createRun().setText("See ");
+        link.createHyperlinkRun("https://example.org/items/" + item).setText("item " + item);
+
+        byte[] image = item % 2 == 0 ? TestDocuments.image("png", 40, 20, 0) : TestDocuments.image("png", 30 + item, 20, item);
+        XWPFRun pictureRun = document.createParagraph().createRun();
+        assertNotNull(imageService.embed(pictureRun, ByteBuffer.wrap(image), "image/png", "image-" + item + ".png", document, context.getImageRegistry()));
+        XWPFParagraph caption = document.createParagraph();
+        caption.setStyle("Caption");
+        caption.createRun().setText("Image " + context.nextImageNumber());
+
+        XWPFTable table = document.createTable(2, 2);
+        table.getRow(0).getCell(0).setText("Key " + item);
+        table.getRow(0).getCell(1).setText("Value " + item);
+
+        document.createParagraph().createRun().setText("End of item " + item);
+    }
+
+    private static XWPFDocument document() {
+        XWPFDocument document = TestDocuments.a4Document();
+        document.createParagraph().createRun().setText("Descriptions");
+        return document;
+    }
+
+    /**
+     * @return the xml of every body element, with relationship ids replaced by what they resolve to and the ids and names of drawings cleared
+     */
+    private static List<String> body(XWPFDocument document) {
+        List<String> body = new ArrayList<>();
+        for (IBodyElement element : document.getBodyElements()) {
+            XmlObject xml = element instanceof XWPFParagraph paragraph ? paragraph.getCTP().copy() : ((XWPFTable) element).getCTTbl().copy();
+            try (XmlCursor cursor = xml.newCursor()) {
+                while (!cursor.toNextToken().isNone()) {
+                    if (!cursor.isAttr()) continue;
+                    QName name = cursor.getName();
+                    if (RELATIONSHIPS_NS.equals(name.getNamespaceURI())) cursor.setTextValue(resolve(document, cursor.getTextValue()));
+                    else if (("id".equals(name.getLocalPart()) || "name".equals(name.getLocalPart())) && isDrawingProperties(cursor)) cursor.setTextValue("");
+                }
+            }
+            body.add(xml.xmlText().replaceAll("\\s+xmlns(:\\w+)?=\"[^\"]*\"", ""));
+        }
+        return body;
+    }
+
+    private static boolean isDrawingProperties(XmlCursor attribute) {
+        try (XmlCursor cursor = attribute.newCursor()) {
+            cursor.toParent();
+            return DRAWING_PROPERTIES.contains(cursor.getName());
+        }
+    }
+
+    private static String resolve(XWPFDocument document, String relationId) {
+        POIXMLDocumentPart part = document.getRelationById(relationId);
+        if (part instanceof XWPFPictureData pictureData) return "picture:" + Arrays.hashCode(pictureData.getData()) + ":" + pictureData.getData().length;
+        XWPFHyperlink hyperlink = document.getHyperlinkByID(relationId);
+        assertNotNull(hyperlink, "relationship " + relationId + " does not resolve");
+        return "hyperlink:" + hyperlink.getURL();
+    }
+
+    private static boolean hasSpoolBookmark(XWPFDocument document) {
+        for (XWPFParagraph paragraph : document.getParagraphs()) {
+            try (XmlCursor cursor = paragraph.getCTP().newCursor()) {
+                while (!cursor.toNextToken().isNone()) {
+                    if (cursor.isStart() && BOOKMARK_START.equals(cursor.getName())) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<String> captions(XWPFDocument document) {
+        return document.getParagraphs().stream().filter(x -> "Caption".equals(x.getStyle())).map(XWPFParagraph::getText).toList();
+    }
+
+    private static byte[] toByteArray(XWPFDocument document) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        document.write(output);
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,91 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.fragment;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFNumbering;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.junit.jupiter.api.Test;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.HtmlToWorldBuilder;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.word.RenderContext;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTNum;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STNumberFormat;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Splices fragments that were rendered with registries of their own, so that their list numbering ids collide, into one document.
+ */
+class FragmentSplicerTest {
+
+    @Test
+    void splicedListsGetDistinctIdsOverSharedDefinitions() throws IOException {
+        try (XWPFDocument document = new XWPFDocument(); XWPFDocument first = fragment(1); XWPFDocument second = fragment(2)) {
+            RenderContext context = new RenderContext();
+            FragmentSplicer splicer = new FragmentSplicer(document, context);
+            splicer.splice(first);
+            splicer.splice(second);
+
+            Map<String, BigInteger> numIds = numIds(document);
+            assertEquals(List.of("1 bullet a", "1 bullet b", "1 number a", "1 number b", "2 bullet a", "2 bullet b", "2 number a", "2 number b"), List.copyOf(numIds.keySet()));
+            for (String list : List.of("1 bullet", "1 number", "2 bullet", "2 number")) {
+                assertEquals(numIds.get(list + " a"), numIds.get(list + " b"), list);
+            }
+            List<BigInteger> lists = List.of(numIds.get("1 bullet a"), numIds.get("1 number a"), numIds.get("2 bullet a"), numIds.get("2 number a"));
+            assertEquals(lists.size(), lists.stream().distinct().count());
+
+            XWPFNumbering numbering = document.getNumbering();
+            assertEquals(2, numbering.getAbstractNums().size());
+            assertEquals(abstractNumIdOf(numbering, numIds.get("1 bullet a")), abstractNumIdOf(numbering, numIds.get("2 bullet a")));
+            assertEquals(abstractNumIdOf(numbering, numIds.get("1 number a")), abstractNumIdOf(numbering, numIds.get("2 number a")));
+            assertNotEquals(abstractNumIdOf(numbering, numIds.get("1 bullet a")), abstractNumIdOf(numbering, numIds.get("1 number a")));
+            for (BigInteger numId : lists) {
+                assertNotNull(numbering.getAbstractNum(abstractNumIdOf(numbering, numId)), "num " + numId + " does not resolve");
+                CTNum ctNum = numbering.getNum(numId).getCTNum();
+                assertEquals(1, ctNum.sizeOfLvlOverrideArray());
+                assertEquals(BigInteger.ONE, ctNum.getLvlOverrideArray(0).getStartOverride().getVal());
+            }
+
+            // a list created after the splice does not collide with the imported ones either
+            BigInteger next = context.getNumberingRegistry().newList(document, STNumberFormat.BULLET, BigInteger.ZERO);
+            assertFalse(lists.contains(next));
+            assertEquals(abstractNumIdOf(numbering, numIds.get("1 bullet a")), abstractNumIdOf(numbering, next));
+        }
+    }
+
+    /**
+     * @return a document with a bulleted and a numbered list, numbered by a registry of its own as a fragment is
+     */
+    private static XWPFDocument fragment(int index) {
+        XWPFDocument fragment = new XWPFDocument();
+        String html = "<ul><li>%1$d bullet a</li><li>%1$d bullet b</li></ul><ol><li>%1$d number a</li><li>%1$d number b</li></ol>".formatted(index);
+        HtmlToWorldBuilder.record(html).appendTo(fragment, 0, new RenderContext().getNumberingRegistry());
+        return fragment;
+    }
+
+    private static Map<String, BigInteger> numIds(XWPFDocument document) {
+        Map<String, BigInteger> numIds = new LinkedHashMap<>();
+        for (XWPFParagraph paragraph : document.getParagraphs()) {
+            CTPPr pPr = paragraph.getCTP().getPPr();
+            if (pPr == null || pPr.getNumPr() == null) continue;
+            numIds.put(text(paragraph), pPr.getNumPr().getNumId().getVal());
+        }
+        return numIds;
+    }
+
+    /**
+     * @return the text of the paragraph, read from its xml since the wrappers of spliced paragraphs have no runs
+     */
+    private static String text(XWPFParagraph paragraph) {
+        return paragraph.getCTP().xmlText().replaceAll("<[^>]*>", "").trim();
+    }
+
+    private static BigInteger abstractNumIdOf(XWPFNumbering numbering, BigInteger numId) {
+        return numbering.getNum(numId).getCTNum().getAbstractNumId().getVal();
+    }
+}
@@ -0,0 +1,124 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.image;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.util.Units;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFPicture;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.TestDocuments;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerServiceProperties;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageServiceImplTest {
+    private ImageServiceImpl imageService;
+    private XWPFDocument document;
+
+    @BeforeEach
+    void setUp() {
+        this.imageService = new ImageServiceImpl(new WordFileTransformerServiceProperties(), new SimpleMeterRegistry());
+        this.document = TestDocuments.a4Document();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        this.document.close();
+    }
+
+    @Test
+    void sizesAnImageOfItsMimeType() {
+        PreparedImage image = this.imageService.prepare(ByteBuffer.wrap(TestDocuments.image("png", 40, 20, 1)), "image/png", this.document);
+
+        assertNotNull(image);
+        assertEquals(30, image.getWidth());
+        assertEquals(15, image.getHeight());
+    }
+
+    @Test
+    void fallsBackToTheReaderOfTheContentWhenTheMimeTypeIsWrong() {
+        PreparedImage image = this.imageService.prepare(ByteBuffer.wrap(TestDocuments.image("jpeg", 40, 20, 1)), "image/png", this.document);
+
+        assertNotNull(image);
+        assertEquals(30, image.getWidth());
+        assertEquals(15, image.getHeight());
+    }
+
+    @Test
+    void skipsContentNoReaderCanRead() {
+        assertNull(this.imageService.prepare(ByteBuffer.wrap("not an image".getBytes()), "image/png", this.document));
+    }
+
+    @Test
+    void downscalesAnImageAboveTheMaximumResolutionAtItsSizeOnThePage() throws IOException {
+        // 1800pt wide at 96 dpi, shrunk to the 451pt of the text area, where 150 dpi is 940 pixels
+        byte[] png = TestDocuments.image("png", 2400, 1200, 1);
+
+        EmbeddedImage image = this.imageService.embed(this.document.createParagraph().createRun(), ByteBuffer.wrap(png), "image/png", "large.png", this.document, new ImageRegistry());
+
+        assertNotNull(image);
+        assertEquals(Units.toEMU(451), image.getWidth());
+        assertEquals(Units.toEMU(226), image.getHeight());
+        byte[] embedded = this.document.getAllPictures().getFirst().getData();
+        assertTrue(embedded.length < png.length);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(embedded));
+        assertEquals(940, decoded.getWidth());
+        assertEquals(470, decoded.getHeight());
+    }
+
+    @Test
+    void keepsTheUploadOfAnImageWithinTheMaximumResolution() {
+        // 450pt wide at 96 dpi, where 150 dpi would be 938 pixels
+        byte[] png = TestDocuments.image("png", 600, 300, 1);
+
+        EmbeddedImage image = this.imageService.embed(this.document.createParagraph().createRun(), ByteBuffer.wrap(png), "image/png", "small.png", this.document, new ImageRegistry());
+
+        assertNotNull(image);
+        assertEquals(Units.toEMU(450), image.getWidth());
+        assertArrayEquals(png, this.document.getAllPictures().getFirst().getData());
+    }
+
+    @Test
+    void embedsRepeatedContentInOnePicturePart() throws IOException {
+        byte[] png = TestDocuments.image("png", 40, 20, 1);
+        ImageRegistry registry = new ImageRegistry();
+        XWPFRun first = this.document.createParagraph().createRun();
+        XWPFRun second = this.document.createParagraph().createRun();
+
+        EmbeddedImage image = this.imageService.embed(first, ByteBuffer.wrap(png), "image/png", "first.png", this.document, registry);
+        EmbeddedImage reused = this.imageService.embed(second, ByteBuffer.wrap(png.clone()), "image/png", "second.png", this.document, registry);
+
+        assertNotNull(image);
+        assertSame(image, reused);
+        assertEquals(Units.toEMU(30), image.getWidth());
+        assertEquals(Units.toEMU(15), image.getHeight());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        this.document.write(output);
+        try (XWPFDocument written = new XWPFDocument(new ByteArrayInputStream(output.toByteArray()))) {
+            assertEquals(1, written.getAllPictures().size());
+            List<XWPFPicture> pictures = written.getParagraphs().stream().flatMap(x -> x.getRuns().stream()).flatMap(x -> x.getEmbeddedPictures().stream()).toList();
+            assertEquals(2, pictures.size());
+            for (XWPFPicture picture : pictures) assertArrayEquals(png, picture.getPictureData().getData());
+        }
+    }
+
+    @Test
+    void embedsNothingForContentNoReaderCanRead() {
+        XWPFRun run = this.document.createParagraph().createRun();
+
+        assertNull(this.imageService.embed(run, ByteBuffer.wrap("not an image".getBytes()), "image/png", "broken.png", this.document, new ImageRegistry()));
+        assertTrue(run.getCTR().getDrawingList().isEmpty());
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Converts the same html with {@link HtmlToWorldBuilder} and with the stateful {@link LegacyHtmlToWorldBuilder},
+ * and expects the same paragraphs, runs and formatting included. List ids are left out: every list now gets a num of its own.
+ */
+class HtmlToWorldBuilderTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "<p>&nbsp;</p>",
+            "<p>before</p><p>&nbsp;</p><p>&nbsp; &nbsp;</p><p>after</p>",
+            "<p>text <span>&nbsp;</span> more</p>",
+            "\u00A0",
+            "first\n\u00A0\nlast"
+    })
+    void nonBreakingSpacesAreBlank(String html) throws IOException {
+        assertSameAsLegacy(html, 0);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "  leading space",
+            "\t leading tab",
+            "   \nafter a blank first line",
+            "  two\n   lines  with   spaces ",
+            "  <b>bold</b> after leading space"
+    })
+    void leadingWhitespaceIsDropped(String html) throws IOException {
+        assertSameAsLegacy(html, 1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "<ul><li>one</li><li>two</li></ul>",
+            "<ul><li>one<ul><li>nested</li><li>nested <i>again</i></li></ul></li><li>two</li></ul><p>between</p><ol><li>first</li><li>second<ol><li>inner</li></ol></li></ol>",
+            "<ol><li>a<ul><li>b<ol><li>c</li></ol></li></ul></li></ol>"
+    })
+    void nestedLists(String html) throws IOException {
+        assertSameAsLegacy(html, 2);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "a<br>b",
+            "<p>line<br><br>after two breaks</p>",
+            "<p>ends with a break<br></p><p>next</p>",
+            "<br>",
+            "a\nb\n\nc",
+            "\nstarts with a new line",
+            "<p>a\nb</p>"
+    })
+    void breaks(String html) throws IOException {
+        assertSameAsLegacy(html, 0);
+    }
+
+    @Test
+    void formattingAndLinks() throws IOException {
+        assertSameAsLegacy("<h4>Heading</h4><p align=\"center\"><strong>bold</strong> <em>italic</em> <u>under</u> <sub>sub</sub><sup>sup</sup></p>"
+                + "<blockquote>quoted</blockquote><p><a href=\"https://example.org/a b\">link</a> <font color=\"#FF0000\">red</font></p>", 1);
+    }
+
+    private static void assertSameAsLegacy(String html, float indentation) throws IOException {
+        try (XWPFDocument expected = new XWPFDocument(); XWPFDocument actual = new XWPFDocument()) {
+            LegacyHtmlToWorldBuilder.convert(expected, Jsoup.parse(html.replace("\n", "<br>")), indentation);
+            HtmlToWorldBuilder.record(html).appendTo(actual, indentation, new NumberingRegistry());
+
+            List<String> expectedParagraphs = paragraphs(expected);
+            assertTrue(expectedParagraphs.size() > 0);
+            assertEquals(expectedParagraphs, paragraphs(actual), html);
+        }
+    }
+
+    private static List<String> paragraphs(XWPFDocument document) {
+        return document.getParagraphs().stream()
+                .map(XWPFParagraph::getCTP)
+                .map(x -> x.xmlText().replaceAll("(<w:numId w:val=)\"\\d+\"", "$1\"\""))
+                .toList();
+    }
+}
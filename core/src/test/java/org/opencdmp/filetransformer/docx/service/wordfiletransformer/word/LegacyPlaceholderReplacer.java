@@ -0,0 +1,120 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
+
+import org.apache.poi.xwpf.usermodel.PositionInParagraph;
+import org.apache.poi.xwpf.usermodel.TextSegment;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTProofErr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTText;
+
+import java.util.List;
+
+/**
+ * The per-code search and replace that {@link PlaceholderReplacer} replaced, kept unchanged as the oracle of its tests.
+ */
+class LegacyPlaceholderReplacer {
+
+    static void replaceTextSegment(XWPFParagraph paragraph, String textToFind, String replacement, Integer fontSize) {
+        TextSegment foundTextSegment;
+        PositionInParagraph startPos = new PositionInParagraph(0, 0, 0);
+        while ((foundTextSegment = searchText(paragraph, textToFind, startPos)) != null) { // search all text segments having text to find
+
+            // maybe there is text before textToFind in begin run
+            XWPFRun beginRun = paragraph.getRuns().get(foundTextSegment.getBeginRun());
+            String textInBeginRun = beginRun.getText(foundTextSegment.getBeginText());
+            String textBefore = textInBeginRun.substring(0, foundTextSegment.getBeginChar()); // we only need the text before
+
+            // maybe there is text after textToFind in end run
+            XWPFRun endRun = paragraph.getRuns().get(foundTextSegment.getEndRun());
+            String textInEndRun = endRun.getText(foundTextSegment.getEndText());
+            String textAfter = textInEndRun.substring(foundTextSegment.getEndChar() + 1); // we only need the text after
+
+            if (foundTextSegment.getEndRun() == foundTextSegment.getBeginRun()) {
+                textInBeginRun = textBefore + replacement + textAfter; // if we have only one run, we need the text before, then the replacement, then the text after in that run
+            } else {
+                textInBeginRun = textBefore + replacement; // else we need the text before followed by the replacement in begin run
+                endRun.setText(textAfter, foundTextSegment.getEndText()); // and the text after in end run
+            }
+
+            beginRun.setText(textInBeginRun, foundTextSegment.getBeginText());
+            if (fontSize != null) {
+                beginRun.setFontSize(fontSize);
+            }
+            // runs between begin run and end run needs to be removed
+            for (int runBetween = foundTextSegment.getEndRun() - 1; runBetween > foundTextSegment.getBeginRun(); runBetween--) {
+                paragraph.removeRun(runBetween); // remove not needed runs
+            }
+        }
+    }
+
+    private static TextSegment searchText(XWPFParagraph paragraph, String searched, PositionInParagraph startPos) {
+        int startRun = startPos.getRun(),
+                startText = startPos.getText(),
+                startChar = startPos.getChar();
+        int beginRunPos = 0, candCharPos = 0;
+        boolean newList = false;
+
+        List<XWPFRun> runs = paragraph.getRuns();
+
+        int beginTextPos = 0, beginCharPos = 0; //must be outside the for loop
+
+        for (int runPos = startRun; runPos < runs.size(); runPos++) {
+            int textPos = 0, charPos;
+            CTR ctRun = runs.get(runPos).getCTR();
+            XmlCursor c = ctRun.newCursor();
+            try (c) {
+                c.selectPath("./*");
+                while (c.toNextSelection()) {
+                    XmlObject o = c.getObject();
+                    if (o instanceof CTText) {
+                        if (textPos >= startText) {
+                            String candidate = ((CTText) o).getStringValue();
+                            if (runPos == startRun) {
+                                charPos = startChar;
+                            } else {
+                                charPos = 0;
+                            }
+
+                            for (; charPos < candidate.length(); charPos++) {
+                                if ((candidate.charAt(charPos) == searched.charAt(0)) && (candCharPos == 0)) {
+                                    beginTextPos = textPos;
+                                    beginCharPos = charPos;
+                                    beginRunPos = runPos;
+                                    newList = true;
+                                }
+                                if (candidate.charAt(charPos) == searched.charAt(candCharPos)) {
+                                    if (candCharPos + 1 < searched.length()) {
+                                        candCharPos++;
+                                    } else if (newList) {
+                                        TextSegment segment = new TextSegment();
+                                        segment.setBeginRun(beginRunPos);
+                                        segment.setBeginText(beginTextPos);
+                                        segment.setBeginChar(beginCharPos);
+                                        segment.setEndRun(runPos);
+                                        segment.setEndText(textPos);
+                                        segment.setEndChar(charPos);
+                                        return segment;
+                                    }
+                                } else {
+                                    candCharPos = 0;
+                                }
+                            }
+                        }
+                        textPos++;
+                    } else if (o instanceof CTProofErr) {
+                        c.removeXml();
+                    } else if (o instanceof CTRPr) {
+                        //do nothing
+                    } else {
+                        candCharPos = 0;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
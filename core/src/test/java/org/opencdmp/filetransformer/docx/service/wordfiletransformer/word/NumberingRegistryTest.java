@@ -0,0 +1,97 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
+
+import gr.cite.tools.exception.MyApplicationException;
+import org.apache.poi.xwpf.usermodel.XWPFAbstractNum;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFNumbering;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTAbstractNum;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTNum;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTNumLvl;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STNumberFormat;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Creates lists in a document whose template already has numbering: abstract num 5 and num 7.
+ */
+class NumberingRegistryTest {
+    private static final BigInteger TEMPLATE_ABSTRACT_NUM_ID = BigInteger.valueOf(5);
+    private static final BigInteger TEMPLATE_NUM_ID = BigInteger.valueOf(7);
+
+    private XWPFDocument document;
+    private NumberingRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        this.document = new XWPFDocument();
+        XWPFNumbering numbering = this.document.createNumbering();
+        CTAbstractNum ctAbstractNum = CTAbstractNum.Factory.newInstance();
+        ctAbstractNum.setAbstractNumId(TEMPLATE_ABSTRACT_NUM_ID);
+        ctAbstractNum.addNewLvl().setIlvl(BigInteger.ZERO);
+        numbering.addAbstractNum(new XWPFAbstractNum(ctAbstractNum));
+        numbering.addNum(TEMPLATE_ABSTRACT_NUM_ID, TEMPLATE_NUM_ID);
+        this.registry = new NumberingRegistry();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        this.document.close();
+    }
+
+    @Test
+    void idsStartAfterTheTemplateIds() {
+        BigInteger numId = this.registry.newList(this.document, STNumberFormat.BULLET, BigInteger.ZERO);
+
+        assertEquals(TEMPLATE_NUM_ID.add(BigInteger.ONE), numId);
+        assertEquals(TEMPLATE_ABSTRACT_NUM_ID.add(BigInteger.ONE), this.abstractNumIdOf(numId));
+        assertEquals(TEMPLATE_ABSTRACT_NUM_ID, this.abstractNumIdOf(TEMPLATE_NUM_ID));
+    }
+
+    @Test
+    void abstractNumsAreSharedPerFormatAndLevel() {
+        BigInteger bullets = this.registry.newList(this.document, STNumberFormat.BULLET, BigInteger.ZERO);
+        BigInteger otherBullets = this.registry.newList(this.document, STNumberFormat.BULLET, BigInteger.ZERO);
+        BigInteger nestedBullets = this.registry.newList(this.document, STNumberFormat.BULLET, BigInteger.ONE);
+        BigInteger decimals = this.registry.newList(this.document, STNumberFormat.DECIMAL, BigInteger.ZERO);
+        BigInteger otherDecimals = this.registry.newList(this.document, STNumberFormat.DECIMAL, BigInteger.ZERO);
+
+        assertEquals(5, Stream.of(bullets, otherBullets, nestedBullets, decimals, otherDecimals).distinct().count());
+        assertEquals(this.abstractNumIdOf(bullets), this.abstractNumIdOf(otherBullets));
+        assertEquals(this.abstractNumIdOf(decimals), this.abstractNumIdOf(otherDecimals));
+        assertNotEquals(this.abstractNumIdOf(bullets), this.abstractNumIdOf(nestedBullets));
+        assertNotEquals(this.abstractNumIdOf(bullets), this.abstractNumIdOf(decimals));
+        // the template's one and the three created
+        assertEquals(4, this.document.getNumbering().getAbstractNums().size());
+    }
+
+    @Test
+    void everyListRestartsAtOne() {
+        for (BigInteger level : new BigInteger[]{BigInteger.ZERO, BigInteger.ZERO, BigInteger.ONE}) {
+            BigInteger numId = this.registry.newList(this.document, STNumberFormat.DECIMAL, level);
+            CTNum ctNum = this.document.getNumbering().getNum(numId).getCTNum();
+            assertEquals(1, ctNum.sizeOfLvlOverrideArray());
+            CTNumLvl override = ctNum.getLvlOverrideArray(0);
+            assertEquals(level, override.getIlvl());
+            assertEquals(BigInteger.ONE, override.getStartOverride().getVal());
+        }
+    }
+
+    @Test
+    void bindsToOneDocument() throws IOException {
+        this.registry.newList(this.document, STNumberFormat.BULLET, BigInteger.ZERO);
+        try (XWPFDocument other = new XWPFDocument()) {
+            assertThrows(MyApplicationException.class, () -> this.registry.newList(other, STNumberFormat.BULLET, BigInteger.ZERO));
+        }
+    }
+
+    private BigInteger abstractNumIdOf(BigInteger numId) {
+        return this.document.getNumbering().getNum(numId).getCTNum().getAbstractNumId().getVal();
+    }
+}
@@ -0,0 +1,167 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
+
+import org.apache.poi.xwpf.usermodel.BreakType;
+import org.apache.poi.xwpf.usermodel.UnderlinePatterns;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Replaces the same paragraphs with {@link PlaceholderReplacer} and with the per-code {@link LegacyPlaceholderReplacer},
+ * and expects the same text and the same runs, formatting included.
+ */
+class PlaceholderReplacerTest {
+    private static final String TITLE = "'{OPENCDMP.PLAN.TITLE}'";
+    private static final String VERSION = "'{OPENCDMP.PLAN.VERSION}'";
+    private static final String STATUS = "'{OPENCDMP.PLAN.STATUS}'";
+    private static final String USERS = "'{OPENCDMP.PLAN.USERS}'";
+    private static final String USERS_WITH_ROLES = "'{OPENCDMP.PLAN.USERS-WITH-ROLES}'";
+    private static final String GRANTS = "'{OPENCDMP.PLAN.GRANTS}'";
+
+    private static final Map<String, PlaceholderReplacer.Replacement> REPLACEMENTS = replacements();
+
+    @Test
+    void codeInOneRun() throws IOException {
+        List<String> found = assertSameAsLegacy(p -> run(p, "Title: " + TITLE + " end", r -> r.setBold(true)));
+        assertEquals(List.of(TITLE), found);
+    }
+
+    @Test
+    void codeSplitAcrossRuns() throws IOException {
+        List<String> found = assertSameAsLegacy(p -> {
+            run(p, "Title: '{OPENCDMP.", r -> r.setBold(true));
+            run(p, "PLAN.TI", r -> r.setItalic(true));
+            run(p, "TLE}' end", r -> r.setFontSize(14));
+        });
+        assertEquals(List.of(TITLE), found);
+    }
+
+    @Test
+    void codeSplitAcrossManyRuns() throws IOException {
+        assertSameAsLegacy(p -> {
+            run(p, "a", r -> r.setColor("FF0000"));
+            for (char c : VERSION.toCharArray()) run(p, String.valueOf(c), r -> r.setUnderline(UnderlinePatterns.SINGLE));
+            run(p, "b", r -> r.setColor("00FF00"));
+        });
+    }
+
+    @Test
+    void severalCodesInOneParagraph() throws IOException {
+        List<String> found = assertSameAsLegacy(p -> {
+            run(p, TITLE + " v" + VERSION + " (" + STATUS + ")", r -> r.setBold(true));
+            run(p, " and " + TITLE, r -> r.setItalic(true));
+        });
+        assertEquals(List.of(TITLE, VERSION, STATUS, TITLE), found);
+    }
+
+    @Test
+    void severalCodesSplitAcrossRuns() throws IOException {
+        assertSameAsLegacy(p -> {
+            run(p, "x '{OPENCDMP.PLAN.TI", r -> r.setBold(true));
+            run(p, "TLE}' y '{OPENCDMP.PLAN", r -> r.setFontSize(9));
+            run(p, ".STATUS}' z " + VERSION, r -> r.setItalic(true));
+        });
+    }
+
+    @Test
+    void overlappingCodes() throws IOException {
+        List<String> found = assertSameAsLegacy(p -> {
+            run(p, "Users: " + USERS + ", with roles: '{OPENCDMP.PLAN.USERS", r -> r.setBold(true));
+            run(p, "-WITH-ROLES}' and again " + USERS, r -> r.setItalic(true));
+        });
+        assertEquals(List.of(USERS, USERS_WITH_ROLES, USERS), found);
+    }
+
+    @Test
+    void codesAroundTabsAndBreaks() throws IOException {
+        assertSameAsLegacy(p -> {
+            XWPFRun run = run(p, "a " + TITLE, r -> r.setBold(true));
+            run.addTab();
+            run.setText(VERSION + " b");
+            run.addBreak();
+            run.setText(STATUS);
+            run(p, "c", r -> r.setItalic(true)).addBreak(BreakType.PAGE);
+        });
+    }
+
+    @Test
+    void codeInterruptedByTabOrBreakIsKept() throws IOException {
+        List<String> found = assertSameAsLegacy(p -> {
+            XWPFRun run = run(p, "'{OPENCDMP.PLAN.", r -> r.setBold(true));
+            run.addTab();
+            run.setText("TITLE}' ");
+            run(p, "'{OPENCDMP.PLAN.VER", r -> r.setItalic(true)).addBreak();
+            run(p, "SION}'", r -> r.setFontSize(12));
+        });
+        assertEquals(List.of(), found);
+    }
+
+    @Test
+    void replacementWithFontSize() throws IOException {
+        assertSameAsLegacy(p -> {
+            run(p, "Grants: '{OPENCDMP.PLAN.", r -> r.setFontSize(10));
+            run(p, "GRANTS}' done", r -> r.setBold(true));
+        });
+    }
+
+    @Test
+    void paragraphWithoutCodes() throws IOException {
+        List<String> found = assertSameAsLegacy(p -> {
+            run(p, "'{OPENCDMP.PLAN.UNKNOWN}' text", r -> r.setBold(true));
+            run(p, "{OPENCDMP.PLAN.TITLE} without quotes", r -> r.setItalic(true));
+        });
+        assertEquals(List.of(), found);
+    }
+
+    private List<String> assertSameAsLegacy(Consumer<XWPFParagraph> fixture) throws IOException {
+        try (XWPFDocument expectedDocument = new XWPFDocument(); XWPFDocument actualDocument = new XWPFDocument()) {
+            XWPFParagraph expected = expectedDocument.createParagraph();
+            fixture.accept(expected);
+            XWPFParagraph actual = actualDocument.createParagraph();
+            fixture.accept(actual);
+
+            for (Map.Entry<String, PlaceholderReplacer.Replacement> entry : REPLACEMENTS.entrySet()) {
+                LegacyPlaceholderReplacer.replaceTextSegment(expected, entry.getKey(), entry.getValue().getText(), entry.getValue().getFontSize());
+            }
+            List<String> found = new PlaceholderReplacer(REPLACEMENTS).replace(actual);
+
+            assertEquals(expected.getText(), actual.getText());
+            assertEquals(runs(expected), runs(actual));
+            return found;
+        }
+    }
+
+    /**
+     * @return the xml of every run: its formatting, text, tabs and breaks
+     */
+    private static List<String> runs(XWPFParagraph paragraph) {
+        return paragraph.getRuns().stream().map(run -> run.getCTR().xmlText()).toList();
+    }
+
+    private static XWPFRun run(XWPFParagraph paragraph, String text, Consumer<XWPFRun> format) {
+        XWPFRun run = paragraph.createRun();
+        format.accept(run);
+        run.setText(text);
+        return run;
+    }
+
+    private static Map<String, PlaceholderReplacer.Replacement> replacements() {
+        Map<String, PlaceholderReplacer.Replacement> replacements = new LinkedHashMap<>();
+        replacements.put(TITLE, new PlaceholderReplacer.Replacement("My plan"));
+        replacements.put(VERSION, new PlaceholderReplacer.Replacement("3"));
+        replacements.put(STATUS, new PlaceholderReplacer.Replacement(""));
+        replacements.put(USERS, new PlaceholderReplacer.Replacement("Alice, Bob"));
+        replacements.put(USERS_WITH_ROLES, new PlaceholderReplacer.Replacement("Alice (Owner), Bob (Member)"));
+        replacements.put(GRANTS, new PlaceholderReplacer.Replacement("Grant A, Grant B", 15));
+        return replacements;
+    }
+}
@@ -0,0 +1,230 @@
+package org.opencdmp.filetransformer.docx.service.wordfiletransformer.word;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencdmp.commonmodels.enums.FieldType;
+import org.opencdmp.commonmodels.models.FileEnvelopeModel;
+import org.opencdmp.commonmodels.models.description.DescriptionModel;
+import org.opencdmp.commonmodels.models.description.PropertyDefinitionFieldSetItemModel;
+import org.opencdmp.commonmodels.models.description.PropertyDefinitionFieldSetModel;
+import org.opencdmp.commonmodels.models.description.PropertyDefinitionModel;
+import org.opencdmp.commonmodels.models.description.VisibilityStateModel;
+import org.opencdmp.commonmodels.models.descriptiotemplate.DefinitionModel;
+import org.opencdmp.commonmodels.models.descriptiotemplate.DescriptionTemplateModel;
+import org.opencdmp.commonmodels.models.descriptiotemplate.FieldModel;
+import org.opencdmp.commonmodels.models.descriptiotemplate.FieldSetModel;
+import org.opencdmp.commonmodels.models.descriptiotemplate.MultiplicityModel;
+import org.opencdmp.commonmodels.models.descriptiotemplate.PageModel;
+import org.opencdmp.commonmodels.models.descriptiotemplate.SectionModel;
+import org.opencdmp.commonmodels.models.descriptiotemplate.fielddata.LabelDataModel;
+import org.opencdmp.commonmodels.models.descriptiotemplate.fielddata.UploadDataModel;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.TestDocuments;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerServiceProperties;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.image.ImageServiceImpl;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.renderplan.RenderPlanCacheServiceImpl;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.visibility.VisibilityServiceImpl;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Renders several descriptions at once through one shared {@link WordBuilderImpl} and expects each document to be the one
+ * rendered alone: its image captions numbered from 1 and every paragraph at the same indentation.
+ */
+class WordBuilderConcurrencyTest {
+    private static final int DOCUMENTS = 12;
+    private static final int THREADS = 4;
+    private static final int FIELD_SET_INDENT = 2;
+
+    private WordBuilderImpl wordBuilder;
+
+    @BeforeEach
+    void setUp() {
+        WordFileTransformerServiceProperties properties = new WordFileTransformerServiceProperties();
+        properties.setUseSharedStorage(false);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        this.wordBuilder = new WordBuilderImpl(null, properties, null, null,
+                new RichTextCacheServiceImpl(properties, meterRegistry),
+                new RenderPlanCacheServiceImpl(properties, meterRegistry),
+                new ImageServiceImpl(properties, meterRegistry));
+    }
+
+    @Test
+    void concurrentRendersMatchSingleThreadedRenders() throws Exception {
+        List<DescriptionModel> descriptions = IntStream.range(0, DOCUMENTS).mapToObj(i -> description(i, 2 + i % 3)).toList();
+
+        List<List<String>> expected = new ArrayList<>();
+        for (DescriptionModel description : descriptions) expected.add(paragraphs(this.render(description)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<XWPFDocument>> futures = new ArrayList<>();
+            for (DescriptionModel description : descriptions) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return this.render(description);
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < DOCUMENTS; i++) {
+                XWPFDocument document = futures.get(i).get(1, TimeUnit.MINUTES);
+                List<String> captions = captions(document);
+                int rows = 2 + i % 3;
+                assertEquals(IntStream.rangeClosed(1, rows).mapToObj(n -> "Image " + n).toList(), captions, "captions of document " + i);
+                assertEquals(expected.get(i), paragraphs(document), "paragraphs of document " + i);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void multiplicityItemsKeepTheFieldSetIndentAfterAnImage() {
+        XWPFDocument document = this.render(description(0, 3));
+
+        List<XWPFParagraph> items = document.getParagraphs().stream().filter(x -> x.getText().matches("[a-z]\\. .*")).toList();
+        assertFalse(items.isEmpty());
+        for (XWPFParagraph item : items) assertEquals(400 * FIELD_SET_INDENT, item.getIndentationLeft(), item.getText());
+    }
+
+    private XWPFDocument render(DescriptionModel description) {
+        XWPFDocument document = TestDocuments.a4Document();
+        this.wordBuilder.build(document, description.getDescriptionTemplate(), description.getProperties(), new VisibilityServiceImpl(description.getVisibilityStates()), new RenderContext());
+        return document;
+    }
+
+    /**
+     * @return the text and left indentation of every paragraph of the body
+     */
+    private static List<String> paragraphs(XWPFDocument document) {
+        return document.getParagraphs().stream().map(x -> x.getIndentationLeft() + ":" + x.getText()).toList();
+    }
+
+    private static List<String> captions(XWPFDocument document) {
+        return document.getParagraphs().stream().filter(x -> "Caption".equals(x.getStyle())).map(XWPFParagraph::getText).toList();
+    }
+
+    /**
+     * A description with one list view field set of {@code rows} items, each with a text, a rich text and an image,
+     * the image last so that the next item follows it directly.
+     */
+    private static DescriptionModel description(int index, int rows) {
+        LabelDataModel textData = new LabelDataModel();
+        textData.setLabel("Text");
+        textData.setFieldType(FieldType.FREE_TEXT);
+        FieldModel text = field("text", 0);
+        text.setData(textData);
+        LabelDataModel richTextData = new LabelDataModel();
+        richTextData.setLabel("Rich text");
+        richTextData.setFieldType(FieldType.RICH_TEXT_AREA);
+        FieldModel richText = field("richText", 1);
+        richText.setData(richTextData);
+        UploadDataModel.UploadOptionModel png = new UploadDataModel.UploadOptionModel();
+        png.setLabel("png");
+        png.setValue("image/png");
+        UploadDataModel imageData = new UploadDataModel();
+        imageData.setLabel("Image");
+        imageData.setFieldType(FieldType.UPLOAD);
+        imageData.setTypes(List.of(png));
+        FieldModel image = field("image", 2);
+        image.setData(imageData);
+
+        MultiplicityModel multiplicity = new MultiplicityModel();
+        multiplicity.setTableView(false);
+        FieldSetModel fieldSet = new FieldSetModel();
+        fieldSet.setId("fs");
+        fieldSet.setOrdinal(0);
+        fieldSet.setTitle("Field set");
+        fieldSet.setMultiplicity(multiplicity);
+        fieldSet.setFields(List.of(text, richText, image));
+
+        SectionModel section = new SectionModel();
+        section.setId("s");
+        section.setOrdinal(0);
+        section.setTitle("Section");
+        section.setSections(new ArrayList<>());
+        section.setFieldSets(List.of(fieldSet));
+        PageModel page = new PageModel();
+        page.setId("p");
+        page.setOrdinal(0);
+        page.setTitle("Page");
+        page.setSections(List.of(section));
+        DefinitionModel definition = new DefinitionModel();
+        definition.setPages(List.of(page));
+        DescriptionTemplateModel descriptionTemplate = new DescriptionTemplateModel();
+        descriptionTemplate.setId(new UUID(0, index));
+        descriptionTemplate.setLabel("Template " + index);
+        descriptionTemplate.setDefinition(definition);
+
+        List<VisibilityStateModel> visibilityStates = new ArrayList<>(List.of(visible("p", null), visible("s", null)));
+        List<PropertyDefinitionFieldSetItemModel> items = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            visibilityStates.add(visible("fs", row));
+            Map<String, org.opencdmp.commonmodels.models.description.FieldModel> values = new HashMap<>();
+            values.put("text", value("Document " + index + " row " + row, null));
+            values.put("richText", value("<p>Rich <strong>text</strong> " + row + "</p><ul><li>one</li><li>two</li></ul>", null));
+            values.put("image", value("image.png", image(index, row)));
+            for (String field : values.keySet()) visibilityStates.add(visible(field, row));
+            PropertyDefinitionFieldSetItemModel item = new PropertyDefinitionFieldSetItemModel();
+            item.setOrdinal(row);
+            item.setFields(values);
+            items.add(item);
+        }
+        PropertyDefinitionFieldSetModel fieldSetValue = new PropertyDefinitionFieldSetModel();
+        fieldSetValue.setItems(items);
+        PropertyDefinitionModel properties = new PropertyDefinitionModel();
+        properties.setFieldSets(new HashMap<>(Map.of("fs", fieldSetValue)));
+
+        DescriptionModel description = new DescriptionModel();
+        description.setId(new UUID(1, index));
+        description.setLabel("Description " + index);
+        description.setDescriptionTemplate(descriptionTemplate);
+        description.setProperties(properties);
+        description.setVisibilityStates(visibilityStates);
+        return description;
+    }
+
+    private static FieldModel field(String id, int ordinal) {
+        FieldModel field = new FieldModel();
+        field.setId(id);
+        field.setOrdinal(ordinal);
+        field.setIncludeInExport(true);
+        return field;
+    }
+
+    private static org.opencdmp.commonmodels.models.description.FieldModel value(String textValue, FileEnvelopeModel file) {
+        org.opencdmp.commonmodels.models.description.FieldModel value = new org.opencdmp.commonmodels.models.description.FieldModel();
+        value.setTextValue(textValue);
+        value.setFile(file);
+        return value;
+    }
+
+    /**
+     * @return a small png, different for every document and row
+     */
+    private static FileEnvelopeModel image(int index, int row) {
+        FileEnvelopeModel file = new FileEnvelopeModel();
+        file.setFilename("image-" + index + "-" + row + ".png");
+        file.setMimeType("image/png");
+        file.setFile(TestDocuments.image("png", 40 + index, 20 + row, index));
+        return file;
+    }
+
+    private static VisibilityStateModel visible(String id, Integer ordinal) {
+        VisibilityStateModel visibilityState = new VisibilityStateModel();
+        visibilityState.setFieldId(id);
+        visibilityState.setOrdinal(ordinal);
+        visibilityState.setVisible(true);
+        return visibilityState;
+    }
+}
@@ -1,13 +1,17 @@
 package org.opencdmp.filetransformer.docx.web.controller;
 
 import gr.cite.tools.auditing.AuditService;
+import gr.cite.tools.exception.MyApplicationException;
 import gr.cite.tools.logging.LoggerService;
 import gr.cite.tools.logging.MapLogEntry;
 import org.opencdmp.commonmodels.models.FileEnvelopeModel;
 import org.opencdmp.commonmodels.models.description.DescriptionModel;
 import org.opencdmp.commonmodels.models.plan.PlanModel;
 import org.opencdmp.filetransformer.docx.audit.AuditableAction;
-import org.opencdmp.filetransformerbase.interfaces.FileTransformerClient;
+import org.opencdmp.filetransformer.docx.model.BatchExportModel;
+import org.opencdmp.filetransformer.docx.model.enums.FileFormats;
+import org.opencdmp.filetransformer.docx.service.batch.BatchExportService;
+import org.opencdmp.filetransformer.docx.service.wordfiletransformer.WordFileTransformerService;
 import org.opencdmp.filetransformerbase.interfaces.FileTransformerConfiguration;
 import org.opencdmp.filetransformerbase.models.misc.DescriptionImportModel;
 import org.opencdmp.filetransformerbase.models.misc.PlanImportModel;
@@ -15,9 +19,18 @@ import org.opencdmp.filetransformerbase.models.misc.PreprocessingDescriptionMode
 import org.opencdmp.filetransformerbase.models.misc.PreprocessingPlanModel;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.management.InvalidApplicationException;
+import java.nio.charset.StandardCharsets;
 import java.util.AbstractMap;
+import java.util.Locale;
 import java.util.Map;
 
 @RestController
@@ -25,20 +38,23 @@ import java.util.Map;
 public class FileTransformerController implements org.opencdmp.filetransformerbase.interfaces.FileTransformerController {
     private static final LoggerService logger = new LoggerService(LoggerFactory.getLogger(FileTransformerController.class));
 
-    private final FileTransformerClient fileTransformerExecutor;
+    private final WordFileTransformerService wordFileTransformerService;
+
+    private final BatchExportService batchExportService;
 
     private final AuditService auditService;
 
     @Autowired
-    public FileTransformerController(FileTransformerClient fileTransformerExecutor, AuditService auditService) {
-        this.fileTransformerExecutor = fileTransformerExecutor;
+    public FileTransformerController(WordFileTransformerService wordFileTransformerService, BatchExportService batchExportService, AuditService auditService) {
+        this.wordFileTransformerService = wordFileTransformerService;
+        this.batchExportService = batchExportService;
 	    this.auditService = auditService;
     }
 
     public FileEnvelopeModel exportPlan(@RequestBody PlanModel planDepositModel, @RequestParam(value = "format",required = false)String format) throws Exception {
         logger.debug(new MapLogEntry("exportPlan " + PlanModel.class.getSimpleName()).And("planDepositModel", planDepositModel).And("format", format));
 
-        FileEnvelopeModel model = fileTransformerExecutor.exportPlan(planDepositModel, format);
+        FileEnvelopeModel model = this.wordFileTransformerService.exportPlan(planDepositModel, format);
 
         this.auditService.track(AuditableAction.FileTransformer_ExportPlan, Map.ofEntries(
                 new AbstractMap.SimpleEntry<String, Object>("planDepositModel", planDepositModel),
@@ -50,7 +66,7 @@ public class FileTransformerController implements org.opencdmp.filetransformerba
     public FileEnvelopeModel exportDescription(@RequestBody DescriptionModel descriptionModel, @RequestParam(value = "format",required = false)String format) throws Exception {
         logger.debug(new MapLogEntry("exportDescription " + DescriptionModel.class.getSimpleName()).And("descriptionModel", descriptionModel).And("format", format));
 
-        FileEnvelopeModel model = fileTransformerExecutor.exportDescription(descriptionModel, format);
+        FileEnvelopeModel model = this.wordFileTransformerService.exportDescription(descriptionModel, format);
 
         this.auditService.track(AuditableAction.FileTransformer_ExportDescription, Map.ofEntries(
                 new AbstractMap.SimpleEntry<String, Object>("descriptionModel", descriptionModel),
@@ -59,11 +75,100 @@ public class FileTransformerController implements org.opencdmp.filetransformerba
         return model;
     }
 
+    @PostMapping("/export/plan/stream")
+    public ResponseEntity<StreamingResponseBody> exportPlanStream(@RequestBody PlanModel planDepositModel, @RequestParam(value = "format",required = false)String format) {
+        logger.debug(new MapLogEntry("exportPlanStream " + PlanModel.class.getSimpleName()).And("planDepositModel", planDepositModel).And("format", format));
+
+        String filename = this.wordFileTransformerService.getPlanExportFileName(planDepositModel, format);
+        // the body is written on another thread, which does not have the locale of the request
+        Locale locale = LocaleContextHolder.getLocale();
+        StreamingResponseBody body = outputStream -> {
+            LocaleContextHolder.setLocale(locale);
+            try {
+                this.wordFileTransformerService.writePlan(planDepositModel, format, outputStream);
+            } catch (InvalidApplicationException e) {
+                throw new MyApplicationException(e.getMessage());
+            } finally {
+                LocaleContextHolder.resetLocaleContext();
+            }
+        };
+
+        this.auditService.track(AuditableAction.FileTransformer_ExportPlan, Map.ofEntries(
+                new AbstractMap.SimpleEntry<String, Object>("planDepositModel", planDepositModel),
+                new AbstractMap.SimpleEntry<String, Object>("format", format)
+        ));
+        return this.streamingResponse(filename, format, body);
+    }
+
+    @PostMapping("/export/description/stream")
+    public ResponseEntity<StreamingResponseBody> exportDescriptionStream(@RequestBody DescriptionModel descriptionModel, @RequestParam(value = "format",required = false)String format) {
+        logger.debug(new MapLogEntry("exportDescriptionStream " + DescriptionModel.class.getSimpleName()).And("descriptionModel", descriptionModel).And("format", format));
+
+        String filename = this.wordFileTransformerService.getDescriptionExportFileName(descriptionModel, format);
+        Locale locale = LocaleContextHolder.getLocale();
+        StreamingResponseBody body = outputStream -> {
+            LocaleContextHolder.setLocale(locale);
+            try {
+                this.wordFileTransformerService.writeDescription(descriptionModel, format, outputStream);
+            } finally {
+                LocaleContextHolder.resetLocaleContext();
+            }
+        };
+
+        this.auditService.track(AuditableAction.FileTransformer_ExportDescription, Map.ofEntries(
+                new AbstractMap.SimpleEntry<String, Object>("descriptionModel", descriptionModel),
+                new AbstractMap.SimpleEntry<String, Object>("format", format)
+        ));
+        return this.streamingResponse(filename, format, body);
+    }
+
+    @PostMapping("/export/batch")
+    public ResponseEntity<StreamingResponseBody> exportBatch(@RequestBody BatchExportModel batchExportModel) {
+        logger.debug(new MapLogEntry("exportBatch " + BatchExportModel.class.getSimpleName()).And("format", batchExportModel.getFormat()));
+
+        this.batchExportService.validate(batchExportModel);
+        // the body is written on another thread, which does not have the locale of the request
+        Locale locale = LocaleContextHolder.getLocale();
+        StreamingResponseBody body = outputStream -> this.batchExportService.writeBatch(batchExportModel, locale, outputStream);
+
+        this.trackBatch(batchExportModel);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(this.batchExportService.getFileName(), StandardCharsets.UTF_8).build().toString())
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
+    }
+
+    @PostMapping("/export/batch/storage")
+    public FileEnvelopeModel exportBatchToStorage(@RequestBody BatchExportModel batchExportModel) {
+        logger.debug(new MapLogEntry("exportBatchToStorage " + BatchExportModel.class.getSimpleName()).And("format", batchExportModel.getFormat()));
+
+        FileEnvelopeModel model = this.batchExportService.storeBatch(batchExportModel, LocaleContextHolder.getLocale());
+
+        this.trackBatch(batchExportModel);
+        return model;
+    }
+
+    private void trackBatch(BatchExportModel batchExportModel) {
+        this.auditService.track(AuditableAction.FileTransformer_ExportBatch, Map.ofEntries(
+                new AbstractMap.SimpleEntry<String, Object>("plans", batchExportModel.getPlans() != null ? batchExportModel.getPlans().size() : 0),
+                new AbstractMap.SimpleEntry<String, Object>("descriptions", batchExportModel.getDescriptions() != null ? batchExportModel.getDescriptions().size() : 0),
+                new AbstractMap.SimpleEntry<String, Object>("format", batchExportModel.getFormat())
+        ));
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamingResponse(String filename, String format, StreamingResponseBody body) {
+        MediaType mediaType = FileFormats.of(format) == FileFormats.PDF ? MediaType.APPLICATION_PDF : MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename, StandardCharsets.UTF_8).build().toString())
+                .contentType(mediaType)
+                .body(body);
+    }
+
     public PlanModel importFileToPlan(@RequestBody PlanImportModel planImportModel) {
 
         logger.debug(new MapLogEntry("importFileToPlan " + FileEnvelopeModel.class.getSimpleName()).And("fileEnvelope", planImportModel.getFile()));
 
-        PlanModel model = fileTransformerExecutor.importPlan(planImportModel);
+        PlanModel model = this.wordFileTransformerService.importPlan(planImportModel);
 
         this.auditService.track(AuditableAction.FileTransformer_ImportFileToPlan, Map.ofEntries(
                 new AbstractMap.SimpleEntry<String, Object>("fileEnvelope", planImportModel.getFile())
@@ -74,7 +179,7 @@ public class FileTransformerController implements org.opencdmp.filetransformerba
     public DescriptionModel importFileToDescription(@RequestBody DescriptionImportModel descriptionImportModel) {
         logger.debug(new MapLogEntry("importFileToDescription " + FileEnvelopeModel.class.getSimpleName()).And("fileEnvelope", descriptionImportModel.getFile()));
 
-        DescriptionModel model = fileTransformerExecutor.importDescription(descriptionImportModel);
+        DescriptionModel model = this.wordFileTransformerService.importDescription(descriptionImportModel);
 
         this.auditService.track(AuditableAction.FileTransformer_ImportFileToDescription, Map.ofEntries(
                 new AbstractMap.SimpleEntry<String, Object>("importFileToDescription ", descriptionImportModel.getFile())
@@ -85,7 +190,7 @@ public class FileTransformerController implements org.opencdmp.filetransformerba
     public PreprocessingPlanModel preprocessingPlan(FileEnvelopeModel fileEnvelopeModel) {
         logger.debug(new MapLogEntry("PreprocessingPlanModel " + FileEnvelopeModel.class.getSimpleName()).And("fileEnvelope", fileEnvelopeModel));
 
-        PreprocessingPlanModel model = fileTransformerExecutor.preprocessingPlan(fileEnvelopeModel);
+        PreprocessingPlanModel model = this.wordFileTransformerService.preprocessingPlan(fileEnvelopeModel);
 
         this.auditService.track(AuditableAction.FileTransformer_PreprocessingPlan, Map.ofEntries(
                 new AbstractMap.SimpleEntry<String, Object>("importFileToPlan ", fileEnvelopeModel)
@@ -96,7 +201,7 @@ public class FileTransformerController implements org.opencdmp.filetransformerba
     public PreprocessingDescriptionModel preprocessingDescription(FileEnvelopeModel fileEnvelopeModel) {
         logger.debug(new MapLogEntry("PreprocessingDescriptionModel " + FileEnvelopeModel.class.getSimpleName()).And("fileEnvelope", fileEnvelopeModel));
 
-        PreprocessingDescriptionModel model = fileTransformerExecutor.preprocessingDescription(fileEnvelopeModel);
+        PreprocessingDescriptionModel model = this.wordFileTransformerService.preprocessingDescription(fileEnvelopeModel);
 
         this.auditService.track(AuditableAction.FileTransformer_PreprocessingDescription, Map.ofEntries(
                 new AbstractMap.SimpleEntry<String, Object>("importFileToDescription ", fileEnvelopeModel)
@@ -106,7 +211,7 @@ public class FileTransformerController implements org.opencdmp.filetransformerba
     public FileTransformerConfiguration getSupportedFormats() {
         logger.debug(new MapLogEntry("getSupportedFormats"));
 
-        FileTransformerConfiguration model = fileTransformerExecutor.getConfiguration();
+        FileTransformerConfiguration model = this.wordFileTransformerService.getConfiguration();
 
         this.auditService.track(AuditableAction.FileTransformer_GetSupportedFormats);
         
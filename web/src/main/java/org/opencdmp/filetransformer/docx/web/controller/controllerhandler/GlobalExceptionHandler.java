@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import gr.cite.tools.exception.*;
 import gr.cite.tools.logging.LoggerService;
+import org.opencdmp.filetransformer.docx.service.admission.ExportRejectedException;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -136,6 +137,13 @@ public class GlobalExceptionHandler {
 				if (myValidationException.getMessage() != null) result.put("error", myValidationException.getMessage());
 				if (myValidationException.getErrors() != null) result.put("message", myValidationException.getErrors());
 			}
+			case ExportRejectedException exportRejectedException -> {
+				logLevel = System.Logger.Level.WARNING;
+				statusCode = exportRejectedException.isRetryable() ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.PAYLOAD_TOO_LARGE;
+				result = Map.ofEntries(
+						Map.entry("error", exportRejectedException.getMessage())
+				);
+			}
 			case MyApplicationException myApplicationException -> {
 				logLevel = System.Logger.Level.ERROR;
 				statusCode = HttpStatus.INTERNAL_SERVER_ERROR;